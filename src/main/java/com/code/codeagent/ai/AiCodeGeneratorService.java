@@ -6,54 +6,61 @@ import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.memory.ChatMemoryAccess;
 import reactor.core.publisher.Flux;
 
 /**
  * AI 代码生成服务接口
+ * 每种代码生成类型共享一个实例，通过 {@link MemoryId} 区分不同应用的对话记忆
  *
  * @author CodeAgent
  */
-public interface AiCodeGeneratorService {
+public interface AiCodeGeneratorService extends ChatMemoryAccess {
 
     /**
      * 生成 HTML 代码（同步版本）
      *
+     * @param appId       应用ID（对话记忆ID）
      * @param userMessage 用户消息
      * @return 生成的代码结果
      */
     @SystemMessage(fromResource = "prompt/codegen-html-system-prompt.txt")
-    HtmlCodeResult generateHtmlCode(String userMessage);
+    HtmlCodeResult generateHtmlCode(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
      * 生成多文件代码（同步版本）
      *
+     * @param appId       应用ID（对话记忆ID）
      * @param userMessage 用户消息
      * @return 生成的代码结果
      */
     @SystemMessage(fromResource = "prompt/codegen-multi-file-system-prompt.txt")
-    MultiFileCodeResult generateMultiFileCode(String userMessage);
+    MultiFileCodeResult generateMultiFileCode(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
      * 流式生成 HTML 代码
      *
+     * @param appId       应用ID（对话记忆ID）
      * @param userMessage 用户消息
      * @return 生成的代码流
      */
     @SystemMessage(fromResource = "prompt/codegen-html-system-prompt.txt")
-    Flux<String> generateHtmlCodeStream(String userMessage);
+    Flux<String> generateHtmlCodeStream(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
      * 流式生成多文件代码
      *
+     * @param appId       应用ID（对话记忆ID）
      * @param userMessage 用户消息
      * @return 生成的代码流
      */
     @SystemMessage(fromResource = "prompt/codegen-multi-file-system-prompt.txt")
-    Flux<String> generateMultiFileCodeStream(String userMessage);
+    Flux<String> generateMultiFileCodeStream(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
      * 流式生成 Vue 项目代码
      *
+     * @param appId       应用ID（对话记忆ID）
      * @param userMessage 用户消息
      * @return 生成的代码流
      */
@@ -63,6 +70,7 @@ public interface AiCodeGeneratorService {
     /**
      * 流式生成 React 项目代码
      *
+     * @param appId       应用ID（对话记忆ID）
      * @param userMessage 用户消息
      * @return 生成的代码流
      */
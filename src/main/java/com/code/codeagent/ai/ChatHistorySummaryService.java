@@ -0,0 +1,21 @@
+package com.code.codeagent.ai;
+
+import dev.langchain4j.service.SystemMessage;
+
+/**
+ * 对话历史总结服务
+ * 对话记忆超出 token 预算时，把淘汰的早期轮次总结为一段摘要
+ *
+ * @author CodeAgent
+ */
+public interface ChatHistorySummaryService {
+
+    /**
+     * 总结对话历史
+     *
+     * @param conversation 之前的摘要和要淘汰的对话内容
+     * @return 摘要
+     */
+    @SystemMessage(fromResource = "prompt/chat-history-summary-system-prompt.txt")
+    String summarize(String conversation);
+}
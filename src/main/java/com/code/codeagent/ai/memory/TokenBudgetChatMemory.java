@@ -0,0 +1,543 @@
+package com.code.codeagent.ai.memory;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.code.codeagent.ai.ChatHistorySummaryService;
+import com.code.codeagent.config.ChatMemoryConfig;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按 token 预算保留的对话记忆
+ * 替代固定条数的窗口记忆，每次添加消息后依次：
+ * 1. 之前轮次中超过阈值的工具参数（如写入文件的完整内容）和工具结果压缩为路径和哈希，需要时模型通过 readFile 读取文件的当前内容；
+ *    没有文件路径的工具参数无法重新读取，不压缩
+ * 2. 仍超过上限时，从最早的轮次开始整轮淘汰到目标预算以下（不会拆开工具调用和结果），淘汰的内容在虚拟线程上异步总结，
+ *    完成后以一条摘要消息放在系统消息之后，下一次总结时与新淘汰的内容合并
+ * 3. 仍超过上限时（当前轮次的工具调用很多），压缩当前轮次中除最后一次调用外的工具参数和结果
+ * 消息内容保存在 {@link ChatMemoryStore} 中，本对象只持有引用，可以随时重建。
+ * 工具调用的文件路径在首次处理时解析一次并按调用ID缓存，之前轮次中已压缩或无需压缩的消息不再重复处理，
+ * 每次添加消息不必重新解析整个历史中的工具参数。
+ *
+ * @author CodeAgent
+ */
+@Slf4j
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    /**
+     * 摘要消息的前缀，用于识别摘要
+     */
+    static final String SUMMARY_PREFIX = "[历史对话摘要]\n";
+
+    /**
+     * 总结时每条消息最多取的字符数（代码内容不需要完整总结）
+     */
+    private static final int SUMMARY_INPUT_MESSAGE_CHARS = 2000;
+
+    /**
+     * 表示文件路径的工具参数名
+     */
+    private static final String[] PATH_ARGUMENTS = {"relativeFilePath", "relativeDirPath"};
+
+    /**
+     * 每个记忆缓存的消息 token 数上限
+     */
+    private static final int MAX_TOKEN_COUNT_CACHE_SIZE = 256;
+
+    /**
+     * 每个记忆缓存的工具调用路径和已处理消息数上限
+     */
+    private static final int MAX_COMPACTION_CACHE_SIZE = 1024;
+
+    /**
+     * 工具参数中没有文件路径时缓存的值
+     */
+    private static final String NO_PATH = "";
+
+    private final Object id;
+
+    private final ChatMemoryStore store;
+
+    private final TokenCountEstimator tokenCountEstimator;
+
+    private final ChatMemoryConfig config;
+
+    /**
+     * 总结服务，为 null 时淘汰的轮次直接丢弃
+     */
+    private final ChatHistorySummaryService summaryService;
+
+    /**
+     * 已淘汰、等待总结的消息
+     */
+    private final List<ChatMessage> unsummarized = new ArrayList<>();
+
+    private boolean summarizing;
+
+    /**
+     * 消息 token 数缓存（按消息内容），每次添加消息时不必重新分词整个历史
+     */
+    private final Map<ChatMessage, Integer> tokenCounts = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ChatMessage, Integer> eldest) {
+            return size() > MAX_TOKEN_COUNT_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * 工具调用ID到文件路径的缓存（没有路径时为 {@link #NO_PATH}），参数只在首次处理时解析
+     */
+    private final Map<String, String> toolPaths = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_COMPACTION_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * 之前轮次中已压缩或无需压缩的工具消息（按消息内容），之后添加消息时跳过
+     */
+    private final Set<ChatMessage> settledMessages = Collections.newSetFromMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ChatMessage, Boolean> eldest) {
+            return size() > MAX_COMPACTION_CACHE_SIZE;
+        }
+    });
+
+    public TokenBudgetChatMemory(Object id, ChatMemoryStore store, TokenCountEstimator tokenCountEstimator,
+                                 ChatMemoryConfig config, ChatHistorySummaryService summaryService) {
+        this.id = id;
+        this.store = store;
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.config = config;
+        this.summaryService = config.isSummaryEnabled() ? summaryService : null;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public synchronized void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        if (message instanceof SystemMessage) {
+            int systemIndex = indexOfSystemMessage(messages);
+            if (systemIndex >= 0) {
+                if (messages.get(systemIndex).equals(message)) {
+                    return;
+                }
+                messages.remove(systemIndex);
+            }
+            messages.add(0, message);
+        } else {
+            messages.add(message);
+            if (message instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+                // 新的工具调用在加入时解析一次路径
+                aiMessage.toolExecutionRequests().forEach(this::toolPath);
+            }
+        }
+        applyBudget(messages);
+        store.updateMessages(id, messages);
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        return new ArrayList<>(store.getMessages(id));
+    }
+
+    @Override
+    public synchronized void clear() {
+        unsummarized.clear();
+        tokenCounts.clear();
+        toolPaths.clear();
+        settledMessages.clear();
+        store.deleteMessages(id);
+    }
+
+    private void applyBudget(List<ChatMessage> messages) {
+        int currentTurnStart = lastIndexOfTurnStart(messages);
+        // 1. 之前轮次的工具参数和结果（之前的轮次不再变化，每条消息只处理一次）
+        for (int i = 0; i < currentTurnStart; i++) {
+            ChatMessage message = messages.get(i);
+            if (isToolMessage(message) && !settledMessages.contains(message)) {
+                ChatMessage compacted = compact(messages, i);
+                messages.set(i, compacted);
+                settledMessages.add(compacted);
+            }
+        }
+        int[] tokens = new int[messages.size()];
+        int totalTokens = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            tokens[i] = countTokens(messages.get(i));
+            totalTokens += tokens[i];
+        }
+        if (totalTokens <= config.getMaxTokens()) {
+            return;
+        }
+        int beforeTokens = totalTokens;
+        int compactedCount = 0;
+        // 2. 整轮淘汰最早的轮次，直到低于目标预算
+        int targetTokens = (int) (config.getMaxTokens() * config.getEvictTargetRatio());
+        int evictStart = firstTurnStart(messages);
+        int evictEnd = evictStart;
+        while (totalTokens > targetTokens && evictEnd < currentTurnStart) {
+            int turnEnd = nextTurnStart(messages, evictEnd + 1);
+            for (int i = evictEnd; i < turnEnd; i++) {
+                totalTokens -= tokens[i];
+            }
+            evictEnd = turnEnd;
+        }
+        if (evictEnd > evictStart) {
+            List<ChatMessage> evicted = new ArrayList<>(messages.subList(evictStart, evictEnd));
+            messages.subList(evictStart, evictEnd).clear();
+            currentTurnStart -= evictEnd - evictStart;
+            scheduleSummary(evicted);
+        }
+        // 3. 当前轮次中较早的工具调用
+        if (totalTokens > config.getMaxTokens()) {
+            int lastToolCall = lastIndexOfToolCall(messages);
+            for (int i = currentTurnStart; i < lastToolCall; i++) {
+                ChatMessage compacted = compact(messages, i);
+                if (compacted != messages.get(i)) {
+                    totalTokens += countTokens(compacted) - countTokens(messages.get(i));
+                    messages.set(i, compacted);
+                    compactedCount++;
+                }
+            }
+        }
+        if (evictEnd > evictStart || compactedCount > 0) {
+            log.info("对话记忆超出预算，记忆ID: {}，token: {} -> {}，淘汰消息: {} 条，压缩当前轮次消息: {} 条",
+                    id, beforeTokens, totalTokens, evictEnd - evictStart, compactedCount);
+        }
+    }
+
+    private int countTokens(ChatMessage message) {
+        return tokenCounts.computeIfAbsent(message, tokenCountEstimator::estimateTokenCountInMessage);
+    }
+
+    /**
+     * 压缩消息中超过阈值的工具参数或工具结果，无需压缩时返回原消息
+     */
+    private ChatMessage compact(List<ChatMessage> messages, int index) {
+        ChatMessage message = messages.get(index);
+        int threshold = config.getCompactThresholdChars();
+        if (message instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+            List<ToolExecutionRequest> requests = new ArrayList<>(aiMessage.toolExecutionRequests().size());
+            boolean changed = false;
+            for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                String arguments = request.arguments();
+                String compacted = arguments != null && arguments.length() > threshold
+                        ? compactArguments(arguments, toolPath(request)) : arguments;
+                if (compacted != arguments) {
+                    requests.add(ToolExecutionRequest.builder()
+                            .id(request.id())
+                            .name(request.name())
+                            .arguments(compacted)
+                            .build());
+                    changed = true;
+                } else {
+                    requests.add(request);
+                }
+            }
+            return changed ? AiMessage.builder().text(aiMessage.text()).toolExecutionRequests(requests).build() : message;
+        }
+        if (message instanceof ToolExecutionResultMessage resultMessage) {
+            String text = resultMessage.text();
+            if (text != null && text.length() > threshold) {
+                String stub = String.format("[已省略的工具结果：%s %s，%d 字符，sha256:%s，需要时重新调用工具]",
+                        resultMessage.toolName(), StrUtil.nullToEmpty(findToolPath(messages, index, resultMessage.id())),
+                        text.length(), shortHash(text));
+                return ToolExecutionResultMessage.from(resultMessage.id(), resultMessage.toolName(), stub);
+            }
+        }
+        return message;
+    }
+
+    /**
+     * 参数中的大段内容替换为长度和哈希，路径等短参数保留
+     *
+     * @param path 参数中的文件路径
+     * @return 压缩后的参数，参数中没有文件路径（内容无法重新读取）或没有大段内容时返回原参数
+     */
+    private String compactArguments(String arguments, String path) {
+        if (path == null) {
+            // 没有路径时不解析参数
+            return arguments;
+        }
+        JSONObject jsonObject;
+        try {
+            jsonObject = JSONUtil.parseObj(arguments);
+        } catch (Exception e) {
+            return arguments;
+        }
+        boolean changed = false;
+        for (Map.Entry<String, Object> entry : jsonObject.entrySet()) {
+            String value = String.valueOf(entry.getValue());
+            if (value.length() > config.getCompactThresholdChars()) {
+                entry.setValue(omittedStub(value, path));
+                changed = true;
+            }
+        }
+        return changed ? jsonObject.toString() : arguments;
+    }
+
+    private String omittedStub(String value, String path) {
+        return String.format("[已省略 %d 字符，sha256:%s，需要时调用 readFile 读取 %s 的当前内容]",
+                value.length(), shortHash(value), path);
+    }
+
+    private static String shortHash(String value) {
+        return DigestUtil.sha256Hex(value).substring(0, 12);
+    }
+
+    /**
+     * 工具调用参数中的文件路径，按调用ID缓存，同一调用只解析一次
+     *
+     * @return 文件路径，没有时返回 null
+     */
+    private String toolPath(ToolExecutionRequest request) {
+        if (request.id() == null) {
+            return parsePath(request.arguments());
+        }
+        String path = toolPaths.computeIfAbsent(request.id(),
+                key -> StrUtil.blankToDefault(parsePath(request.arguments()), NO_PATH));
+        return NO_PATH.equals(path) ? null : path;
+    }
+
+    /**
+     * 工具结果对应的工具调用的文件路径，用于说明被压缩的工具结果
+     * 从结果向前查找对应的调用（通常紧邻），路径已缓存时不解析参数
+     */
+    private String findToolPath(List<ChatMessage> messages, int resultIndex, String toolCallId) {
+        if (toolCallId == null) {
+            return null;
+        }
+        for (int i = resultIndex - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+                for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                    if (toolCallId.equals(request.id())) {
+                        return toolPath(request);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isToolMessage(ChatMessage message) {
+        return message instanceof ToolExecutionResultMessage
+                || message instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests();
+    }
+
+    private String parsePath(String arguments) {
+        if (StrUtil.isBlank(arguments)) {
+            return null;
+        }
+        try {
+            return extractPath(JSONUtil.parseObj(arguments));
+        } catch (Exception e) {
+            // 参数不是合法 JSON 时不记录路径
+            return null;
+        }
+    }
+
+    private static String extractPath(JSONObject arguments) {
+        for (String name : PATH_ARGUMENTS) {
+            String path = arguments.getStr(name);
+            if (path != null) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    private void scheduleSummary(List<ChatMessage> evicted) {
+        if (summaryService == null) {
+            return;
+        }
+        unsummarized.addAll(evicted);
+        if (!summarizing) {
+            summarizing = true;
+            Thread.ofVirtual().name("chat-memory-summary-" + id).start(this::summarizeLoop);
+        }
+    }
+
+    /**
+     * 依次总结淘汰的消息，总结期间新淘汰的消息在下一次合并
+     */
+    private void summarizeLoop() {
+        while (true) {
+            List<ChatMessage> batch;
+            String previousSummary;
+            synchronized (this) {
+                if (unsummarized.isEmpty()) {
+                    summarizing = false;
+                    return;
+                }
+                batch = new ArrayList<>(unsummarized);
+                unsummarized.clear();
+                previousSummary = findSummary(store.getMessages(id));
+            }
+            try {
+                long startTime = System.currentTimeMillis();
+                String summary = StrUtil.maxLength(summaryService.summarize(renderForSummary(previousSummary, batch)),
+                        config.getSummaryMaxChars());
+                if (StrUtil.isBlank(summary)) {
+                    continue;
+                }
+                synchronized (this) {
+                    List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+                    if (messages.isEmpty()) {
+                        // 记忆已被清除
+                        continue;
+                    }
+                    putSummary(messages, summary);
+                    store.updateMessages(id, messages);
+                }
+                log.info("对话记忆总结完成，记忆ID: {}，总结消息: {} 条，耗时: {}ms", id, batch.size(),
+                        System.currentTimeMillis() - startTime);
+            } catch (Exception e) {
+                log.warn("对话记忆总结失败，记忆ID: {}，淘汰的 {} 条消息将被丢弃，错误: {}", id, batch.size(), e.getMessage());
+            }
+        }
+    }
+
+    private String renderForSummary(String previousSummary, List<ChatMessage> messages) {
+        StringBuilder builder = new StringBuilder();
+        if (previousSummary != null) {
+            builder.append("之前的摘要：\n").append(previousSummary).append("\n\n");
+        }
+        builder.append("新的对话内容：\n");
+        for (ChatMessage message : messages) {
+            switch (message) {
+                case UserMessage userMessage when userMessage.hasSingleText() ->
+                        builder.append("用户：").append(StrUtil.maxLength(userMessage.singleText(), SUMMARY_INPUT_MESSAGE_CHARS));
+                case AiMessage aiMessage -> {
+                    if (StrUtil.isNotBlank(aiMessage.text())) {
+                        builder.append("AI：").append(StrUtil.maxLength(aiMessage.text(), SUMMARY_INPUT_MESSAGE_CHARS));
+                    }
+                    if (aiMessage.hasToolExecutionRequests()) {
+                        for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                            builder.append("\nAI 调用工具：").append(request.name()).append(' ')
+                                    .append(StrUtil.maxLength(request.arguments(), SUMMARY_INPUT_MESSAGE_CHARS));
+                        }
+                    }
+                }
+                case ToolExecutionResultMessage resultMessage -> builder.append("工具结果：")
+                        .append(StrUtil.maxLength(resultMessage.text(), SUMMARY_INPUT_MESSAGE_CHARS));
+                default -> {
+                    continue;
+                }
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 替换已有的摘要，没有时放在系统消息之后
+     */
+    private void putSummary(List<ChatMessage> messages, String summary) {
+        UserMessage summaryMessage = UserMessage.from(SUMMARY_PREFIX + summary);
+        int index = indexOfSummary(messages);
+        if (index >= 0) {
+            messages.set(index, summaryMessage);
+        } else {
+            messages.add(!messages.isEmpty() && messages.get(0) instanceof SystemMessage ? 1 : 0, summaryMessage);
+        }
+    }
+
+    private String findSummary(List<ChatMessage> messages) {
+        int index = indexOfSummary(messages);
+        return index < 0 ? null : ((UserMessage) messages.get(index)).singleText().substring(SUMMARY_PREFIX.length());
+    }
+
+    private int indexOfSummary(List<ChatMessage> messages) {
+        for (int i = 0; i < Math.min(2, messages.size()); i++) {
+            if (isSummary(messages.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSummary(ChatMessage message) {
+        return message instanceof UserMessage userMessage && userMessage.hasSingleText()
+                && userMessage.singleText().startsWith(SUMMARY_PREFIX);
+    }
+
+    /**
+     * 判断消息是否开始一个新的轮次（用户消息，摘要除外）
+     */
+    private static boolean isTurnStart(ChatMessage message) {
+        return message instanceof UserMessage && !isSummary(message);
+    }
+
+    private static int indexOfSystemMessage(List<ChatMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i) instanceof SystemMessage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 第一个可淘汰的位置（跳过开头的系统消息和摘要）
+     */
+    private static int firstTurnStart(List<ChatMessage> messages) {
+        int index = 0;
+        while (index < messages.size() && (messages.get(index) instanceof SystemMessage || isSummary(messages.get(index)))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int nextTurnStart(List<ChatMessage> messages, int from) {
+        for (int i = from; i < messages.size(); i++) {
+            if (isTurnStart(messages.get(i))) {
+                return i;
+            }
+        }
+        return messages.size();
+    }
+
+    /**
+     * 当前轮次的起始位置（最后一条用户消息），没有用户消息时为 0
+     */
+    private static int lastIndexOfTurnStart(List<ChatMessage> messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (isTurnStart(messages.get(i))) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static int lastIndexOfToolCall(List<ChatMessage> messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,27 @@
+package com.code.codeagent.ai.model;
+
+import dev.langchain4j.model.output.structured.Description;
+import lombok.Data;
+
+/**
+ * 单个文件修改
+ * 按内容替换时填写 oldContent；按行替换时填写 startLine 和 endLine，oldContent 可不填
+ *
+ * @author CodeAgent
+ */
+@Description("对文件的一处修改")
+@Data
+public class FileEdit {
+
+    @Description("要替换的旧内容（按行替换时可不填）")
+    private String oldContent;
+
+    @Description("替换后的新内容")
+    private String newContent;
+
+    @Description("按行替换时的起始行号（从 1 开始，基于修改前的文件）")
+    private Integer startLine;
+
+    @Description("按行替换时的结束行号（包含该行，基于修改前的文件）")
+    private Integer endLine;
+}
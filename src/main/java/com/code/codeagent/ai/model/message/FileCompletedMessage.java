@@ -0,0 +1,35 @@
+package com.code.codeagent.ai.model.message;
+
+import com.code.codeagent.core.parser.CodeFileCompletedEvent;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * 文件完成消息
+ * HTML、MULTI_FILE 增量解析时每个文件写入完成发送一次，作为独立的 SSE 事件发送给前端，不属于 AI 回复内容，不写入对话历史
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public final class FileCompletedMessage extends StreamMessage {
+
+    /**
+     * 完成顺序（从 1 开始）
+     */
+    private int index;
+
+    private String fileName;
+
+    /**
+     * 写入的字符数
+     */
+    private long charCount;
+
+    public FileCompletedMessage(CodeFileCompletedEvent event) {
+        super(StreamMessageTypeEnum.FILE_COMPLETED.getValue());
+        this.index = event.getIndex();
+        this.fileName = event.getFileName();
+        this.charCount = event.getCharCount();
+    }
+}
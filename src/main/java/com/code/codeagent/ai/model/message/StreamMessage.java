@@ -1,16 +1,19 @@
 package com.code.codeagent.ai.model.message;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 /**
  * 流式消息响应基类
+ * 进程内以类型化对象在门面与流处理器之间传递，仅在需要时（HTTP 边界）才序列化；
+ * 只能是 permits 列出的子类，按类型的 switch 无需 default 分支
  */
 @Data
-@AllArgsConstructor
-@NoArgsConstructor
-public class StreamMessage {
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public abstract sealed class StreamMessage permits AiResponseMessage, ToolRequestMessage, ToolExecutedMessage, FileCompletedMessage {
 
     /**
      * 消息类型
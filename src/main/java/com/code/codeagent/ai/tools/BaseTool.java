@@ -1,6 +1,19 @@
 package com.code.codeagent.ai.tools;   
 
+import cn.hutool.core.util.IdUtil;
 import cn.hutool.json.JSONObject;
+import com.code.codeagent.constant.AppConstant;
+import com.code.codeagent.core.saver.CodeBlobStore;
+import com.code.codeagent.core.saver.ProjectWriteBuffer;
+import com.code.codeagent.model.enums.CodeGenTypeEnum;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
 
 /**
  * 工具基类
@@ -8,6 +21,17 @@ import cn.hutool.json.JSONObject;
  */
 public abstract class BaseTool {
 
+    /**
+     * 历史记录中工具调用标题的前缀，标题格式为“前缀 + 显示名称 + 空格 + 目标”，
+     * 标题之后以“>”开头的连续行是该工具调用的执行结果
+     */
+    public static final String HISTORY_RECORD_PREFIX = "[工具调用] ";
+
+    /**
+     * 通过工具读写文件的项目类型
+     */
+    private static final CodeGenTypeEnum[] PROJECT_TYPES = {CodeGenTypeEnum.VUE_PROJECT, CodeGenTypeEnum.REACT_PROJECT};
+
     /**
      * 获取工具的英文名称（对应方法名）
      *
@@ -31,6 +55,15 @@ public abstract class BaseTool {
         return String.format("\n\n[选择工具] %s\n\n", getDisplayName());
     }
 
+    /**
+     * 创建工具参数流式渲染器（模型输出参数时即时展示）
+     *
+     * @return 渲染器，不支持流式渲染时返回 null
+     */
+    public ToolArgumentRenderer createArgumentRenderer() {
+        return null;
+    }
+
     /**
      * 生成工具执行结果格式（保存到数据库）
      *
@@ -38,4 +71,126 @@ public abstract class BaseTool {
      * @return 格式化的工具执行结果
      */
     public abstract String generateToolExecutedResult(JSONObject arguments);
+
+    /**
+     * 生成工具执行结果格式（保存到数据库），需要区分执行成功和失败的工具可以覆盖
+     *
+     * @param arguments 工具执行参数
+     * @param result    工具执行结果（执行失败时为错误信息）
+     * @return 格式化的工具执行结果
+     */
+    public String generateToolExecutedResult(JSONObject arguments, String result) {
+        return generateToolExecutedResult(arguments);
+    }
+
+    /**
+     * 从历史记录标题中的目标还原工具参数（对话记忆回填使用），只能还原路径等标识性参数
+     *
+     * @param target 历史记录标题中显示名称之后的部分
+     * @return 工具参数
+     */
+    public JSONObject restoreArguments(String target) {
+        return new JSONObject().set("relativeFilePath", target);
+    }
+
+    /**
+     * 将多行文本转为历史记录中的引用块（每行以“>”开头），回填时据此区分工具结果和模型输出
+     *
+     * @param text 文本
+     * @return 引用块
+     */
+    protected static String quote(String text) {
+        StringBuilder quoted = new StringBuilder();
+        for (String line : text.split("\n", -1)) {
+            quoted.append(line.isEmpty() ? ">" : "> " + line).append('\n');
+        }
+        return quoted.toString();
+    }
+
+    /**
+     * 按应用ID定位项目根目录（tmp/code_output/类型_应用ID），Vue 和 React 项目的目录前缀不同
+     * 目录还不存在时按 Vue 项目处理
+     *
+     * @param appId 应用ID
+     * @return 项目根目录
+     */
+    protected final Path resolveProjectRoot(Long appId) {
+        for (CodeGenTypeEnum type : PROJECT_TYPES) {
+            Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, type.getValue() + "_" + appId);
+            if (Files.isDirectory(projectRoot)) {
+                return projectRoot;
+            }
+        }
+        return Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, PROJECT_TYPES[0].getValue() + "_" + appId);
+    }
+
+    /**
+     * 落盘屏障：基于磁盘上的文件操作前，先让写缓冲中的内容写入磁盘
+     *
+     * @param projectRoot 项目根目录
+     * @return 落盘失败时的错误信息（返回给模型），全部成功时为 null
+     */
+    protected static String flushPendingWrites(Path projectRoot) {
+        List<String> failed = ProjectWriteBuffer.flush(projectRoot);
+        if (failed.isEmpty()) {
+            return null;
+        }
+        return "错误：之前写入的文件未能保存到磁盘，本次操作未执行，请稍后重试 - " + String.join(", ", failed);
+    }
+
+    /**
+     * 读取写缓冲中尚未落盘的文件内容，修改工具据此直接修改覆盖层，不触发整体落盘
+     *
+     * @param projectRoot      项目根目录，路径不在项目内时为 null
+     * @param relativeFilePath 相对项目根目录的路径
+     * @return 尚未落盘的内容，不在写缓冲中时返回 null
+     */
+    protected static String readBuffered(Path projectRoot, String relativeFilePath) {
+        return projectRoot == null ? null : ProjectWriteBuffer.read(projectRoot, relativeFilePath);
+    }
+
+    /**
+     * 写入修改后的文件：原内容来自写缓冲时写回写缓冲，与之前的写入一起落盘；否则直接写入磁盘
+     *
+     * @param projectRoot      项目根目录，路径不在项目内时为 null
+     * @param path             文件路径
+     * @param relativeFilePath 相对项目根目录的路径
+     * @param content          修改后的内容
+     * @param buffered         原内容是否来自写缓冲
+     * @throws IOException 写入失败
+     */
+    protected final void writeModifiedFile(Path projectRoot, Path path, String relativeFilePath, String content,
+                                           boolean buffered) throws IOException {
+        if (buffered) {
+            ProjectWriteBuffer.write(projectRoot, relativeFilePath, content);
+            return;
+        }
+        // 项目内的文件是共享 blob 的硬链接，不能原地写入
+        writeFileAtomically(projectRoot, path, relativeFilePath, content);
+    }
+
+    /**
+     * 写入文件：项目内的文件存入内容寻址存储，其余文件先写临时文件再原子改名，读取方不会看到写了一半的文件
+     *
+     * @param projectRoot      项目根目录，路径不在项目内时为 null
+     * @param path             文件路径
+     * @param relativeFilePath 相对项目根目录的路径
+     * @param content          文件内容
+     * @throws IOException 写入失败
+     */
+    protected final void writeFileAtomically(Path projectRoot, Path path, String relativeFilePath, String content)
+            throws IOException {
+        if (projectRoot != null) {
+            CodeBlobStore.write(projectRoot, relativeFilePath, content);
+            ProjectDirIndex.fileWritten(projectRoot, relativeFilePath);
+            return;
+        }
+        Path tempFile = path.resolveSibling("." + path.getFileName() + ".tmp-" + IdUtil.fastSimpleUUID());
+        try {
+            Files.writeString(tempFile, content, StandardCharsets.UTF_8);
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
 } 
\ No newline at end of file
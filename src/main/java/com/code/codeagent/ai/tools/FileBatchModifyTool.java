@@ -0,0 +1,261 @@
+package com.code.codeagent.ai.tools;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import com.code.codeagent.ai.model.FileEdit;
+import dev.langchain4j.agent.tool.P;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolMemoryId;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 文件批量修改工具
+ * 一次调用对同一文件应用多处修改（按内容替换或按行替换），文件只读取和写入一次。
+ * 所有修改都基于修改前的内容定位；找不到内容、行号越界或与前面的修改重叠的修改不应用，并逐条报告原因，其余修改照常写入。
+ */
+@Slf4j
+@Component
+public class FileBatchModifyTool extends BaseTool {
+
+    @Tool("批量修改同一个文件：按内容替换（oldContent -> newContent）或按行号替换（startLine-endLine -> newContent），行号和内容都基于修改前的文件")
+    public String modifyFileBatch(
+            @P("文件的相对路径")
+            String relativeFilePath,
+            @P("修改列表，按顺序应用，冲突的修改会被跳过并报告")
+            List<FileEdit> edits,
+            @ToolMemoryId Long appId
+    ) {
+        if (edits == null || edits.isEmpty()) {
+            return "错误：修改列表为空 - " + relativeFilePath;
+        }
+        try {
+            Path path = Paths.get(relativeFilePath);
+            Path projectRoot = null;
+            if (!path.isAbsolute()) {
+                projectRoot = resolveProjectRoot(appId);
+                path = projectRoot.resolve(relativeFilePath);
+            }
+            // 尚未落盘的文件直接修改写缓冲中的内容
+            String buffered = readBuffered(projectRoot, relativeFilePath);
+            if (buffered == null && (!Files.exists(path) || !Files.isRegularFile(path))) {
+                return "错误：文件不存在或不是文件 - " + relativeFilePath;
+            }
+            String originalContent = buffered != null ? buffered : Files.readString(path);
+            EditResult result = applyEdits(originalContent, edits);
+            if (result.appliedCount == 0) {
+                return "警告：所有修改均未应用，文件未修改 - " + relativeFilePath + result.formatConflicts();
+            }
+            if (originalContent.equals(result.content)) {
+                return "信息：修改后文件内容未发生变化 - " + relativeFilePath + result.formatConflicts();
+            }
+            writeModifiedFile(projectRoot, path, relativeFilePath, result.content, buffered != null);
+            log.info("成功批量修改文件: {}，应用 {} 处，冲突 {} 处", path.toAbsolutePath(),
+                    result.appliedCount, result.conflicts.size());
+            if (result.conflicts.isEmpty()) {
+                return String.format("文件修改成功: %s（应用 %d 处修改）", relativeFilePath, result.appliedCount);
+            }
+            return String.format("文件部分修改成功: %s，应用 %d 处修改", relativeFilePath, result.appliedCount)
+                    + result.formatConflicts();
+        } catch (IOException e) {
+            String errorMessage = "修改文件失败: " + relativeFilePath + ", 错误: " + e.getMessage();
+            log.error(errorMessage, e);
+            return errorMessage;
+        }
+    }
+
+    @Override
+    public String getToolName() {
+        return "modifyFileBatch";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "批量修改文件";
+    }
+
+    @Override
+    public String generateToolExecutedResult(JSONObject arguments) {
+        String relativeFilePath = arguments.getStr("relativeFilePath");
+        JSONArray edits = arguments.getJSONArray("edits");
+        String header = String.format("[工具调用] %s %s\n", getDisplayName(), relativeFilePath);
+        if (edits == null || edits.isEmpty()) {
+            return header;
+        }
+        StringBuilder diff = new StringBuilder();
+        for (int i = 0; i < edits.size(); i++) {
+            JSONObject edit = edits.getJSONObject(i);
+            Integer startLine = edit.getInt("startLine");
+            String before = startLine != null
+                    ? String.format("第 %d-%d 行", startLine, edit.getInt("endLine", startLine))
+                    : String.format("```\n%s\n```", edit.getStr("oldContent", ""));
+            diff.append(String.format("""
+
+                    修改 %d，替换前：
+                    %s
+                    替换后：
+                    ```
+                    %s
+                    ```""", i + 1, before, edit.getStr("newContent", "")));
+        }
+        // 修改内容放在引用块中
+        return header + quote(diff.substring(1));
+    }
+
+    /**
+     * 在原内容上定位所有修改，按顺序接受互不重叠的修改，最后一次拼接出新内容
+     */
+    private EditResult applyEdits(String content, List<FileEdit> edits) {
+        int[] lineStarts = lineStarts(content);
+        EditResult result = new EditResult();
+        // 已接受的替换区间，按起始位置排序，用于检查重叠
+        TreeMap<Integer, Span> accepted = new TreeMap<>();
+        for (int i = 0; i < edits.size(); i++) {
+            FileEdit edit = edits.get(i);
+            int editNo = i + 1;
+            List<Span> spans = new ArrayList<>();
+            String error = locate(content, lineStarts, edit, editNo, spans);
+            if (error == null) {
+                error = findOverlap(accepted, spans, lineStarts);
+            }
+            if (error != null) {
+                result.conflicts.add(String.format("第 %d 个修改：%s", editNo, error));
+                continue;
+            }
+            spans.forEach(span -> accepted.put(span.start, span));
+            result.appliedCount++;
+        }
+        StringBuilder builder = new StringBuilder(content.length());
+        int position = 0;
+        for (Span span : accepted.values()) {
+            builder.append(content, position, span.start).append(span.replacement);
+            position = span.end;
+        }
+        builder.append(content, position, content.length());
+        result.content = builder.toString();
+        return result;
+    }
+
+    /**
+     * 定位单个修改的替换区间，无法定位时返回原因
+     */
+    private String locate(String content, int[] lineStarts, FileEdit edit, int editNo, List<Span> spans) {
+        String newContent = StrUtil.nullToEmpty(edit.getNewContent());
+        if (edit.getStartLine() != null) {
+            int lineCount = lineStarts.length;
+            int startLine = edit.getStartLine();
+            int endLine = edit.getEndLine() == null ? startLine : edit.getEndLine();
+            if (startLine < 1 || endLine < startLine || endLine > lineCount) {
+                return String.format("行号范围 %d-%d 无效（文件共 %d 行）", startLine, endLine, lineCount);
+            }
+            int start = lineStarts[startLine - 1];
+            int end = endLine < lineCount ? lineStarts[endLine] : content.length();
+            // 替换的是整行，保持替换后的行尾换行
+            if (!newContent.isEmpty() && end > start && content.charAt(end - 1) == '\n' && !newContent.endsWith("\n")) {
+                newContent += "\n";
+            }
+            spans.add(new Span(start, end, newContent, editNo));
+            return null;
+        }
+        String oldContent = edit.getOldContent();
+        if (StrUtil.isEmpty(oldContent)) {
+            return "缺少要替换的内容或行号";
+        }
+        // 与单次修改工具一致，替换所有出现的位置
+        int index = content.indexOf(oldContent);
+        if (index < 0) {
+            return "文件中未找到要替换的内容";
+        }
+        while (index >= 0) {
+            spans.add(new Span(index, index + oldContent.length(), newContent, editNo));
+            index = content.indexOf(oldContent, index + oldContent.length());
+        }
+        return null;
+    }
+
+    /**
+     * 检查新区间是否与已接受的区间重叠，重叠时返回冲突说明
+     */
+    private String findOverlap(TreeMap<Integer, Span> accepted, List<Span> spans, int[] lineStarts) {
+        for (Span span : spans) {
+            Map.Entry<Integer, Span> before = accepted.floorEntry(span.start);
+            Map.Entry<Integer, Span> after = accepted.ceilingEntry(span.start);
+            Span conflict = null;
+            if (before != null && before.getValue().overlaps(span)) {
+                conflict = before.getValue();
+            } else if (after != null && after.getValue().overlaps(span)) {
+                conflict = after.getValue();
+            }
+            if (conflict != null) {
+                return String.format("与第 %d 个修改重叠（第 %d-%d 行）", conflict.editNo,
+                        lineOf(lineStarts, span.start), lineOf(lineStarts, Math.max(span.start, span.end - 1)));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 每一行的起始位置
+     */
+    private int[] lineStarts(String content) {
+        int[] starts = new int[16];
+        int count = 0;
+        starts[count++] = 0;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == '\n' && i + 1 < content.length()) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    private int lineOf(int[] lineStarts, int index) {
+        int position = Arrays.binarySearch(lineStarts, index);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    /**
+     * 替换区间 [start, end)
+     */
+    private record Span(int start, int end, String replacement, int editNo) {
+
+        boolean overlaps(Span other) {
+            // 同一位置的两个插入也视为冲突，无法确定先后
+            if (start == end || other.start == other.end) {
+                return start == other.start || (other.start > start && other.start < end)
+                        || (start > other.start && start < other.end);
+            }
+            return start < other.end && other.start < end;
+        }
+    }
+
+    private static class EditResult {
+
+        private final List<String> conflicts = new ArrayList<>();
+
+        private int appliedCount;
+
+        private String content;
+
+        private String formatConflicts() {
+            if (conflicts.isEmpty()) {
+                return "";
+            }
+            return String.format("\n以下 %d 个修改未应用：\n- ", conflicts.size()) + String.join("\n- ", conflicts);
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.code.codeagent.ai.tools;
 
 import cn.hutool.json.JSONObject;
-import com.code.codeagent.constant.AppConstant;
+import com.code.codeagent.core.saver.CodeBlobStore;
+import com.code.codeagent.core.saver.ProjectWriteBuffer;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
@@ -29,15 +30,17 @@ public class FileDeleteTool extends BaseTool {
     ) {
         try {
             Path path = Paths.get(relativeFilePath);
+            Path projectRoot = null;
             if (!path.isAbsolute()) {
-                String projectDirName = "vue_project_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
+                projectRoot = resolveProjectRoot(appId);
                 path = projectRoot.resolve(relativeFilePath);
             }
-            if (!Files.exists(path)) {
+            // 尚未落盘的文件只需从写缓冲中移除
+            boolean buffered = readBuffered(projectRoot, relativeFilePath) != null;
+            if (!buffered && !Files.exists(path)) {
                 return "警告：文件不存在，无需删除 - " + relativeFilePath;
             }
-            if (!Files.isRegularFile(path)) {
+            if (Files.exists(path) && !Files.isRegularFile(path)) {
                 return "错误：指定路径不是文件，无法删除 - " + relativeFilePath;
             }
             // 安全检查：避免删除重要文件
@@ -45,7 +48,15 @@ public class FileDeleteTool extends BaseTool {
             if (isImportantFile(fileName)) {
                 return "错误：不允许删除重要文件 - " + fileName;
             }
-            Files.delete(path);
+            if (projectRoot != null) {
+                ProjectWriteBuffer.remove(projectRoot, relativeFilePath);
+            }
+            Files.deleteIfExists(path);
+            if (projectRoot != null) {
+                // 同步内容寻址存储的清单，避免补齐目录时恢复已删除的文件
+                CodeBlobStore.remove(projectRoot, relativeFilePath);
+                ProjectDirIndex.fileDeleted(projectRoot, relativeFilePath);
+            }
             log.info("成功删除文件: {}", path.toAbsolutePath());
             return "文件删除成功: " + relativeFilePath;
         } catch (IOException e) {
@@ -86,6 +97,6 @@ public class FileDeleteTool extends BaseTool {
     @Override
     public String generateToolExecutedResult(JSONObject arguments) {
         String relativeFilePath = arguments.getStr("relativeFilePath");
-        return String.format(" [工具调用] %s %s", getDisplayName(), relativeFilePath);
+        return String.format("[工具调用] %s %s", getDisplayName(), relativeFilePath);
     }
 }
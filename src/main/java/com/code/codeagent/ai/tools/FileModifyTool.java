@@ -1,7 +1,6 @@
 package com.code.codeagent.ai.tools;
 
 import cn.hutool.json.JSONObject;
-import com.code.codeagent.constant.AppConstant;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
@@ -12,7 +11,6 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 
 /**
  * 文件修改工具
@@ -34,15 +32,17 @@ public class FileModifyTool extends BaseTool {
     ) {
         try {
             Path path = Paths.get(relativeFilePath);
+            Path projectRoot = null;
             if (!path.isAbsolute()) {
-                String projectDirName = "vue_project_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
+                projectRoot = resolveProjectRoot(appId);
                 path = projectRoot.resolve(relativeFilePath);
             }
-            if (!Files.exists(path) || !Files.isRegularFile(path)) {
+            // 尚未落盘的文件直接修改写缓冲中的内容
+            String buffered = readBuffered(projectRoot, relativeFilePath);
+            if (buffered == null && (!Files.exists(path) || !Files.isRegularFile(path))) {
                 return "错误：文件不存在或不是文件 - " + relativeFilePath;
             }
-            String originalContent = Files.readString(path);
+            String originalContent = buffered != null ? buffered : Files.readString(path);
             if (!originalContent.contains(oldContent)) {
                 return "警告：文件中未找到要替换的内容，文件未修改 - " + relativeFilePath;
             }
@@ -50,7 +50,7 @@ public class FileModifyTool extends BaseTool {
             if (originalContent.equals(modifiedContent)) {
                 return "信息：替换后文件内容未发生变化 - " + relativeFilePath;
             }
-            Files.writeString(path, modifiedContent, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            writeModifiedFile(projectRoot, path, relativeFilePath, modifiedContent, buffered != null);
             log.info("成功修改文件: {}", path.toAbsolutePath());
             return "文件修改成功: " + relativeFilePath;
         } catch (IOException e) {
@@ -75,19 +75,16 @@ public class FileModifyTool extends BaseTool {
         String relativeFilePath = arguments.getStr("relativeFilePath");
         String oldContent = arguments.getStr("oldContent");
         String newContent = arguments.getStr("newContent");
-        // 显示对比内容
-        return String.format("""
-                [工具调用] %s %s
-                
+        // 显示对比内容（引用块）
+        String diff = String.format("""
                 替换前：
                 ```
                 %s
                 ```
-                
                 替换后：
                 ```
                 %s
-                ```
-                """, getDisplayName(), relativeFilePath, oldContent, newContent);
+                ```""", oldContent, newContent);
+        return String.format("[工具调用] %s %s\n%s", getDisplayName(), relativeFilePath, quote(diff));
     }
 }
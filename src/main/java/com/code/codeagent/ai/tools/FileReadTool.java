@@ -1,44 +1,108 @@
 package com.code.codeagent.ai.tools;
 
+import cn.hutool.core.io.unit.DataSizeUtil;
 import cn.hutool.json.JSONObject;
-import com.code.codeagent.constant.AppConstant;
+import com.code.codeagent.config.FileReadConfig;
+import com.code.codeagent.core.saver.ProjectWriteBuffer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * 文件读取工具
  * 支持 AI 通过工具调用的方式读取文件内容
+ * 单次返回的内容有字节上限：超出上限的文件只返回摘要（大小、开头和结尾若干行），由模型按行号分段读取；
+ * 大文件通过内存映射按需解码，不整体读入堆内存。同一应用重复读取未变化的文件时直接返回缓存。
  */
 @Slf4j
 @Component
 public class FileReadTool extends BaseTool {
 
-    @Tool("读取指定路径的文件内容")
+    /**
+     * 历史记录中分段读取的目标格式：路径（第 a-b 行）
+     */
+    private static final Pattern HISTORY_RANGE_PATTERN = Pattern.compile("(.*)（第 (\\d+)-(\\d+|末尾) 行）");
+
+    @Resource
+    private FileReadConfig fileReadConfig;
+
+    /**
+     * 按应用划分的读取结果缓存，一个应用的大量读取不会挤掉其他应用的缓存
+     * 应用内的键包含路径、行号范围和文件的大小、修改时间、文件标识，文件变化后自然失效；按结果字符数限制大小
+     */
+    private Cache<Long, Cache<String, String>> readCaches;
+
+    @PostConstruct
+    public void init() {
+        readCaches = Caffeine.newBuilder()
+                .maximumSize(fileReadConfig.getCacheMaxApps())
+                .expireAfterAccess(Duration.ofMinutes(fileReadConfig.getCacheExpireMinutes()))
+                .build();
+    }
+
+    @Tool("读取指定路径的文件内容，大文件可按行号分段读取")
     public String readFile(
             @P("文件的相对路径")
             String relativeFilePath,
+            @P(value = "起始行号（从 1 开始），不填从第一行开始", required = false)
+            Integer startLine,
+            @P(value = "结束行号（包含该行），不填读到文件末尾", required = false)
+            Integer endLine,
             @ToolMemoryId Long appId
     ) {
         try {
             Path path = Paths.get(relativeFilePath);
             if (!path.isAbsolute()) {
-                String projectDirName = "vue_project_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
+                Path projectRoot = resolveProjectRoot(appId);
                 path = projectRoot.resolve(relativeFilePath);
+                // 尚未落盘的写入：小文件直接从写缓冲返回，分段读取或超出上限时先落盘再走内存映射
+                String buffered = ProjectWriteBuffer.read(projectRoot, relativeFilePath);
+                if (buffered != null) {
+                    if (startLine == null && endLine == null
+                            && buffered.getBytes(StandardCharsets.UTF_8).length <= fileReadConfig.getMaxBytes()) {
+                        return buffered;
+                    }
+                    String flushError = flushPendingWrites(projectRoot);
+                    if (flushError != null) {
+                        return flushError;
+                    }
+                }
             }
             if (!Files.exists(path) || !Files.isRegularFile(path)) {
                 return "错误：文件不存在或不是文件 - " + relativeFilePath;
             }
-            return Files.readString(path);
-        } catch (IOException e) {
+            Path filePath = path.toAbsolutePath().normalize();
+            BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+            String cacheKey = String.format("%s|%s|%s|%d|%d|%s", filePath, startLine, endLine,
+                    attrs.size(), attrs.lastModifiedTime().toMillis(), attrs.fileKey());
+            return getReadCache(appId).get(cacheKey, key -> {
+                try {
+                    return read(filePath, relativeFilePath, attrs.size(), startLine, endLine);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
             String errorMessage = "读取文件失败: " + relativeFilePath + ", 错误: " + e.getMessage();
             log.error(errorMessage, e);
             return errorMessage;
@@ -55,9 +119,192 @@ public class FileReadTool extends BaseTool {
         return "读取文件";
     }
 
+    @Override
+    public JSONObject restoreArguments(String target) {
+        Matcher matcher = HISTORY_RANGE_PATTERN.matcher(target);
+        if (!matcher.matches()) {
+            return super.restoreArguments(target);
+        }
+        JSONObject arguments = super.restoreArguments(matcher.group(1))
+                .set("startLine", Integer.parseInt(matcher.group(2)));
+        return "末尾".equals(matcher.group(3)) ? arguments : arguments.set("endLine", Integer.parseInt(matcher.group(3)));
+    }
+
     @Override
     public String generateToolExecutedResult(JSONObject arguments) {
         String relativeFilePath = arguments.getStr("relativeFilePath");
-        return String.format("[工具调用] %s %s", getDisplayName(), relativeFilePath);
+        Integer startLine = arguments.getInt("startLine");
+        Integer endLine = arguments.getInt("endLine");
+        if (startLine == null && endLine == null) {
+            return String.format("[工具调用] %s %s", getDisplayName(), relativeFilePath);
+        }
+        return String.format("[工具调用] %s %s（第 %s-%s 行）", getDisplayName(), relativeFilePath,
+                startLine == null ? 1 : startLine, endLine == null ? "末尾" : endLine);
+    }
+
+    /**
+     * 应用的读取缓存，不存在时创建
+     */
+    private Cache<String, String> getReadCache(Long appId) {
+        return readCaches.get(appId == null ? 0L : appId, key -> Caffeine.newBuilder()
+                .maximumWeight(fileReadConfig.getCacheMaxCharsPerApp())
+                .weigher((String cacheKey, String content) -> content.length())
+                .expireAfterAccess(Duration.ofMinutes(fileReadConfig.getCacheExpireMinutes()))
+                .build());
+    }
+
+    private String read(Path path, String relativeFilePath, long size, Integer startLine, Integer endLine) throws IOException {
+        boolean ranged = startLine != null || endLine != null;
+        int maxBytes = Math.max(1, fileReadConfig.getMaxBytes());
+        if (!ranged && size <= maxBytes) {
+            return Files.readString(path);
+        }
+        if (size == 0) {
+            return "";
+        }
+        if (size > Integer.MAX_VALUE) {
+            return "错误：文件过大，无法读取 - " + relativeFilePath;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return ranged
+                    ? readLines(buffer, relativeFilePath, startLine, endLine, maxBytes)
+                    : summarize(buffer, relativeFilePath, maxBytes);
+        }
+    }
+
+    /**
+     * 读取行号范围，超过字节上限时在上限内的最后一个完整行处截断
+     */
+    private String readLines(MappedByteBuffer buffer, String relativeFilePath,
+                             Integer startLine, Integer endLine, int maxBytes) {
+        int limit = buffer.limit();
+        int totalLines = countLines(buffer);
+        int from = startLine == null ? 1 : Math.max(1, startLine);
+        int to = endLine == null ? totalLines : Math.min(endLine, totalLines);
+        if (from > to) {
+            return String.format("错误：行号超出范围，文件共 %d 行 - %s", totalLines, relativeFilePath);
+        }
+        int start = lineOffset(buffer, from);
+        int end = to == totalLines ? limit : lineOffset(buffer, to + 1);
+        String note = null;
+        if (end - start > maxBytes) {
+            int lastNewline = lastIndexOf(buffer, start, start + maxBytes);
+            if (lastNewline >= 0) {
+                end = lastNewline + 1;
+                to = from + countNewlines(buffer, start, end) - 1;
+                note = String.format("[内容超过 %d 字节已截断，请从第 %d 行继续读取]", maxBytes, to + 1);
+            } else {
+                // 单行超过上限（如压缩后的代码），只返回该行开头
+                end = charBoundary(buffer, start + maxBytes);
+                to = from;
+                note = String.format("[第 %d 行超过 %d 字节，仅显示开头]", from, maxBytes);
+            }
+        }
+        StringBuilder result = new StringBuilder()
+                .append(String.format("[第 %d-%d 行，共 %d 行] %s%n", from, to, totalLines, relativeFilePath))
+                .append(decode(buffer, start, end));
+        if (note != null) {
+            if (result.charAt(result.length() - 1) != '\n') {
+                result.append('\n');
+            }
+            result.append(note);
+        }
+        return result.toString();
+    }
+
+    /**
+     * 超出上限的文件只返回摘要：大小、行数、开头和结尾若干行（各不超过上限的一半）
+     */
+    private String summarize(MappedByteBuffer buffer, String relativeFilePath, int maxBytes) {
+        int limit = buffer.limit();
+        int totalLines = countLines(buffer);
+        int summaryLines = Math.max(1, fileReadConfig.getSummaryLines());
+        int halfBytes = Math.max(1, maxBytes / 2);
+        int headEnd = Math.min(lineOffset(buffer, summaryLines + 1), charBoundary(buffer, halfBytes));
+        int tailStart = Math.max(headEnd, Math.max(tailOffset(buffer, summaryLines), charBoundary(buffer, limit - halfBytes)));
+        return String.format("""
+                        [文件过大，仅显示摘要] %s
+                        大小：%s（%d 字节），共 %d 行，单次最多读取 %d 字节，可通过 startLine / endLine 按行分段读取
+                        --- 开头 ---
+                        %s
+                        --- 结尾 ---
+                        %s""", relativeFilePath, DataSizeUtil.format(limit), limit, totalLines, maxBytes,
+                decode(buffer, 0, headEnd), decode(buffer, tailStart, limit));
+    }
+
+    private int countLines(MappedByteBuffer buffer) {
+        int limit = buffer.limit();
+        if (limit == 0) {
+            return 0;
+        }
+        int lines = countNewlines(buffer, 0, limit);
+        return buffer.get(limit - 1) == '\n' ? lines : lines + 1;
+    }
+
+    private int countNewlines(MappedByteBuffer buffer, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 指定行（从 1 开始）的起始字节位置，超出行数时返回文件末尾
+     */
+    private int lineOffset(MappedByteBuffer buffer, int line) {
+        int limit = buffer.limit();
+        int current = 1;
+        for (int i = 0; i < limit && current < line; i++) {
+            if (buffer.get(i) == '\n') {
+                current++;
+                if (current == line) {
+                    return i + 1;
+                }
+            }
+        }
+        return current >= line ? 0 : limit;
+    }
+
+    /**
+     * 最后若干行的起始字节位置
+     */
+    private int tailOffset(MappedByteBuffer buffer, int lines) {
+        int limit = buffer.limit();
+        int end = buffer.get(limit - 1) == '\n' ? limit - 1 : limit;
+        int count = 0;
+        for (int i = end - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n' && ++count == lines) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private int lastIndexOf(MappedByteBuffer buffer, int start, int end) {
+        for (int i = Math.min(end, buffer.limit()) - 1; i >= start; i--) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 调整到 UTF-8 字符边界，避免截断多字节字符
+     */
+    private int charBoundary(MappedByteBuffer buffer, int offset) {
+        int position = Math.max(0, Math.min(offset, buffer.limit()));
+        while (position > 0 && position < buffer.limit() && (buffer.get(position) & 0xC0) == 0x80) {
+            position--;
+        }
+        return position;
+    }
+
+    private String decode(MappedByteBuffer buffer, int start, int end) {
+        return StandardCharsets.UTF_8.decode(buffer.slice(start, end - start)).toString();
     }
-} 
\ No newline at end of file
+}
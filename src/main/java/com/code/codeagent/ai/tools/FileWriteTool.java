@@ -1,8 +1,12 @@
 package com.code.codeagent.ai.tools;
 
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
 import cn.hutool.json.JSONObject;
 import com.code.codeagent.constant.AppConstant;
+import com.code.codeagent.core.saver.ProjectWriteBuffer;
 import com.code.codeagent.model.enums.CodeGenTypeEnum;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
@@ -11,10 +15,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 
 /**
  * 文件写入工具
@@ -24,6 +29,11 @@ import java.nio.file.StandardOpenOption;
 @Component
 public class FileWriteTool extends BaseTool {
 
+    /**
+     * 写入成功时工具结果的前缀
+     */
+    private static final String SUCCESS_PREFIX = "文件写入成功: ";
+
     private final CodeGenTypeEnum codeGenType;
 
     /**
@@ -50,24 +60,31 @@ public class FileWriteTool extends BaseTool {
     ) {
         try {
             Path path = Paths.get(relativeFilePath);
+            Path projectRoot = null;
             if (!path.isAbsolute()) {
                 // 相对路径处理，创建基于 appId 和代码类型的项目目录
                 String projectDirName = codeGenType.getValue() + "_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
+                projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
                 path = projectRoot.resolve(relativeFilePath);
             }
-            // 创建父目录（如果不存在）
-            Path parentDir = path.getParent();
-            if (parentDir != null) {
-                Files.createDirectories(parentDir);
+            if (projectRoot != null) {
+                // 项目内的文件先进入写缓冲，本轮对话结束或构建前统一落盘（子目录在落盘时创建）
+                if (!Files.isDirectory(projectRoot)) {
+                    Files.createDirectories(projectRoot);
+                }
+                ProjectWriteBuffer.write(projectRoot, relativeFilePath, content);
+                ProjectDirIndex.fileWritten(projectRoot, relativeFilePath);
+            } else {
+                // 创建父目录（如果不存在）
+                Path parentDir = path.getParent();
+                if (parentDir != null) {
+                    Files.createDirectories(parentDir);
+                }
+                writeFileAtomically(null, path, relativeFilePath, content);
             }
-            // 写入文件内容
-            Files.write(path, content.getBytes(),
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.TRUNCATE_EXISTING);
             log.info("成功写入文件: {}", path.toAbsolutePath());
             // 注意要返回相对路径，不能让 AI 把文件绝对路径返回给用户
-            return "文件写入成功: " + relativeFilePath;
+            return SUCCESS_PREFIX + relativeFilePath;
         } catch (IOException e) {
             String errorMessage = "文件写入失败: " + relativeFilePath + ", 错误: " + e.getMessage();
             log.error(errorMessage, e);
@@ -85,16 +102,170 @@ public class FileWriteTool extends BaseTool {
         return "写入文件";
     }
 
+    @Override
+    public ToolArgumentRenderer createArgumentRenderer() {
+        return new WriteFileArgumentRenderer();
+    }
+
+    /**
+     * 参数未经流式渲染时的回退：对话历史只保存文件引用和摘要，不重复保存文件内容
+     */
     @Override
     public String generateToolExecutedResult(JSONObject arguments) {
         String relativeFilePath = arguments.getStr("relativeFilePath");
-        String suffix = FileUtil.getSuffix(relativeFilePath);
-        String content = arguments.getStr("content");
+        String content = arguments.getStr("content", "");
+        return buildHistoryRecord(relativeFilePath, content.length(), DigestUtil.sha256Hex(content));
+    }
+
+    @Override
+    public String generateToolExecutedResult(JSONObject arguments, String result) {
+        if (!isSuccess(result)) {
+            return buildFailureRecord(arguments.getStr("relativeFilePath"), result);
+        }
+        return generateToolExecutedResult(arguments);
+    }
+
+    private boolean isSuccess(String result) {
+        return result != null && result.startsWith(SUCCESS_PREFIX);
+    }
+
+    private String buildHistoryRecord(String relativeFilePath, long charCount, String sha256) {
+        return String.format("""
+                        [工具调用] %s %s
+                        > 文件内容已写入（%d 字符，SHA-256: %s）
+                        """, getDisplayName(), relativeFilePath, charCount, sha256);
+    }
+
+    private String buildFailureRecord(String relativeFilePath, String result) {
         return String.format("""
                         [工具调用] %s %s
-                        ```%s
-                        %s
-                        ```
-                        """, getDisplayName(), relativeFilePath, suffix, content);
+                        > 文件未写入：%s
+                        """, getDisplayName(), relativeFilePath, StrUtil.blankToDefault(result, "无执行结果"));
+    }
+
+    /**
+     * 写入文件参数的流式渲染器
+     * 路径确定后立即输出代码块头部，文件内容边生成边推送给前端，同时增量计算摘要用于历史记录
+     */
+    private class WriteFileArgumentRenderer implements ToolArgumentRenderer, StreamingJsonArgumentReader.Listener {
+
+        private static final String PATH_KEY = "relativeFilePath";
+
+        private static final String CONTENT_KEY = "content";
+
+        private final StreamingJsonArgumentReader reader = new StreamingJsonArgumentReader(this);
+
+        private final StringBuilder relativeFilePath = new StringBuilder();
+
+        /**
+         * 路径确定之前收到的文件内容
+         */
+        private final StringBuilder pendingContent = new StringBuilder();
+
+        /**
+         * 本次 render 调用需要推送的内容
+         */
+        private final StringBuilder output = new StringBuilder();
+
+        private final MessageDigest digest = DigestUtil.digester("SHA-256").getDigest();
+
+        private boolean pathCompleted;
+
+        private boolean contentCompleted;
+
+        private boolean headerRendered;
+
+        private boolean footerRendered;
+
+        private long charCount;
+
+        /**
+         * 片段末尾被截断的高位代理字符，与下一片段拼接后再计算摘要
+         */
+        private char pendingHighSurrogate;
+
+        @Override
+        public String render(String argumentsDelta) {
+            output.setLength(0);
+            reader.feed(argumentsDelta);
+            return output.toString();
+        }
+
+        @Override
+        public String finish() {
+            if (headerRendered && !footerRendered) {
+                footerRendered = true;
+                return "\n```\n";
+            }
+            return "";
+        }
+
+        @Override
+        public String toHistoryRecord(String result) {
+            if (!pathCompleted || !contentCompleted) {
+                return null;
+            }
+            if (!isSuccess(result)) {
+                return buildFailureRecord(relativeFilePath.toString(), result);
+            }
+            if (pendingHighSurrogate != 0) {
+                digest.update(String.valueOf(pendingHighSurrogate).getBytes(StandardCharsets.UTF_8));
+                pendingHighSurrogate = 0;
+            }
+            return buildHistoryRecord(relativeFilePath.toString(), charCount, HexUtil.encodeHexStr(digest.digest()));
+        }
+
+        @Override
+        public void onValueStart(String key) {
+        }
+
+        @Override
+        public void onValueChunk(String key, String chunk) {
+            if (PATH_KEY.equals(key)) {
+                relativeFilePath.append(chunk);
+            } else if (CONTENT_KEY.equals(key)) {
+                charCount += chunk.length();
+                updateDigest(chunk);
+                if (headerRendered) {
+                    output.append(chunk);
+                } else {
+                    pendingContent.append(chunk);
+                }
+            }
+        }
+
+        @Override
+        public void onValueEnd(String key) {
+            if (PATH_KEY.equals(key)) {
+                pathCompleted = true;
+                String path = relativeFilePath.toString();
+                output.append(String.format("[工具调用] %s %s\n```%s\n", getDisplayName(), path, FileUtil.getSuffix(path)));
+                output.append(pendingContent);
+                pendingContent.setLength(0);
+                headerRendered = true;
+                if (contentCompleted) {
+                    output.append(finish());
+                }
+            } else if (CONTENT_KEY.equals(key)) {
+                contentCompleted = true;
+                if (headerRendered) {
+                    output.append(finish());
+                }
+            }
+        }
+
+        private void updateDigest(String chunk) {
+            String text = chunk;
+            if (pendingHighSurrogate != 0) {
+                text = pendingHighSurrogate + text;
+                pendingHighSurrogate = 0;
+            }
+            char last = text.charAt(text.length() - 1);
+            if (Character.isHighSurrogate(last)) {
+                pendingHighSurrogate = last;
+                text = text.substring(0, text.length() - 1);
+            }
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+        }
     }
 }
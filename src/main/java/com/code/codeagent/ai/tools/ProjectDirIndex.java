@@ -0,0 +1,277 @@
+package com.code.codeagent.ai.tools;
+
+import com.code.codeagent.core.saver.ProjectWriteBuffer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 项目目录索引
+ * 每个项目首次读取时遍历一次（忽略的目录整体跳过），之后：
+ * 1. 工具写入、删除文件时直接更新索引
+ * 2. 读取前只检查各目录的修改时间，变化的目录（工具之外的写入，如 npm 生成锁文件）单独重新列出
+ * 3. 写缓冲中尚未落盘的文件合并到结果中
+ * 子节点按名称有序保存，渲染时一次深度优先遍历即可，不需要排序和路径计算。
+ *
+ * @author CodeAgent
+ */
+@Slf4j
+final class ProjectDirIndex {
+
+    /**
+     * 需要忽略的文件和目录
+     */
+    private static final Set<String> IGNORED_NAMES = Set.of(
+            "node_modules", ".git", "dist", "build", ".DS_Store",
+            ".env", "target", ".mvn", ".idea", ".vscode", "coverage",
+            ".build-manifest.json"
+    );
+
+    /**
+     * 需要忽略的文件扩展名
+     */
+    private static final Set<String> IGNORED_EXTENSIONS = Set.of(
+            ".log", ".tmp", ".cache", ".lock"
+    );
+
+    /**
+     * 原子写入时使用的临时文件标记
+     */
+    private static final String TEMP_MARKER = ".tmp-";
+
+    private static final Cache<Path, ProjectDirIndex> INDEXES = Caffeine.newBuilder()
+            .maximumSize(500)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    private final Path root;
+
+    private DirNode rootNode;
+
+    private ProjectDirIndex(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * 渲染目录结构
+     *
+     * @param projectRoot 项目根目录（索引的范围）
+     * @param targetDir   要渲染的目录，不在项目内时以它自身为索引范围
+     * @return 目录结构，目录不存在或被忽略时返回 null
+     */
+    static String render(Path projectRoot, Path targetDir) throws IOException {
+        Path root = projectRoot.toAbsolutePath().normalize();
+        Path target = targetDir.toAbsolutePath().normalize();
+        if (!target.startsWith(root)) {
+            root = target;
+        }
+        ProjectDirIndex index = INDEXES.get(root, ProjectDirIndex::new);
+        return index.renderDir(root.relativize(target), ProjectWriteBuffer.pendingPaths(root));
+    }
+
+    /**
+     * 工具写入文件后更新索引（索引尚未建立时忽略）
+     *
+     * @param projectRoot  项目根目录
+     * @param relativePath 相对路径
+     */
+    static void fileWritten(Path projectRoot, String relativePath) {
+        ProjectDirIndex index = INDEXES.getIfPresent(projectRoot.toAbsolutePath().normalize());
+        if (index != null) {
+            index.update(relativePath, true);
+        }
+    }
+
+    /**
+     * 工具删除文件后更新索引（索引尚未建立时忽略）
+     *
+     * @param projectRoot  项目根目录
+     * @param relativePath 相对路径
+     */
+    static void fileDeleted(Path projectRoot, String relativePath) {
+        ProjectDirIndex index = INDEXES.getIfPresent(projectRoot.toAbsolutePath().normalize());
+        if (index != null) {
+            index.update(relativePath, false);
+        }
+    }
+
+    /**
+     * 判断是否应该忽略该文件或目录
+     */
+    static boolean shouldIgnore(String fileName) {
+        if (IGNORED_NAMES.contains(fileName) || fileName.contains(TEMP_MARKER)) {
+            return true;
+        }
+        int dotIndex = fileName.lastIndexOf('.');
+        return dotIndex >= 0 && IGNORED_EXTENSIONS.contains(fileName.substring(dotIndex));
+    }
+
+    private synchronized String renderDir(Path relativeDir, Set<String> pendingPaths) throws IOException {
+        if (rootNode == null) {
+            rootNode = scan(root);
+            log.info("建立项目目录索引: {}", root.getFileName());
+        } else {
+            refresh(rootNode, root);
+        }
+        // 写缓冲中尚未落盘的文件（重新列出目录时会被磁盘内容覆盖）
+        pendingPaths.forEach(path -> update(path, true));
+        DirNode node = rootNode;
+        for (Path part : relativeDir) {
+            String name = part.toString();
+            if (name.isEmpty()) {
+                continue;
+            }
+            node = node.dirs.get(name);
+            if (node == null) {
+                return null;
+            }
+        }
+        StringBuilder structure = new StringBuilder();
+        appendTree(structure, node, 0);
+        return structure.toString();
+    }
+
+    private synchronized void update(String relativePath, boolean exists) {
+        if (rootNode == null) {
+            return;
+        }
+        Path path = root.resolve(relativePath).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            return;
+        }
+        Path relative = root.relativize(path);
+        DirNode node = rootNode;
+        int lastIndex = relative.getNameCount() - 1;
+        for (int i = 0; i < lastIndex; i++) {
+            String name = relative.getName(i).toString();
+            if (shouldIgnore(name)) {
+                return;
+            }
+            DirNode child = node.dirs.get(name);
+            if (child == null) {
+                if (!exists) {
+                    return;
+                }
+                // 新建的目录下次读取时按修改时间检查一次
+                child = new DirNode(-1);
+                node.dirs.put(name, child);
+            }
+            node = child;
+        }
+        String fileName = relative.getName(lastIndex).toString();
+        if (shouldIgnore(fileName)) {
+            return;
+        }
+        if (exists) {
+            node.files.add(fileName);
+        } else {
+            node.files.remove(fileName);
+        }
+    }
+
+    /**
+     * 完整遍历一个目录，忽略的子目录不进入
+     */
+    private DirNode scan(Path dir) throws IOException {
+        DirNode node = new DirNode(Files.getLastModifiedTime(dir).toMillis());
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                String name = child.getFileName().toString();
+                if (shouldIgnore(name)) {
+                    continue;
+                }
+                BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isDirectory()) {
+                    node.dirs.put(name, scan(child));
+                } else {
+                    node.files.add(name);
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * 检查目录修改时间，变化时只重新列出该目录的直接子项，未变化的子目录保留原有节点
+     */
+    private void refresh(DirNode node, Path dir) throws IOException {
+        long modifiedTime = Files.getLastModifiedTime(dir).toMillis();
+        if (modifiedTime != node.modifiedTime) {
+            node.modifiedTime = modifiedTime;
+            Set<String> names = new HashSet<>();
+            node.files.clear();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path child : stream) {
+                    String name = child.getFileName().toString();
+                    if (shouldIgnore(name)) {
+                        continue;
+                    }
+                    BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        names.add(name);
+                        if (!node.dirs.containsKey(name)) {
+                            node.dirs.put(name, scan(child));
+                        }
+                    } else {
+                        node.files.add(name);
+                    }
+                }
+            }
+            node.dirs.keySet().retainAll(names);
+        }
+        Iterator<Map.Entry<String, DirNode>> iterator = node.dirs.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, DirNode> entry = iterator.next();
+            try {
+                refresh(entry.getValue(), dir.resolve(entry.getKey()));
+            } catch (NoSuchFileException e) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 深度优先渲染：先子目录后文件，均按名称排序
+     */
+    private void appendTree(StringBuilder structure, DirNode node, int depth) {
+        String indent = "  ".repeat(depth);
+        node.dirs.forEach((name, child) -> {
+            structure.append(indent).append(name).append("/\n");
+            appendTree(structure, child, depth + 1);
+        });
+        for (String file : node.files) {
+            structure.append(indent).append(file).append('\n');
+        }
+    }
+
+    private static class DirNode {
+
+        private final TreeMap<String, DirNode> dirs = new TreeMap<>();
+
+        private final TreeSet<String> files = new TreeSet<>();
+
+        /**
+         * 最近一次列出时的目录修改时间，-1 表示尚未列出
+         */
+        private long modifiedTime;
+
+        private DirNode(long modifiedTime) {
+            this.modifiedTime = modifiedTime;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.code.codeagent.ai.tools;
+
+/**
+ * 增量 JSON 参数读取器
+ * 逐段接收模型流式输出的工具参数（JSON 对象片段），识别顶层字段，
+ * 将字符串类型字段的值边接收边反转义后回调，无需等待完整参数再整体解析。
+ * <p>
+ * 非线程安全，一次工具调用对应一个实例。
+ *
+ * @author CodeAgent
+ */
+public class StreamingJsonArgumentReader {
+
+    /**
+     * 字符串字段值的回调
+     */
+    public interface Listener {
+
+        /**
+         * 字段值开始
+         */
+        void onValueStart(String key);
+
+        /**
+         * 字段值片段（已反转义）
+         */
+        void onValueChunk(String key, String chunk);
+
+        /**
+         * 字段值结束
+         */
+        void onValueEnd(String key);
+    }
+
+    private final Listener listener;
+
+    private final StringBuilder keyBuilder = new StringBuilder();
+
+    private final StringBuilder valueChunk = new StringBuilder();
+
+    private final StringBuilder unicodeBuffer = new StringBuilder(4);
+
+    /**
+     * 对象/数组嵌套深度，顶层对象内部为 1
+     */
+    private int depth;
+
+    private boolean inString;
+
+    private boolean escaping;
+
+    private boolean unicodeEscaping;
+
+    /**
+     * 顶层对象中下一个字符串是否为字段名
+     */
+    private boolean expectKey;
+
+    /**
+     * 当前字符串是否为顶层字段名
+     */
+    private boolean readingKey;
+
+    /**
+     * 当前字符串是否为顶层字段的值
+     */
+    private boolean readingValue;
+
+    private String currentKey;
+
+    public StreamingJsonArgumentReader(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 接收一段参数片段
+     *
+     * @param delta 参数片段
+     */
+    public void feed(String delta) {
+        if (delta == null || delta.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < delta.length(); i++) {
+            char c = delta.charAt(i);
+            if (inString) {
+                consumeString(c);
+            } else {
+                consumeStructure(c);
+            }
+        }
+        flushValueChunk();
+    }
+
+    private void consumeStructure(char c) {
+        switch (c) {
+            case '{', '[' -> {
+                depth++;
+                expectKey = depth == 1 && c == '{';
+            }
+            case '}', ']' -> depth--;
+            case ',' -> expectKey = depth == 1;
+            case ':' -> expectKey = false;
+            case '"' -> {
+                inString = true;
+                if (depth == 1 && expectKey) {
+                    readingKey = true;
+                    keyBuilder.setLength(0);
+                } else if (depth == 1 && currentKey != null) {
+                    readingValue = true;
+                    listener.onValueStart(currentKey);
+                }
+            }
+            default -> {
+                // 数字、布尔值和空白无需处理
+            }
+        }
+    }
+
+    private void consumeString(char c) {
+        if (unicodeEscaping) {
+            unicodeBuffer.append(c);
+            if (unicodeBuffer.length() == 4) {
+                unicodeEscaping = false;
+                appendChar((char) Integer.parseInt(unicodeBuffer.toString(), 16));
+                unicodeBuffer.setLength(0);
+            }
+            return;
+        }
+        if (escaping) {
+            escaping = false;
+            switch (c) {
+                case 'n' -> appendChar('\n');
+                case 't' -> appendChar('\t');
+                case 'r' -> appendChar('\r');
+                case 'b' -> appendChar('\b');
+                case 'f' -> appendChar('\f');
+                case 'u' -> unicodeEscaping = true;
+                default -> appendChar(c);
+            }
+            return;
+        }
+        if (c == '\\') {
+            escaping = true;
+            return;
+        }
+        if (c == '"') {
+            inString = false;
+            if (readingKey) {
+                readingKey = false;
+                currentKey = keyBuilder.toString();
+            } else if (readingValue) {
+                readingValue = false;
+                flushValueChunk();
+                listener.onValueEnd(currentKey);
+                currentKey = null;
+            }
+            return;
+        }
+        appendChar(c);
+    }
+
+    private void appendChar(char c) {
+        if (readingKey) {
+            keyBuilder.append(c);
+        } else if (readingValue) {
+            valueChunk.append(c);
+        }
+    }
+
+    private void flushValueChunk() {
+        if (!valueChunk.isEmpty()) {
+            listener.onValueChunk(currentKey, valueChunk.toString());
+            valueChunk.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.code.codeagent.ai.tools;
+
+/**
+ * 工具参数流式渲染器
+ * 在模型流式输出工具参数时即时生成展示内容，工具执行完成后给出保存到对话历史的记录。
+ * 一次工具调用对应一个实例，由 {@link BaseTool#createArgumentRenderer()} 创建。
+ *
+ * @author CodeAgent
+ */
+public interface ToolArgumentRenderer {
+
+    /**
+     * 接收一段参数片段
+     *
+     * @param argumentsDelta 参数片段（JSON 文本的一部分）
+     * @return 需要立即推送给前端的内容，没有则返回空字符串
+     */
+    String render(String argumentsDelta);
+
+    /**
+     * 工具执行完成，结束渲染
+     *
+     * @return 尚未推送给前端的收尾内容，没有则返回空字符串
+     */
+    String finish();
+
+    /**
+     * 生成保存到对话历史的记录
+     *
+     * @param result 工具执行结果（执行失败时为错误信息）
+     * @return 历史记录，参数不完整无法生成时返回 null（回退为完整参数解析）
+     */
+    String toHistoryRecord(String result);
+}
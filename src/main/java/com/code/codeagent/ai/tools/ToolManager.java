@@ -1,25 +1,51 @@
 package com.code.codeagent.ai.tools;
 
+import cn.hutool.json.JSONObject;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.service.ToolExecutionSettings;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * 工具管理器
  * 统一管理所有工具，提供根据名称获取工具的功能
+ * 工具映射和指标映射在启动时构建为不可变快照，之后的查找无锁；未注册的工具名（模型幻觉）返回兜底工具而不是 null。
+ * 每个工具记录调用次数、耗时分布、参数和结果字节数、失败次数，用于定位拖慢对话的工具。
  */
 @Slf4j
 @Component
 public class ToolManager {
 
     /**
-     * 工具名称到工具实例的映射
+     * 未注册工具的指标统一记在这个名称下，避免幻觉工具名让指标无限增长
      */
-    private final Map<String, BaseTool> toolMap = new HashMap<>();
+    private static final String UNKNOWN_TOOL_NAME = "unknown";
+
+    private static final BaseTool FALLBACK_TOOL = new FallbackTool();
+
+    /**
+     * 工具名称到工具实例的映射（不可变）
+     */
+    private Map<String, BaseTool> toolMap = Map.of();
+
+    /**
+     * 工具名称到执行指标的映射（不可变，指标本身可并发累加）
+     */
+    private Map<String, ToolMetrics> metricsMap = Map.of();
+
+    /**
+     * 工具显示名称到工具实例的映射（不可变，还原历史记录中的工具调用时使用）
+     */
+    private Map<String, BaseTool> displayNameMap = Map.of();
+
+    private final ToolMetrics unknownToolMetrics = new ToolMetrics();
 
     /**
      * 自动注入所有工具
@@ -32,10 +58,19 @@ public class ToolManager {
      */
     @PostConstruct
     public void initTools() {
+        Map<String, BaseTool> toolsByName = new HashMap<>();
+        Map<String, ToolMetrics> metricsByName = new HashMap<>();
+        Map<String, BaseTool> toolsByDisplayName = new HashMap<>();
         for (BaseTool tool : tools) {
-            toolMap.put(tool.getToolName(), tool);
+            toolsByName.put(tool.getToolName(), tool);
+            toolsByDisplayName.put(tool.getDisplayName(), tool);
+            metricsByName.put(tool.getToolName(), new ToolMetrics());
             log.info("注册工具: {} -> {}", tool.getToolName(), tool.getDisplayName());
         }
+        toolMap = Map.copyOf(toolsByName);
+        metricsMap = Map.copyOf(metricsByName);
+        displayNameMap = Map.copyOf(toolsByDisplayName);
+        ToolExecutionSettings.listener(this::recordExecution);
         log.info("工具管理器初始化完成，共注册 {} 个工具", toolMap.size());
     }
 
@@ -44,10 +79,21 @@ public class ToolManager {
      * 根据工具名称获取工具实例
      *
      * @param toolName 工具英文名称
-     * @return 工具实例
+     * @return 工具实例，未注册时返回兜底工具
      */
     public BaseTool getTool(String toolName) {
-        return toolMap.get(toolName);
+        BaseTool tool = toolName == null ? null : toolMap.get(toolName);
+        return tool != null ? tool : FALLBACK_TOOL;
+    }
+
+    /**
+     * 根据工具显示名称获取工具实例
+     *
+     * @param displayName 工具中文名称
+     * @return 工具实例，未注册时返回 null
+     */
+    public BaseTool getToolByDisplayName(String displayName) {
+        return displayName == null ? null : displayNameMap.get(displayName);
     }
 
     /**
@@ -58,4 +104,57 @@ public class ToolManager {
     public BaseTool[] getAllTools() {
         return tools;
     }
+
+    /**
+     * 获取各工具的执行统计，按总耗时从高到低排序
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getToolStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        metricsMap.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, ToolMetrics> entry) -> entry.getValue().getTotalNanos()).reversed())
+                .forEach(entry -> stats.put(entry.getKey(), entry.getValue().getStats()));
+        stats.put(UNKNOWN_TOOL_NAME, unknownToolMetrics.getStats());
+        return stats;
+    }
+
+    /**
+     * 工具执行后记录指标（在执行工具的线程上调用）
+     */
+    private void recordExecution(ToolExecutionRequest request, boolean known, String result, Throwable error, long durationNanos) {
+        ToolMetrics metrics = known ? metricsMap.get(request.name()) : null;
+        if (metrics == null) {
+            metrics = unknownToolMetrics;
+        }
+        metrics.record(request.arguments(), result, !known || error != null || isErrorResult(result), durationNanos);
+    }
+
+    /**
+     * 工具内部捕获异常后以文本返回错误，按约定的前缀识别
+     */
+    private boolean isErrorResult(String result) {
+        return result != null && (result.startsWith("错误") || result.contains(", 错误: "));
+    }
+
+    /**
+     * 兜底工具：模型调用了不存在的工具时用于展示，不会被执行
+     */
+    private static class FallbackTool extends BaseTool {
+
+        @Override
+        public String getToolName() {
+            return UNKNOWN_TOOL_NAME;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "未知工具";
+        }
+
+        @Override
+        public String generateToolExecutedResult(JSONObject arguments) {
+            return String.format("[工具调用] %s", getDisplayName());
+        }
+    }
 }
@@ -0,0 +1,118 @@
+package com.code.codeagent.ai.tools;
+
+import com.code.codeagent.utils.Utf8Utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个工具的执行指标
+ * 调用次数、失败次数、参数和结果的字节数，以及按固定分桶统计的耗时直方图。
+ * 只用 LongAdder 累加，并发执行的工具之间没有锁竞争。
+ */
+final class ToolMetrics {
+
+    /**
+     * 耗时分桶上限（毫秒），最后一个桶收集超过 30 秒的调用
+     */
+    private static final long[] BUCKET_BOUNDS_MILLIS = {10, 50, 100, 500, 1000, 5000, 30000};
+
+    private final LongAdder invocationCount = new LongAdder();
+
+    private final LongAdder errorCount = new LongAdder();
+
+    private final LongAdder bytesIn = new LongAdder();
+
+    private final LongAdder bytesOut = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MILLIS.length + 1];
+
+    ToolMetrics() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次执行
+     *
+     * @param arguments     工具参数（模型输出的 JSON）
+     * @param result        工具结果，抛出异常时为 null
+     * @param error         是否失败
+     * @param durationNanos 耗时（纳秒）
+     */
+    void record(String arguments, String result, boolean error, long durationNanos) {
+        invocationCount.increment();
+        if (error) {
+            errorCount.increment();
+        }
+        bytesIn.add(Utf8Utils.encodedLength(arguments));
+        bytesOut.add(Utf8Utils.encodedLength(result));
+        totalNanos.add(durationNanos);
+        maxNanos.accumulate(durationNanos);
+        long millis = durationNanos / 1_000_000;
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+    }
+
+    /**
+     * 获取统计信息，分位数按直方图估算（取所在分桶的上限）
+     *
+     * @return 统计信息
+     */
+    Map<String, Object> getStats() {
+        long invocations = invocationCount.sum();
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        Map<String, Object> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            histogram.put(i < BUCKET_BOUNDS_MILLIS.length ? "<=" + BUCKET_BOUNDS_MILLIS[i] + "ms"
+                    : ">" + BUCKET_BOUNDS_MILLIS[i - 1] + "ms", counts[i]);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("invocationCount", invocations);
+        stats.put("errorCount", errorCount.sum());
+        stats.put("errorRate", String.format("%.2f%%", invocations == 0 ? 0 : errorCount.sum() * 100.0 / invocations));
+        stats.put("totalTime", String.format("%.0fms", totalNanos.sum() / 1e6));
+        stats.put("averageTime", String.format("%.1fms", invocations == 0 ? 0 : totalNanos.sum() / 1e6 / invocations));
+        stats.put("p50Time", percentile(counts, invocations, 0.50));
+        stats.put("p95Time", percentile(counts, invocations, 0.95));
+        stats.put("p99Time", percentile(counts, invocations, 0.99));
+        stats.put("maxTime", String.format("%.1fms", maxNanos.get() / 1e6));
+        stats.put("bytesIn", bytesIn.sum());
+        stats.put("bytesOut", bytesOut.sum());
+        stats.put("latencyHistogram", histogram);
+        return stats;
+    }
+
+    long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    private String percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return "0ms";
+        }
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i < BUCKET_BOUNDS_MILLIS.length ? "<=" + BUCKET_BOUNDS_MILLIS[i] + "ms"
+                        : ">" + BUCKET_BOUNDS_MILLIS[i - 1] + "ms";
+            }
+        }
+        return ">" + BUCKET_BOUNDS_MILLIS[BUCKET_BOUNDS_MILLIS.length - 1] + "ms";
+    }
+}
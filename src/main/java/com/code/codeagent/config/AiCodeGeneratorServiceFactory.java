@@ -1,33 +1,46 @@
 package com.code.codeagent.config;
 
 import com.code.codeagent.ai.AiCodeGeneratorService;
+import com.code.codeagent.ai.ChatHistorySummaryService;
+import com.code.codeagent.ai.memory.TokenBudgetChatMemory;
+import com.code.codeagent.ai.tools.BaseTool;
 import com.code.codeagent.ai.tools.FileWriteTool;
+import com.code.codeagent.ai.tools.ToolManager;
 import com.code.codeagent.exception.BusinessException;
 import com.code.codeagent.exception.ErrorCode;
+import com.code.codeagent.manager.CachedChatMemoryStore;
+import com.code.codeagent.manager.ChatMemoryHydrator;
 import com.code.codeagent.model.enums.CodeGenTypeEnum;
-import com.code.codeagent.service.ChatHistoryService;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
 import dev.langchain4j.service.AiServices;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * AI代码生成器服务工厂
- * 使用 Caffeine 缓存来存储 AI 服务实例，避免重复构造
+ * 每种代码生成类型只构造一次 AI 服务代理（接口反射、工具规格扫描都在此完成），
+ * 应用之间通过 chatMemoryProvider 按 appId 隔离对话记忆；
+ * Caffeine 只缓存轻量的应用记忆句柄，过期时从共享代理中移除对应的记忆
  *
  * @author CodeAgent
  * @since 2024-12-19
@@ -36,6 +49,12 @@ import java.util.Map;
 @Slf4j
 public class AiCodeGeneratorServiceFactory {
 
+    /**
+     * Vue / React 项目除写入工具外使用的工具（Spring 单例，通过 @ToolMemoryId 定位应用目录）
+     */
+    private static final List<String> PROJECT_TOOL_NAMES = List.of(
+            "readDir", "readFile", "modifyFile", "modifyFileBatch", "deleteFile");
+
     @Resource
     private ChatModel chatModel;
 
@@ -44,28 +63,51 @@ public class AiCodeGeneratorServiceFactory {
     private StreamingChatModel streamingChatModel;
 
     @Resource
-    private RedisChatMemoryStore redisChatMemoryStore;
+    private CachedChatMemoryStore cachedChatMemoryStore;
 
     @Resource
     private StreamingChatModel reasoningStreamingChatModel;
 
-    @Autowired(required = false)
-    private ChatHistoryService chatHistoryService;
+    @Resource
+    private ChatMemoryHydrator chatMemoryHydrator;
+
+    @Resource
+    private ChatMemoryConfig chatMemoryConfig;
+
+    @Resource
+    private ChatHistorySummaryService chatHistorySummaryService;
+
+    @Resource
+    private ToolManager toolManager;
 
     /**
-     * AI 服务实例缓存
+     * 对话记忆的 token 估算器（线程安全，所有应用共用）
+     */
+    private TokenCountEstimator tokenCountEstimator;
+
+    /**
+     * 每种代码生成类型共享的 AI 服务代理
+     */
+    private final Map<CodeGenTypeEnum, AiCodeGeneratorService> sharedServices = new ConcurrentHashMap<>();
+
+    /**
+     * 应用记忆句柄缓存（键为 appId_codeGenType）
      * 缓存策略：
-     * - 最大缓存 1000 个实例
+     * - 最大缓存 1000 个应用
      * - 写入后 30 分钟过期
      * - 访问后 10 分钟过期
+     * 移除时同步清理共享代理中该应用的记忆实例，对话内容仍保存在 Redis 中
      */
     private final Cache<String, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
             .maximumSize(1000)
             .expireAfterWrite(Duration.ofMinutes(30))
             .expireAfterAccess(Duration.ofMinutes(10))
             .recordStats()  // 启用统计
-            .removalListener((key, value, cause) -> {
-                log.debug("AI 服务实例被移除，缓存键: {}, 原因: {}", key, cause);
+            .removalListener((String key, AiCodeGeneratorService service, RemovalCause cause) -> {
+                log.debug("应用记忆句柄被移除，缓存键: {}, 原因: {}", key, cause);
+                if (key != null && service != null && cause != RemovalCause.REPLACED) {
+                    service.evictChatMemory(parseAppId(key));
+                }
             })
             .build();
 
@@ -80,7 +122,9 @@ public class AiCodeGeneratorServiceFactory {
     }
 
     /**
-     * 根据 appId 和代码生成类型获取缓存的服务实例
+     * 根据 appId 和代码生成类型获取服务实例
+     * 返回的是该类型的共享代理，调用时须通过 @MemoryId 传入 appId；
+     * 对话记忆的回填在 {@link #prepareChatMemory(long, CodeGenTypeEnum, Long)} 中完成
      *
      * @param appId 应用ID
      * @param codeGenType 代码生成类型
@@ -88,7 +132,23 @@ public class AiCodeGeneratorServiceFactory {
      */
     public AiCodeGeneratorService getAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
         String cacheKey = buildCacheKey(appId, codeGenType);
-        return serviceCache.get(cacheKey, key -> createAiCodeGeneratorService(appId, codeGenType));
+        return serviceCache.get(cacheKey, key -> getSharedService(codeGenType));
+    }
+
+    /**
+     * 对话前准备应用的对话记忆：缓存未命中时，若 Redis 中的对话记忆已过期，从对话历史中回填
+     * 只回填当前用户消息之前的历史，当前消息由本轮对话写入记忆
+     *
+     * @param appId            应用ID
+     * @param codeGenType      代码生成类型
+     * @param currentMessageId 当前用户消息ID（已保存到对话历史）
+     */
+    public void prepareChatMemory(long appId, CodeGenTypeEnum codeGenType, Long currentMessageId) {
+        String cacheKey = buildCacheKey(appId, codeGenType);
+        serviceCache.get(cacheKey, key -> {
+            chatMemoryHydrator.hydrate(appId, currentMessageId);
+            return getSharedService(codeGenType);
+        });
     }
 
     /**
@@ -103,41 +163,75 @@ public class AiCodeGeneratorServiceFactory {
     }
 
     /**
-     * 创建新的 AI 服务实例
+     * 从缓存键中解析 appId
+     */
+    private static long parseAppId(String cacheKey) {
+        return Long.parseLong(cacheKey.substring(0, cacheKey.indexOf('_')));
+    }
+
+    /**
+     * 获取代码生成类型对应的共享服务代理，不存在时构造
      *
-     * @param appId 应用ID
      * @param codeGenType 代码生成类型
      * @return AI代码生成器服务实例
      */
-    private AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        log.info("为 appId: {}, 代码类型: {} 创建新的 AI 服务实例", appId, codeGenType.getValue());
-        
-        // 根据 appId 构建独立的对话记忆
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory
-                .builder()
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
-                .maxMessages(20)  // 最大保存20条消息
-                .build();
-        
-        // 从数据库中加载对话历史到记忆中（如果ChatHistoryService可用且appId有效）
-        if (chatHistoryService != null && appId > 0) {
-            try {
-                chatHistoryService.getChatContext(appId, 20);
-                log.debug("已为 appId: {} 加载对话历史", appId);
-            } catch (Exception e) {
-                log.warn("加载对话历史失败，appId: {}, 错误: {}", appId, e.getMessage());
+    private AiCodeGeneratorService getSharedService(CodeGenTypeEnum codeGenType) {
+        return sharedServices.computeIfAbsent(codeGenType, this::createAiCodeGeneratorService);
+    }
+
+    @PostConstruct
+    public void initTokenCountEstimator() {
+        tokenCountEstimator = new OpenAiTokenCountEstimator(chatMemoryConfig.getTokenizerModel());
+        log.info("对话记忆 token 上限: {}，分词模型: {}", chatMemoryConfig.getMaxTokens(), chatMemoryConfig.getTokenizerModel());
+    }
+
+    /**
+     * 根据 appId 构建对话记忆（只持有存储的引用，消息内容在本地缓存和 Redis 中）
+     * 按 token 预算保留历史，而不是固定条数：一次写入大文件的工具调用就可能有数万字符
+     *
+     * @param memoryId 记忆ID（即 appId）
+     * @return 对话记忆
+     */
+    private ChatMemory buildChatMemory(Object memoryId) {
+        return new TokenBudgetChatMemory(memoryId, cachedChatMemoryStore, tokenCountEstimator,
+                chatMemoryConfig, chatHistorySummaryService);
+    }
+
+    /**
+     * 工程项目使用的工具
+     * 写入工具按代码生成类型决定项目目录，每种类型一个实例；其余工具按已有目录定位项目，直接使用工具管理器中的单例
+     *
+     * @param codeGenType 代码生成类型
+     * @return 工具列表
+     */
+    private List<Object> buildProjectTools(CodeGenTypeEnum codeGenType) {
+        List<Object> projectTools = new ArrayList<>();
+        projectTools.add(new FileWriteTool(codeGenType));
+        for (String toolName : PROJECT_TOOL_NAMES) {
+            BaseTool tool = toolManager.getTool(toolName);
+            if (!toolName.equals(tool.getToolName())) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "工具未注册: " + toolName);
             }
-        } else if (appId <= 0) {
-            log.debug("跳过加载对话历史，appId: {} 无效", appId);
+            projectTools.add(tool);
         }
+        return projectTools;
+    }
+
+    /**
+     * 创建新的 AI 服务代理
+     *
+     * @param codeGenType 代码生成类型
+     * @return AI代码生成器服务实例
+     */
+    private AiCodeGeneratorService createAiCodeGeneratorService(CodeGenTypeEnum codeGenType) {
+        log.info("为代码类型: {} 创建共享 AI 服务实例", codeGenType.getValue());
         switch (codeGenType) {
             case VUE_PROJECT -> {
                 return AiServices.builder(AiCodeGeneratorService.class)
                         .chatModel(chatModel)
                         .streamingChatModel(reasoningStreamingChatModel)
-                        .chatMemoryProvider(memoryId->chatMemory)
-                        .tools(new FileWriteTool(CodeGenTypeEnum.VUE_PROJECT))
+                        .chatMemoryProvider(this::buildChatMemory)
+                        .tools(buildProjectTools(CodeGenTypeEnum.VUE_PROJECT))
                         // 处理工具调用幻觉问题
                         .hallucinatedToolNameStrategy(toolExecutionRequest ->
                                 ToolExecutionResultMessage.from(toolExecutionRequest,
@@ -149,8 +243,8 @@ public class AiCodeGeneratorServiceFactory {
                 return AiServices.builder(AiCodeGeneratorService.class)
                         .chatModel(chatModel)
                         .streamingChatModel(reasoningStreamingChatModel)
-                        .chatMemoryProvider(memoryId->chatMemory)
-                        .tools(new FileWriteTool(CodeGenTypeEnum.REACT_PROJECT))
+                        .chatMemoryProvider(this::buildChatMemory)
+                        .tools(buildProjectTools(CodeGenTypeEnum.REACT_PROJECT))
                         // 处理工具调用幻觉问题
                         .hallucinatedToolNameStrategy(toolExecutionRequest ->
                                 ToolExecutionResultMessage.from(toolExecutionRequest,
@@ -162,7 +256,7 @@ public class AiCodeGeneratorServiceFactory {
                 return AiServices.builder(AiCodeGeneratorService.class)
                         .chatModel(chatModel)
                         .streamingChatModel(streamingChatModel)
-                        .chatMemory(chatMemory)
+                        .chatMemoryProvider(this::buildChatMemory)
                         .build();
             }
             default -> {
@@ -181,7 +275,7 @@ public class AiCodeGeneratorServiceFactory {
         log.info("正在初始化默认 AI 代码生成服务");
         log.info("chatModel: {}", chatModel != null ? "已注入" : "为空");
         log.info("streamingChatModel: {}", streamingChatModel != null ? "已注入" : "为空");
-        log.info("redisChatMemoryStore: {}", redisChatMemoryStore != null ? "已注入" : "为空");
+        log.info("cachedChatMemoryStore: {}", cachedChatMemoryStore != null ? "已注入" : "为空");
         log.info("reasoningStreamingChatModel: {}", reasoningStreamingChatModel != null ? "已注入" : "为空");   
         return getAiCodeGeneratorService(0L);  // 使用默认的 appId = 0
     }
@@ -221,11 +315,12 @@ public class AiCodeGeneratorServiceFactory {
     }
 
     /**
-     * 预热缓存
+     * 预热缓存（Redis 中的对话记忆已过期时从对话历史中回填）
      * 
      * @param appId 应用ID
      */
     public void warmupCache(Long appId) {
+        chatMemoryHydrator.hydrate(appId);
         for (CodeGenTypeEnum codeGenType : CodeGenTypeEnum.values()) {
             try {
                 getAiCodeGeneratorService(appId, codeGenType);
@@ -238,6 +333,24 @@ public class AiCodeGeneratorServiceFactory {
         log.info("已完成 appId: {} 的缓存预热", appId);
     }
 
+    /**
+     * 批量预热缓存：一次查询回填所有应用的对话记忆，再为每个应用创建记忆句柄
+     *
+     * @param appIds 应用ID列表
+     * @return 回填了对话记忆的应用数量
+     */
+    public int warmupCache(Collection<Long> appIds) {
+        int hydrated = chatMemoryHydrator.hydrate(appIds);
+        for (CodeGenTypeEnum codeGenType : CodeGenTypeEnum.values()) {
+            AiCodeGeneratorService sharedService = getSharedService(codeGenType);
+            for (Long appId : appIds) {
+                serviceCache.asMap().putIfAbsent(buildCacheKey(appId, codeGenType), sharedService);
+            }
+        }
+        log.info("已完成 {} 个应用的缓存预热，回填对话记忆 {} 个", appIds.size(), hydrated);
+        return hydrated;
+    }
+
     /**
      * 检查应用是否属于指定用户（用于权限校验）
      * 
@@ -260,6 +373,7 @@ public class AiCodeGeneratorServiceFactory {
         var stats = serviceCache.stats();
         return Map.of(
                 "size", serviceCache.estimatedSize(),
+                "sharedServiceCount", sharedServices.size(),
                 "hitRate", String.format("%.2f%%", stats.hitRate() * 100),
                 "missRate", String.format("%.2f%%", stats.missRate() * 100),
                 "evictionCount", stats.evictionCount(),
@@ -0,0 +1,52 @@
+package com.code.codeagent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话历史持久化配置
+ * 用户消息直接写入，AI 回复先进入有界队列，由后台线程批量写入数据库
+ *
+ * @author CodeAgent
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-agent.chat-history")
+@Data
+public class ChatHistoryPersistConfig {
+
+    /**
+     * 写入队列容量
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 单次批量插入的最大条数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 后台线程空闲时的最长等待时间（毫秒），提交消息时会立即唤醒
+     */
+    private long flushIntervalMs = 200;
+
+    /**
+     * 队列已满时的等待时间（毫秒），超时后由调用线程写完队列再写入
+     */
+    private long offerTimeoutMs = 50;
+
+    /**
+     * 写入失败（数据库暂时不可用）后首次重试的等待时间（毫秒），之后每次失败加倍
+     */
+    private long retryInitialBackoffMs = 500;
+
+    /**
+     * 写入失败后重试的最长等待时间（毫秒）
+     */
+    private long retryMaxBackoffMs = 30000;
+
+    /**
+     * 内存中保留的最近用户消息数量（用于校验 AI 消息的父消息）
+     */
+    private int recentUserMessageSize = 10000;
+}
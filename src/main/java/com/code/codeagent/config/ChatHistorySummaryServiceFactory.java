@@ -0,0 +1,32 @@
+package com.code.codeagent.config;
+
+import com.code.codeagent.ai.ChatHistorySummaryService;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.service.AiServices;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话历史总结服务工厂
+ *
+ * @author CodeAgent
+ */
+@Slf4j
+@Configuration
+public class ChatHistorySummaryServiceFactory {
+
+    @Resource
+    private ChatModel chatModel;
+
+    /**
+     * 创建对话历史总结服务实例（无对话记忆，每次总结独立调用）
+     */
+    @Bean
+    public ChatHistorySummaryService chatHistorySummaryService() {
+        return AiServices.builder(ChatHistorySummaryService.class)
+                .chatModel(chatModel)
+                .build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.code.codeagent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话记忆配置
+ * 按 token 预算保留对话：历史轮次中的大段工具参数和结果压缩为摘要标记，超出预算的最早轮次异步总结；
+ * 对话记忆在本地缓存，合并后写入 Redis
+ *
+ * @author CodeAgent
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-agent.chat-memory")
+@Data
+public class ChatMemoryConfig {
+
+    /**
+     * 单个应用对话记忆的 token 上限（每次请求模型时发送的历史不超过该值）
+     */
+    private int maxTokens = 24000;
+
+    /**
+     * 超出上限时淘汰到预算的比例，留出余量避免每条消息都触发淘汰
+     */
+    private double evictTargetRatio = 0.7;
+
+    /**
+     * 工具参数或结果超过该字符数时，在过期后压缩为路径和哈希
+     */
+    private int compactThresholdChars = 512;
+
+    /**
+     * 是否总结淘汰的对话轮次，关闭后直接丢弃
+     */
+    private boolean summaryEnabled = true;
+
+    /**
+     * 摘要的最大字符数
+     */
+    private int summaryMaxChars = 2000;
+
+    /**
+     * 计算 token 使用的分词模型（只用于估算）
+     */
+    private String tokenizerModel = "gpt-4o";
+
+    /**
+     * 是否在 Redis 前使用本地缓存，关闭后每次读写都直接访问 Redis
+     */
+    private boolean cacheEnabled = true;
+
+    /**
+     * 本地缓存的最大应用数
+     */
+    private int cacheMaxEntries = 1000;
+
+    /**
+     * 本地缓存访问后过期时间（分钟），须小于 Redis 中对话记忆的 TTL
+     */
+    private int cacheExpireMinutes = 10;
+
+    /**
+     * 写后间隔（毫秒）：间隔内同一应用的多次更新合并为一次写入 Redis
+     */
+    private long writeBehindIntervalMs = 1000;
+
+    /**
+     * 尚未写入 Redis 的应用数上限（Redis 不可用时待写入的更新不再无限增长），达到上限后新应用的更新直接写入 Redis
+     */
+    private int maxPendingWrites = 2000;
+
+    /**
+     * 多节点部署时广播缓存失效的频道
+     */
+    private String invalidationChannel = "code-agent:chat-memory:invalidate";
+}
@@ -0,0 +1,28 @@
+package com.code.codeagent.config;
+
+import com.code.codeagent.constant.AppConstant;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 应用部署配置
+ * 每次部署生成一个不可变版本，部署目录通过符号链接原子切换到新版本
+ *
+ * @author CodeAgent
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-agent.deploy")
+@Data
+public class DeployConfig {
+
+    /**
+     * 部署版本根目录
+     */
+    private String releaseRootDir = AppConstant.CODE_RELEASE_ROOT_DIR;
+
+    /**
+     * 每个应用保留的最近上线的版本数（包含当前版本），用于沿上线历史回滚
+     */
+    private int keepReleases = 3;
+}
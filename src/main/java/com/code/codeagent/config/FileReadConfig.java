@@ -0,0 +1,42 @@
+package com.code.codeagent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 文件读取工具配置
+ * 限制单次读取返回给模型的内容大小，超出的文件只返回摘要，由模型按行分段读取
+ *
+ * @author CodeAgent
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-agent.file-read")
+@Data
+public class FileReadConfig {
+
+    /**
+     * 单次读取最多返回的字节数
+     */
+    private int maxBytes = 64 * 1024;
+
+    /**
+     * 超出上限的文件在摘要中展示的开头和结尾行数
+     */
+    private int summaryLines = 40;
+
+    /**
+     * 读取结果缓存的过期时间（分钟），同一次生成中重复读取未变化的文件直接返回缓存
+     */
+    private int cacheExpireMinutes = 10;
+
+    /**
+     * 读取结果缓存的最大应用数（每个应用一个缓存）
+     */
+    private int cacheMaxApps = 100;
+
+    /**
+     * 单个应用读取结果缓存的最大字符数，超出时淘汰最少使用的结果
+     */
+    private int cacheMaxCharsPerApp = 512 * 1024;
+}
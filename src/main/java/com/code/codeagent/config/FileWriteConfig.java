@@ -0,0 +1,49 @@
+package com.code.codeagent.config;
+
+import com.code.codeagent.core.saver.ProjectWriteBuffer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 文件写入工具配置
+ * 写入先进入按项目划分的内存覆盖层，本轮对话结束、构建前或应用关闭时统一落盘
+ *
+ * @author CodeAgent
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-agent.file-write")
+@Data
+@Slf4j
+public class FileWriteConfig {
+
+    /**
+     * 是否启用写缓冲，关闭后每次调用直接写入磁盘
+     */
+    private boolean bufferEnabled = true;
+
+    /**
+     * 单个项目待写入内容的上限（字节），超过后立即落盘
+     */
+    private long maxPendingBytes = 4 * 1024 * 1024;
+
+    @PostConstruct
+    public void apply() {
+        ProjectWriteBuffer.configure(bufferEnabled, maxPendingBytes);
+        log.info("文件写缓冲: {}，单个项目待写入上限: {} 字节", bufferEnabled ? "启用" : "关闭", maxPendingBytes);
+    }
+
+    /**
+     * 应用关闭时把所有项目尚未落盘的写入写入磁盘
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        int failedCount = ProjectWriteBuffer.flushAll();
+        if (failedCount > 0) {
+            log.error("应用关闭时 {} 个文件未能写入磁盘", failedCount);
+        }
+    }
+}
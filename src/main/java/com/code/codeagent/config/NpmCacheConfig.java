@@ -0,0 +1,45 @@
+package com.code.codeagent.config;
+
+import com.code.codeagent.constant.AppConstant;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * npm 依赖缓存配置
+ * 依赖相同的项目共用同一份预装的 node_modules，避免每次构建重复下载和解压
+ *
+ * @author CodeAgent
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-agent.npm-cache")
+@Data
+public class NpmCacheConfig {
+
+    /**
+     * 是否启用依赖缓存，关闭后在项目目录中直接执行 npm install
+     */
+    private boolean enabled = true;
+
+    /**
+     * 缓存根目录
+     */
+    private String rootDir = AppConstant.NPM_CACHE_ROOT_DIR;
+
+    /**
+     * 项目引用缓存的方式：HARDLINK 逐文件硬链接，SYMLINK 符号链接整个 node_modules
+     * SYMLINK 下所有项目共用同一个 node_modules 目录，构建时写入其中的文件（如 Vite 的 node_modules/.vite 缓存）
+     * 会被其他项目看到，只适合构建不写入 node_modules 的场景
+     */
+    private LinkMode linkMode = LinkMode.HARDLINK;
+
+    /**
+     * 缓存未命中时安装依赖的超时时间（秒）
+     */
+    private int installTimeoutSeconds = 300;
+
+    public enum LinkMode {
+        SYMLINK,
+        HARDLINK
+    }
+}
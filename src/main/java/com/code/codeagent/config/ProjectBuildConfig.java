@@ -0,0 +1,37 @@
+package com.code.codeagent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 项目构建配置
+ * Vue / React 项目的 npm 构建由调度器统一排队，限制同时运行的构建数
+ *
+ * @author CodeAgent
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-agent.build")
+@Data
+public class ProjectBuildConfig {
+
+    /**
+     * 同时执行的最大构建数，小于等于 0 时取 CPU 核数的一半（至少 1）
+     */
+    private int maxConcurrency = 0;
+
+    /**
+     * 部署等待构建完成的最长时间（秒），包含排队、安装依赖和构建
+     */
+    private int deployWaitTimeoutSeconds = 600;
+
+    /**
+     * 实际生效的最大构建数
+     */
+    public int getEffectiveMaxConcurrency() {
+        if (maxConcurrency > 0) {
+            return maxConcurrency;
+        }
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+}
@@ -1,46 +1,27 @@
 package com.code.codeagent.config;
 
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 /**
  * Redis 持久化对话记忆配置
- * 
+ * 对话记忆由 {@link com.code.codeagent.manager.CachedChatMemoryStore} 缓存在本地并合并写入 Redis，
+ * 多节点之间通过发布订阅广播缓存失效
+ *
  * @author CodeAgent
  */
 @Configuration
-@Slf4j
 public class RedisChatMemoryStoreConfig {
 
-    @Value("${spring.data.redis.host:localhost}")
-    private String host;
-    
-    @Value("${spring.data.redis.port:6379}")
-    private int port;
-    
-    @Value("${spring.data.redis.password:}")
-    private String password;
-    
-    @Value("${spring.data.redis.ttl:3600}")
-    private long ttl;
-
+    /**
+     * 订阅对话记忆失效消息的监听容器
+     */
     @Bean
-    public RedisChatMemoryStore redisChatMemoryStore() {
-        log.info("初始化 RedisChatMemoryStore，host: {}, port: {}, ttl: {}s", host, port, ttl);
-        
-        RedisChatMemoryStore.Builder builder = RedisChatMemoryStore.builder()
-                .host(host)
-                .port(port)
-                .ttl(ttl);
-                
-        // 如果密码不为空，则设置密码
-        if (password != null && !password.trim().isEmpty()) {
-            builder.password(password);
-        }
-        
-        return builder.build();
+    public RedisMessageListenerContainer chatMemoryListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
     }
-}
\ No newline at end of file
+}
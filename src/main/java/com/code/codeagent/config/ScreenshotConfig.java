@@ -0,0 +1,68 @@
+package com.code.codeagent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 网页截图配置
+ * 截图任务进入有界队列，由固定数量的无头浏览器并发处理
+ *
+ * @author CodeAgent
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-agent.screenshot")
+@Data
+public class ScreenshotConfig {
+
+    /**
+     * 浏览器实例数（同时处理的截图数）
+     */
+    private int poolSize = 2;
+
+    /**
+     * 单个浏览器实例最多使用次数，超过后销毁重建，避免内存持续增长
+     */
+    private int maxUsesPerDriver = 50;
+
+    /**
+     * 截图任务队列容量，队列满时丢弃新任务
+     */
+    private int queueCapacity = 100;
+
+    /**
+     * 获取浏览器实例的最大等待时间（秒）
+     */
+    private int borrowTimeoutSeconds = 60;
+
+    /**
+     * 页面就绪的最大等待时间（毫秒），超时后直接截图
+     */
+    private long readyTimeoutMs = 10000;
+
+    /**
+     * 资源请求数保持不变多久视为网络空闲（毫秒）
+     */
+    private long networkIdleMs = 500;
+
+    /**
+     * 封面最大宽度（像素），小于等于 0 时保持截图原始宽度
+     */
+    private int coverWidth = 0;
+
+    /**
+     * 封面 JPEG 质量（0-1）
+     */
+    private float coverQuality = 0.3f;
+
+    /**
+     * 缩略图最大宽度（像素），小于等于 0 时不生成缩略图
+     * 缩略图地址不保存到应用信息中，只在有使用方按封面地址推出缩略图地址时开启，否则对象存储中会留下无人引用的文件
+     */
+    private int thumbnailWidth = 0;
+
+    /**
+     * 缩略图 JPEG 质量（0-1）
+     */
+    private float thumbnailQuality = 0.7f;
+}
@@ -0,0 +1,64 @@
+package com.code.codeagent.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SSE 流合并配置
+ * 将时间窗口内的多个小片段合并为一个 SSE 事件，减少事件数量和 JSON 包装开销
+ *
+ * @author CodeAgent
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-agent.stream-coalesce")
+@Data
+public class StreamCoalesceConfig {
+
+    /**
+     * 是否启用合并
+     */
+    private boolean enabled = true;
+
+    /**
+     * 默认合并规则
+     */
+    private Rule defaults = new Rule();
+
+    /**
+     * 按代码生成类型（html、multi_file、vue、react）覆盖的合并规则
+     */
+    private Map<String, Rule> types = new HashMap<>();
+
+    /**
+     * 获取代码生成类型对应的合并规则
+     *
+     * @param codeGenType 代码生成类型
+     * @return 合并规则
+     */
+    public Rule getRule(String codeGenType) {
+        return types.getOrDefault(codeGenType, defaults);
+    }
+
+    @Data
+    public static class Rule {
+
+        /**
+         * 合并时间窗口（毫秒），0 表示不合并
+         */
+        private long windowMs = 30;
+
+        /**
+         * 单个事件的最大字节数（UTF-8），超过后立即发送
+         */
+        private int maxBytes = 4096;
+
+        /**
+         * 单个时间窗口内最多合并的片段数
+         */
+        private int maxChunks = 64;
+    }
+}
@@ -0,0 +1,45 @@
+package com.code.codeagent.config;
+
+import dev.langchain4j.service.ToolExecutionMode;
+import dev.langchain4j.service.ToolExecutionSettings;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+/**
+ * 工具执行配置
+ * 控制同一轮模型响应中的多个工具调用是否并发执行
+ *
+ * @author CodeAgent
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-agent.tool-execution")
+@Data
+@Slf4j
+public class ToolExecutionConfig {
+
+    /**
+     * 执行模式：SEQUENTIAL 顺序执行，PARALLEL 在虚拟线程上并发执行
+     */
+    private ToolExecutionMode mode = ToolExecutionMode.PARALLEL;
+
+    /**
+     * 必须顺序执行的工具名称（如读取目录需要看到之前所有写入的结果）
+     */
+    private Set<String> sequentialTools = Set.of("readDir");
+
+    /**
+     * 表示文件路径的参数名，路径相同的调用按请求顺序串行执行
+     */
+    private Set<String> pathArguments = Set.of("relativeFilePath", "relativeDirPath");
+
+    @PostConstruct
+    public void apply() {
+        ToolExecutionSettings.configure(mode, sequentialTools, pathArguments);
+        log.info("工具执行模式: {}，顺序执行的工具: {}", mode, sequentialTools);
+    }
+}
@@ -12,11 +12,31 @@ public interface AppConstant {
      */
     String CODE_OUTPUT_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_output";
 
+    /**
+     * 代码内容寻址存储目录（按内容摘要去重存放生成的文件，应用目录中的文件是指向它们的硬链接）
+     */
+    String CODE_BLOB_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_blob";
+
     /**
      * 代码部署根目录
      */
     String CODE_DEPLOY_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_deploy";
 
+    /**
+     * 部署版本根目录（按 deployKey 存放不可变的历史版本，部署目录是指向其中一个版本的符号链接）
+     */
+    String CODE_RELEASE_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_release";
+
+    /**
+     * 代码下载缓存目录（按源码指纹缓存打包好的压缩包）
+     */
+    String CODE_DOWNLOAD_CACHE_DIR = System.getProperty("user.dir") + "/tmp/code_download";
+
+    /**
+     * npm 依赖缓存根目录（按依赖指纹存放预装好的 node_modules）
+     */
+    String NPM_CACHE_ROOT_DIR = System.getProperty("user.dir") + "/tmp/npm_cache";
+
     /**
      * 应用部署域名
      */
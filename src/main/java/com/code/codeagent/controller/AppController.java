@@ -4,11 +4,18 @@ import cn.dev33.satoken.stp.StpUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.code.codeagent.ai.model.message.AiResponseMessage;
+import com.code.codeagent.ai.model.message.FileCompletedMessage;
+import com.code.codeagent.ai.model.message.StreamMessage;
 import com.code.codeagent.common.BaseResponse;
 import com.code.codeagent.common.DeleteRequest;
 import com.code.codeagent.common.ResultUtils;
 import com.code.codeagent.constant.AppConstant;
 import com.code.codeagent.constant.UserConstant;
+import com.code.codeagent.core.builder.BuildProgressTracker;
+import com.code.codeagent.core.builder.ProjectBuildScheduler;
+import com.code.codeagent.core.handler.StreamChunkCoalescer;
+import com.code.codeagent.core.saver.CodeBlobStore;
 import com.code.codeagent.exception.BusinessException;
 import com.code.codeagent.exception.ErrorCode;
 import com.code.codeagent.exception.ThrowUtils;
@@ -18,10 +25,12 @@ import com.code.codeagent.model.entity.User;
 import com.code.codeagent.model.vo.AppVO;
 import com.code.codeagent.service.AppService;
 import com.code.codeagent.service.ProjectDownloadService;
+import com.code.codeagent.service.ScreenshotService;
 import com.code.codeagent.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.annotation.Resource; 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
@@ -31,11 +40,13 @@ import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import cn.dev33.satoken.annotation.SaCheckLogin;
 import cn.dev33.satoken.annotation.SaCheckRole;
 
 import java.io.File;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -58,6 +69,19 @@ public class AppController {
 
     @Resource
     private ProjectDownloadService projectDownloadService;
+
+    @Resource
+    private StreamChunkCoalescer streamChunkCoalescer;
+
+    @Resource
+    private ProjectBuildScheduler projectBuildScheduler;
+
+    @Resource
+    private BuildProgressTracker buildProgressTracker;
+
+    @Resource
+    private ScreenshotService screenshotService;
+
     /**
      * 通过对话生成应用代码（流式响应）
      *
@@ -88,15 +112,9 @@ public class AppController {
         User loginUser = userService.getLoginUser();
         
         // 调用服务生成代码（SSE 流式返回）
-        Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser);
+        Flux<StreamMessage> contentFlux = appService.chatToGenCode(appId, message, loginUser);
         return contentFlux
-                .map(chunk -> {
-                    Map<String, String> wrapper = Map.of("d", chunk);
-                    String jsonData = JSONUtil.toJsonStr(wrapper);
-                    return ServerSentEvent.<String>builder()
-                            .data(jsonData)
-                            .build();
-                })
+                .map(this::toServerSentEvent)
                 .concatWith(Mono.just(
                         // 发送结束事件
                         ServerSentEvent.<String>builder()
@@ -130,6 +148,73 @@ public class AppController {
         return ResultUtils.success(deployUrl);
     }
 
+    /**
+     * 回滚应用部署到上一个版本
+     *
+     * @param appDeployRequest 部署请求
+     * @return 部署URL
+     */
+    @PostMapping("/deploy/rollback")
+    @SaCheckLogin
+    @Operation(summary = "回滚应用部署", description = "将应用切换回上一个部署版本")
+    public BaseResponse<String> rollbackDeploy(@Valid @RequestBody AppDeployRequest appDeployRequest) {
+        User loginUser = userService.getLoginUser();
+        String deployUrl = appService.rollbackDeploy(appDeployRequest.getAppId(), loginUser);
+        return ResultUtils.success(deployUrl);
+    }
+
+    /**
+     * 应用部署（流式推送构建进度）
+     * 构建输出逐行推送，部署完成后发送 done 事件，包含访问URL和各构建阶段耗时
+     *
+     * @param appId 应用ID
+     * @return 流式响应
+     */
+    @GetMapping(value = "/deploy/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "应用部署（流式）", description = "部署应用并推送构建进度")
+    public Flux<ServerSentEvent<String>> deployAppStream(@RequestParam Long appId) {
+        // 手动进行认证检查，避免在流式响应中的上下文问题
+        try {
+            StpUtil.checkLogin();
+        } catch (Exception e) {
+            throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR, "用户未登录");
+        }
+        if (appId == null || appId <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "应用ID错误");
+        }
+        User loginUser = userService.getLoginUser();
+        App app = appService.getById(appId);
+        ThrowUtils.throwIfNull(app, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        ThrowUtils.throwIfNotEquals(app.getUserId(), loginUser.getId(), ErrorCode.NO_AUTH_ERROR, "无权限部署该应用");
+        String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + app.getCodeGenType() + "_" + appId;
+
+        // 部署过程会阻塞等待构建，放到弹性线程池中执行
+        Mono<String> deployMono = Mono.fromCallable(() -> appService.deployApp(appId, loginUser))
+                .subscribeOn(Schedulers.boundedElastic())
+                .cache();
+        // 先订阅构建输出再开始部署，部署结束（成功或失败）时停止推送
+        Flux<ServerSentEvent<String>> progressFlux = buildProgressTracker.progress(projectPath)
+                .takeUntilOther(deployMono.onErrorResume(error -> Mono.empty()))
+                .map(line -> ServerSentEvent.<String>builder()
+                        .data(JSONUtil.toJsonStr(Map.of("d", line)))
+                        .build());
+        Mono<ServerSentEvent<String>> resultMono = deployMono
+                .map(deployUrl -> ServerSentEvent.<String>builder()
+                        .event("done")
+                        .data(JSONUtil.toJsonStr(Map.of(
+                                "url", deployUrl,
+                                "timings", buildProgressTracker.getTimings(projectPath))))
+                        .build())
+                .onErrorResume(error -> {
+                    log.error("应用部署失败，应用ID：{}，错误：{}", appId, error.getMessage());
+                    return Mono.just(ServerSentEvent.<String>builder()
+                            .event("business-error")
+                            .data(JSONUtil.toJsonStr(Map.of("message", StrUtil.blankToDefault(error.getMessage(), "应用部署失败"))))
+                            .build());
+                });
+        return Flux.merge(progressFlux, resultMono);
+    }
+
     /**
      * 创建应用
      *
@@ -193,12 +278,14 @@ public class AppController {
      * 下载应用代码
      *
      * @param appId    应用ID
+     * @param request  请求（读取 Range / If-None-Match）
      * @param response 响应
      */
     @GetMapping("/download/{appId}")
     @SaCheckLogin
     @Operation(summary = "下载应用代码", description = "下载应用代码")
     public void downloadAppCode(@PathVariable Long appId,
+                                HttpServletRequest request,
                                 HttpServletResponse response) {
         // 1. 基础校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
@@ -221,7 +308,7 @@ public class AppController {
         // 6. 生成下载文件名（不建议添加中文内容）
         String downloadFileName = String.valueOf(appId);
         // 7. 调用通用下载服务
-        projectDownloadService.downloadProjectAsZip(sourceDirPath, downloadFileName, response);
+        projectDownloadService.downloadProjectAsZip(sourceDirPath, downloadFileName, request, response);
     }
 
     /**
@@ -452,4 +539,76 @@ public class AppController {
         AppVO appVO = appService.getAppVO(app);
         return ResultUtils.success(appVO);
     }
-}
\ No newline at end of file
+
+    /**
+     * 管理员获取流式响应合并统计
+     *
+     * @return 按代码生成类型分组的事件数、平均事件大小和每秒事件数
+     */
+    @GetMapping("/admin/stream/stats")
+    @SaCheckLogin
+    @SaCheckRole(UserConstant.ADMIN_ROLE)
+    @Operation(summary = "流式响应合并统计", description = "获取 SSE 片段合并的统计信息（管理员）")
+    public BaseResponse<Map<String, Object>> getStreamStats() {
+        return ResultUtils.success(streamChunkCoalescer.getStats());
+    }
+
+    /**
+     * 管理员获取项目构建调度统计
+     *
+     * @return 并发上限、运行中与排队中的构建数、合并次数、排队耗时和各阶段平均耗时
+     */
+    @GetMapping("/admin/build/stats")
+    @SaCheckLogin
+    @SaCheckRole(UserConstant.ADMIN_ROLE)
+    @Operation(summary = "项目构建调度统计", description = "获取 Vue/React 项目构建队列的统计信息（管理员）")
+    public BaseResponse<Map<String, Object>> getBuildStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(projectBuildScheduler.getStats());
+        stats.put("phases", buildProgressTracker.getStats());
+        return ResultUtils.success(stats);
+    }
+
+    /**
+     * 管理员获取生成代码的存储统计
+     *
+     * @return blob 数量、逻辑大小与实际占用、节省的空间、去重次数和写放大
+     */
+    @GetMapping("/admin/code-storage/stats")
+    @SaCheckLogin
+    @SaCheckRole(UserConstant.ADMIN_ROLE)
+    @Operation(summary = "代码存储统计", description = "获取生成代码内容寻址存储的去重与写放大统计（管理员）")
+    public BaseResponse<Map<String, Object>> getCodeStorageStats() {
+        return ResultUtils.success(CodeBlobStore.getStats());
+    }
+
+    /**
+     * 管理员获取截图统计
+     *
+     * @return 队列深度、浏览器池状态、每分钟截图数和 p95 耗时
+     */
+    @GetMapping("/admin/screenshot/stats")
+    @SaCheckLogin
+    @SaCheckRole(UserConstant.ADMIN_ROLE)
+    @Operation(summary = "截图统计", description = "获取截图队列和浏览器池的统计信息（管理员）")
+    public BaseResponse<Map<String, Object>> getScreenshotStats() {
+        return ResultUtils.success(screenshotService.getStats());
+    }
+
+    /**
+     * 转换为 SSE 事件：AI 响应作为默认事件（{"d": 片段}），文件完成作为独立的 file-completed 事件
+     */
+    private ServerSentEvent<String> toServerSentEvent(StreamMessage message) {
+        if (message instanceof FileCompletedMessage fileCompletedMessage) {
+            return ServerSentEvent.<String>builder()
+                    .event("file-completed")
+                    .data(JSONUtil.toJsonStr(fileCompletedMessage))
+                    .build();
+        }
+        String chunk = message instanceof AiResponseMessage aiResponseMessage ? aiResponseMessage.getData() : "";
+        Map<String, String> wrapper = Map.of("d", chunk);
+        String jsonData = JSONUtil.toJsonStr(wrapper);
+        return ServerSentEvent.<String>builder()
+                .data(jsonData)
+                .build();
+    }
+}
@@ -2,13 +2,17 @@ package com.code.codeagent.controller;
 
 import cn.dev33.satoken.annotation.SaCheckLogin;
 import cn.dev33.satoken.annotation.SaCheckRole;
+import com.code.codeagent.ai.tools.ToolManager;
 import com.code.codeagent.common.BaseResponse;
 import com.code.codeagent.common.ResultUtils;
 import com.code.codeagent.config.AiCodeGeneratorServiceFactory;
 import com.code.codeagent.constant.UserConstant;
+import com.code.codeagent.core.builder.NpmDependencyCache;
 import com.code.codeagent.exception.BusinessException;
 import com.code.codeagent.exception.ErrorCode;
+import com.code.codeagent.manager.CachedChatMemoryStore;
 
+import java.util.List;
 import java.util.Map;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -29,9 +33,23 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "CacheController", description = "缓存管理控制器")
 public class CacheController {
 
+    /**
+     * 批量预热单次请求的最大应用数
+     */
+    private static final int MAX_WARMUP_BATCH_SIZE = 1000;
+
     @Resource
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
+    @Resource
+    private NpmDependencyCache npmDependencyCache;
+
+    @Resource
+    private ToolManager toolManager;
+
+    @Resource
+    private CachedChatMemoryStore cachedChatMemoryStore;
+
     /**
      * 获取缓存统计信息
      */
@@ -44,6 +62,39 @@ public class CacheController {
         return ResultUtils.success(stats);
     }
 
+    /**
+     * 获取 npm 依赖缓存统计信息
+     */
+    @GetMapping("/npm/stats")
+    @SaCheckLogin
+    @SaCheckRole(UserConstant.ADMIN_ROLE)
+    @Operation(summary = "获取依赖缓存统计", description = "获取 npm 依赖缓存的命中率和安装耗时（管理员）")
+    public BaseResponse<Map<String, Object>> getNpmCacheStats() {
+        return ResultUtils.success(npmDependencyCache.getStats());
+    }
+
+    /**
+     * 获取对话记忆缓存统计信息
+     */
+    @GetMapping("/chat-memory/stats")
+    @SaCheckLogin
+    @SaCheckRole(UserConstant.ADMIN_ROLE)
+    @Operation(summary = "获取对话记忆缓存统计", description = "获取对话记忆本地缓存节省的 Redis 读写次数和字节数（管理员）")
+    public BaseResponse<Map<String, Object>> getChatMemoryStats() {
+        return ResultUtils.success(cachedChatMemoryStore.getStats());
+    }
+
+    /**
+     * 获取工具执行统计信息
+     */
+    @GetMapping("/tools/stats")
+    @SaCheckLogin
+    @SaCheckRole(UserConstant.ADMIN_ROLE)
+    @Operation(summary = "获取工具执行统计", description = "获取各工具的调用次数、耗时分布、读写字节数和失败次数（管理员）")
+    public BaseResponse<Map<String, Object>> getToolStats() {
+        return ResultUtils.success(toolManager.getToolStats());
+    }
+
     /**
      * 清除指定应用的缓存
      */
@@ -108,4 +159,29 @@ public class CacheController {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "预热缓存失败");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 批量预热缓存（管理员功能）
+     */
+    @PostMapping("/warmup/batch")
+    @SaCheckLogin
+    @SaCheckRole(UserConstant.ADMIN_ROLE)
+    @Operation(summary = "批量预热缓存", description = "一次查询回填多个应用的对话记忆并预热缓存（管理员功能）")
+    public BaseResponse<Integer> warmupCacheBatch(@RequestBody List<Long> appIds) {
+        if (appIds == null || appIds.isEmpty() || appIds.stream().anyMatch(appId -> appId == null || appId <= 0)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "应用ID列表不能为空或包含无效ID");
+        }
+        if (appIds.size() > MAX_WARMUP_BATCH_SIZE) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "单次最多预热 " + MAX_WARMUP_BATCH_SIZE + " 个应用");
+        }
+        
+        try {
+            int hydrated = aiCodeGeneratorServiceFactory.warmupCache(appIds);
+            log.info("管理员批量预热了 {} 个应用的缓存", appIds.size());
+            return ResultUtils.success(hydrated);
+        } catch (Exception e) {
+            log.error("批量预热缓存失败，错误: {}", e.getMessage());
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "批量预热缓存失败");
+        }
+    }
+}
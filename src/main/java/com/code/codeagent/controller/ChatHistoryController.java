@@ -2,7 +2,11 @@ package com.code.codeagent.controller;
 
 import cn.dev33.satoken.annotation.SaCheckLogin;
 import cn.dev33.satoken.annotation.SaCheckRole;
+import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.code.codeagent.ai.model.message.AiResponseMessage;
+import com.code.codeagent.ai.model.message.FileCompletedMessage;
+import com.code.codeagent.ai.model.message.StreamMessage;
 import com.code.codeagent.common.BaseResponse;
 import com.code.codeagent.common.ResultUtils;
 import com.code.codeagent.constant.UserConstant;
@@ -22,6 +26,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
@@ -97,7 +102,7 @@ public class ChatHistoryController {
     @PostMapping(value = "/retry", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @Operation(summary = "重新生成AI回复", description = "根据用户消息重新生成AI回复（流式返回）")
     @SaCheckLogin
-    public Flux<String> retryGenerate(@RequestBody @Valid ChatHistoryRetryRequest retryRequest) {
+    public Flux<ServerSentEvent<String>> retryGenerate(@RequestBody @Valid ChatHistoryRetryRequest retryRequest) {
         ThrowUtils.throwIf(retryRequest == null, ErrorCode.PARAMS_ERROR);
         
         User loginUser = userService.getLoginUser();
@@ -107,9 +112,9 @@ public class ChatHistoryController {
                 loginUser
         );
         
-        // 假设AppService返回的是Flux<String>
+        // AppService返回的是Flux<StreamMessage>，AI 响应作为默认事件，文件完成作为独立的 file-completed 事件
         if (result instanceof Flux) {
-            return (Flux<String>) result;
+            return ((Flux<StreamMessage>) result).map(this::toServerSentEvent);
         } else {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "重试生成失败");
         }
@@ -191,4 +196,20 @@ public class ChatHistoryController {
         List<ChatHistory> context = chatHistoryService.getChatContext(appId, maxCount);
         return ResultUtils.success(context);
     }
+
+    /**
+     * 转换为 SSE 事件：AI 响应作为默认事件，文件完成作为独立的 file-completed 事件
+     */
+    private ServerSentEvent<String> toServerSentEvent(StreamMessage message) {
+        if (message instanceof FileCompletedMessage fileCompletedMessage) {
+            return ServerSentEvent.<String>builder()
+                    .event("file-completed")
+                    .data(JSONUtil.toJsonStr(fileCompletedMessage))
+                    .build();
+        }
+        String chunk = message instanceof AiResponseMessage aiResponseMessage ? aiResponseMessage.getData() : "";
+        return ServerSentEvent.<String>builder()
+                .data(chunk)
+                .build();
+    }
 }
\ No newline at end of file
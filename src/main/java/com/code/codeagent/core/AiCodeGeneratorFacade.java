@@ -1,14 +1,16 @@
 package com.code.codeagent.core;
 
-import cn.hutool.json.JSONUtil;
 import com.code.codeagent.ai.AiCodeGeneratorService;
 import com.code.codeagent.ai.model.message.AiResponseMessage;
+import com.code.codeagent.ai.model.message.FileCompletedMessage;
+import com.code.codeagent.ai.model.message.StreamMessage;
 import com.code.codeagent.ai.model.message.ToolExecutedMessage;
 import com.code.codeagent.ai.model.message.ToolRequestMessage;
 import com.code.codeagent.config.AiCodeGeneratorServiceFactory;
 import com.code.codeagent.ai.model.HtmlCodeResult;
 import com.code.codeagent.ai.model.MultiFileCodeResult;
-import com.code.codeagent.core.parser.CodeParserExecutor;
+import com.code.codeagent.core.parser.CodeFileCompletedEvent;
+import com.code.codeagent.core.parser.StreamingCodeParser;
 import com.code.codeagent.core.saver.CodeFileSaverExecutor;
 import com.code.codeagent.exception.BusinessException;
 import com.code.codeagent.exception.ErrorCode;
@@ -22,6 +24,8 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * AI 代码生成门面类，组合代码生成和保存功能
@@ -51,16 +55,16 @@ public class AiCodeGeneratorFacade {
             appId = System.currentTimeMillis();
         }
         
-        // 根据 appId 和代码类型获取专属的 AI 服务实例
+        // 获取代码类型对应的 AI 服务实例，对话记忆按 appId 隔离
         AiCodeGeneratorService service = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum);
         
         return switch (codeGenTypeEnum) {
             case HTML -> {
-                HtmlCodeResult result = service.generateHtmlCode(userMessage);
+                HtmlCodeResult result = service.generateHtmlCode(appId, userMessage);
                 yield CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.HTML, appId);
             }
             case MULTI_FILE -> {
-                MultiFileCodeResult result = service.generateMultiFileCode(userMessage);
+                MultiFileCodeResult result = service.generateMultiFileCode(appId, userMessage);
                 yield CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.MULTI_FILE, appId);
             }
             default -> {
@@ -87,9 +91,9 @@ public class AiCodeGeneratorFacade {
      * @param userMessage     用户提示词
      * @param codeGenTypeEnum 生成类型
      * @param appId 应用 ID（可选，如果为空则使用默认值）
-     * @return 保存的目录
+     * @return 类型化的消息流（HTML、MULTI_FILE 包含 AI 响应消息和文件完成消息）
      */
-    public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "生成类型不能为空");
         }
@@ -99,16 +103,16 @@ public class AiCodeGeneratorFacade {
             appId = System.currentTimeMillis();
         }
         
-        // 根据 appId 和代码类型获取专属的 AI 服务实例
+        // 获取代码类型对应的 AI 服务实例，对话记忆按 appId 隔离
         AiCodeGeneratorService service = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum);
         
         return switch (codeGenTypeEnum) {
             case HTML -> {
-                Flux<String> codeStream = service.generateHtmlCodeStream(userMessage);
+                Flux<String> codeStream = service.generateHtmlCodeStream(appId, userMessage);
                 yield processCodeStream(codeStream, CodeGenTypeEnum.HTML, appId);
             }
             case MULTI_FILE -> {
-                Flux<String> codeStream = service.generateMultiFileCodeStream(userMessage);
+                Flux<String> codeStream = service.generateMultiFileCodeStream(appId, userMessage);
                 yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId);
             }
             case VUE_PROJECT -> {
@@ -131,55 +135,67 @@ public class AiCodeGeneratorFacade {
      *
      * @param userMessage     用户提示词
      * @param codeGenTypeEnum 生成类型
-     * @return 保存的目录
+     * @return 类型化的消息流
      */
-    public Flux<String> generateCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum) {
+    public Flux<StreamMessage> generateCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum) {
         return generateAndSaveCodeStream(userMessage, codeGenTypeEnum, null);
     }
 
     /**
      * 通用流式代码处理方法
+     * 使用增量解析器边接收边写入文件，每个文件完成时在代码块结束位置之后插入文件完成消息（不属于 AI 回复内容）
      *
      * @param codeStream  代码流
      * @param codeGenType 代码生成类型
      * @param appId 应用 ID
-     * @return 流式响应
+     * @return 类型化的消息流
      */
-    private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId) {
-        // 字符串拼接器，用于当流式返回所有的代码之后，再保存代码
-        StringBuilder codeBuilder = new StringBuilder();
-        return codeStream.doOnNext(chunk -> {
-            // 实时收集代码片段
-            codeBuilder.append(chunk);
-        }).doOnComplete(() -> {
-            // 流式返回完成后，保存代码
-            try {
-                String completeCode = codeBuilder.toString();
-                // 使用执行器解析代码
-                Object parsedResult = CodeParserExecutor.executeParser(completeCode, codeGenType);
-                // 使用执行器保存代码
-                File saveDir = CodeFileSaverExecutor.executeSaver(parsedResult, codeGenType, appId);
-                log.info("保存成功，目录为：{}", saveDir.getAbsolutePath());
-            } catch (Exception e) {
-                log.error("保存失败: {}", e.getMessage());
-            }
+    private Flux<StreamMessage> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId) {
+        return Flux.defer(() -> {
+            StreamingCodeParser parser = new StreamingCodeParser(codeGenType, appId);
+            return codeStream
+                    .concatMapIterable(chunk -> insertFileCompletedMessages(chunk, parser.feed(chunk)))
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(parser.finish()).map(FileCompletedMessage::new)))
+                    .doOnComplete(() -> log.info("保存成功，目录为：{}", parser.getSaveDir().getAbsolutePath()))
+                    .doOnError(error -> {
+                        parser.abort();
+                        log.error("保存失败: {}", error.getMessage());
+                    })
+                    .doOnCancel(parser::abort);
         });
     }
 
-    private Flux<String> processTokenStream(TokenStream tokenStream) {
+    /**
+     * 在代码块结束位置之后插入文件完成消息
+     *
+     * @param chunk  原始片段
+     * @param events 本片段中完成的文件事件
+     * @return 输出消息列表
+     */
+    private List<StreamMessage> insertFileCompletedMessages(String chunk, List<CodeFileCompletedEvent> events) {
+        if (events.isEmpty()) {
+            return List.of(new AiResponseMessage(chunk));
+        }
+        List<StreamMessage> output = new ArrayList<>(events.size() * 2 + 1);
+        int start = 0;
+        for (CodeFileCompletedEvent event : events) {
+            if (event.getChunkOffset() > start) {
+                output.add(new AiResponseMessage(chunk.substring(start, event.getChunkOffset())));
+            }
+            output.add(new FileCompletedMessage(event));
+            start = event.getChunkOffset();
+        }
+        if (start < chunk.length()) {
+            output.add(new AiResponseMessage(chunk.substring(start)));
+        }
+        return output;
+    }
+
+    private Flux<StreamMessage> processTokenStream(TokenStream tokenStream) {
         return Flux.create(sink -> {
-            tokenStream.onPartialResponse((String partialResponse) -> {
-                        AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-                        sink.next(JSONUtil.toJsonStr(aiResponseMessage));
-                    })
-                    .onPartialToolExecutionRequest((index, toolExecutionRequest) -> {
-                        ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecutionRequest);
-                        sink.next(JSONUtil.toJsonStr(toolRequestMessage));
-                    })
-                    .onToolExecuted((ToolExecution toolExecution) -> {
-                        ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                        sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
-                    })
+            tokenStream.onPartialResponse((String partialResponse) -> sink.next(new AiResponseMessage(partialResponse)))
+                    .onPartialToolExecutionRequest((index, toolExecutionRequest) -> sink.next(new ToolRequestMessage(toolExecutionRequest)))
+                    .onToolExecuted((ToolExecution toolExecution) -> sink.next(new ToolExecutedMessage(toolExecution)))
                     .onCompleteResponse((ChatResponse response) -> {
                         sink.complete();
                     })
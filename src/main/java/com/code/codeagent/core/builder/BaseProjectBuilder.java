@@ -0,0 +1,148 @@
+package com.code.codeagent.core.builder;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * npm 前端项目构建基类
+ * 负责复用未变化的 dist、按需执行 npm install 和 npm run build 并推送构建输出，子类只提供项目类型的显示名称
+ */
+@Slf4j
+public abstract class BaseProjectBuilder {
+
+    /**
+     * 项目类型的显示名称（用于日志），如 Vue、React
+     */
+    private final String displayName;
+
+    @Resource
+    private NpmDependencyCache npmDependencyCache;
+
+    @Resource
+    private ProjectBuildScheduler projectBuildScheduler;
+
+    @Resource
+    private ProjectBuildManifest projectBuildManifest;
+
+    @Resource
+    private BuildProcessRunner buildProcessRunner;
+
+    @Resource
+    private BuildProgressTracker buildProgressTracker;
+
+    protected BaseProjectBuilder(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * 异步构建项目（对话完成后的预构建，由调度器排队执行）
+     *
+     * @param projectPath
+     */
+    public void buildProjectAsync(String projectPath) {
+        projectBuildScheduler.submit(projectPath, BuildPriority.SPECULATIVE, this::buildProject);
+    }
+
+    /**
+     * 提交项目构建
+     *
+     * @param projectPath 项目根目录路径
+     * @param priority    构建优先级
+     * @return 构建结果
+     */
+    public CompletableFuture<Boolean> submitBuild(String projectPath, BuildPriority priority) {
+        return projectBuildScheduler.submit(projectPath, priority, this::buildProject);
+    }
+
+    /**
+     * 构建项目，构建输出通过 {@link BuildProgressTracker} 推送
+     *
+     * @param projectPath 项目根目录路径
+     * @return 是否构建成功
+     */
+    public boolean buildProject(String projectPath) {
+        BuildProgressTracker.Session session = buildProgressTracker.start(projectPath);
+        boolean success = false;
+        try {
+            success = doBuildProject(projectPath, session);
+            return success;
+        } finally {
+            session.finish(success);
+        }
+    }
+
+    private boolean doBuildProject(String projectPath, BuildProgressTracker.Session session) {
+        File projectDir = new File(projectPath);
+        if (!projectDir.exists() || !projectDir.isDirectory()) {
+            log.error("项目目录不存在：{}", projectPath);
+            return false;
+        }
+        // 检查是否有 package.json 文件
+        File packageJsonFile = new File(projectDir, "package.json");
+        if (!packageJsonFile.exists()) {
+            log.error("项目目录中没有 package.json 文件：{}", projectPath);
+            return false;
+        }
+        // 源码与上次构建一致时直接复用 dist
+        ProjectBuildManifest.Snapshot snapshot = projectBuildManifest.snapshot(projectDir);
+        if (snapshot != null && projectBuildManifest.isBuildUpToDate(projectDir, snapshot)) {
+            log.info("{} 项目源码未变化，复用已有 dist 目录：{}", displayName, projectPath);
+            session.emit("源码未变化，复用上次的构建产物");
+            return true;
+        }
+        log.info("开始构建 {} 项目：{}", displayName, projectPath);
+        projectBuildManifest.invalidateBuild(projectDir);
+        // 执行 npm install（依赖未变化时跳过）
+        if (snapshot != null && projectBuildManifest.isDependencyUpToDate(projectDir, snapshot)) {
+            log.info("依赖未变化，跳过 npm install：{}", projectPath);
+            session.emit("依赖未变化，跳过 npm install");
+        } else if (!session.phase(BuildProgressTracker.PHASE_INSTALL, () -> executeNpmInstall(projectDir, session))) {
+            log.error("npm install 执行失败：{}", projectPath);
+            return false;
+        }
+        // 执行 npm run build
+        if (!session.phase(BuildProgressTracker.PHASE_BUILD, () -> executeNpmBuild(projectDir, session))) {
+            log.error("npm run build 执行失败：{}", projectPath);
+            return false;
+        }
+        // 验证 dist 目录是否生成
+        File distDir = new File(projectDir, "dist");
+        if (!distDir.exists() || !distDir.isDirectory()) {
+            log.error("构建完成但 dist 目录未生成：{}", projectPath);
+            return false;
+        }
+        if (snapshot != null) {
+            projectBuildManifest.save(projectDir, snapshot);
+        }
+        log.info("{} 项目构建成功，dist 目录：{}", displayName, projectPath);
+        return true;
+    }
+
+    /**
+     * 执行 npm install 命令（启用依赖缓存时优先链接缓存的 node_modules）
+     */
+    private boolean executeNpmInstall(File projectDir, BuildProgressTracker.Session session) {
+        if (npmDependencyCache.isEnabled()) {
+            if (npmDependencyCache.install(projectDir, session::emit)) {
+                return true;
+            }
+            log.warn("依赖缓存不可用，在项目目录中直接安装：{}", projectDir.getAbsolutePath());
+        }
+        log.info("执行 npm install...");
+        String command = String.format("%s install", buildProcessRunner.buildCommand("npm"));
+        return buildProcessRunner.execute(projectDir, command, 300, session::emit); // 5分钟超时
+    }
+
+    /**
+     * 执行 npm run build 命令
+     */
+    private boolean executeNpmBuild(File projectDir, BuildProgressTracker.Session session) {
+        log.info("执行 npm run build...");
+        String command = String.format("%s run build", buildProcessRunner.buildCommand("npm"));
+        return buildProcessRunner.execute(projectDir, command, 180, session::emit); // 3分钟超时
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.code.codeagent.core.builder;
+
+/**
+ * 构建优先级（声明顺序即调度顺序）
+ *
+ * @author CodeAgent
+ */
+public enum BuildPriority {
+
+    /**
+     * 部署触发的构建，用户正在等待结果
+     */
+    DEPLOY,
+
+    /**
+     * 对话完成后的预构建
+     */
+    SPECULATIVE
+}
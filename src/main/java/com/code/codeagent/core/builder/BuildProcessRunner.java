@@ -0,0 +1,158 @@
+package com.code.codeagent.core.builder;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 构建命令执行器
+ * 标准错误合并到标准输出，由虚拟线程持续读取，避免输出过多时管道写满导致进程阻塞。
+ * 每行输出转发给调用方（用于推送构建进度），并在环形缓冲区中保留最后若干行，失败时输出到日志。
+ *
+ * @author CodeAgent
+ */
+@Slf4j
+@Component
+public class BuildProcessRunner {
+
+    /**
+     * 失败时输出到日志的最大行数
+     */
+    private static final int OUTPUT_TAIL_LINES = 50;
+
+    /**
+     * 进程退出后等待输出读取完成的时间（毫秒），子进程可能仍持有管道
+     */
+    private static final long DRAIN_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * 根据操作系统构造命令
+     *
+     * @param baseCommand 基础命令，如 npm
+     * @return 当前系统可执行的命令
+     */
+    public String buildCommand(String baseCommand) {
+        if (System.getProperty("os.name").toLowerCase().contains("windows")) {
+            return baseCommand + ".cmd";
+        }
+        return baseCommand;
+    }
+
+    /**
+     * 执行命令
+     *
+     * @param workingDir     工作目录
+     * @param command        命令字符串
+     * @param timeoutSeconds 超时时间（秒）
+     * @param outputConsumer 每行输出的回调，可为 null
+     * @return 是否执行成功
+     */
+    public boolean execute(File workingDir, String command, int timeoutSeconds, Consumer<String> outputConsumer) {
+        log.info("在目录 {} 中执行命令: {}", workingDir.getAbsolutePath(), command);
+        OutputRingBuffer outputTail = new OutputRingBuffer(OUTPUT_TAIL_LINES);
+        Process process = null;
+        try {
+            process = new ProcessBuilder(command.split("\\s+"))
+                    .directory(workingDir)
+                    .redirectErrorStream(true)
+                    .start();
+            InputStream inputStream = process.getInputStream();
+            Thread drainer = Thread.ofVirtual().name("build-output-" + process.pid())
+                    .start(() -> drain(inputStream, outputTail, outputConsumer));
+            boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+            if (!finished) {
+                log.error("命令执行超时（{}秒），强制终止进程，输出末尾:\n{}", timeoutSeconds, outputTail);
+                process.destroyForcibly();
+                awaitDrainer(drainer);
+                return false;
+            }
+            awaitDrainer(drainer);
+            int exitCode = process.exitValue();
+            if (exitCode != 0) {
+                log.error("命令执行失败，退出码: {}，输出末尾:\n{}", exitCode, outputTail);
+                return false;
+            }
+            log.info("命令执行成功: {}", command);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+            log.error("执行命令被中断: {}", command);
+            return false;
+        } catch (Exception e) {
+            log.error("执行命令失败: {}, 错误信息: {}", command, e.getMessage());
+            if (process != null) {
+                process.destroyForcibly();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 等待输出读取线程结束，超时后不再等待（子进程仍持有管道时读取线程在管道关闭后自行结束）
+     */
+    private void awaitDrainer(Thread drainer) throws InterruptedException {
+        if (!drainer.join(Duration.ofMillis(DRAIN_TIMEOUT_MILLIS))) {
+            log.warn("等待命令输出读取结束超时（{}ms）: {}", DRAIN_TIMEOUT_MILLIS, drainer.getName());
+        }
+    }
+
+    private void drain(InputStream inputStream, OutputRingBuffer outputTail, Consumer<String> outputConsumer) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                outputTail.add(line);
+                if (outputConsumer != null) {
+                    try {
+                        outputConsumer.accept(line);
+                    } catch (Exception e) {
+                        log.warn("处理构建输出失败: {}", e.getMessage());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // 进程被强制终止时管道关闭，忽略
+            log.debug("读取命令输出结束: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 保留最后 N 行输出的环形缓冲区
+     */
+    private static class OutputRingBuffer {
+
+        private final String[] lines;
+
+        private int next;
+
+        private int size;
+
+        private OutputRingBuffer(int capacity) {
+            this.lines = new String[capacity];
+        }
+
+        private synchronized void add(String line) {
+            lines[next] = line;
+            next = (next + 1) % lines.length;
+            size = Math.min(size + 1, lines.length);
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder builder = new StringBuilder();
+            int start = (next - size + lines.length) % lines.length;
+            for (int i = 0; i < size; i++) {
+                builder.append(lines[(start + i) % lines.length]).append('\n');
+            }
+            return builder.toString();
+        }
+    }
+}
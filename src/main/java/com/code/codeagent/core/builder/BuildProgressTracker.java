@@ -0,0 +1,168 @@
+package com.code.codeagent.core.builder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 构建进度跟踪
+ * 1. 按项目目录推送构建输出，部署接口通过 SSE 转发给前端（每个订阅者的缓冲有上限，消费过慢时丢弃最早的行）
+ * 2. 记录每个项目最近一次构建各阶段（install、build）的耗时，并汇总各阶段平均耗时
+ *
+ * @author CodeAgent
+ */
+@Slf4j
+@Component
+public class BuildProgressTracker {
+
+    public static final String PHASE_INSTALL = "install";
+
+    public static final String PHASE_BUILD = "build";
+
+    /**
+     * 每个订阅者最多缓存的输出行数，订阅者消费过慢时丢弃最早的行
+     */
+    private static final int MAX_BUFFERED_LINES = 1000;
+
+    /**
+     * 订阅者（按项目目录）
+     */
+    private final Map<String, Set<FluxSink<String>>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * 各项目最近一次构建的阶段耗时
+     */
+    private final Cache<String, Map<String, Long>> lastTimings = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .build();
+
+    private final Map<String, PhaseStats> phaseStats = new ConcurrentHashMap<>();
+
+    /**
+     * 订阅项目的构建输出，需在构建开始前订阅
+     *
+     * @param projectPath 项目目录
+     * @return 构建输出（逐行）
+     */
+    public Flux<String> progress(String projectPath) {
+        return Flux.<String>create(sink -> {
+            subscribers.computeIfAbsent(projectPath, key -> ConcurrentHashMap.newKeySet()).add(sink);
+            sink.onDispose(() -> subscribers.computeIfPresent(projectPath, (key, sinks) -> {
+                sinks.remove(sink);
+                return sinks.isEmpty() ? null : sinks;
+            }));
+        }).onBackpressureBuffer(MAX_BUFFERED_LINES, BufferOverflowStrategy.DROP_OLDEST);
+    }
+
+    /**
+     * 开始一次构建
+     *
+     * @param projectPath 项目目录
+     * @return 构建会话
+     */
+    public Session start(String projectPath) {
+        return new Session(projectPath);
+    }
+
+    /**
+     * 获取项目最近一次构建的阶段耗时
+     *
+     * @param projectPath 项目目录
+     * @return 阶段耗时（毫秒），没有记录时返回空
+     */
+    public Map<String, Long> getTimings(String projectPath) {
+        Map<String, Long> timings = lastTimings.getIfPresent(projectPath);
+        return timings == null ? Map.of() : timings;
+    }
+
+    /**
+     * 获取各阶段的统计信息
+     *
+     * @return 各阶段执行次数和平均耗时
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        phaseStats.forEach((phase, phaseStat) -> {
+            long count = phaseStat.count.sum();
+            stats.put(phase, Map.of(
+                    "count", count,
+                    "averageTime", String.format("%.0fms", count == 0 ? 0 : (double) phaseStat.totalMillis.sum() / count)));
+        });
+        return stats;
+    }
+
+    private void emit(String projectPath, String line) {
+        Set<FluxSink<String>> sinks = subscribers.get(projectPath);
+        if (sinks != null) {
+            sinks.forEach(sink -> sink.next(line));
+        }
+    }
+
+    private static class PhaseStats {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalMillis = new LongAdder();
+    }
+
+    /**
+     * 一次构建的会话
+     */
+    public class Session {
+
+        private final String projectPath;
+
+        private final Map<String, Long> timings = new LinkedHashMap<>();
+
+        private Session(String projectPath) {
+            this.projectPath = projectPath;
+        }
+
+        /**
+         * 推送一行构建输出
+         */
+        public void emit(String line) {
+            BuildProgressTracker.this.emit(projectPath, line);
+        }
+
+        /**
+         * 执行一个构建阶段并记录耗时
+         *
+         * @param phase  阶段名称
+         * @param action 阶段动作，返回是否成功
+         * @return 是否成功
+         */
+        public boolean phase(String phase, BooleanSupplier action) {
+            emit("> " + phase);
+            long start = System.currentTimeMillis();
+            boolean success = action.getAsBoolean();
+            long cost = System.currentTimeMillis() - start;
+            timings.put(phase, cost);
+            PhaseStats stats = phaseStats.computeIfAbsent(phase, key -> new PhaseStats());
+            stats.count.increment();
+            stats.totalMillis.add(cost);
+            log.info("项目 {} 阶段 {} 完成，耗时：{}ms，结果：{}", projectPath, phase, cost, success ? "成功" : "失败");
+            return success;
+        }
+
+        /**
+         * 结束构建，保存本次的阶段耗时
+         */
+        public void finish(boolean success) {
+            emit(success ? "构建完成" : "构建失败");
+            lastTimings.put(projectPath, Collections.unmodifiableMap(timings));
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.code.codeagent.core.builder;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.code.codeagent.config.NpmCacheConfig;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * npm 依赖缓存
+ * 按依赖指纹（package.json 的依赖声明 + 锁文件）在缓存目录中安装一份 node_modules，
+ * 依赖相同的项目直接链接到这份缓存，命中时不需要网络，也不执行 npm install。
+ * <p>
+ * 缓存条目在临时目录中安装完成后整体改名，目录存在即表示可用。
+ *
+ * @author CodeAgent
+ */
+@Slf4j
+@Component
+public class NpmDependencyCache {
+
+    /**
+     * 指纹格式版本，调整指纹算法时修改以避免命中旧条目
+     */
+    private static final String FINGERPRINT_VERSION = "v1";
+
+    /**
+     * 参与指纹计算的 package.json 字段
+     */
+    private static final List<String> DEPENDENCY_FIELDS = List.of(
+            "dependencies", "devDependencies", "optionalDependencies", "peerDependencies", "overrides");
+
+    private static final String PACKAGE_JSON = "package.json";
+
+    private static final String LOCK_FILE = "package-lock.json";
+
+    private static final String NODE_MODULES = "node_modules";
+
+    @Resource
+    private NpmCacheConfig npmCacheConfig;
+
+    @Resource
+    private BuildProcessRunner buildProcessRunner;
+
+    /**
+     * 同一指纹的安装串行执行
+     * 锁对象不移除：解锁后移除会让等待中的线程持有旧锁、新来的线程创建新锁，两者同时安装同一条目；
+     * 锁的数量与缓存条目数相同，占用可以忽略
+     */
+    private final Map<String, ReentrantLock> entryLocks = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder failureCount = new LongAdder();
+
+    private final LongAdder installTimeMillis = new LongAdder();
+
+    private final LongAdder linkTimeMillis = new LongAdder();
+
+    /**
+     * 是否启用
+     */
+    public boolean isEnabled() {
+        return npmCacheConfig.isEnabled();
+    }
+
+    /**
+     * 为项目准备 node_modules：命中缓存直接链接，未命中先在缓存目录中安装
+     *
+     * @param projectDir     项目目录
+     * @param outputConsumer 安装输出的回调，可为 null
+     * @return 是否成功
+     */
+    public boolean install(File projectDir, Consumer<String> outputConsumer) {
+        String fingerprint;
+        try {
+            fingerprint = fingerprint(projectDir);
+        } catch (Exception e) {
+            log.error("计算依赖指纹失败：{}，错误：{}", projectDir.getAbsolutePath(), e.getMessage());
+            failureCount.increment();
+            return false;
+        }
+        Path entryDir = Paths.get(npmCacheConfig.getRootDir(), fingerprint);
+        boolean hit = Files.isDirectory(entryDir);
+        if (!hit) {
+            ReentrantLock lock = entryLocks.computeIfAbsent(fingerprint, key -> new ReentrantLock());
+            lock.lock();
+            try {
+                // 等待期间可能已由其他构建安装完成
+                hit = Files.isDirectory(entryDir);
+                if (!hit && !populate(projectDir, entryDir, outputConsumer)) {
+                    failureCount.increment();
+                    return false;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        long start = System.currentTimeMillis();
+        try {
+            link(projectDir.toPath().resolve(NODE_MODULES), entryDir.resolve(NODE_MODULES).toAbsolutePath());
+        } catch (IOException e) {
+            log.error("链接依赖缓存失败：{}，错误：{}", projectDir.getAbsolutePath(), e.getMessage());
+            failureCount.increment();
+            return false;
+        }
+        long cost = System.currentTimeMillis() - start;
+        linkTimeMillis.add(cost);
+        (hit ? hitCount : missCount).increment();
+        log.info("依赖缓存{}，指纹：{}，链接耗时：{}ms", hit ? "命中" : "未命中", fingerprint, cost);
+        return true;
+    }
+
+    /**
+     * 获取缓存统计信息
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long hits = hitCount.sum();
+        long misses = missCount.sum();
+        long requests = hits + misses;
+        String[] entries = new File(npmCacheConfig.getRootDir()).list((dir, name) -> !name.contains(".tmp-"));
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", npmCacheConfig.isEnabled());
+        stats.put("linkMode", npmCacheConfig.getLinkMode());
+        stats.put("entryCount", entries == null ? 0 : entries.length);
+        stats.put("hitCount", hits);
+        stats.put("missCount", misses);
+        stats.put("failureCount", failureCount.sum());
+        stats.put("hitRate", String.format("%.2f%%", requests == 0 ? 0 : hits * 100.0 / requests));
+        stats.put("averageInstallTime", String.format("%.0fms", misses == 0 ? 0 : (double) installTimeMillis.sum() / misses));
+        stats.put("averageLinkTime", String.format("%.0fms", requests == 0 ? 0 : (double) linkTimeMillis.sum() / requests));
+        return stats;
+    }
+
+    /**
+     * 计算依赖指纹：只取 package.json 中的依赖声明（项目名、脚本等不影响依赖），加上锁文件内容和平台
+     *
+     * @param projectDir 项目目录
+     * @return 依赖指纹
+     */
+    public String fingerprint(File projectDir) {
+        JSONObject packageJson = JSONUtil.parseObj(FileUtil.readUtf8String(new File(projectDir, PACKAGE_JSON)));
+        StringBuilder source = new StringBuilder(FINGERPRINT_VERSION)
+                .append('|').append(System.getProperty("os.name"))
+                .append('|').append(System.getProperty("os.arch"));
+        for (String field : DEPENDENCY_FIELDS) {
+            Object value = packageJson.get(field);
+            if (value instanceof JSONObject jsonObject) {
+                // 字段顺序不影响指纹
+                source.append('|').append(field).append('=').append(JSONUtil.toJsonStr(new TreeMap<>(jsonObject)));
+            }
+        }
+        File lockFile = new File(projectDir, LOCK_FILE);
+        if (lockFile.isFile()) {
+            source.append("|lock=").append(DigestUtil.sha256Hex(lockFile));
+        }
+        return DigestUtil.sha256Hex(source.toString());
+    }
+
+    /**
+     * 在临时目录中安装依赖，成功后整体改名为缓存条目
+     */
+    private boolean populate(File projectDir, Path entryDir, Consumer<String> outputConsumer) {
+        Path tempDir = entryDir.resolveSibling(entryDir.getFileName() + ".tmp-" + IdUtil.fastSimpleUUID());
+        long start = System.currentTimeMillis();
+        try {
+            Files.createDirectories(tempDir);
+            Files.copy(projectDir.toPath().resolve(PACKAGE_JSON), tempDir.resolve(PACKAGE_JSON));
+            File lockFile = new File(projectDir, LOCK_FILE);
+            if (lockFile.isFile()) {
+                Files.copy(lockFile.toPath(), tempDir.resolve(LOCK_FILE));
+            }
+            String installCommand = lockFile.isFile() ? "ci" : "install";
+            String baseCommand = String.format("%s %s --no-audit --no-fund",
+                    buildProcessRunner.buildCommand("npm"), installCommand);
+            int timeoutSeconds = npmCacheConfig.getInstallTimeoutSeconds();
+            // 优先使用本地 npm 缓存，失败（如无网络且本地缓存不全）时只用本地缓存再试一次
+            boolean success = buildProcessRunner.execute(tempDir.toFile(), baseCommand + " --prefer-offline", timeoutSeconds, outputConsumer)
+                    || buildProcessRunner.execute(tempDir.toFile(), baseCommand + " --offline", timeoutSeconds, outputConsumer);
+            if (!success) {
+                log.error("依赖安装失败：{}", projectDir.getAbsolutePath());
+                return false;
+            }
+            // 没有依赖时 npm 不会创建 node_modules
+            Files.createDirectories(tempDir.resolve(NODE_MODULES));
+            Files.move(tempDir, entryDir, StandardCopyOption.ATOMIC_MOVE);
+            long cost = System.currentTimeMillis() - start;
+            installTimeMillis.add(cost);
+            log.info("依赖缓存条目安装完成：{}，耗时：{}ms", entryDir, cost);
+            return true;
+        } catch (IOException e) {
+            log.error("创建依赖缓存条目失败：{}，错误：{}", entryDir, e.getMessage());
+            return false;
+        } finally {
+            if (Files.exists(tempDir)) {
+                FileUtil.del(tempDir);
+            }
+        }
+    }
+
+    /**
+     * 让项目的 node_modules 指向缓存条目，已指向同一条目时不做任何操作
+     */
+    private void link(Path link, Path target) throws IOException {
+        if (Files.isSymbolicLink(link)) {
+            if (Files.readSymbolicLink(link).equals(target)) {
+                return;
+            }
+            Files.delete(link);
+        } else if (Files.exists(link)) {
+            FileUtil.del(link);
+        }
+        if (npmCacheConfig.getLinkMode() == NpmCacheConfig.LinkMode.SYMLINK) {
+            try {
+                Files.createSymbolicLink(link, target);
+                return;
+            } catch (UnsupportedOperationException | IOException e) {
+                // 部分系统（如未开启开发者模式的 Windows）不允许创建符号链接
+                log.warn("创建符号链接失败，改用硬链接：{}，错误：{}", link, e.getMessage());
+            }
+        }
+        hardLinkTree(target, link);
+    }
+
+    /**
+     * 逐文件硬链接目录树，包内的符号链接（如 .bin）原样复制，跨设备时退化为复制
+     */
+    private void hardLinkTree(Path source, Path dest) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(dest.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path destFile = dest.resolve(source.relativize(file));
+                if (attrs.isSymbolicLink()) {
+                    Files.createSymbolicLink(destFile, Files.readSymbolicLink(file));
+                    return FileVisitResult.CONTINUE;
+                }
+                try {
+                    Files.createLink(destFile, file);
+                } catch (IOException e) {
+                    Files.copy(file, destFile, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
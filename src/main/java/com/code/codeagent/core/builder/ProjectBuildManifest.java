@@ -0,0 +1,163 @@
+package com.code.codeagent.core.builder;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 项目构建清单
+ * 构建成功后在项目目录中记录源码指纹和依赖指纹，再次构建时：
+ * 1. 源码指纹一致且 dist 存在，直接复用上次的构建产物
+ * 2. 依赖指纹一致且 node_modules 存在，跳过 npm install，只执行 npm run build
+ * <p>
+ * 源码指纹覆盖项目中除依赖、构建产物和清单本身以外的所有文件（即 AI 工具写入和修改的文件）。
+ *
+ * @author CodeAgent
+ */
+@Slf4j
+@Component
+public class ProjectBuildManifest {
+
+    public static final String MANIFEST_FILE = ".build-manifest.json";
+
+    /**
+     * 不参与源码指纹的顶层目录和文件
+     */
+    private static final Set<String> EXCLUDED_NAMES = Set.of("node_modules", "dist", MANIFEST_FILE);
+
+    @Resource
+    private NpmDependencyCache npmDependencyCache;
+
+    /**
+     * 计算项目当前的指纹
+     *
+     * @param projectDir 项目目录
+     * @return 指纹，计算失败时返回 null（按全量构建处理）
+     */
+    public Snapshot snapshot(File projectDir) {
+        try {
+            return new Snapshot(sourceFingerprint(projectDir.toPath()), npmDependencyCache.fingerprint(projectDir));
+        } catch (Exception e) {
+            log.warn("计算项目指纹失败，执行全量构建：{}，错误：{}", projectDir.getAbsolutePath(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 上次构建的产物是否与当前源码一致
+     */
+    public boolean isBuildUpToDate(File projectDir, Snapshot snapshot) {
+        JSONObject manifest = readManifest(projectDir);
+        return manifest != null
+                && snapshot.sourceFingerprint().equals(manifest.getStr("sourceFingerprint"))
+                && new File(projectDir, "dist").isDirectory();
+    }
+
+    /**
+     * 上次安装的依赖是否与当前 package.json 一致
+     */
+    public boolean isDependencyUpToDate(File projectDir, Snapshot snapshot) {
+        JSONObject manifest = readManifest(projectDir);
+        return manifest != null
+                && snapshot.dependencyFingerprint().equals(manifest.getStr("dependencyFingerprint"))
+                && new File(projectDir, "node_modules").isDirectory();
+    }
+
+    /**
+     * 构建成功后写入清单（记录构建开始前的指纹，构建期间被修改的文件会在下次构建时生效）
+     */
+    public void save(File projectDir, Snapshot snapshot) {
+        JSONObject manifest = new JSONObject()
+                .set("sourceFingerprint", snapshot.sourceFingerprint())
+                .set("dependencyFingerprint", snapshot.dependencyFingerprint())
+                .set("buildTime", System.currentTimeMillis());
+        FileUtil.writeUtf8String(manifest.toString(), new File(projectDir, MANIFEST_FILE));
+    }
+
+    /**
+     * 清除清单中的构建产物记录，构建失败时 dist 可能不完整
+     * 依赖指纹保留，下次构建仍可跳过 npm install
+     */
+    public void invalidateBuild(File projectDir) {
+        JSONObject manifest = readManifest(projectDir);
+        if (manifest != null && manifest.remove("sourceFingerprint") != null) {
+            FileUtil.writeUtf8String(manifest.toString(), new File(projectDir, MANIFEST_FILE));
+        }
+    }
+
+    private JSONObject readManifest(File projectDir) {
+        File manifestFile = new File(projectDir, MANIFEST_FILE);
+        if (!manifestFile.isFile()) {
+            return null;
+        }
+        try {
+            return JSONUtil.parseObj(FileUtil.readUtf8String(manifestFile));
+        } catch (Exception e) {
+            log.warn("构建清单已损坏，忽略：{}", manifestFile.getAbsolutePath());
+            return null;
+        }
+    }
+
+    /**
+     * 按相对路径排序后依次摘要路径和文件内容，node_modules 等目录不进入遍历
+     */
+    private String sourceFingerprint(Path projectRoot) throws IOException, NoSuchAlgorithmException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(projectRoot, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return isExcluded(projectRoot, dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !isExcluded(projectRoot, file)) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        files.sort(null);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (Path file : files) {
+            String relativePath = projectRoot.relativize(file).toString().replace(File.separatorChar, '/');
+            digest.update(relativePath.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Files.readAllBytes(file));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private boolean isExcluded(Path projectRoot, Path path) {
+        Path relativePath = projectRoot.relativize(path);
+        return relativePath.getNameCount() == 1 && EXCLUDED_NAMES.contains(relativePath.toString());
+    }
+
+    /**
+     * 项目指纹
+     *
+     * @param sourceFingerprint     源码指纹
+     * @param dependencyFingerprint 依赖指纹
+     */
+    public record Snapshot(String sourceFingerprint, String dependencyFingerprint) {
+    }
+}
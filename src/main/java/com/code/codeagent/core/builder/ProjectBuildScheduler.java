@@ -0,0 +1,210 @@
+package com.code.codeagent.core.builder;
+
+import com.code.codeagent.config.ProjectBuildConfig;
+import com.code.codeagent.core.saver.ProjectWriteBuffer;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * 项目构建调度器
+ * 1. 同时执行的构建数不超过配置上限，其余排队
+ * 2. 同一项目目录只保留一个等待中的构建，新请求直接复用（构建时读取的是最新文件）
+ * 3. 同一项目目录的构建不会并发执行
+ * 4. 部署触发的构建优先于对话完成后的预构建
+ *
+ * @author CodeAgent
+ */
+@Slf4j
+@Component
+public class ProjectBuildScheduler {
+
+    @Resource
+    private ProjectBuildConfig projectBuildConfig;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 等待中的构建，按优先级、提交顺序排列
+     */
+    private final TreeSet<BuildTask> queue = new TreeSet<>(
+            Comparator.comparing((BuildTask task) -> task.priority).thenComparingLong(task -> task.sequence));
+
+    /**
+     * 等待中的构建（按项目目录）
+     */
+    private final Map<String, BuildTask> pendingTasks = new HashMap<>();
+
+    /**
+     * 正在构建的项目目录
+     */
+    private final Set<String> runningPaths = new HashSet<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final LongAdder submittedCount = new LongAdder();
+
+    private final LongAdder coalescedCount = new LongAdder();
+
+    private final LongAdder completedCount = new LongAdder();
+
+    private final LongAdder failedCount = new LongAdder();
+
+    private final LongAdder totalWaitMillis = new LongAdder();
+
+    private final LongAdder totalBuildMillis = new LongAdder();
+
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+
+    /**
+     * 提交构建
+     *
+     * @param projectPath 项目目录
+     * @param priority    优先级
+     * @param builder     构建方法，返回是否构建成功
+     * @return 构建结果
+     */
+    public CompletableFuture<Boolean> submit(String projectPath, BuildPriority priority, Predicate<String> builder) {
+        submittedCount.increment();
+        lock.lock();
+        try {
+            BuildTask pendingTask = pendingTasks.get(projectPath);
+            if (pendingTask != null) {
+                coalescedCount.increment();
+                if (priority.compareTo(pendingTask.priority) < 0) {
+                    // 提升优先级需要重新排序
+                    queue.remove(pendingTask);
+                    pendingTask.priority = priority;
+                    queue.add(pendingTask);
+                }
+                log.info("项目已有等待中的构建，合并请求：{}，优先级：{}", projectPath, pendingTask.priority);
+                return pendingTask.future;
+            }
+            BuildTask task = new BuildTask(projectPath, priority, builder, sequence.incrementAndGet());
+            pendingTasks.put(projectPath, task);
+            queue.add(task);
+            dispatch();
+            return task.future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取调度统计信息
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long completed = completedCount.sum() + failedCount.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("maxConcurrency", projectBuildConfig.getEffectiveMaxConcurrency());
+            stats.put("running", runningPaths.size());
+            stats.put("queueDepth", queue.size());
+            stats.put("queueDepthDeploy", queue.stream().filter(task -> task.priority == BuildPriority.DEPLOY).count());
+        } finally {
+            lock.unlock();
+        }
+        stats.put("submittedCount", submittedCount.sum());
+        stats.put("coalescedCount", coalescedCount.sum());
+        stats.put("completedCount", completedCount.sum());
+        stats.put("failedCount", failedCount.sum());
+        stats.put("averageWaitTime", String.format("%.0fms", completed == 0 ? 0 : (double) totalWaitMillis.sum() / completed));
+        stats.put("maxWaitTime", maxWaitMillis.get() + "ms");
+        stats.put("averageBuildTime", String.format("%.0fms", completed == 0 ? 0 : (double) totalBuildMillis.sum() / completed));
+        return stats;
+    }
+
+    /**
+     * 在并发上限内启动可执行的构建（调用方需持有锁）
+     */
+    private void dispatch() {
+        int maxConcurrency = projectBuildConfig.getEffectiveMaxConcurrency();
+        Iterator<BuildTask> iterator = queue.iterator();
+        while (runningPaths.size() < maxConcurrency && iterator.hasNext()) {
+            BuildTask task = iterator.next();
+            if (runningPaths.contains(task.projectPath)) {
+                // 同一项目正在构建，等它结束后再执行
+                continue;
+            }
+            iterator.remove();
+            pendingTasks.remove(task.projectPath);
+            runningPaths.add(task.projectPath);
+            Thread.ofVirtual().name("project-builder-" + task.sequence).start(() -> run(task));
+        }
+    }
+
+    private void run(BuildTask task) {
+        long startTime = System.currentTimeMillis();
+        long waitMillis = startTime - task.submitTime;
+        totalWaitMillis.add(waitMillis);
+        maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+        log.info("开始构建：{}，优先级：{}，排队耗时：{}ms", task.projectPath, task.priority, waitMillis);
+        boolean success = false;
+        try {
+            // 落盘屏障：构建前写缓冲中的文件必须已经写入磁盘
+            List<String> failed = ProjectWriteBuffer.flush(Paths.get(task.projectPath));
+            if (!failed.isEmpty()) {
+                log.error("构建前写缓冲落盘失败：{}，文件：{}", task.projectPath, failed);
+                return;
+            }
+            success = task.builder.test(task.projectPath);
+        } catch (Exception e) {
+            log.error("构建项目时发生异常: {}", e.getMessage(), e);
+        } finally {
+            totalBuildMillis.add(System.currentTimeMillis() - startTime);
+            (success ? completedCount : failedCount).increment();
+            lock.lock();
+            try {
+                runningPaths.remove(task.projectPath);
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+            task.future.complete(success);
+        }
+    }
+
+    /**
+     * 构建任务
+     */
+    private static class BuildTask {
+
+        private final String projectPath;
+
+        private final Predicate<String> builder;
+
+        private final long sequence;
+
+        private final long submitTime = System.currentTimeMillis();
+
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        private BuildPriority priority;
+
+        private BuildTask(String projectPath, BuildPriority priority, Predicate<String> builder, long sequence) {
+            this.projectPath = projectPath;
+            this.priority = priority;
+            this.builder = builder;
+            this.sequence = sequence;
+        }
+    }
+}
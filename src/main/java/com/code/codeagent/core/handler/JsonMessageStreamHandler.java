@@ -6,6 +6,7 @@ import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.code.codeagent.ai.model.message.*;
 import com.code.codeagent.ai.tools.BaseTool;
+import com.code.codeagent.ai.tools.ToolArgumentRenderer;
 import com.code.codeagent.ai.tools.ToolManager;
 import com.code.codeagent.constant.AppConstant;
 import com.code.codeagent.model.entity.User;
@@ -13,18 +14,26 @@ import com.code.codeagent.model.enums.ChatHistoryMessageTypeEnum;
 import com.code.codeagent.service.ChatHistoryService;
 import com.code.codeagent.core.builder.VueProjectBuilder;
 import com.code.codeagent.core.builder.ReactProjectBuilder;
+import com.code.codeagent.core.saver.ProjectWriteBuffer;
 import com.code.codeagent.model.enums.CodeGenTypeEnum;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * JSON 消息流处理器
- * 处理 VUE_PROJECT 和 REACT_PROJECT 类型的复杂流式响应，包含工具调用信息
+ * 消息流处理器
+ * 处理 VUE_PROJECT 和 REACT_PROJECT 类型的复杂流式响应，包含工具调用信息。
+ * 直接消费门面输出的类型化消息，不再经过 JSON 序列化和反序列化
  */
 @Slf4j
 @Component
@@ -41,7 +50,7 @@ public class JsonMessageStreamHandler {
 
     /**
      * 处理 TokenStream（VUE_PROJECT、REACT_PROJECT）
-     * 解析 JSON 消息并重组为完整的响应格式
+     * 按消息类型重组为完整的响应格式
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
@@ -49,27 +58,35 @@ public class JsonMessageStreamHandler {
      * @param loginUser          登录用户
      * @param codeGenType        代码生成类型
      * @param parentMessageId    父消息ID（用户消息ID）
-     * @return 处理后的流
+     * @return 处理后的流（展示内容以 AI 响应消息发送）
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<StreamMessage> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                long appId, User loginUser, CodeGenTypeEnum codeGenType, Long parentMessageId) {
         // 收集数据用于生成后端记忆格式
         StringBuilder chatHistoryStringBuilder = new StringBuilder();
         // 用于跟踪已经见过的工具ID，判断是否是第一次调用
         Set<String> seenToolIds = new HashSet<>();
+        // 正在流式渲染参数的工具调用（按工具ID）
+        Map<String, ToolArgumentRenderer> argumentRenderers = new HashMap<>();
+        String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + "/" + codeGenType.getValue() + "_" + appId;
+        // 本轮写入是否有文件未能落盘
+        AtomicBoolean flushFailed = new AtomicBoolean();
         return originFlux
-                .map(chunk -> {
-                    // 解析每个 JSON 消息块
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, seenToolIds);
-                })
+                .map(message -> handleStreamMessage(message, chatHistoryStringBuilder, seenToolIds, argumentRenderers))
                 .filter(StrUtil::isNotEmpty) // 过滤空字串
+                .<StreamMessage>map(AiResponseMessage::new)
+                // 本轮对话完成前写缓冲落盘，落盘失败时提示用户
+                .concatWith(Mono.fromSupplier(() -> flushWrites(projectPath, chatHistoryStringBuilder, flushFailed)))
                 .doOnComplete(() -> {
                     // 流式响应完成后，添加 AI 消息到对话历史
                     String aiResponse = chatHistoryStringBuilder.toString();
                     chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId(), parentMessageId);
+                    if (flushFailed.get()) {
+                        // 磁盘上的项目不完整，不构建
+                        return;
+                    }
                     // 根据项目类型异步构造项目
-                    String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + "/" + codeGenType.getValue() + "_" + appId;
                     if (codeGenType == CodeGenTypeEnum.VUE_PROJECT) {
                         vueProjectBuilder.buildProjectAsync(projectPath);
                     } else if (codeGenType == CodeGenTypeEnum.REACT_PROJECT) {
@@ -80,57 +97,89 @@ public class JsonMessageStreamHandler {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
                     chatHistoryService.addChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId(), parentMessageId);
+                })
+                // 失败和取消时同样落盘（正常完成时已落盘，这里没有待写入内容）
+                .doFinally(signal -> {
+                    List<String> failed = ProjectWriteBuffer.flush(Paths.get(projectPath));
+                    if (!failed.isEmpty()) {
+                        log.error("对话结束时写缓冲落盘失败：{}，结束信号：{}，文件：{}", projectPath, signal, failed);
+                    }
                 });
     }
 
     /**
-     * 解析并收集 TokenStream 数据
+     * 写缓冲落盘，失败的文件留在覆盖层中，下次落盘（下一轮对话、构建前）重试
+     *
+     * @return 落盘失败时的提示消息（同时记入对话历史），全部成功时返回 null
      */
-    private String handleJsonMessageChunk(String chunk, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
-        // 解析 JSON
-        StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
-        StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
-        switch (typeEnum) {
-            case AI_RESPONSE -> {
-                AiResponseMessage aiMessage = JSONUtil.toBean(chunk, AiResponseMessage.class);
+    private StreamMessage flushWrites(String projectPath, StringBuilder chatHistoryStringBuilder, AtomicBoolean flushFailed) {
+        List<String> failed = ProjectWriteBuffer.flush(Paths.get(projectPath));
+        if (failed.isEmpty()) {
+            return null;
+        }
+        log.error("本轮对话完成前写缓冲落盘失败：{}，文件：{}", projectPath, failed);
+        flushFailed.set(true);
+        String warning = String.format("\n\n**警告**：以下文件未能保存到磁盘，本轮未构建项目，请稍后重试：%s\n\n",
+                String.join("、", failed));
+        chatHistoryStringBuilder.append(warning);
+        return new AiResponseMessage(warning);
+    }
+
+    /**
+     * 收集 TokenStream 数据并转换为输出文本
+     */
+    private String handleStreamMessage(StreamMessage streamMessage, StringBuilder chatHistoryStringBuilder,
+                                       Set<String> seenToolIds, Map<String, ToolArgumentRenderer> argumentRenderers) {
+        return switch (streamMessage) {
+            case AiResponseMessage aiMessage -> {
                 String data = aiMessage.getData();
                 // 直接拼接响应
                 chatHistoryStringBuilder.append(data);
-                return data;
+                yield data;
             }
-            case TOOL_REQUEST -> {
-                ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
+            case ToolRequestMessage toolRequestMessage -> {
                 String toolId = toolRequestMessage.getId();
                 String toolName = toolRequestMessage.getName();
+                String output = "";
                 // 检查是否是第一次看到这个工具 ID
-                if (toolId != null && !seenToolIds.contains(toolId)) {
-                    // 第一次调用这个工具，记录 ID 并完整返回工具信息
-                    seenToolIds.add(toolId);
-                    // 根据工具名称获取工具实例
+                if (toolId != null && seenToolIds.add(toolId)) {
+                    // 第一次调用这个工具，根据工具名称获取工具实例，返回格式化的工具调用信息
                     BaseTool tool = toolManager.getTool(toolName);
-                    // 返回格式化的工具调用信息
-                    return tool.generateToolRequestResponse();
-                } else {
-                    // 不是第一次调用这个工具，直接返回空
-                    return "";
+                    output = tool.generateToolRequestResponse();
+                    ToolArgumentRenderer renderer = tool.createArgumentRenderer();
+                    if (renderer != null) {
+                        argumentRenderers.put(toolId, renderer);
+                    }
+                }
+                // 支持流式渲染的工具，参数片段边接收边展示
+                ToolArgumentRenderer renderer = toolId == null ? null : argumentRenderers.get(toolId);
+                if (renderer != null) {
+                    output += renderer.render(toolRequestMessage.getArguments());
                 }
+                yield output;
             }
-            case TOOL_EXECUTED -> {
-                ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+            case ToolExecutedMessage toolExecutedMessage -> {
+                ToolArgumentRenderer renderer = argumentRenderers.remove(toolExecutedMessage.getId());
+                String historyRecord = renderer == null ? null : renderer.toHistoryRecord(toolExecutedMessage.getResult());
+                if (historyRecord != null) {
+                    // 参数已流式展示，历史记录只保存引用，无需再次解析完整参数
+                    chatHistoryStringBuilder.append(String.format("\n\n%s\n\n", historyRecord));
+                    yield renderer.finish() + "\n\n";
+                }
+                // 工具参数本身是模型输出的 JSON 字符串，仅在此解析一次
                 JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
                 // 根据工具名称获取工具实例
                 String toolName = toolExecutedMessage.getName();
                 BaseTool tool = toolManager.getTool(toolName);
-                String result = tool.generateToolExecutedResult(jsonObject);
+                String result = tool.generateToolExecutedResult(jsonObject, toolExecutedMessage.getResult());
                 // 输出前端和要持久化的内容
                 String output = String.format("\n\n%s\n\n", result);
                 chatHistoryStringBuilder.append(output);
-                return output;
-            }
-            default -> {
-                log.error("不支持的消息类型: {}", typeEnum);
-                return "";
+                // 已展示部分参数时先闭合代码块
+                yield renderer == null ? output : renderer.finish() + output;
             }
-        }
+            // 文件完成消息只在 HTML、MULTI_FILE 的增量解析中产生
+            case FileCompletedMessage fileCompletedMessage -> "";
+        };
     }
-} 
\ No newline at end of file
+}
@@ -1,5 +1,8 @@
 package com.code.codeagent.core.handler;
 
+import com.code.codeagent.ai.model.message.AiResponseMessage;
+import com.code.codeagent.ai.model.message.FileCompletedMessage;
+import com.code.codeagent.ai.model.message.StreamMessage;
 import com.code.codeagent.model.entity.User;
 import com.code.codeagent.model.enums.ChatHistoryMessageTypeEnum;
 import com.code.codeagent.service.ChatHistoryService;
@@ -17,7 +20,7 @@ public class SimpleTextStreamHandler {
 
     /**
      * 处理传统流（HTML, MULTI_FILE）
-     * 直接收集完整的文本响应
+     * 直接收集完整的文本响应，文件完成消息只转发给前端，不写入对话历史
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
@@ -26,15 +29,17 @@ public class SimpleTextStreamHandler {
      * @param parentMessageId    父消息ID（用户消息ID）
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<StreamMessage> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                long appId, User loginUser, Long parentMessageId) {
         StringBuilder aiResponseBuilder = new StringBuilder();
         return originFlux
-                .map(chunk -> {
+                .filter(message -> message instanceof AiResponseMessage || message instanceof FileCompletedMessage)
+                .doOnNext(message -> {
                     // 收集AI响应内容
-                    aiResponseBuilder.append(chunk);
-                    return chunk;
+                    if (message instanceof AiResponseMessage aiResponseMessage) {
+                        aiResponseBuilder.append(aiResponseMessage.getData());
+                    }
                 })
                 .doOnComplete(() -> {
                     // 流式响应完成后，添加AI消息到对话历史
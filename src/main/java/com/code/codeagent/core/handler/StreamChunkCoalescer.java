@@ -0,0 +1,158 @@
+package com.code.codeagent.core.handler;
+
+import cn.hutool.core.util.StrUtil;
+import com.code.codeagent.ai.model.message.AiResponseMessage;
+import com.code.codeagent.ai.model.message.StreamMessage;
+import com.code.codeagent.config.StreamCoalesceConfig;
+import com.code.codeagent.model.enums.CodeGenTypeEnum;
+import com.code.codeagent.utils.Utf8Utils;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 流片段合并器
+ * 在时间窗口内合并模型输出的小片段，按字节预算切分后作为一个 SSE 事件发送（其他类型的消息保持顺序原样发送）。
+ * 使用公平背压的 bufferTimeout：下游（客户端）消费慢时按需求量发送，不会在内存中无限堆积事件。
+ *
+ * @author CodeAgent
+ */
+@Slf4j
+@Component
+public class StreamChunkCoalescer {
+
+    @Resource
+    private StreamCoalesceConfig streamCoalesceConfig;
+
+    private final Map<CodeGenTypeEnum, Metrics> metricsMap = new EnumMap<>(CodeGenTypeEnum.class);
+
+    public StreamChunkCoalescer() {
+        for (CodeGenTypeEnum type : CodeGenTypeEnum.values()) {
+            metricsMap.put(type, new Metrics());
+        }
+    }
+
+    /**
+     * 合并流片段
+     *
+     * @param originFlux  原始流
+     * @param codeGenType 代码生成类型
+     * @return 合并后的流
+     */
+    public Flux<StreamMessage> coalesce(Flux<StreamMessage> originFlux, CodeGenTypeEnum codeGenType) {
+        StreamCoalesceConfig.Rule rule = streamCoalesceConfig.getRule(codeGenType.getValue());
+        if (!streamCoalesceConfig.isEnabled() || rule.getWindowMs() <= 0) {
+            return originFlux;
+        }
+        Metrics metrics = metricsMap.get(codeGenType);
+        return Flux.defer(() -> {
+            long startTime = System.nanoTime();
+            return originFlux
+                    .filter(message -> !(message instanceof AiResponseMessage aiResponseMessage)
+                            || StrUtil.isNotEmpty(aiResponseMessage.getData()))
+                    .bufferTimeout(Math.max(1, rule.getMaxChunks()), Duration.ofMillis(rule.getWindowMs()), true)
+                    .concatMapIterable(batch -> {
+                        List<StreamMessage> events = splitByBytes(batch, rule.getMaxBytes());
+                        metrics.record(batch.size(), events);
+                        return events;
+                    })
+                    .doFinally(signal -> metrics.streamDurationNanos.add(System.nanoTime() - startTime));
+        });
+    }
+
+    /**
+     * 获取合并统计信息
+     *
+     * @return 按代码生成类型分组的统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", streamCoalesceConfig.isEnabled());
+        metricsMap.forEach((type, metrics) -> stats.put(type.getValue(), metrics.snapshot()));
+        return stats;
+    }
+
+    /**
+     * 将一批片段中相邻的 AI 响应拼接，单个事件不超过字节预算（单个片段本身超出预算时原样发送，不拆分字符）
+     */
+    private List<StreamMessage> splitByBytes(List<StreamMessage> batch, int maxBytes) {
+        if (batch.size() == 1) {
+            return batch;
+        }
+        List<StreamMessage> events = new ArrayList<>(1);
+        StringBuilder current = new StringBuilder();
+        long currentBytes = 0;
+        for (StreamMessage message : batch) {
+            if (!(message instanceof AiResponseMessage aiResponseMessage)) {
+                if (!current.isEmpty()) {
+                    events.add(new AiResponseMessage(current.toString()));
+                    current.setLength(0);
+                    currentBytes = 0;
+                }
+                events.add(message);
+                continue;
+            }
+            String chunk = aiResponseMessage.getData();
+            long chunkBytes = Utf8Utils.encodedLength(chunk);
+            if (!current.isEmpty() && currentBytes + chunkBytes > maxBytes) {
+                events.add(new AiResponseMessage(current.toString()));
+                current.setLength(0);
+                currentBytes = 0;
+            }
+            current.append(chunk);
+            currentBytes += chunkBytes;
+        }
+        if (!current.isEmpty()) {
+            events.add(new AiResponseMessage(current.toString()));
+        }
+        return events;
+    }
+
+    /**
+     * 单个代码生成类型的合并统计
+     */
+    private static class Metrics {
+
+        private final LongAdder chunkCount = new LongAdder();
+
+        private final LongAdder eventCount = new LongAdder();
+
+        private final LongAdder byteCount = new LongAdder();
+
+        private final LongAdder streamDurationNanos = new LongAdder();
+
+        private void record(int chunks, List<StreamMessage> events) {
+            chunkCount.add(chunks);
+            eventCount.add(events.size());
+            for (StreamMessage event : events) {
+                if (event instanceof AiResponseMessage aiResponseMessage) {
+                    byteCount.add(Utf8Utils.encodedLength(aiResponseMessage.getData()));
+                }
+            }
+        }
+
+        private Map<String, Object> snapshot() {
+            long chunks = chunkCount.sum();
+            long events = eventCount.sum();
+            long bytes = byteCount.sum();
+            double seconds = streamDurationNanos.sum() / 1_000_000_000.0;
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("chunkCount", chunks);
+            snapshot.put("eventCount", events);
+            snapshot.put("byteCount", bytes);
+            snapshot.put("chunksPerEvent", events == 0 ? 0 : (double) chunks / events);
+            snapshot.put("bytesPerEvent", events == 0 ? 0 : (double) bytes / events);
+            snapshot.put("eventsPerSecond", seconds == 0 ? 0 : events / seconds);
+            return snapshot;
+        }
+    }
+}
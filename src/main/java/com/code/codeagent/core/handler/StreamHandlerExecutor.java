@@ -1,5 +1,6 @@
 package com.code.codeagent.core.handler;
 
+import com.code.codeagent.ai.model.message.StreamMessage;
 import com.code.codeagent.model.entity.User;
 import com.code.codeagent.model.enums.CodeGenTypeEnum;
 import com.code.codeagent.service.ChatHistoryService;
@@ -11,8 +12,8 @@ import reactor.core.publisher.Flux;
 /**
  * 流处理器执行器
  * 根据代码生成类型创建合适的流处理器：
- * 1. 传统的 Flux<String> 流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
- * 2. TokenStream 格式的复杂流（VUE_PROJECT、REACT_PROJECT） -> JsonMessageStreamHandler
+ * 1. AI 响应消息和文件完成消息组成的文本流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
+ * 2. TokenStream 转换的类型化消息流（VUE_PROJECT、REACT_PROJECT） -> JsonMessageStreamHandler
  */
 @Slf4j
 @Component
@@ -21,6 +22,9 @@ public class StreamHandlerExecutor {
     @Resource
     private JsonMessageStreamHandler jsonMessageStreamHandler;
 
+    @Resource
+    private StreamChunkCoalescer streamChunkCoalescer;
+
     /**
      * 创建流处理器并处理聊天历史记录
      *
@@ -30,16 +34,18 @@ public class StreamHandlerExecutor {
      * @param loginUser          登录用户
      * @param codeGenType        代码生成类型
      * @param parentMessageId    父消息ID（用户消息ID，AI消息将关联到此ID）
-     * @return 处理后的流
+     * @return 处理后的流（AI 响应已按时间窗口合并为较少的事件）
      */
-    public Flux<String> doExecute(Flux<String> originFlux,
+    public Flux<StreamMessage> doExecute(Flux<StreamMessage> originFlux,
                                   ChatHistoryService chatHistoryService,
                                   long appId, User loginUser, CodeGenTypeEnum codeGenType, Long parentMessageId) {
-        return switch (codeGenType) {
+        Flux<StreamMessage> handledFlux = switch (codeGenType) {
             case VUE_PROJECT, REACT_PROJECT -> // 使用注入的组件实例
                     jsonMessageStreamHandler.handle(originFlux, chatHistoryService, appId, loginUser, codeGenType, parentMessageId);
             case HTML, MULTI_FILE -> // 简单文本处理器不需要依赖注入
                     new SimpleTextStreamHandler().handle(originFlux, chatHistoryService, appId, loginUser, parentMessageId);
         };
+        // 历史记录仍按原始片段收集，仅合并发送给客户端的事件
+        return streamChunkCoalescer.coalesce(handledFlux, codeGenType);
     }
 }
@@ -0,0 +1,39 @@
+package com.code.codeagent.core.parser;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 流式解析过程中单个文件写入完成的事件
+ *
+ * @author code
+ */
+@Data
+@AllArgsConstructor
+public class CodeFileCompletedEvent {
+
+    /**
+     * 完成顺序（从 1 开始）
+     */
+    private int index;
+
+    /**
+     * 文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件绝对路径
+     */
+    private String filePath;
+
+    /**
+     * 写入的字符数
+     */
+    private long charCount;
+
+    /**
+     * 代码块结束标记在当前输入片段中的结束位置（用于在流中紧跟代码块插入通知）
+     */
+    private int chunkOffset;
+}
@@ -0,0 +1,323 @@
+package com.code.codeagent.core.parser;
+
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.StrUtil;
+import com.code.codeagent.core.saver.CodeFileSaverExecutor;
+import com.code.codeagent.core.saver.CodeFileSaverTemplate;
+import com.code.codeagent.model.enums.CodeGenTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 增量代码解析器（HTML、MULTI_FILE 流式生成使用）
+ * 逐块接收 AI 输出，通过状态机识别 ```html / ```css / ```js 代码块，
+ * 代码块内容边接收边通过 {@link CodeFileSaverTemplate} 写入磁盘，无需拼接完整响应。
+ * <p>
+ * 非线程安全，一次生成对应一个实例，由同一个流顺序调用。
+ *
+ * @author code
+ */
+@Slf4j
+public class StreamingCodeParser {
+
+    /**
+     * 代码块语言标识的最大长度，超过则认为不是代码块开头
+     */
+    private static final int MAX_FENCE_INFO_LENGTH = 32;
+
+    private enum State {
+        /**
+         * 代码块之外的普通文本
+         */
+        TEXT,
+        /**
+         * 已读到 ```，正在读取语言标识
+         */
+        FENCE_INFO,
+        /**
+         * 代码块内部
+         */
+        CODE
+    }
+
+    private final CodeFileSaverTemplate<?> saver;
+
+    private final String dirPath;
+
+    /**
+     * 已完成写入的文件名，同一文件只取第一个代码块（与正则解析器行为一致）
+     */
+    private final Set<String> completedFileNames = new HashSet<>();
+
+    private final StringBuilder fenceInfo = new StringBuilder();
+
+    /**
+     * 兜底内容缓存：仅在兜底文件的代码块出现之前保留，用于完全没有代码块的输出
+     */
+    private StringBuilder fallbackBuffer;
+
+    private State state = State.TEXT;
+
+    /**
+     * 连续反引号计数
+     */
+    private int backtickCount;
+
+    private FileSection currentSection;
+
+    private int completedCount;
+
+    public StreamingCodeParser(CodeGenTypeEnum codeGenType, Long appId) {
+        this.saver = CodeFileSaverExecutor.getSaver(codeGenType);
+        this.dirPath = saver.prepareSaveDir(appId);
+        if (saver.getFallbackFileName() != null) {
+            this.fallbackBuffer = new StringBuilder();
+        }
+    }
+
+    /**
+     * 接收一段流式输出
+     *
+     * @param chunk 输出片段
+     * @return 本片段中完成写入的文件事件
+     */
+    public List<CodeFileCompletedEvent> feed(String chunk) {
+        if (StrUtil.isEmpty(chunk)) {
+            return List.of();
+        }
+        if (fallbackBuffer != null) {
+            fallbackBuffer.append(chunk);
+        }
+        List<CodeFileCompletedEvent> events = null;
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            switch (state) {
+                case TEXT -> consumeText(c);
+                case FENCE_INFO -> consumeFenceInfo(c);
+                case CODE -> {
+                    CodeFileCompletedEvent event = consumeCode(c);
+                    if (event != null) {
+                        event.setChunkOffset(i + 1);
+                        if (events == null) {
+                            events = new ArrayList<>();
+                        }
+                        events.add(event);
+                    }
+                }
+            }
+        }
+        return events == null ? List.of() : events;
+    }
+
+    /**
+     * 流结束：关闭未闭合的代码块，必要时写入兜底文件
+     *
+     * @return 收尾阶段完成写入的文件事件
+     */
+    public List<CodeFileCompletedEvent> finish() {
+        List<CodeFileCompletedEvent> events = new ArrayList<>();
+        if (state == State.CODE && currentSection != null) {
+            log.warn("代码块未闭合，按已接收内容保存: {}", currentSection.fileName);
+            flushBackticks();
+            CodeFileCompletedEvent event = closeSection();
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        state = State.TEXT;
+        String fallbackFileName = saver.getFallbackFileName();
+        if (fallbackBuffer != null && !completedFileNames.contains(fallbackFileName)) {
+            String content = fallbackBuffer.toString().trim();
+            if (StrUtil.isNotBlank(content)) {
+                saver.writeToFile(dirPath, fallbackFileName, content);
+                completedFileNames.add(fallbackFileName);
+                File file = new File(dirPath, fallbackFileName);
+                events.add(new CodeFileCompletedEvent(++completedCount, fallbackFileName, file.getAbsolutePath(), content.length(), 0));
+            }
+        }
+        fallbackBuffer = null;
+        String requiredFileName = saver.getRequiredFileName();
+        if (requiredFileName != null && !completedFileNames.contains(requiredFileName)) {
+            log.error("保存失败: 未生成 {}，目录: {}", requiredFileName, dirPath);
+        }
+        return events;
+    }
+
+    /**
+     * 流异常中止：丢弃正在写入的临时文件，已完成的文件保留
+     */
+    public void abort() {
+        if (currentSection != null) {
+            discardSection();
+        }
+        fallbackBuffer = null;
+    }
+
+    /**
+     * 获取保存目录
+     *
+     * @return 保存目录
+     */
+    public File getSaveDir() {
+        return new File(dirPath);
+    }
+
+    private void consumeText(char c) {
+        if (c != '`') {
+            backtickCount = 0;
+            return;
+        }
+        if (++backtickCount == 3) {
+            backtickCount = 0;
+            fenceInfo.setLength(0);
+            state = State.FENCE_INFO;
+        }
+    }
+
+    private void consumeFenceInfo(char c) {
+        if (c == '\n') {
+            openSection(fenceInfo.toString().trim().toLowerCase());
+            state = State.CODE;
+            return;
+        }
+        if (c == '`' || fenceInfo.length() >= MAX_FENCE_INFO_LENGTH) {
+            // 行内的 ``` 或过长的标识，不是代码块开头
+            state = State.TEXT;
+            backtickCount = c == '`' ? 1 : 0;
+            return;
+        }
+        fenceInfo.append(c);
+    }
+
+    private CodeFileCompletedEvent consumeCode(char c) {
+        if (c == '`') {
+            if (++backtickCount == 3) {
+                backtickCount = 0;
+                state = State.TEXT;
+                return closeSection();
+            }
+            return null;
+        }
+        flushBackticks();
+        writeToSection(c);
+        return null;
+    }
+
+    /**
+     * 不足 3 个的反引号属于代码内容，补写回去
+     */
+    private void flushBackticks() {
+        for (int i = 0; i < backtickCount; i++) {
+            writeToSection('`');
+        }
+        backtickCount = 0;
+    }
+
+    private void openSection(String language) {
+        String fileName = language.isEmpty() ? null : saver.resolveFileName(language);
+        if (fileName == null || completedFileNames.contains(fileName)) {
+            // 不需要保存的代码块，只跟踪边界
+            currentSection = null;
+            return;
+        }
+        try {
+            currentSection = new FileSection(fileName, saver.openStreamingWriter(dirPath, fileName));
+            if (fileName.equals(saver.getFallbackFileName())) {
+                fallbackBuffer = null;
+            }
+        } catch (IOException e) {
+            log.error("打开文件失败: {}, 错误: {}", fileName, e.getMessage(), e);
+            currentSection = null;
+        }
+    }
+
+    private void writeToSection(char c) {
+        if (currentSection == null) {
+            return;
+        }
+        try {
+            currentSection.write(c);
+        } catch (IOException e) {
+            log.error("写入文件失败: {}, 错误: {}", currentSection.fileName, e.getMessage(), e);
+            discardSection();
+        }
+    }
+
+    private CodeFileCompletedEvent closeSection() {
+        FileSection section = currentSection;
+        currentSection = null;
+        if (section == null) {
+            return null;
+        }
+        try {
+            section.writer.close();
+            if (!section.started) {
+                // 空代码块不覆盖已有文件
+                saver.discardStreamingFile(dirPath, section.fileName);
+                return null;
+            }
+            File file = saver.commitStreamingFile(dirPath, section.fileName);
+            completedFileNames.add(section.fileName);
+            log.info("文件写入完成: {}", file.getAbsolutePath());
+            return new CodeFileCompletedEvent(++completedCount, section.fileName, file.getAbsolutePath(), section.charCount, 0);
+        } catch (IOException e) {
+            log.error("保存文件失败: {}, 错误: {}", section.fileName, e.getMessage(), e);
+            saver.discardStreamingFile(dirPath, section.fileName);
+            return null;
+        }
+    }
+
+    private void discardSection() {
+        IoUtil.close(currentSection.writer);
+        saver.discardStreamingFile(dirPath, currentSection.fileName);
+        currentSection = null;
+    }
+
+    /**
+     * 正在写入的文件片段，写入时去除首尾空白（与正则解析器的 trim 行为一致）
+     */
+    private static class FileSection {
+
+        private final String fileName;
+
+        private final Writer writer;
+
+        /**
+         * 尚未确定是否位于末尾的空白字符
+         */
+        private final StringBuilder pendingWhitespace = new StringBuilder();
+
+        private boolean started;
+
+        private long charCount;
+
+        private FileSection(String fileName, Writer writer) {
+            this.fileName = fileName;
+            this.writer = writer;
+        }
+
+        private void write(char c) throws IOException {
+            if (Character.isWhitespace(c)) {
+                if (started) {
+                    pendingWhitespace.append(c);
+                }
+                return;
+            }
+            if (!pendingWhitespace.isEmpty()) {
+                writer.append(pendingWhitespace);
+                charCount += pendingWhitespace.length();
+                pendingWhitespace.setLength(0);
+            }
+            writer.write(c);
+            charCount++;
+            started = true;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.code.codeagent.core.saver;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.code.codeagent.constant.AppConstant;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 代码内容寻址存储
+ * 1. 生成的文件按内容 SHA-256 存为 blob，相同内容（脚手架、复制或重试的应用）在磁盘上只保存一份
+ * 2. 应用目录中的文件是指向 blob 的硬链接，构建、下载、部署仍然直接读取应用目录
+ * 3. 每个应用目录有一份清单（相对路径 -> 摘要），目录中缺失的文件可按清单用硬链接重新生成
+ * <p>
+ * blob 被多个应用共享，任何写入都必须通过本类完成（新建 blob，再用临时链接原子替换目标文件），不能原地修改。
+ * 目录结构：code_blob/objects/ab/abcdef...，code_blob/manifests/&lt;应用目录名&gt;.json
+ *
+ * @author CodeAgent
+ */
+@Slf4j
+public final class CodeBlobStore {
+
+    private static final String OBJECTS_DIR = "objects";
+
+    private static final String MANIFESTS_DIR = "manifests";
+
+    private static final String TEMP_DIR = "tmp";
+
+    private static final String MANIFEST_SUFFIX = ".json";
+
+    /**
+     * 两次清理未引用 blob 的最小间隔（毫秒）
+     */
+    private static final long GC_INTERVAL_MS = 60 * 60 * 1000L;
+
+    /**
+     * 同一应用目录的清单更新串行执行
+     */
+    private static final Map<String, ReentrantLock> MANIFEST_LOCKS = new ConcurrentHashMap<>();
+
+    private static final LongAdder LOGICAL_BYTES = new LongAdder();
+
+    private static final LongAdder PHYSICAL_BYTES = new LongAdder();
+
+    private static final LongAdder WRITE_COUNT = new LongAdder();
+
+    private static final LongAdder DEDUP_COUNT = new LongAdder();
+
+    private static final LongAdder FALLBACK_COUNT = new LongAdder();
+
+    private static final AtomicLong LAST_GC_TIME = new AtomicLong(System.currentTimeMillis());
+
+    private static volatile Path rootDir = Paths.get(AppConstant.CODE_BLOB_ROOT_DIR).toAbsolutePath().normalize();
+
+    private CodeBlobStore() {
+    }
+
+    /**
+     * 写入文件：内容存为 blob 后硬链接到应用目录
+     *
+     * @param appDir       应用目录
+     * @param relativePath 相对路径
+     * @param content      文件内容
+     * @throws IOException 写入失败
+     */
+    public static void write(Path appDir, String relativePath, String content) throws IOException {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        Path target = resolve(appDir, relativePath);
+        String hash = DigestUtil.sha256Hex(data);
+        Path blob = blobPath(hash);
+        LOGICAL_BYTES.add(data.length);
+        WRITE_COUNT.increment();
+        if (Files.exists(blob)) {
+            DEDUP_COUNT.increment();
+        } else {
+            Path tempFile = tempPath();
+            try {
+                Files.write(tempFile, data, StandardOpenOption.CREATE_NEW);
+                PHYSICAL_BYTES.add(data.length);
+                Files.createDirectories(blob.getParent());
+                // 创建链接不会覆盖已存在的 blob，并发写入相同内容时只保留一份
+                Files.createLink(blob, tempFile);
+            } catch (FileAlreadyExistsException e) {
+                DEDUP_COUNT.increment();
+            } catch (IOException | UnsupportedOperationException e) {
+                writeWithoutLink(target, tempFile, e);
+                return;
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+        try {
+            linkInto(target, blob);
+        } catch (NoSuchFileException e) {
+            // blob 恰好被清理，重新写入一次
+            log.warn("代码 blob 已被清理，重新写入：{}", hash);
+            write(appDir, relativePath, content);
+            return;
+        }
+        updateManifest(appDir, relativePath, hash);
+        maybeCollectGarbage();
+    }
+
+    /**
+     * 收录已写入应用目录的文件（如流式写入完成后改名的文件）：内容已有 blob 时替换为硬链接，否则文件本身成为 blob
+     *
+     * @param appDir       应用目录
+     * @param relativePath 相对路径
+     * @throws IOException 收录失败
+     */
+    public static void ingest(Path appDir, String relativePath) throws IOException {
+        Path target = resolve(appDir, relativePath);
+        long size = Files.size(target);
+        String hash = DigestUtil.sha256Hex(target.toFile());
+        Path blob = blobPath(hash);
+        LOGICAL_BYTES.add(size);
+        PHYSICAL_BYTES.add(size);
+        WRITE_COUNT.increment();
+        try {
+            Files.createDirectories(blob.getParent());
+            Files.createLink(blob, target);
+        } catch (FileAlreadyExistsException e) {
+            DEDUP_COUNT.increment();
+            linkInto(target, blob);
+        } catch (UnsupportedOperationException | IOException e) {
+            // 文件已在应用目录中，只是没有去重
+            FALLBACK_COUNT.increment();
+            log.warn("收录代码文件失败，保留独立副本：{}，错误：{}", target, e.getMessage());
+            return;
+        }
+        updateManifest(appDir, relativePath, hash);
+        maybeCollectGarbage();
+    }
+
+    /**
+     * 文件删除后同步清单
+     *
+     * @param appDir       应用目录
+     * @param relativePath 相对路径
+     */
+    public static void remove(Path appDir, String relativePath) throws IOException {
+        updateManifest(appDir, relativePath, null);
+    }
+
+    /**
+     * 删除应用时删除应用目录和清单，应用引用的 blob 在下次清理时回收（仍被其他应用引用的除外）
+     *
+     * @param appDir 应用目录
+     * @throws IOException 删除清单失败
+     */
+    public static void deleteApp(Path appDir) throws IOException {
+        String key = appDir.getFileName().toString();
+        ReentrantLock lock = MANIFEST_LOCKS.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            FileUtil.del(appDir);
+            Files.deleteIfExists(manifestPath(appDir));
+        } finally {
+            lock.unlock();
+        }
+        log.info("已删除应用目录和代码清单：{}", key);
+    }
+
+    /**
+     * 按清单补齐应用目录中缺失的文件（硬链接，不复制内容）
+     *
+     * @param appDir 应用目录
+     * @return 补齐的文件数
+     */
+    public static int materialize(Path appDir) throws IOException {
+        Map<String, String> manifest = readManifest(appDir);
+        if (manifest.isEmpty()) {
+            return 0;
+        }
+        int restored = 0;
+        for (Map.Entry<String, String> entry : manifest.entrySet()) {
+            Path target = resolve(appDir, entry.getKey());
+            Path blob = blobPath(entry.getValue());
+            if (Files.notExists(target) && Files.isRegularFile(blob)) {
+                linkInto(target, blob);
+                restored++;
+            }
+        }
+        if (restored > 0) {
+            log.info("已按清单补齐应用目录：{}，文件数：{}", appDir.getFileName(), restored);
+        }
+        return restored;
+    }
+
+    /**
+     * 存储统计：应用引用的逻辑大小、实际占用、节省的空间和写放大（实际写入字节 / 请求写入字节）
+     *
+     * @return 统计信息
+     */
+    public static Map<String, Object> getStats() {
+        long referencedFiles = 0;
+        long logicalSize = 0;
+        int manifestCount = 0;
+        Map<String, Long> blobSizes = new HashMap<>();
+        try (Stream<Path> stream = listManifests()) {
+            for (Path manifestFile : (Iterable<Path>) stream::iterator) {
+                manifestCount++;
+                for (Object hash : JSONUtil.parseObj(FileUtil.readUtf8String(manifestFile.toFile())).values()) {
+                    long size = blobSizes.computeIfAbsent(hash.toString(), CodeBlobStore::blobSize);
+                    referencedFiles++;
+                    logicalSize += size;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("统计代码存储失败：{}", e.getMessage());
+        }
+        long[] stored = new long[2];
+        walkBlobs((blob, attrs) -> {
+            stored[0]++;
+            stored[1] += attrs.size();
+        });
+        long logicalBytes = LOGICAL_BYTES.sum();
+        long physicalBytes = PHYSICAL_BYTES.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("manifestCount", manifestCount);
+        stats.put("referencedFiles", referencedFiles);
+        stats.put("blobCount", stored[0]);
+        stats.put("logicalSize", logicalSize);
+        stats.put("storedSize", stored[1]);
+        stats.put("savedSize", Math.max(0, logicalSize - stored[1]));
+        stats.put("writeCount", WRITE_COUNT.sum());
+        stats.put("dedupCount", DEDUP_COUNT.sum());
+        stats.put("fallbackCount", FALLBACK_COUNT.sum());
+        stats.put("logicalWriteBytes", logicalBytes);
+        stats.put("physicalWriteBytes", physicalBytes);
+        stats.put("writeAmplification", logicalBytes == 0 ? "0.00"
+                : String.format("%.2f", (double) physicalBytes / logicalBytes));
+        return stats;
+    }
+
+    /**
+     * 清理没有被任何清单引用、也没有被应用目录链接的 blob
+     */
+    public static void collectGarbage() {
+        Set<String> referenced = new HashSet<>();
+        try (Stream<Path> stream = listManifests()) {
+            stream.forEach(manifestFile -> JSONUtil.parseObj(FileUtil.readUtf8String(manifestFile.toFile()))
+                    .values().forEach(hash -> referenced.add(hash.toString())));
+        } catch (Exception e) {
+            log.warn("读取代码清单失败，跳过清理：{}", e.getMessage());
+            return;
+        }
+        long[] removed = new long[1];
+        walkBlobs((blob, attrs) -> {
+            if (!referenced.contains(blob.getFileName().toString()) && linkCount(blob) <= 1) {
+                FileUtil.del(blob);
+                removed[0]++;
+            }
+        });
+        if (removed[0] > 0) {
+            log.info("已清理未引用的代码 blob：{} 个", removed[0]);
+        }
+    }
+
+    private static void maybeCollectGarbage() {
+        long lastGcTime = LAST_GC_TIME.get();
+        long now = System.currentTimeMillis();
+        if (now - lastGcTime >= GC_INTERVAL_MS && LAST_GC_TIME.compareAndSet(lastGcTime, now)) {
+            Thread.ofVirtual().name("code-blob-gc").start(CodeBlobStore::collectGarbage);
+        }
+    }
+
+    private static Path rootDir() {
+        return rootDir;
+    }
+
+    /**
+     * 更换存储根目录（测试使用，其他包的测试也需要重定向到临时目录）
+     */
+    public static void useRootDir(Path dir) {
+        rootDir = dir.toAbsolutePath().normalize();
+    }
+
+    private static Path blobPath(String hash) {
+        return rootDir().resolve(OBJECTS_DIR).resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static Path tempPath() throws IOException {
+        Path tempDir = rootDir().resolve(TEMP_DIR);
+        Files.createDirectories(tempDir);
+        return tempDir.resolve(IdUtil.fastSimpleUUID());
+    }
+
+    private static Path manifestPath(Path appDir) {
+        return rootDir().resolve(MANIFESTS_DIR).resolve(appDir.getFileName() + MANIFEST_SUFFIX);
+    }
+
+    private static Path resolve(Path appDir, String relativePath) {
+        return appDir.resolve(relativePath).normalize();
+    }
+
+    /**
+     * 清单中的键统一为 / 分隔的相对路径
+     */
+    private static String manifestKey(Path appDir, String relativePath) {
+        return appDir.normalize().relativize(resolve(appDir, relativePath)).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * 先创建临时链接，再改名覆盖目标文件，目标文件原来的 blob 不受影响
+     */
+    private static void linkInto(Path target, Path blob) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tempLink = target.resolveSibling("." + target.getFileName() + ".tmp-" + IdUtil.fastSimpleUUID());
+        try {
+            Files.createLink(tempLink, blob);
+            Files.move(tempLink, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (UnsupportedOperationException e) {
+            Files.copy(blob, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempLink);
+        }
+    }
+
+    /**
+     * 不支持硬链接（如跨文件系统）时退化为普通写入，同样先写临时文件再改名
+     */
+    private static void writeWithoutLink(Path target, Path tempFile, Exception cause) throws IOException {
+        FALLBACK_COUNT.increment();
+        log.warn("代码 blob 链接失败，直接写入文件：{}，错误：{}", target, cause.getMessage());
+        Files.createDirectories(target.getParent());
+        if (Files.notExists(tempFile)) {
+            throw cause instanceof IOException ioException ? ioException : new IOException(cause);
+        }
+        Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Map<String, String> readManifest(Path appDir) throws IOException {
+        Path manifestFile = manifestPath(appDir);
+        Map<String, String> manifest = new LinkedHashMap<>();
+        if (Files.isRegularFile(manifestFile)) {
+            JSONObject json = JSONUtil.parseObj(Files.readString(manifestFile));
+            json.forEach((key, value) -> manifest.put(key, value.toString()));
+        }
+        return manifest;
+    }
+
+    /**
+     * 更新清单中的一项，hash 为 null 时删除该项；清单写入临时文件后整体改名
+     */
+    private static void updateManifest(Path appDir, String relativePath, String hash) throws IOException {
+        String key = appDir.getFileName().toString();
+        ReentrantLock lock = MANIFEST_LOCKS.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            Map<String, String> manifest = readManifest(appDir);
+            String entryKey = manifestKey(appDir, relativePath);
+            boolean changed = hash == null ? manifest.remove(entryKey) != null : !hash.equals(manifest.put(entryKey, hash));
+            if (!changed) {
+                return;
+            }
+            byte[] data = JSONUtil.toJsonStr(manifest).getBytes(StandardCharsets.UTF_8);
+            Path manifestFile = manifestPath(appDir);
+            Files.createDirectories(manifestFile.getParent());
+            Path tempFile = tempPath();
+            try {
+                Files.write(tempFile, data, StandardOpenOption.CREATE_NEW);
+                PHYSICAL_BYTES.add(data.length);
+                Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Stream<Path> listManifests() throws IOException {
+        Path manifestsDir = rootDir().resolve(MANIFESTS_DIR);
+        if (!Files.isDirectory(manifestsDir)) {
+            return Stream.empty();
+        }
+        return Files.list(manifestsDir).filter(path -> path.getFileName().toString().endsWith(MANIFEST_SUFFIX));
+    }
+
+    private static void walkBlobs(BlobVisitor visitor) {
+        Path objectsDir = rootDir().resolve(OBJECTS_DIR);
+        if (!Files.isDirectory(objectsDir)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(objectsDir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    visitor.visit(file, attrs);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("遍历代码 blob 失败：{}", e.getMessage());
+        }
+    }
+
+    private static long blobSize(String hash) {
+        try {
+            return Files.size(blobPath(hash));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 硬链接数，文件系统不支持时按仍被引用处理
+     */
+    private static int linkCount(Path blob) {
+        try {
+            return (Integer) Files.getAttribute(blob, "unix:nlink");
+        } catch (Exception e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    @FunctionalInterface
+    private interface BlobVisitor {
+
+        void visit(Path blob, BasicFileAttributes attrs);
+    }
+}
@@ -20,6 +20,22 @@ public class CodeFileSaverExecutor {
 
     private static final MultiFileCodeFileSaverTemplate multiFileCodeFileSaver = new MultiFileCodeFileSaverTemplate();
 
+    /**
+     * 获取对应类型的保存器（流式增量保存使用）
+     *
+     * @param codeGenType 代码生成类型
+     * @return 保存器
+     */
+    public static CodeFileSaverTemplate<?> getSaver(CodeGenTypeEnum codeGenType) {
+        return switch (codeGenType) {
+            case HTML -> htmlCodeFileSaver;
+            case MULTI_FILE -> multiFileCodeFileSaver;
+            case VUE_PROJECT, REACT_PROJECT -> throw new BusinessException(ErrorCode.SYSTEM_ERROR,
+                    "项目类型代码通过工具直接写入，不应调用此保存器: " + codeGenType);
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
+
     /**
      * 执行代码保存
      *
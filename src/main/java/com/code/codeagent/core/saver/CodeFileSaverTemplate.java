@@ -7,8 +7,13 @@ import com.code.codeagent.exception.BusinessException;
 import com.code.codeagent.exception.ErrorCode;
 import com.code.codeagent.model.enums.CodeGenTypeEnum;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 /**
  * 抽象代码文件保存器 - 模板方法模式
@@ -22,6 +27,11 @@ public abstract class CodeFileSaverTemplate<T> {
      */
     private static final String FILE_SAVE_ROOT_DIR = AppConstant.CODE_OUTPUT_ROOT_DIR;
 
+    /**
+     * 流式写入时使用的临时文件后缀
+     */
+    private static final String STREAMING_TEMP_SUFFIX = ".part";
+
     /**
      * 模板方法：保存代码的标准流程
      *
@@ -41,7 +51,7 @@ public abstract class CodeFileSaverTemplate<T> {
     }
 
     /**
-     * 写入单个文件的工具方法
+     * 写入单个文件的工具方法（内容存入内容寻址存储，相同内容只保存一份）
      *
      * @param dirPath  目录路径
      * @param filename 文件名
@@ -49,11 +59,91 @@ public abstract class CodeFileSaverTemplate<T> {
      */
     public final void writeToFile(String dirPath, String filename, String content) {
         if (StrUtil.isNotBlank(content)) {
-            String filePath = dirPath + File.separator + filename;
-            FileUtil.writeString(content, filePath, StandardCharsets.UTF_8);
+            try {
+                CodeBlobStore.write(Path.of(dirPath), filename, content);
+            } catch (IOException e) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "保存文件失败: " + filename);
+            }
         }
     }
 
+    /**
+     * 准备流式写入的目录（供增量解析器使用）
+     *
+     * @param appId 应用 ID
+     * @return 目录路径
+     */
+    public final String prepareSaveDir(Long appId) {
+        return buildUniqueDir(appId);
+    }
+
+    /**
+     * 打开单个文件的流式写入器
+     * 内容先写入同目录下的临时文件，调用 {@link #commitStreamingFile} 后才替换正式文件，
+     * 避免生成中断时覆盖掉上一次完整的代码
+     *
+     * @param dirPath  目录路径
+     * @param filename 文件名
+     * @return 写入器
+     */
+    public final BufferedWriter openStreamingWriter(String dirPath, String filename) throws IOException {
+        Path tempPath = Path.of(dirPath, filename + STREAMING_TEMP_SUFFIX);
+        return Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 提交流式写入的文件：临时文件原子替换为正式文件，再收录到内容寻址存储
+     *
+     * @param dirPath  目录路径
+     * @param filename 文件名
+     * @return 正式文件
+     */
+    public final File commitStreamingFile(String dirPath, String filename) throws IOException {
+        Path tempPath = Path.of(dirPath, filename + STREAMING_TEMP_SUFFIX);
+        Path targetPath = Path.of(dirPath, filename);
+        Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        CodeBlobStore.ingest(Path.of(dirPath), filename);
+        return targetPath.toFile();
+    }
+
+    /**
+     * 丢弃流式写入的临时文件（内容为空或生成失败时）
+     *
+     * @param dirPath  目录路径
+     * @param filename 文件名
+     */
+    public final void discardStreamingFile(String dirPath, String filename) {
+        FileUtil.del(Path.of(dirPath, filename + STREAMING_TEMP_SUFFIX));
+    }
+
+    /**
+     * 根据代码块语言解析对应的文件名（流式解析使用，由子类覆盖）
+     *
+     * @param language 代码块语言标识（已转小写），如 html、css、js
+     * @return 文件名，不需要保存时返回 null
+     */
+    public String resolveFileName(String language) {
+        return null;
+    }
+
+    /**
+     * 未识别到任何代码块时，整段输出保存到的文件名（由子类覆盖）
+     *
+     * @return 文件名，不需要兜底时返回 null
+     */
+    public String getFallbackFileName() {
+        return null;
+    }
+
+    /**
+     * 流式保存时必须生成的文件名（由子类覆盖）
+     *
+     * @return 文件名，没有要求时返回 null
+     */
+    public String getRequiredFileName() {
+        return null;
+    }
+
     /**
      * 验证输入参数（可由子类覆盖）
      *
@@ -23,6 +23,21 @@ public class HtmlCodeFileSaverTemplate extends CodeFileSaverTemplate<HtmlCodeRes
         writeToFile(baseDirPath, "index.html", result.getHtmlCode());
     }
 
+    @Override
+    public String resolveFileName(String language) {
+        return "html".equals(language) ? "index.html" : null;
+    }
+
+    @Override
+    public String getFallbackFileName() {
+        return "index.html";
+    }
+
+    @Override
+    public String getRequiredFileName() {
+        return "index.html";
+    }
+
     @Override
     protected void validateInput(HtmlCodeResult result) {
         super.validateInput(result);
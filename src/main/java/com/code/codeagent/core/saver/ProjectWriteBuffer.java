@@ -0,0 +1,284 @@
+package com.code.codeagent.core.saver;
+
+import com.code.codeagent.utils.Utf8Utils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 项目文件写缓冲
+ * 写文件工具的写入先进入按项目划分的内存覆盖层并立即返回，同一文件的多次写入只保留最后一次；
+ * 读取工具优先从覆盖层读取，看到的内容与已写入一致；修改工具直接修改覆盖层中的内容，删除工具移除覆盖层中的文件，都不触发落盘。
+ * 覆盖层在本轮对话结束、待写入内容超过上限、构建或下载之前以及应用关闭时整体落盘（UTF-8，经内容寻址存储原子改名）；
+ * 落盘失败的文件留在覆盖层中，由调用方报告失败，下次落盘重试。进程异常退出时尚未落盘的内容会丢失。
+ *
+ * @author CodeAgent
+ */
+@Slf4j
+public final class ProjectWriteBuffer {
+
+    private static final Map<Path, Buffer> BUFFERS = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled = true;
+
+    private static volatile long maxPendingBytes = 4 * 1024 * 1024;
+
+    private ProjectWriteBuffer() {
+    }
+
+    /**
+     * 应用配置
+     *
+     * @param bufferEnabled   是否启用写缓冲，关闭后直接写入磁盘
+     * @param maxBufferedBytes 单个项目待写入内容的上限（字节），超过后立即落盘
+     */
+    public static void configure(boolean bufferEnabled, long maxBufferedBytes) {
+        enabled = bufferEnabled;
+        maxPendingBytes = Math.max(0, maxBufferedBytes);
+    }
+
+    /**
+     * 写入文件：进入覆盖层后立即返回，超过上限时由当前调用方落盘
+     *
+     * @param projectRoot  项目根目录
+     * @param relativePath 相对路径
+     * @param content      文件内容
+     * @throws IOException 未启用缓冲时写入失败，或超过上限落盘失败
+     */
+    public static void write(Path projectRoot, String relativePath, String content) throws IOException {
+        Path root = normalize(projectRoot);
+        String key = toKey(root, relativePath);
+        if (!enabled) {
+            CodeBlobStore.write(root, key, content);
+            return;
+        }
+        boolean[] overLimit = new boolean[1];
+        // 在 compute 中写入，避免与落盘后移除空缓冲区交错
+        BUFFERS.compute(root, (path, buffer) -> {
+            Buffer target = buffer == null ? new Buffer() : buffer;
+            synchronized (target) {
+                String previous = target.pending.put(key, content);
+                target.pendingBytes += Utf8Utils.encodedLength(content) - (previous == null ? 0 : Utf8Utils.encodedLength(previous));
+                overLimit[0] = target.pendingBytes > maxPendingBytes;
+            }
+            return target;
+        });
+        if (overLimit[0]) {
+            List<String> failed = flush(root);
+            if (!failed.isEmpty()) {
+                throw new IOException("写缓冲落盘失败: " + failed);
+            }
+        }
+    }
+
+    /**
+     * 读取覆盖层中的文件内容
+     *
+     * @param projectRoot  项目根目录
+     * @param relativePath 相对路径
+     * @return 尚未落盘的内容，不在覆盖层中时返回 null
+     */
+    public static String read(Path projectRoot, String relativePath) {
+        Path root = normalize(projectRoot);
+        Buffer buffer = BUFFERS.get(root);
+        if (buffer == null) {
+            return null;
+        }
+        String key = toKey(root, relativePath);
+        synchronized (buffer) {
+            String content = buffer.pending.get(key);
+            return content != null ? content : buffer.flushing.get(key);
+        }
+    }
+
+    /**
+     * 从覆盖层中移除文件（删除文件时使用），等正在落盘的批次写完后再移除，返回后覆盖层不会再写入该文件
+     *
+     * @param projectRoot  项目根目录
+     * @param relativePath 相对路径
+     * @return 是否移除了尚未落盘的内容（已经落盘的部分由调用方从磁盘删除）
+     */
+    public static boolean remove(Path projectRoot, String relativePath) {
+        Path root = normalize(projectRoot);
+        Buffer buffer = BUFFERS.get(root);
+        if (buffer == null) {
+            return false;
+        }
+        String key = toKey(root, relativePath);
+        boolean removed;
+        buffer.flushLock.lock();
+        try {
+            synchronized (buffer) {
+                String previous = buffer.pending.remove(key);
+                removed = previous != null;
+                if (removed) {
+                    buffer.pendingBytes -= Utf8Utils.encodedLength(previous);
+                }
+            }
+        } finally {
+            buffer.flushLock.unlock();
+        }
+        removeIfEmpty(root);
+        return removed;
+    }
+
+    /**
+     * 覆盖层中尚未落盘的文件（相对路径，/ 分隔）
+     *
+     * @param projectRoot 项目根目录
+     * @return 相对路径集合
+     */
+    public static Set<String> pendingPaths(Path projectRoot) {
+        Buffer buffer = BUFFERS.get(normalize(projectRoot));
+        if (buffer == null) {
+            return Set.of();
+        }
+        synchronized (buffer) {
+            Set<String> paths = new TreeSet<>(buffer.pending.keySet());
+            paths.addAll(buffer.flushing.keySet());
+            return paths;
+        }
+    }
+
+    /**
+     * 落盘屏障：把项目覆盖层中的内容全部写入磁盘，返回后磁盘上的内容包含此前的所有写入
+     * 同一项目的落盘串行执行，落盘期间新的写入进入下一批
+     *
+     * @param projectRoot 项目根目录
+     * @return 写入失败的文件，全部成功时为空
+     */
+    public static List<String> flush(Path projectRoot) {
+        Path root = normalize(projectRoot);
+        Buffer buffer = BUFFERS.get(root);
+        if (buffer == null) {
+            return List.of();
+        }
+        List<String> failed = new ArrayList<>();
+        buffer.flushLock.lock();
+        try {
+            Map<String, String> batch;
+            synchronized (buffer) {
+                if (buffer.pending.isEmpty()) {
+                    return List.of();
+                }
+                batch = new LinkedHashMap<>(buffer.pending);
+                buffer.flushing = batch;
+                buffer.pending.clear();
+                buffer.pendingBytes = 0;
+            }
+            long startTime = System.currentTimeMillis();
+            for (Map.Entry<String, String> entry : batch.entrySet()) {
+                try {
+                    CodeBlobStore.write(root, entry.getKey(), entry.getValue());
+                } catch (IOException e) {
+                    failed.add(entry.getKey());
+                    log.error("写缓冲落盘失败: {}/{}，错误：{}", root.getFileName(), entry.getKey(), e.getMessage());
+                }
+            }
+            synchronized (buffer) {
+                buffer.flushing = Map.of();
+                // 写入失败的文件放回覆盖层（期间没有更新的写入时），下次落盘重试
+                for (String key : failed) {
+                    if (!buffer.pending.containsKey(key)) {
+                        String content = batch.get(key);
+                        buffer.pending.put(key, content);
+                        buffer.pendingBytes += Utf8Utils.encodedLength(content);
+                    }
+                }
+            }
+            removeIfEmpty(root);
+            log.info("写缓冲落盘完成: {}，文件数：{}，失败：{}，耗时：{}ms", root.getFileName(), batch.size(),
+                    failed.size(), System.currentTimeMillis() - startTime);
+            return failed;
+        } finally {
+            buffer.flushLock.unlock();
+        }
+    }
+
+    /**
+     * 所有项目的覆盖层落盘（应用关闭时使用，避免正常停机丢失尚未落盘的写入）
+     *
+     * @return 写入失败的文件数
+     */
+    public static int flushAll() {
+        int failedCount = 0;
+        for (Path root : List.copyOf(BUFFERS.keySet())) {
+            List<String> failed = flush(root);
+            if (!failed.isEmpty()) {
+                failedCount += failed.size();
+                log.error("关闭前写缓冲落盘失败: {}，文件：{}", root.getFileName(), failed);
+            }
+        }
+        return failedCount;
+    }
+
+    /**
+     * 丢弃项目覆盖层中尚未落盘的内容（删除应用时使用），正在落盘的批次写完后才返回
+     *
+     * @param projectRoot 项目根目录
+     */
+    public static void discard(Path projectRoot) {
+        Buffer buffer = BUFFERS.remove(normalize(projectRoot));
+        if (buffer == null) {
+            return;
+        }
+        buffer.flushLock.lock();
+        try {
+            synchronized (buffer) {
+                buffer.pending.clear();
+                buffer.pendingBytes = 0;
+            }
+        } finally {
+            buffer.flushLock.unlock();
+        }
+    }
+
+    /**
+     * 覆盖层清空后移除项目的缓冲区
+     */
+    private static void removeIfEmpty(Path root) {
+        BUFFERS.computeIfPresent(root, (path, current) -> {
+            synchronized (current) {
+                return current.pending.isEmpty() && current.flushing.isEmpty() ? null : current;
+            }
+        });
+    }
+
+    private static Path normalize(Path projectRoot) {
+        return projectRoot.toAbsolutePath().normalize();
+    }
+
+    /**
+     * 覆盖层的键统一为 / 分隔的相对路径，同一文件的不同写法（./a、a）对应同一项
+     */
+    private static String toKey(Path root, String relativePath) {
+        return root.relativize(root.resolve(relativePath).normalize()).toString().replace(File.separatorChar, '/');
+    }
+
+    private static class Buffer {
+
+        /**
+         * 待落盘的文件（按首次写入顺序）
+         */
+        private final Map<String, String> pending = new LinkedHashMap<>();
+
+        /**
+         * 正在落盘的一批文件，落盘完成前读取仍从这里返回
+         */
+        private Map<String, String> flushing = Map.of();
+
+        private long pendingBytes;
+
+        private final ReentrantLock flushLock = new ReentrantLock();
+    }
+}
@@ -0,0 +1,365 @@
+package com.code.codeagent.manager;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.code.codeagent.config.ChatMemoryConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 两级对话记忆存储：本地 Caffeine 缓存 + Redis
+ * 一轮对话中每次模型调用、每次工具调用都会读写对话记忆，直接使用 Redis 时每次更新都要序列化并写回整个消息列表。
+ * 1. 读取优先返回尚未写入的更新，其次是本地缓存，都未命中时才读取 Redis（Redis 中不存在的记忆不缓存，回填后可以立即读到）
+ * 2. 更新写入本地缓存后立即返回，后台线程按固定间隔把每个应用的最新版本合并写入 Redis（一次管道），间隔内的多次更新只写一次；
+ *    待写入的应用数达到上限时（如 Redis 不可用），新应用的更新直接写入 Redis，写入失败时抛出异常
+ * 3. 写入 Redis 后通过发布订阅广播失效消息，其他节点丢弃本地缓存，下次从 Redis 读取
+ * Redis 中的格式与 {@link ChatMemoryHydrator} 一致：键为 appId，值为 {@link ChatMessageSerializer} 序列化的消息列表。
+ *
+ * @author CodeAgent
+ */
+@Component
+@Slf4j
+public class CachedChatMemoryStore implements ChatMemoryStore, MessageListener {
+
+    /**
+     * 关闭时等待后台线程结束的最长时间（秒）
+     */
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+    @Resource
+    private ChatMemoryConfig chatMemoryConfig;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer chatMemoryListenerContainer;
+
+    @Value("${spring.data.redis.ttl:3600}")
+    private long ttl;
+
+    /**
+     * 当前节点标识，忽略自己发出的失效消息
+     */
+    private final String nodeId = IdUtil.fastSimpleUUID();
+
+    private Cache<String, CachedMemory> cache;
+
+    /**
+     * 尚未写入 Redis 的更新（每个应用只保留最新版本）
+     */
+    private final Map<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+
+    /**
+     * 写入 Redis 与删除互斥，避免删除后又被正在进行的写入恢复
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    private final LongAdder turnCount = new LongAdder();
+
+    private final LongAdder localHitCount = new LongAdder();
+
+    private final LongAdder redisReadCount = new LongAdder();
+
+    private final LongAdder redisWriteCount = new LongAdder();
+
+    private final LongAdder coalescedWriteCount = new LongAdder();
+
+    private final LongAdder bytesRead = new LongAdder();
+
+    private final LongAdder bytesWritten = new LongAdder();
+
+    private final LongAdder bytesSaved = new LongAdder();
+
+    private final LongAdder invalidationCount = new LongAdder();
+
+    private final LongAdder flushFailureCount = new LongAdder();
+
+    private final LongAdder writeThroughCount = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(chatMemoryConfig.getCacheMaxEntries())
+                .expireAfterAccess(Duration.ofMinutes(chatMemoryConfig.getCacheExpireMinutes()))
+                .build();
+        if (!chatMemoryConfig.isCacheEnabled()) {
+            log.info("对话记忆本地缓存未启用，直接读写 Redis");
+            return;
+        }
+        chatMemoryListenerContainer.addMessageListener(this, new ChannelTopic(chatMemoryConfig.getInvalidationChannel()));
+        running = true;
+        flusher = Thread.ofVirtual().name("chat-memory-writer").start(this::flushLoop);
+        log.info("对话记忆本地缓存已启动，容量: {}，写后间隔: {}ms，节点: {}", chatMemoryConfig.getCacheMaxEntries(),
+                chatMemoryConfig.getWriteBehindIntervalMs(), nodeId);
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String key = toKey(memoryId);
+        if (chatMemoryConfig.isCacheEnabled()) {
+            PendingWrite pendingWrite = pendingWrites.get(key);
+            if (pendingWrite != null) {
+                localHitCount.increment();
+                return pendingWrite.messages;
+            }
+            CachedMemory cachedMemory = cache.getIfPresent(key);
+            if (cachedMemory != null) {
+                localHitCount.increment();
+                bytesSaved.add(cachedMemory.bytes);
+                return cachedMemory.messages;
+            }
+        }
+        String json = stringRedisTemplate.opsForValue().get(key);
+        redisReadCount.increment();
+        if (StrUtil.isEmpty(json)) {
+            return List.of();
+        }
+        bytesRead.add(json.length());
+        List<ChatMessage> messages = List.copyOf(ChatMessageDeserializer.messagesFromJson(json));
+        if (chatMemoryConfig.isCacheEnabled() && !messages.isEmpty()) {
+            // 读取期间有新的更新时不覆盖
+            cache.asMap().putIfAbsent(key, new CachedMemory(messages, json.length()));
+        }
+        return messages;
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        String key = toKey(memoryId);
+        List<ChatMessage> snapshot = List.copyOf(messages);
+        if (!snapshot.isEmpty() && snapshot.get(snapshot.size() - 1) instanceof UserMessage) {
+            turnCount.increment();
+        }
+        if (!chatMemoryConfig.isCacheEnabled()) {
+            String json = ChatMessageSerializer.messagesToJson(snapshot);
+            stringRedisTemplate.opsForValue().set(key, json, Duration.ofSeconds(ttl));
+            redisWriteCount.increment();
+            bytesWritten.add(json.length());
+            return;
+        }
+        if (!pendingWrites.containsKey(key) && pendingWrites.size() >= chatMemoryConfig.getMaxPendingWrites()) {
+            writeThrough(key, snapshot);
+            return;
+        }
+        CachedMemory previous = cache.getIfPresent(key);
+        // 序列化后的大小在写入 Redis 时才知道，先沿用上一个版本的大小
+        cache.put(key, new CachedMemory(snapshot, previous == null ? 0 : previous.bytes));
+        pendingWrites.merge(key, new PendingWrite(snapshot, 1),
+                (older, newer) -> new PendingWrite(newer.messages, older.updates + 1));
+    }
+
+    /**
+     * 本节点是否持有该应用的对话记忆（尚未写入 Redis 的更新或本地缓存）
+     * 回填前先检查，避免 Redis 中暂时没有、本节点尚未写入的记忆被对话历史覆盖
+     *
+     * @param memoryId 记忆ID（应用ID）
+     * @return 是否持有
+     */
+    public boolean containsLocally(Object memoryId) {
+        if (!chatMemoryConfig.isCacheEnabled()) {
+            return false;
+        }
+        String key = toKey(memoryId);
+        return pendingWrites.containsKey(key) || cache.getIfPresent(key) != null;
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String key = toKey(memoryId);
+        flushLock.lock();
+        try {
+            pendingWrites.remove(key);
+            cache.invalidate(key);
+            stringRedisTemplate.delete(key);
+            if (chatMemoryConfig.isCacheEnabled()) {
+                stringRedisTemplate.convertAndSend(chatMemoryConfig.getInvalidationChannel(), nodeId + ":" + key);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 其他节点写入或删除了对话记忆，丢弃本地缓存（本节点尚未写入的更新保留）
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separatorIndex = body.indexOf(':');
+        if (separatorIndex < 0 || body.substring(0, separatorIndex).equals(nodeId)) {
+            return;
+        }
+        cache.invalidate(body.substring(separatorIndex + 1));
+        invalidationCount.increment();
+    }
+
+    /**
+     * 获取统计信息
+     * 字节数按 JSON 字符数计算，节省的字节数按本地缓存中记录的最近一次序列化大小估算
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long turns = turnCount.sum();
+        long opsSaved = localHitCount.sum() + coalescedWriteCount.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cacheEnabled", chatMemoryConfig.isCacheEnabled());
+        stats.put("localEntryCount", cache.estimatedSize());
+        stats.put("pendingWriteCount", pendingWrites.size());
+        stats.put("turnCount", turns);
+        stats.put("localHitCount", localHitCount.sum());
+        stats.put("redisReadCount", redisReadCount.sum());
+        stats.put("redisWriteCount", redisWriteCount.sum());
+        stats.put("coalescedWriteCount", coalescedWriteCount.sum());
+        stats.put("redisOpsSaved", opsSaved);
+        stats.put("redisOpsSavedPerTurn", String.format("%.1f", turns == 0 ? 0 : (double) opsSaved / turns));
+        stats.put("bytesRead", bytesRead.sum());
+        stats.put("bytesWritten", bytesWritten.sum());
+        stats.put("bytesSaved", bytesSaved.sum());
+        stats.put("bytesSavedPerTurn", turns == 0 ? 0 : bytesSaved.sum() / turns);
+        stats.put("invalidationReceivedCount", invalidationCount.sum());
+        stats.put("flushFailureCount", flushFailureCount.sum());
+        stats.put("writeThroughCount", writeThroughCount.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join(Duration.ofSeconds(SHUTDOWN_WAIT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int remaining = pendingWrites.size();
+        flushPendingWrites();
+        log.info("对话记忆本地缓存已关闭，关闭时写入 {} 个应用", remaining);
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(chatMemoryConfig.getWriteBehindIntervalMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            flushPendingWrites();
+        }
+    }
+
+    /**
+     * 把所有应用的最新版本用一次管道写入 Redis 并广播失效
+     * 写入成功后才从待写入中移除（期间又有更新的保留到下一次），读取始终能看到最新版本
+     */
+    private void flushPendingWrites() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            Map<String, PendingWrite> batch = new LinkedHashMap<>(pendingWrites);
+            Map<String, String> payloads = new LinkedHashMap<>();
+            batch.forEach((key, pendingWrite) -> payloads.put(key, ChatMessageSerializer.messagesToJson(pendingWrite.messages)));
+            String channel = chatMemoryConfig.getInvalidationChannel();
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                payloads.forEach((key, json) -> {
+                    stringConnection.setEx(key, ttl, json);
+                    stringConnection.publish(channel, nodeId + ":" + key);
+                });
+                return null;
+            });
+            batch.forEach((key, pendingWrite) -> {
+                int bytes = payloads.get(key).length();
+                pendingWrites.remove(key, pendingWrite);
+                cache.asMap().computeIfPresent(key, (k, cachedMemory) ->
+                        cachedMemory.messages == pendingWrite.messages ? new CachedMemory(pendingWrite.messages, bytes) : cachedMemory);
+                redisWriteCount.increment();
+                coalescedWriteCount.add(pendingWrite.updates - 1);
+                bytesWritten.add(bytes);
+                bytesSaved.add((long) bytes * (pendingWrite.updates - 1));
+            });
+        } catch (Exception e) {
+            flushFailureCount.increment();
+            log.warn("对话记忆写入 Redis 失败，应用数: {}，下次重试，错误: {}", pendingWrites.size(), e.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 待写入已达上限时直接写入 Redis 并广播失效，与删除互斥
+     * 写入失败时丢弃本地缓存并抛出异常，不再保留在内存中
+     */
+    private void writeThrough(String key, List<ChatMessage> messages) {
+        String json = ChatMessageSerializer.messagesToJson(messages);
+        flushLock.lock();
+        try {
+            stringRedisTemplate.opsForValue().set(key, json, Duration.ofSeconds(ttl));
+            stringRedisTemplate.convertAndSend(chatMemoryConfig.getInvalidationChannel(), nodeId + ":" + key);
+            cache.put(key, new CachedMemory(messages, json.length()));
+        } catch (RuntimeException e) {
+            cache.invalidate(key);
+            log.warn("待写入的对话记忆已达上限 {}，直接写入 Redis 失败，key: {}，错误: {}",
+                    chatMemoryConfig.getMaxPendingWrites(), key, e.getMessage());
+            throw e;
+        } finally {
+            flushLock.unlock();
+        }
+        writeThroughCount.increment();
+        redisWriteCount.increment();
+        bytesWritten.add(json.length());
+    }
+
+    private static String toKey(Object memoryId) {
+        return String.valueOf(memoryId);
+    }
+
+    /**
+     * 本地缓存的对话记忆（不可变列表）及其最近一次序列化的大小
+     */
+    private record CachedMemory(List<ChatMessage> messages, int bytes) {
+    }
+
+    /**
+     * 待写入的最新版本，以及合并的更新次数
+     */
+    private record PendingWrite(List<ChatMessage> messages, int updates) {
+    }
+}
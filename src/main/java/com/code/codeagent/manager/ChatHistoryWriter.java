@@ -0,0 +1,369 @@
+package com.code.codeagent.manager;
+
+import com.code.codeagent.config.ChatHistoryPersistConfig;
+import com.code.codeagent.exception.BusinessException;
+import com.code.codeagent.exception.ErrorCode;
+import com.code.codeagent.mapper.ChatHistoryMapper;
+import com.code.codeagent.model.entity.ChatHistory;
+import com.code.codeagent.model.enums.ChatHistoryMessageTypeEnum;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TypeMismatchDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 对话历史写后队列
+ * AI 回复进入有界队列后立即返回，后台线程取出当前积压的全部消息（不超过批量上限）用一条多行 INSERT 写入，
+ * 负载越高单批越大，空闲时单条消息也不会被延迟。
+ * 用户消息直接写入（重试、删除等操作需要立即查到），写入前先写完该应用积压的消息，保证写入顺序。
+ * 读取或删除某个应用的对话历史前须调用 {@link #flush(Long)}：出队和写库都持有写入锁，
+ * 拿到写入锁时之前提交的消息要么已写入、要么仍在队列中，写完队列即可读到全部消息。
+ * 队列已满时由调用线程在写入锁内先写完队列再写入自己的消息，不会乱序；应用关闭时写完队列中剩余的消息。
+ * 数据库暂时不可用时，写入失败的一批消息保留在重试缓冲中按退避间隔重试，重试成功前不再从队列取新消息（保证顺序，内存有界），
+ * 积压计数保留到写入成功；只有约束、数据错误等重试也不会成功的消息记录日志后丢弃。
+ *
+ * @author CodeAgent
+ */
+@Component
+@Slf4j
+public class ChatHistoryWriter {
+
+    /**
+     * 关闭时等待后台线程结束的最长时间（秒）
+     */
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+    @Resource
+    private ChatHistoryPersistConfig chatHistoryPersistConfig;
+
+    @Resource
+    private ChatHistoryMapper chatHistoryMapper;
+
+    private BlockingQueue<ChatHistory> queue;
+
+    /**
+     * 出队和写库互斥
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * 每个应用尚未写入的消息数（没有积压的应用不在表中），读取前据此判断是否需要写入
+     */
+    private final Map<Long, Integer> pendingCounts = new ConcurrentHashMap<>();
+
+    /**
+     * 写入失败、等待重试的消息（按提交顺序，须持有写入锁访问）
+     */
+    private final Deque<ChatHistory> retryBuffer = new ArrayDeque<>();
+
+    /**
+     * 重试缓冲中的消息数，后台线程不持有写入锁时据此判断是否需要重试
+     */
+    private volatile int retryCount;
+
+    /**
+     * 当前的重试等待时间（毫秒），写入成功后清零
+     */
+    private long retryBackoffMillis;
+
+    /**
+     * 下次重试的时间（System.nanoTime），退避期间后台线程不写入
+     */
+    private long nextRetryNanos;
+
+    /**
+     * 最近写入的用户消息（消息ID -> 应用ID），AI 消息据此校验父消息，无需查询数据库
+     */
+    private Cache<Long, Long> recentUserMessages;
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(chatHistoryPersistConfig.getQueueCapacity());
+        recentUserMessages = Caffeine.newBuilder()
+                .maximumSize(chatHistoryPersistConfig.getRecentUserMessageSize())
+                .expireAfterWrite(Duration.ofHours(1))
+                .build();
+        running = true;
+        flusher = Thread.ofVirtual().name("chat-history-writer").start(this::flushLoop);
+        log.info("对话历史写后队列已启动，容量: {}，批量上限: {}",
+                chatHistoryPersistConfig.getQueueCapacity(), chatHistoryPersistConfig.getBatchSize());
+    }
+
+    /**
+     * 提交一条待写入的对话历史（主键和时间须已生成）
+     * 用户消息直接写入，AI 回复进入写后队列
+     *
+     * @param chatHistory 对话历史
+     */
+    public void submit(ChatHistory chatHistory) {
+        if (ChatHistoryMessageTypeEnum.USER.getValue().equals(chatHistory.getMessageType())) {
+            writeNow(chatHistory);
+            recentUserMessages.put(chatHistory.getId(), chatHistory.getAppId());
+            return;
+        }
+        pendingCounts.merge(chatHistory.getAppId(), 1, Integer::sum);
+        boolean queued = false;
+        if (running) {
+            try {
+                queued = queue.offer(chatHistory, chatHistoryPersistConfig.getOfferTimeoutMs(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (queued) {
+            LockSupport.unpark(flusher);
+            return;
+        }
+        // 队列已满或已关闭：先写完队列中更早的消息，再写入本条，保证不丢消息也不乱序
+        log.warn("对话历史队列不可用，由调用线程写入，消息ID: {}", chatHistory.getId());
+        writeLock.lock();
+        try {
+            drainAll();
+            if (!retryBuffer.isEmpty()) {
+                // 数据库不可用且队列已满，拒绝本条，避免内存中的积压无限增长
+                written(chatHistory);
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "保存对话历史失败，请稍后重试");
+            }
+            writeBatch(List.of(chatHistory));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 写入应用积压的消息，读取或删除该应用的对话历史前调用
+     *
+     * @param appId 应用ID
+     */
+    public void flush(Long appId) {
+        if (appId == null || !pendingCounts.containsKey(appId)) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            drainAll();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 写入多个应用积压的消息
+     *
+     * @param appIds 应用ID列表
+     */
+    public void flush(Collection<Long> appIds) {
+        if (appIds.stream().noneMatch(pendingCounts::containsKey)) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            drainAll();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 是否为最近写入的用户消息
+     *
+     * @param messageId 消息ID
+     * @return 是否命中
+     */
+    public boolean isRecentUserMessage(Long messageId) {
+        return messageId != null && recentUserMessages.getIfPresent(messageId) != null;
+    }
+
+    /**
+     * 最近写入的用户消息所属的应用
+     *
+     * @param messageId 消息ID
+     * @return 应用ID，不是最近写入的用户消息时返回 null
+     */
+    public Long getRecentUserMessageAppId(Long messageId) {
+        return messageId == null ? null : recentUserMessages.getIfPresent(messageId);
+    }
+
+    /**
+     * 当前积压的消息数量
+     */
+    public int getPendingCount() {
+        return queue.size() + retryCount;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(Duration.ofSeconds(SHUTDOWN_WAIT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 写完剩余消息
+        writeLock.lock();
+        try {
+            int remaining = drainAll();
+            log.info("对话历史写后队列已关闭，关闭时写入 {} 条", remaining);
+            if (!retryBuffer.isEmpty()) {
+                log.error("对话历史写后队列关闭时仍有 {} 条消息写入失败，消息ID: {}", retryBuffer.size(),
+                        retryBuffer.stream().map(ChatHistory::getId).toList());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(chatHistoryPersistConfig.getFlushIntervalMs());
+        while (running) {
+            int written = 0;
+            if (!queue.isEmpty() || retryCount > 0) {
+                writeLock.lock();
+                try {
+                    written = drainBatch(false);
+                } catch (Exception e) {
+                    log.error("对话历史写入线程异常: {}", e.getMessage(), e);
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+            if (written == 0) {
+                // 没有消息或等待重试，提交时唤醒，超时只是兜底
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+    }
+
+    /**
+     * 写完重试缓冲和队列中的全部消息（须持有写入锁），不等待退避，写入失败时停止
+     *
+     * @return 写入的消息数
+     */
+    private int drainAll() {
+        int total = 0;
+        while (true) {
+            int written = drainBatch(true);
+            total += written;
+            if (written == 0 || !retryBuffer.isEmpty()) {
+                return total;
+            }
+        }
+    }
+
+    /**
+     * 写入一批消息（须持有写入锁）：有待重试的消息时先重试它们，否则从队列取出不超过批量上限的消息
+     *
+     * @param ignoreBackoff 是否忽略退避间隔立即重试（读取、删除前的写入）
+     * @return 写入（或因数据错误丢弃）的消息数，写入失败时为 0
+     */
+    private int drainBatch(boolean ignoreBackoff) {
+        List<ChatHistory> batch = new ArrayList<>();
+        if (!retryBuffer.isEmpty()) {
+            if (!ignoreBackoff && System.nanoTime() < nextRetryNanos) {
+                return 0;
+            }
+            batch.addAll(retryBuffer);
+            retryBuffer.clear();
+        } else {
+            queue.drainTo(batch, Math.max(1, chatHistoryPersistConfig.getBatchSize()));
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+        retryCount = retryBuffer.size();
+        return batch.size() - retryBuffer.size();
+    }
+
+    /**
+     * 直接写入一条消息，先写完该应用积压的消息
+     */
+    private void writeNow(ChatHistory chatHistory) {
+        flush(chatHistory.getAppId());
+        chatHistoryMapper.insert(chatHistory);
+    }
+
+    /**
+     * 批量写入（须持有写入锁）
+     * 数据库暂时不可用时整批放入重试缓冲；数据错误时逐条重试，避免一条异常数据拖累整批
+     */
+    private void writeBatch(List<ChatHistory> batch) {
+        try {
+            chatHistoryMapper.insertBatch(batch);
+            batch.forEach(this::written);
+            retryBackoffMillis = 0;
+        } catch (Exception e) {
+            if (!isDataError(e)) {
+                retryLater(batch, e);
+                return;
+            }
+            if (batch.size() == 1) {
+                ChatHistory chatHistory = batch.get(0);
+                written(chatHistory);
+                log.error("保存对话历史失败，数据错误，已丢弃，消息ID: {}，应用ID: {}，错误: {}",
+                        chatHistory.getId(), chatHistory.getAppId(), e.getMessage(), e);
+                return;
+            }
+            log.warn("批量保存对话历史失败，逐条重试，数量: {}，错误: {}", batch.size(), e.getMessage());
+            for (int i = 0; i < batch.size(); i++) {
+                writeBatch(List.of(batch.get(i)));
+                if (!retryBuffer.isEmpty()) {
+                    // 逐条写入时数据库不可用，剩余消息一起等待重试
+                    retryBuffer.addAll(batch.subList(i + 1, batch.size()));
+                    retryCount = retryBuffer.size();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 是否为数据本身的错误（违反约束、字段超长、类型不匹配），重试也不会成功
+     */
+    private static boolean isDataError(Exception e) {
+        return e instanceof DataIntegrityViolationException || e instanceof TypeMismatchDataAccessException;
+    }
+
+    /**
+     * 写入失败的消息放入重试缓冲（保持原顺序），加倍退避间隔
+     */
+    private void retryLater(List<ChatHistory> batch, Exception e) {
+        retryBuffer.addAll(batch);
+        retryCount = retryBuffer.size();
+        retryBackoffMillis = retryBackoffMillis == 0
+                ? chatHistoryPersistConfig.getRetryInitialBackoffMs()
+                : Math.min(retryBackoffMillis * 2, chatHistoryPersistConfig.getRetryMaxBackoffMs());
+        nextRetryNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryBackoffMillis);
+        log.warn("保存对话历史失败，{} 条消息 {}ms 后重试，错误: {}", retryBuffer.size(), retryBackoffMillis, e.getMessage());
+    }
+
+    /**
+     * 消息已写入（或因数据错误已丢弃），减少应用的积压计数
+     */
+    private void written(ChatHistory chatHistory) {
+        pendingCounts.computeIfPresent(chatHistory.getAppId(), (appId, count) -> count <= 1 ? null : count - 1);
+    }
+}
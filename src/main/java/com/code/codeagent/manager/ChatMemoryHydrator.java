@@ -0,0 +1,255 @@
+package com.code.codeagent.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.code.codeagent.ai.tools.BaseTool;
+import com.code.codeagent.ai.tools.ToolManager;
+import com.code.codeagent.mapper.ChatHistoryMapper;
+import com.code.codeagent.model.entity.ChatHistory;
+import com.code.codeagent.model.enums.ChatHistoryMessageTypeEnum;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 对话记忆回填
+ * Redis 中的对话记忆过期后，从 MySQL 对话历史中恢复最近的消息，避免模型丢失上下文。
+ * 多个应用共用一次 EXISTS 管道、一次窗口函数查询和一次 SETEX 管道；本节点持有记忆的应用（含尚未写入 Redis 的更新）不查询 Redis。
+ * 历史中的工具调用记录（见 {@link BaseTool#HISTORY_RECORD_PREFIX}）还原为工具调用请求和执行结果消息，
+ * 而不是作为模型输出的文本，避免模型模仿记录格式输出文本而不调用工具。
+ * <p>
+ * 写入格式与 {@link CachedChatMemoryStore} 一致：
+ * 未配置前缀，键即 appId，值为 {@link ChatMessageSerializer} 序列化的消息列表。
+ *
+ * @author CodeAgent
+ */
+@Component
+@Slf4j
+public class ChatMemoryHydrator {
+
+    /**
+     * 每个应用回填的最大消息数（超出 token 预算的部分由对话记忆在下次写入时淘汰）
+     */
+    public static final int MAX_HYDRATE_MESSAGES = 20;
+
+    /**
+     * 单次 SQL 查询的最大应用数
+     */
+    private static final int MAX_APPS_PER_QUERY = 500;
+
+    /**
+     * AI 回复失败时保存的错误消息前缀，回填时跳过
+     */
+    private static final String AI_ERROR_PREFIX = "AI回复失败: ";
+
+    /**
+     * 历史记录中的工具调用标题：显示名称和目标
+     */
+    private static final Pattern TOOL_RECORD_PATTERN =
+            Pattern.compile("^" + Pattern.quote(BaseTool.HISTORY_RECORD_PREFIX) + "(\\S+)(?: (.*))?$");
+
+    /**
+     * 历史记录中没有保存执行结果的工具调用（如读取文件）使用的结果
+     */
+    private static final String RESULT_NOT_RECORDED = "工具已执行，对话历史中未保存执行结果，需要时请重新调用";
+
+    @Resource
+    private ChatHistoryMapper chatHistoryMapper;
+
+    @Resource
+    private ChatHistoryWriter chatHistoryWriter;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ToolManager toolManager;
+
+    @Resource
+    private CachedChatMemoryStore cachedChatMemoryStore;
+
+    @Value("${spring.data.redis.ttl:3600}")
+    private long ttl;
+
+    /**
+     * 回填单个应用的对话记忆
+     *
+     * @param appId 应用ID
+     * @return 是否写入了记忆
+     */
+    public boolean hydrate(long appId) {
+        return hydrate(appId, null);
+    }
+
+    /**
+     * 回填单个应用在指定消息之前的对话记忆
+     * 对话开始时当前用户消息已保存到对话历史，又会由本轮对话写入记忆，回填时须排除，否则记忆中出现两次
+     *
+     * @param appId            应用ID
+     * @param currentMessageId 当前用户消息ID，只回填该消息之前的历史，为 null 时不限制
+     * @return 是否写入了记忆
+     */
+    public boolean hydrate(long appId, Long currentMessageId) {
+        try {
+            return hydratePart(List.of(appId), currentMessageId) > 0;
+        } catch (Exception e) {
+            log.warn("回填对话记忆失败，appId: {}，错误: {}", appId, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 批量回填对话记忆，Redis 中已有记忆的应用会被跳过
+     *
+     * @param appIds 应用ID列表
+     * @return 写入记忆的应用数量
+     */
+    public int hydrate(Collection<Long> appIds) {
+        if (CollUtil.isEmpty(appIds)) {
+            return 0;
+        }
+        List<Long> distinctAppIds = new ArrayList<>(new LinkedHashSet<>(appIds));
+        int hydrated = 0;
+        for (List<Long> part : CollUtil.split(distinctAppIds, MAX_APPS_PER_QUERY)) {
+            try {
+                hydrated += hydratePart(part, null);
+            } catch (Exception e) {
+                log.warn("回填对话记忆失败，应用数: {}，错误: {}", part.size(), e.getMessage(), e);
+            }
+        }
+        return hydrated;
+    }
+
+    private int hydratePart(List<Long> appIds, Long beforeId) {
+        List<Long> missingAppIds = findMissingAppIds(appIds);
+        if (missingAppIds.isEmpty()) {
+            return 0;
+        }
+        // 先写完队列中的 AI 回复，避免回填时缺少最近一轮对话
+        chatHistoryWriter.flush(missingAppIds);
+        List<ChatHistory> historyList = chatHistoryMapper.selectRecentByAppIds(missingAppIds, MAX_HYDRATE_MESSAGES, beforeId);
+        Map<Long, List<ChatMessage>> memories = toChatMessages(historyList);
+        if (memories.isEmpty()) {
+            return 0;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            memories.forEach((appId, messages) ->
+                    stringConnection.setEx(String.valueOf(appId), ttl, ChatMessageSerializer.messagesToJson(messages)));
+            return null;
+        });
+        log.info("已从对话历史回填 {} 个应用的对话记忆", memories.size());
+        return memories.size();
+    }
+
+    /**
+     * 查询没有对话记忆的应用
+     * 本节点持有记忆（尚未写入 Redis 的更新或本地缓存）的应用直接跳过，其余一次管道查询 Redis
+     */
+    private List<Long> findMissingAppIds(List<Long> appIds) {
+        List<Long> candidates = appIds.stream()
+                .filter(appId -> !cachedChatMemoryStore.containsLocally(appId))
+                .toList();
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        List<Object> existsResults = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            candidates.forEach(appId -> stringConnection.exists(String.valueOf(appId)));
+            return null;
+        });
+        List<Long> missingAppIds = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (!Boolean.TRUE.equals(existsResults.get(i))) {
+                missingAppIds.add(candidates.get(i));
+            }
+        }
+        return missingAppIds;
+    }
+
+    /**
+     * 将对话历史转换为 LangChain4j 消息，按应用分组
+     * 每个应用的记忆从用户消息开始，跳过空消息和 AI 回复失败的错误消息
+     */
+    private Map<Long, List<ChatMessage>> toChatMessages(List<ChatHistory> historyList) {
+        Map<Long, List<ChatMessage>> memories = new LinkedHashMap<>();
+        for (ChatHistory chatHistory : historyList) {
+            if (StrUtil.isBlank(chatHistory.getMessage())) {
+                continue;
+            }
+            List<ChatMessage> messages = memories.computeIfAbsent(chatHistory.getAppId(), key -> new ArrayList<>());
+            ChatHistoryMessageTypeEnum typeEnum = ChatHistoryMessageTypeEnum.getEnumByValue(chatHistory.getMessageType());
+            if (typeEnum == ChatHistoryMessageTypeEnum.USER) {
+                messages.add(UserMessage.from(chatHistory.getMessage()));
+            } else if (typeEnum == ChatHistoryMessageTypeEnum.AI && !messages.isEmpty()
+                    && !chatHistory.getMessage().startsWith(AI_ERROR_PREFIX)) {
+                messages.addAll(toAiMessages(chatHistory));
+            }
+        }
+        memories.values().removeIf(List::isEmpty);
+        return memories;
+    }
+
+    /**
+     * 将一条 AI 回复还原为消息序列
+     * 每条工具调用记录还原为“AI 消息（记录前的文本 + 工具调用请求）+ 工具执行结果”，
+     * 记录之后的文本作为最后一条 AI 消息；工具参数只能还原路径等标识性参数
+     */
+    List<ChatMessage> toAiMessages(ChatHistory chatHistory) {
+        List<ChatMessage> messages = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        String[] lines = chatHistory.getMessage().split("\n", -1);
+        int toolIndex = 0;
+        for (int i = 0; i < lines.length; i++) {
+            Matcher matcher = TOOL_RECORD_PATTERN.matcher(lines[i]);
+            BaseTool tool = matcher.matches() ? toolManager.getToolByDisplayName(matcher.group(1)) : null;
+            if (tool == null) {
+                text.append(lines[i]).append('\n');
+                continue;
+            }
+            // 标题之后以“>”开头的连续行是执行结果
+            StringBuilder result = new StringBuilder();
+            while (i + 1 < lines.length && lines[i + 1].startsWith(">")) {
+                i++;
+                result.append(StrUtil.removePrefix(StrUtil.removePrefix(lines[i], ">"), " ")).append('\n');
+            }
+            String target = StrUtil.nullToEmpty(matcher.group(2));
+            ToolExecutionRequest request = ToolExecutionRequest.builder()
+                    .id("hydrated_" + chatHistory.getId() + "_" + toolIndex++)
+                    .name(tool.getToolName())
+                    .arguments(tool.restoreArguments(target).toString())
+                    .build();
+            String precedingText = text.toString().strip();
+            messages.add(precedingText.isEmpty()
+                    ? AiMessage.from(request)
+                    : AiMessage.from(precedingText, List.of(request)));
+            messages.add(ToolExecutionResultMessage.from(request,
+                    result.isEmpty() ? RESULT_NOT_RECORDED : result.toString().strip()));
+            text.setLength(0);
+        }
+        String remainingText = text.toString().strip();
+        if (!remainingText.isEmpty() || messages.isEmpty()) {
+            messages.add(AiMessage.from(remainingText.isEmpty() ? chatHistory.getMessage() : remainingText));
+        }
+        return messages;
+    }
+}
@@ -1,6 +1,8 @@
 package com.code.codeagent.manager;
 
 import com.qcloud.cos.COSClient;
+import com.qcloud.cos.exception.CosClientException;
+import com.qcloud.cos.model.ObjectMetadata;
 import com.qcloud.cos.model.PutObjectRequest;
 import com.qcloud.cos.model.PutObjectResult;
 import com.code.codeagent.config.CosClientConfig;
@@ -8,6 +10,7 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 
 /**
@@ -53,4 +56,36 @@ public class CosManager {
             return null;
         }
     }
+
+    /**
+     * 上传内存中的数据到 COS 并返回访问 URL（按已知长度流式上传，不落盘）
+     *
+     * @param key         COS对象键（完整路径）
+     * @param data        数据数组
+     * @param length      有效长度
+     * @param contentType 内容类型
+     * @return 文件的访问URL，失败返回null
+     */
+    public String uploadBytes(String key, byte[] data, int length, String contentType) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(length);
+        metadata.setContentType(contentType);
+        PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key,
+                new ByteArrayInputStream(data, 0, length), metadata);
+        PutObjectResult result;
+        try {
+            result = cosClient.putObject(putObjectRequest);
+        } catch (CosClientException e) {
+            log.error("数据上传到 COS 失败：{}，错误：{}", key, e.getMessage());
+            return null;
+        }
+        if (result != null) {
+            String url = String.format("%s%s", cosClientConfig.getHost(), key);
+            log.info("数据上传到 COS 成功：{}（{} 字节）", url, length);
+            return url;
+        } else {
+            log.error("数据上传到 COS 失败：{}，返回结果为空", key);
+            return null;
+        }
+    }
 }
@@ -0,0 +1,368 @@
+package com.code.codeagent.manager;
+
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.code.codeagent.config.DeployConfig;
+import com.code.codeagent.constant.AppConstant;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 部署版本管理
+ * 1. 每次部署在版本目录中生成一个不可变版本，与上一版本内容相同的文件使用硬链接，只复制变化的文件
+ * 2. 版本在临时目录中生成完成后整体改名，再通过符号链接原子替换部署目录，访问方不会看到缺失或写了一半的站点
+ * 3. 每次切换记录在上线历史中，回滚沿上线历史退回到上一个上线的版本（而不是版本号更早的版本），连续回滚逐个后退
+ * 4. 旧版本在后台清理，保留最近上线的若干个版本和当前版本，可用于回滚
+ * <p>
+ * 目录结构：code_deploy/&lt;deployKey&gt; -> code_release/&lt;deployKey&gt;/&lt;releaseId&gt;，
+ * 上线历史为 code_release/&lt;deployKey&gt;/.history，每行一个版本号，最后一行为当前版本
+ *
+ * @author CodeAgent
+ */
+@Slf4j
+@Component
+public class DeployReleaseManager {
+
+    private static final String STAGING_PREFIX = ".staging-";
+
+    /**
+     * 上线历史文件名
+     */
+    private static final String HISTORY_FILE = ".history";
+
+    @Resource
+    private DeployConfig deployConfig;
+
+    /**
+     * 部署目录的根目录（测试时替换为临时目录）
+     */
+    private String deployRootDir = AppConstant.CODE_DEPLOY_ROOT_DIR;
+
+    /**
+     * 同一 deployKey 的发布、回滚和清理串行执行
+     */
+    private final Map<String, ReentrantLock> deployLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 发布新版本
+     *
+     * @param deployKey 部署标识
+     * @param sourceDir 待发布的目录（dist 或源码目录）
+     * @throws IOException 发布失败
+     */
+    public void publish(String deployKey, File sourceDir) throws IOException {
+        ReentrantLock lock = deployLocks.computeIfAbsent(deployKey, key -> new ReentrantLock());
+        lock.lock();
+        try {
+            Path releaseDir = releaseDir(deployKey);
+            Files.createDirectories(releaseDir);
+            Path deployLink = deployLink(deployKey);
+            migrateLegacyDeploy(deployKey, deployLink, releaseDir);
+            Path previousRelease = currentRelease(deployLink);
+            List<String> history = readHistory(deployKey, previousRelease);
+            Path stagingDir = releaseDir.resolve(STAGING_PREFIX + IdUtil.fastSimpleUUID());
+            try {
+                PopulateResult result = populate(sourceDir.toPath(), stagingDir, previousRelease);
+                Path release = releaseDir.resolve(newReleaseId(releaseDir));
+                Files.move(stagingDir, release, StandardCopyOption.ATOMIC_MOVE);
+                switchTo(deployLink, release);
+                history.add(release.getFileName().toString());
+                try {
+                    writeHistory(deployKey, history);
+                } catch (IOException e) {
+                    // 新版本已上线，回滚时以部署目录的当前指向补齐
+                    log.warn("记录上线历史失败：{}，错误：{}", deployKey, e.getMessage());
+                }
+                log.info("部署版本发布成功：{}，版本：{}，硬链接文件：{}，复制文件：{}（{} 字节）",
+                        deployKey, release.getFileName(), result.linkedFiles, result.copiedFiles, result.copiedBytes);
+            } finally {
+                if (Files.exists(stagingDir)) {
+                    FileUtil.del(stagingDir);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        Thread.ofVirtual().name("deploy-gc-" + deployKey).start(() -> collectGarbage(deployKey));
+    }
+
+    /**
+     * 回滚到上一个上线的版本，并从上线历史中移除当前版本，再次回滚时继续后退
+     *
+     * @param deployKey 部署标识
+     * @return 是否回滚成功（上线历史中没有仍保留的更早版本时返回 false）
+     * @throws IOException 切换失败
+     */
+    public boolean rollback(String deployKey) throws IOException {
+        ReentrantLock lock = deployLocks.computeIfAbsent(deployKey, key -> new ReentrantLock());
+        lock.lock();
+        try {
+            Path deployLink = deployLink(deployKey);
+            Path current = currentRelease(deployLink);
+            if (current == null) {
+                return false;
+            }
+            String currentId = current.getFileName().toString();
+            List<String> history = readHistory(deployKey, current);
+            if (history.isEmpty() || !history.getLast().equals(currentId)) {
+                // 上线历史未能记录当前版本时以当前指向为准
+                history.add(currentId);
+            }
+            history.removeLast();
+            // 沿上线历史后退，跳过已被清理的版本
+            Path previous = null;
+            while (!history.isEmpty()) {
+                Path candidate = releaseDir(deployKey).resolve(history.getLast());
+                if (Files.isDirectory(candidate) && !candidate.equals(current)) {
+                    previous = candidate;
+                    break;
+                }
+                history.removeLast();
+            }
+            if (previous == null) {
+                return false;
+            }
+            switchTo(deployLink, previous);
+            writeHistory(deployKey, history);
+            log.info("部署版本已回滚：{}，{} -> {}", deployKey, currentId, previous.getFileName());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 清理旧版本：保留最近上线的若干个版本和当前版本，删除残留的临时目录
+     *
+     * @param deployKey 部署标识
+     */
+    public void collectGarbage(String deployKey) {
+        ReentrantLock lock = deployLocks.computeIfAbsent(deployKey, key -> new ReentrantLock());
+        lock.lock();
+        try {
+            Path current = currentRelease(deployLink(deployKey));
+            List<String> history = readHistory(deployKey, current);
+            Set<String> kept = new HashSet<>(history.subList(
+                    Math.max(0, history.size() - Math.max(1, deployConfig.getKeepReleases())), history.size()));
+            if (current != null) {
+                kept.add(current.getFileName().toString());
+            }
+            for (Path release : listReleases(deployKey)) {
+                if (!kept.contains(release.getFileName().toString())) {
+                    FileUtil.del(release);
+                    log.info("已清理旧部署版本：{}/{}", deployKey, release.getFileName());
+                }
+            }
+            List<String> keptHistory = history.stream().filter(kept::contains).toList();
+            if (keptHistory.size() != history.size()) {
+                writeHistory(deployKey, keptHistory);
+            }
+            try (Stream<Path> stream = Files.list(releaseDir(deployKey))) {
+                stream.filter(path -> path.getFileName().toString().startsWith(STAGING_PREFIX)).forEach(FileUtil::del);
+            }
+        } catch (Exception e) {
+            log.warn("清理旧部署版本失败：{}，错误：{}", deployKey, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path deployLink(String deployKey) {
+        return Paths.get(deployRootDir, deployKey).toAbsolutePath().normalize();
+    }
+
+    private Path releaseDir(String deployKey) {
+        return Paths.get(deployConfig.getReleaseRootDir(), deployKey).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 当前部署指向的版本，部署目录不是符号链接时返回 null
+     */
+    private Path currentRelease(Path deployLink) throws IOException {
+        if (!Files.isSymbolicLink(deployLink)) {
+            return null;
+        }
+        Path target = deployLink.resolveSibling(Files.readSymbolicLink(deployLink)).normalize();
+        return Files.isDirectory(target) ? target : null;
+    }
+
+    /**
+     * 已发布的版本，按版本号（时间）升序
+     */
+    private List<Path> listReleases(String deployKey) throws IOException {
+        Path releaseDir = releaseDir(deployKey);
+        if (!Files.isDirectory(releaseDir)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.list(releaseDir)) {
+            return stream.filter(path -> !path.getFileName().toString().startsWith(STAGING_PREFIX))
+                    .filter(Files::isDirectory)
+                    .map(Path::normalize)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * 读取上线历史（按上线顺序，最后一个为当前版本）
+     * 没有历史文件（记录上线历史之前的部署）时，按版本号顺序视为依次上线到当前版本
+     */
+    private List<String> readHistory(String deployKey, Path current) throws IOException {
+        Path historyFile = releaseDir(deployKey).resolve(HISTORY_FILE);
+        List<String> history = new ArrayList<>();
+        if (Files.isRegularFile(historyFile)) {
+            for (String line : Files.readAllLines(historyFile)) {
+                if (StrUtil.isNotBlank(line)) {
+                    history.add(line.trim());
+                }
+            }
+            return history;
+        }
+        if (current != null) {
+            String currentId = current.getFileName().toString();
+            for (Path release : listReleases(deployKey)) {
+                String releaseId = release.getFileName().toString();
+                if (releaseId.compareTo(currentId) <= 0) {
+                    history.add(releaseId);
+                }
+            }
+        }
+        return history;
+    }
+
+    /**
+     * 写入上线历史（先写临时文件再原子改名）
+     */
+    private void writeHistory(String deployKey, List<String> history) throws IOException {
+        Path historyFile = releaseDir(deployKey).resolve(HISTORY_FILE);
+        Path tempFile = historyFile.resolveSibling(HISTORY_FILE + ".tmp-" + IdUtil.fastSimpleUUID());
+        try {
+            Files.write(tempFile, history);
+            Files.move(tempFile, historyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private String newReleaseId(Path releaseDir) {
+        String releaseId = DateUtil.format(new Date(), DatePattern.PURE_DATETIME_MS_PATTERN);
+        if (Files.exists(releaseDir.resolve(releaseId))) {
+            releaseId += "-" + IdUtil.fastSimpleUUID().substring(0, 6);
+        }
+        return releaseId;
+    }
+
+    /**
+     * 旧版本的部署目录是普通目录，先整体改名为一个版本，再替换为符号链接
+     */
+    private void migrateLegacyDeploy(String deployKey, Path deployLink, Path releaseDir) throws IOException {
+        if (Files.isDirectory(deployLink) && !Files.isSymbolicLink(deployLink)) {
+            Path legacyRelease = releaseDir.resolve(newReleaseId(releaseDir));
+            Files.move(deployLink, legacyRelease, StandardCopyOption.ATOMIC_MOVE);
+            switchTo(deployLink, legacyRelease);
+            log.info("已将部署目录迁移为版本：{}/{}", deployKey, legacyRelease.getFileName());
+        }
+    }
+
+    /**
+     * 先创建临时符号链接，再改名覆盖部署目录（rename 原子替换）
+     * 不支持符号链接的系统退化为删除后复制
+     */
+    private void switchTo(Path deployLink, Path release) throws IOException {
+        Files.createDirectories(deployLink.getParent());
+        Path target = deployLink.getParent().relativize(release);
+        Path tempLink = deployLink.resolveSibling("." + deployLink.getFileName() + ".tmp-" + IdUtil.fastSimpleUUID());
+        try {
+            Files.createSymbolicLink(tempLink, target);
+        } catch (UnsupportedOperationException | IOException e) {
+            log.warn("创建符号链接失败，改为复制部署：{}，错误：{}", deployLink, e.getMessage());
+            FileUtil.del(deployLink);
+            FileUtil.copyContent(release.toFile(), deployLink.toFile(), true);
+            return;
+        }
+        try {
+            Files.move(tempLink, deployLink, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempLink);
+            throw e;
+        }
+    }
+
+    /**
+     * 生成版本内容：与上一版本相同的文件直接硬链接，其余复制（保留修改时间供下次比较）
+     */
+    private PopulateResult populate(Path source, Path dest, Path previousRelease) throws IOException {
+        PopulateResult result = new PopulateResult();
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(dest.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String relativePath = source.relativize(file).toString();
+                Path destFile = dest.resolve(relativePath);
+                if (previousRelease != null && linkUnchanged(file, previousRelease.resolve(relativePath), destFile, attrs)) {
+                    result.linkedFiles++;
+                    return FileVisitResult.CONTINUE;
+                }
+                Files.copy(file, destFile, StandardCopyOption.COPY_ATTRIBUTES);
+                result.copiedFiles++;
+                result.copiedBytes += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+    private boolean linkUnchanged(Path sourceFile, Path previousFile, Path destFile, BasicFileAttributes attrs) {
+        try {
+            if (!Files.isRegularFile(previousFile) || Files.size(previousFile) != attrs.size()) {
+                return false;
+            }
+            // 构建工具每次都会重写 dist，修改时间不同时再比较内容
+            if (!Files.getLastModifiedTime(previousFile).equals(attrs.lastModifiedTime())
+                    && Files.mismatch(previousFile, sourceFile) != -1) {
+                return false;
+            }
+            Files.createLink(destFile, previousFile);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static class PopulateResult {
+
+        private int linkedFiles;
+
+        private int copiedFiles;
+
+        private long copiedBytes;
+    }
+}
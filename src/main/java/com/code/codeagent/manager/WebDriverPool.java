@@ -0,0 +1,182 @@
+package com.code.codeagent.manager;
+
+import com.code.codeagent.config.ScreenshotConfig;
+import com.code.codeagent.exception.BusinessException;
+import com.code.codeagent.exception.ErrorCode;
+import com.code.codeagent.exception.ThrowUtils;
+import com.code.codeagent.utils.WebScreenshotUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.WebDriver;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无头浏览器池
+ * 每个浏览器同一时间只被一个截图任务使用；借出时做健康检查，失效或使用次数达到上限的实例销毁重建。
+ * 浏览器实例按需创建，数量不超过配置的池大小。
+ *
+ * @author CodeAgent
+ */
+@Slf4j
+@Component
+public class WebDriverPool {
+
+    @Resource
+    private ScreenshotConfig screenshotConfig;
+
+    /**
+     * 空闲实例（后进先出，优先复用刚用过的实例）
+     */
+    private final LinkedBlockingDeque<PooledDriver> idleDrivers = new LinkedBlockingDeque<>();
+
+    private final LongAdder createdCount = new LongAdder();
+
+    private final LongAdder recycledCount = new LongAdder();
+
+    private Semaphore permits;
+
+    private volatile boolean closed;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(Math.max(1, screenshotConfig.getPoolSize()), true);
+    }
+
+    /**
+     * 借出浏览器，使用完毕必须调用 {@link #release(PooledDriver, boolean)}
+     *
+     * @return 浏览器实例
+     */
+    public PooledDriver borrow() {
+        ThrowUtils.throwIf(closed, ErrorCode.OPERATION_ERROR, "浏览器池已关闭");
+        try {
+            if (!permits.tryAcquire(screenshotConfig.getBorrowTimeoutSeconds(), TimeUnit.SECONDS)) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "等待浏览器实例超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "等待浏览器实例被中断");
+        }
+        try {
+            PooledDriver pooledDriver;
+            while ((pooledDriver = idleDrivers.pollFirst()) != null) {
+                if (isHealthy(pooledDriver)) {
+                    return pooledDriver;
+                }
+                log.warn("浏览器实例已失效，销毁重建");
+                quit(pooledDriver);
+            }
+            createdCount.increment();
+            return new PooledDriver(WebScreenshotUtils.createChromeDriver());
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 归还浏览器
+     *
+     * @param pooledDriver 浏览器实例
+     * @param broken       使用过程中是否出错（出错的实例直接销毁）
+     */
+    public void release(PooledDriver pooledDriver, boolean broken) {
+        try {
+            pooledDriver.uses++;
+            if (closed || broken || pooledDriver.uses >= screenshotConfig.getMaxUsesPerDriver()) {
+                recycledCount.increment();
+                quit(pooledDriver);
+            } else {
+                idleDrivers.offerFirst(pooledDriver);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 池大小
+     */
+    public int getPoolSize() {
+        return Math.max(1, screenshotConfig.getPoolSize());
+    }
+
+    /**
+     * 正在使用的实例数
+     */
+    public int getActiveCount() {
+        return getPoolSize() - permits.availablePermits();
+    }
+
+    /**
+     * 空闲实例数
+     */
+    public int getIdleCount() {
+        return idleDrivers.size();
+    }
+
+    /**
+     * 累计创建的实例数
+     */
+    public long getCreatedCount() {
+        return createdCount.sum();
+    }
+
+    /**
+     * 累计回收（达到使用上限或出错）的实例数
+     */
+    public long getRecycledCount() {
+        return recycledCount.sum();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        closed = true;
+        PooledDriver pooledDriver;
+        while ((pooledDriver = idleDrivers.pollFirst()) != null) {
+            quit(pooledDriver);
+        }
+    }
+
+    private boolean isHealthy(PooledDriver pooledDriver) {
+        try {
+            pooledDriver.driver.getWindowHandle();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void quit(PooledDriver pooledDriver) {
+        try {
+            pooledDriver.driver.quit();
+        } catch (Exception e) {
+            log.warn("关闭浏览器实例失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 池中的浏览器实例
+     */
+    public static class PooledDriver {
+
+        private final WebDriver driver;
+
+        private int uses;
+
+        private PooledDriver(WebDriver driver) {
+            this.driver = driver;
+        }
+
+        public WebDriver getDriver() {
+            return driver;
+        }
+    }
+}
@@ -3,6 +3,10 @@ package com.code.codeagent.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.code.codeagent.model.entity.ChatHistory;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * 对话历史 Mapper 接口
@@ -12,4 +16,22 @@ import org.apache.ibatis.annotations.Mapper;
 @Mapper
 public interface ChatHistoryMapper extends BaseMapper<ChatHistory> {
 
+    /**
+     * 批量插入对话历史（单条多行 INSERT，主键和时间由调用方预先生成）
+     *
+     * @param list 对话历史列表
+     * @return 插入行数
+     */
+    int insertBatch(@Param("list") List<ChatHistory> list);
+
+    /**
+     * 批量查询多个应用各自最近的若干条对话历史（窗口函数，单次查询）
+     *
+     * @param appIds   应用ID列表
+     * @param limit    每个应用的最大条数
+     * @param beforeId 只查询该消息之前（ID 更小）的历史，为 null 时不限制
+     * @return 按应用ID、创建时间正序排列的对话历史
+     */
+    List<ChatHistory> selectRecentByAppIds(@Param("appIds") Collection<Long> appIds, @Param("limit") int limit,
+                                           @Param("beforeId") Long beforeId);
 }
\ No newline at end of file
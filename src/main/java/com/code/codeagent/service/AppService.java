@@ -2,6 +2,7 @@ package com.code.codeagent.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.code.codeagent.ai.model.message.StreamMessage;
 import com.code.codeagent.model.dto.app.AppAddRequest;
 import com.code.codeagent.model.dto.app.AppQueryRequest;
 import com.code.codeagent.model.entity.App;
@@ -25,9 +26,9 @@ public interface AppService extends IService<App> {
      * @param appId 应用ID
      * @param message 用户消息
      * @param loginUser 登录用户
-     * @return 流式响应
+     * @return 流式响应（AI 响应消息和文件完成消息）
      */
-    Flux<String> chatToGenCode(Long appId, String message, User loginUser);
+    Flux<StreamMessage> chatToGenCode(Long appId, String message, User loginUser);
 
     /**
      * 重新生成代码（基于历史消息重试）
@@ -36,9 +37,9 @@ public interface AppService extends IService<App> {
      * @param message 用户消息
      * @param loginUser 登录用户
      * @param parentMessageId 父消息ID（用户消息ID）
-     * @return 流式响应
+     * @return 流式响应（AI 响应消息和文件完成消息）
      */
-    Flux<String> retryGenerateCode(Long appId, String message, User loginUser, Long parentMessageId);
+    Flux<StreamMessage> retryGenerateCode(Long appId, String message, User loginUser, Long parentMessageId);
 
     /**
      * 应用部署
@@ -48,6 +49,15 @@ public interface AppService extends IService<App> {
      * @return 部署URL
      */
     String deployApp(Long appId, User loginUser);
+
+    /**
+     * 回滚应用部署到上一个版本
+     *
+     * @param appId 应用ID
+     * @param loginUser 登录用户
+     * @return 部署URL
+     */
+    String rollbackDeploy(Long appId, User loginUser);
     /**
      * 创建应用
      * 
@@ -19,6 +19,7 @@ public interface ChatHistoryService extends IService<ChatHistory> {
 
     /**
      * 添加对话历史
+     * 主键在内存中生成后立即返回，记录由写后队列异步批量写入数据库
      *
      * @param appId       应用 id
      * @param message     消息
@@ -1,15 +1,18 @@
 package com.code.codeagent.service;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 public interface ProjectDownloadService {
 
     /**
-     * 下载项目为压缩包
+     * 下载项目为压缩包（支持 ETag 和 Range 断点续传）
      *
      * @param projectPath
      * @param downloadFileName
+     * @param request
      * @param response
      */
-    void downloadProjectAsZip(String projectPath, String downloadFileName, HttpServletResponse response);
+    void downloadProjectAsZip(String projectPath, String downloadFileName,
+                              HttpServletRequest request, HttpServletResponse response);
 }
@@ -1,5 +1,8 @@
 package com.code.codeagent.service;
 
+import java.util.Map;
+import java.util.function.Consumer;
+
 /**
  * 截图服务
  */
@@ -14,4 +17,22 @@ public interface ScreenshotService {
      */
     String generateAndUploadScreenshot(String webUrl);
 
+    /**
+     * 提交应用截图任务（异步执行）
+     * 同一应用排队中的任务只保留最新的一个，队列已满时丢弃
+     *
+     * @param appId     应用ID
+     * @param webUrl    网址
+     * @param onSuccess 截图上传成功后的回调，参数为截图访问地址
+     * @return 是否已进入队列
+     */
+    boolean submitScreenshot(Long appId, String webUrl, Consumer<String> onSuccess);
+
+    /**
+     * 获取截图统计信息
+     *
+     * @return 队列、浏览器池、吞吐量和耗时统计
+     */
+    Map<String, Object> getStats();
+
 }
@@ -6,21 +6,28 @@ import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.code.codeagent.config.AiCodeGeneratorServiceFactory;
+import com.code.codeagent.config.ProjectBuildConfig;
 import com.code.codeagent.constant.AppConstant;
 import com.code.codeagent.core.AiCodeGeneratorFacade;
+import com.code.codeagent.core.builder.BuildPriority;
 import com.code.codeagent.core.builder.VueProjectBuilder;
 import com.code.codeagent.core.builder.ReactProjectBuilder;
 import com.code.codeagent.core.handler.StreamHandlerExecutor;
+import com.code.codeagent.core.saver.CodeBlobStore;
+import com.code.codeagent.core.saver.ProjectWriteBuffer;
 import com.code.codeagent.ai.AiCodeGenTypeRoutingService;
 import com.code.codeagent.exception.BusinessException;
 import com.code.codeagent.exception.ErrorCode;
 import com.code.codeagent.exception.ThrowUtils;
+import com.code.codeagent.manager.DeployReleaseManager;
 import com.code.codeagent.mapper.AppMapper;
 import com.code.codeagent.model.dto.app.AppAddRequest;
 import com.code.codeagent.model.dto.app.AppQueryRequest;
 import com.code.codeagent.model.entity.App;
 import com.code.codeagent.model.entity.User;
 import com.code.codeagent.model.enums.ChatHistoryMessageTypeEnum;
+import com.code.codeagent.ai.model.message.StreamMessage;
 import com.code.codeagent.model.enums.CodeGenTypeEnum;
 import com.code.codeagent.model.vo.AppVO;
 import com.code.codeagent.model.vo.UserVO;
@@ -34,14 +41,20 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
-import cn.hutool.core.io.FileUtil;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -74,11 +87,20 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     @Resource
     private ScreenshotService screenshotService;
 
+    @Resource
+    private DeployReleaseManager deployReleaseManager;
+
     @Resource
     private AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService;
 
+    @Resource
+    private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
+
+    @Resource
+    private ProjectBuildConfig projectBuildConfig;
+
     @Override
-    public Flux<String> chatToGenCode(Long appId, String message, User loginUser) {
+    public Flux<StreamMessage> chatToGenCode(Long appId, String message, User loginUser) {
         // 1. 参数校验
         ThrowUtils.throwIfNotPositive(appId, ErrorCode.PARAMS_ERROR, "应用ID错误");
         ThrowUtils.throwIfBlank(message, ErrorCode.PARAMS_ERROR, "提示词不能为空");
@@ -99,17 +121,19 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         
         // 5. 在调用 AI 前，先保存用户消息到数据库中
         Long userMessageId = chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId(), null);
+        // 对话记忆过期时从该消息之前的历史回填
+        aiCodeGeneratorServiceFactory.prepareChatMemory(appId, codeGenTypeEnum, userMessageId);
         
         // 6. 调用 AI 生成代码（流式）
         log.info("开始为应用生成代码，应用ID：{}，用户ID：{}，消息长度：{}", appId, loginUser.getId(), message.length());
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId);
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId);
         
         // 7. 收集 AI 响应的内容，并且在完成后保存记录到对话历史
         return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum, userMessageId);
     }
 
     @Override
-    public Flux<String> retryGenerateCode(Long appId, String message, User loginUser, Long parentMessageId) {
+    public Flux<StreamMessage> retryGenerateCode(Long appId, String message, User loginUser, Long parentMessageId) {
         // 1. 参数校验
         ThrowUtils.throwIfNotPositive(appId, ErrorCode.PARAMS_ERROR, "应用ID错误");
         ThrowUtils.throwIfBlank(message, ErrorCode.PARAMS_ERROR, "提示词不能为空");
@@ -131,10 +155,12 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         
         // 5. 删除原有的AI回复（重试时清理）
         chatHistoryService.deleteAiRepliesByParentId(parentMessageId);
+        // 对话记忆过期时从原始用户消息之前的历史回填
+        aiCodeGeneratorServiceFactory.prepareChatMemory(appId, codeGenTypeEnum, parentMessageId);
         
         // 6. 调用 AI 重新生成代码（流式响应）
         log.info("开始重新生成代码，应用ID：{}，用户ID：{}，父消息ID：{}", appId, loginUser.getId(), parentMessageId);
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId);
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId);
         
         // 7. 使用 StreamHandlerExecutor 处理流，AI回复会关联到原始用户消息
         return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum, parentMessageId);
@@ -174,7 +200,12 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         String sourceDirName = codeGenType + "_" + appId;
         String sourceDirPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + sourceDirName;
         
-        // 7. 检查路径是否存在并有内容
+        // 7. 检查路径是否存在并有内容（目录中缺失的文件先按内容寻址存储的清单补齐）
+        try {
+            CodeBlobStore.materialize(Paths.get(sourceDirPath));
+        } catch (IOException e) {
+            log.warn("补齐应用代码目录失败，应用ID：{}，错误：{}", appId, e.getMessage());
+        }
         File sourceDir = new File(sourceDirPath);
         ThrowUtils.throwIf(!sourceDir.exists() || !sourceDir.isDirectory(), 
                           ErrorCode.SYSTEM_ERROR, "应用代码路径不存在，请先生成应用");
@@ -187,8 +218,8 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         //项目类型需要额外处理（构建和使用dist目录）
         CodeGenTypeEnum projectType = CodeGenTypeEnum.getEnumByValue(codeGenType);
         if (projectType == CodeGenTypeEnum.VUE_PROJECT) {
-            // 1. 构建vue项目
-            Boolean buildResult = vueProjectBuilder.buildProject(sourceDirPath);
+            // 1. 构建vue项目（部署构建优先于对话后的预构建）
+            boolean buildResult = awaitDeployBuild(vueProjectBuilder.submitBuild(sourceDirPath, BuildPriority.DEPLOY));
             ThrowUtils.throwIf(!buildResult, ErrorCode.SYSTEM_ERROR, "Vue应用构建失败，请重试！");
             // 2. 检查构建目录是否存在
             File distDir = new File(sourceDirPath,"dist");
@@ -196,8 +227,8 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
             // 3. 复制文件到部署目录
             sourceDir = distDir;
         } else if (projectType == CodeGenTypeEnum.REACT_PROJECT) {
-            // 1. 构建react项目
-            Boolean buildResult = reactProjectBuilder.buildProject(sourceDirPath);
+            // 1. 构建react项目（部署构建优先于对话后的预构建）
+            boolean buildResult = awaitDeployBuild(reactProjectBuilder.submitBuild(sourceDirPath, BuildPriority.DEPLOY));
             ThrowUtils.throwIf(!buildResult, ErrorCode.SYSTEM_ERROR, "React应用构建失败，请重试！");
             // 2. 检查构建目录是否存在
             File distDir = new File(sourceDirPath,"dist");
@@ -206,23 +237,10 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
             sourceDir = distDir;
         }
         
-        // 8. 创建部署目录并复制文件
-        String deployDirPath = AppConstant.CODE_DEPLOY_ROOT_DIR + File.separator + deployKey;
-        File deployDir = new File(deployDirPath);
-        
+        // 8. 发布新版本（未变化的文件硬链接复用，部署目录原子切换到新版本）
         try {
-            // 确保部署根目录存在
-            FileUtil.mkdir(AppConstant.CODE_DEPLOY_ROOT_DIR);
-            
-            // 如果部署目录已存在，先清空
-            if (deployDir.exists()) {
-                FileUtil.del(deployDir);
-            }
-            
-            // 复制文件到部署目录
-            FileUtil.copyContent(sourceDir, deployDir, true);
-            
-            log.info("应用部署成功，应用ID：{}，部署路径：{}", appId, deployDirPath);
+            deployReleaseManager.publish(deployKey, sourceDir);
+            log.info("应用部署成功，应用ID：{}，部署路径：{}", appId, AppConstant.CODE_DEPLOY_ROOT_DIR + File.separator + deployKey);
         } catch (Exception e) {
             log.error("应用部署失败，应用ID：{}，错误信息：{}", appId, e.getMessage(), e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "应用部署失败：" + e.getMessage());
@@ -244,6 +262,29 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         return deployUrl;
     }
 
+    @Override
+    public String rollbackDeploy(Long appId, User loginUser) {
+        ThrowUtils.throwIfNotPositive(appId, ErrorCode.PARAMS_ERROR, "应用ID错误");
+        App app = this.getById(appId);
+        ThrowUtils.throwIfNull(app, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        // 仅本人可以回滚自己的应用
+        ThrowUtils.throwIfNotEquals(app.getUserId(), loginUser.getId(), ErrorCode.NO_AUTH_ERROR, "无权限回滚该应用");
+        String deployKey = app.getDeployKey();
+        ThrowUtils.throwIfBlank(deployKey, ErrorCode.OPERATION_ERROR, "应用尚未部署");
+        boolean rolledBack;
+        try {
+            rolledBack = deployReleaseManager.rollback(deployKey);
+        } catch (Exception e) {
+            log.error("应用回滚失败，应用ID：{}，错误信息：{}", appId, e.getMessage(), e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "应用回滚失败：" + e.getMessage());
+        }
+        ThrowUtils.throwIf(!rolledBack, ErrorCode.OPERATION_ERROR, "没有可回滚的历史版本");
+        String deployUrl = String.format("%s/%s", AppConstant.APP_DEPLOY_DOMAIN, deployKey);
+        log.info("应用已回滚到上一版本，应用ID：{}，访问地址：{}", appId, deployUrl);
+        generateScreenshotAsync(appId, deployUrl);
+        return deployUrl;
+    }
+
     @Override
     public Long addApp(AppAddRequest appAddRequest, User loginUser) {
          // 构造入库对象
@@ -283,9 +324,8 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         // 1. 参数校验
         ThrowUtils.throwIfNotPositive(appId, ErrorCode.PARAMS_ERROR, "应用ID错误");
         ThrowUtils.throwIfBlank(deployUrl, ErrorCode.PARAMS_ERROR, "部署URL不能为空");
-        // 2. 异步生成应用截图
-        Thread.startVirtualThread(()->{
-            String screenshotUrl = screenshotService.generateAndUploadScreenshot(deployUrl);
+        // 2. 提交截图任务（同一应用排队中的任务会被合并）
+        screenshotService.submitScreenshot(appId, deployUrl, screenshotUrl -> {
             App updateApp = new App();
             updateApp.setId(appId);
             updateApp.setCover(screenshotUrl);
@@ -293,6 +333,29 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
             ThrowUtils.throwIf(!updateResult, ErrorCode.OPERATION_ERROR, "更新应用截图信息失败");
         });
     }
+    /**
+     * 等待部署构建完成，超过配置的时间后放弃等待
+     * 构建任务可能被多个请求合并共享，超时时不取消，由构建进程自身的超时结束
+     *
+     * @param buildFuture 构建结果
+     * @return 是否构建成功
+     */
+    private boolean awaitDeployBuild(CompletableFuture<Boolean> buildFuture) {
+        int timeoutSeconds = projectBuildConfig.getDeployWaitTimeoutSeconds();
+        try {
+            return Boolean.TRUE.equals(buildFuture.get(timeoutSeconds, TimeUnit.SECONDS));
+        } catch (TimeoutException e) {
+            log.warn("等待部署构建超时（{}秒）", timeoutSeconds);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "应用构建超时，请稍后重试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "等待应用构建被中断");
+        } catch (ExecutionException e) {
+            log.error("部署构建异常：{}", e.getCause() == null ? e.getMessage() : e.getCause().getMessage(), e);
+            return false;
+        }
+    }
+
     /**
      * 检查 deployKey 是否已存在
      * 
@@ -421,6 +484,8 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
             return false;
         }
         
+        App app = this.getById(appId);
+
         // 先删除关联的对话历史
         try {
             chatHistoryService.deleteByAppId(appId);
@@ -431,7 +496,24 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         }
         
         // 删除应用
-        return super.removeById(id);
+        boolean removed = super.removeById(id);
+        if (removed && app != null && StrUtil.isNotBlank(app.getCodeGenType())) {
+            deleteCodeDir(appId, app.getCodeGenType());
+        }
+        return removed;
+    }
+
+    /**
+     * 删除应用的代码目录和代码清单，未写入的缓冲内容一并丢弃，引用的 blob 由内容寻址存储的清理回收
+     */
+    private void deleteCodeDir(long appId, String codeGenType) {
+        Path codeDir = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, codeGenType + "_" + appId);
+        try {
+            ProjectWriteBuffer.discard(codeDir);
+            CodeBlobStore.deleteApp(codeDir);
+        } catch (Exception e) {
+            log.error("删除应用代码目录失败，应用ID：{}，错误：{}", appId, e.getMessage());
+        }
     }
 
     @Override
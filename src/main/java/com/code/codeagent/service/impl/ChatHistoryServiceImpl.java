@@ -2,12 +2,14 @@ package com.code.codeagent.service.impl;
 
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.code.codeagent.constant.UserConstant;
 import com.code.codeagent.exception.BusinessException;
 import com.code.codeagent.exception.ErrorCode;
 import com.code.codeagent.exception.ThrowUtils;
+import com.code.codeagent.manager.ChatHistoryWriter;
 import com.code.codeagent.mapper.ChatHistoryMapper;
 import com.code.codeagent.model.dto.chathistory.ChatHistoryQueryRequest;
 import com.code.codeagent.model.entity.App;
@@ -39,8 +41,10 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Lazy
     private AppService appService;
 
+    @Resource
+    private ChatHistoryWriter chatHistoryWriter;
+
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public Long addChatMessage(Long appId, String message, String messageType, Long userId, Long parentId) {
         // 基础校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
@@ -55,24 +59,29 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         // 如果是AI消息，必须有父消息ID
         if (ChatHistoryMessageTypeEnum.AI.getValue().equals(messageType)) {
             ThrowUtils.throwIf(parentId == null || parentId <= 0, ErrorCode.PARAMS_ERROR, "AI消息必须关联用户消息");
-            // 验证父消息是否存在且为用户消息
-            ChatHistory parentMessage = this.getById(parentId);
-            ThrowUtils.throwIf(parentMessage == null, ErrorCode.PARAMS_ERROR, "父消息不存在");
-            ThrowUtils.throwIf(!ChatHistoryMessageTypeEnum.USER.getValue().equals(parentMessage.getMessageType()), 
-                    ErrorCode.PARAMS_ERROR, "AI消息只能回复用户消息");
+            // 验证父消息是否存在且为用户消息，刚写入的用户消息直接在内存中校验
+            if (!chatHistoryWriter.isRecentUserMessage(parentId)) {
+                ChatHistory parentMessage = this.getById(parentId);
+                ThrowUtils.throwIf(parentMessage == null, ErrorCode.PARAMS_ERROR, "父消息不存在");
+                ThrowUtils.throwIf(!ChatHistoryMessageTypeEnum.USER.getValue().equals(parentMessage.getMessageType()),
+                        ErrorCode.PARAMS_ERROR, "AI消息只能回复用户消息");
+            }
         }
         
-        // 插入数据库
+        // 预先生成主键和时间，保证返回的ID可立即使用、写入顺序与创建时间一致
+        LocalDateTime now = LocalDateTime.now();
         ChatHistory chatHistory = new ChatHistory()
+                .setId(IdWorker.getId())
                 .setAppId(appId)
                 .setMessage(message)
                 .setMessageType(messageType)
                 .setUserId(userId)
-                .setParentId(parentId);
-        
-        boolean success = this.save(chatHistory);
-        ThrowUtils.throwIf(!success, ErrorCode.SYSTEM_ERROR, "保存对话历史失败");
+                .setParentId(parentId)
+                .setCreateTime(now)
+                .setUpdateTime(now);
         
+        // 用户消息直接写入，AI 回复提交到写后队列由后台批量写入
+        chatHistoryWriter.submit(chatHistory);
         return chatHistory.getId();
     }
 
@@ -80,6 +89,8 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Transactional(rollbackFor = Exception.class)
     public boolean deleteByAppId(Long appId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
+        // 先写完队列中的消息，否则删除后又会被写入
+        chatHistoryWriter.flush(appId);
         QueryWrapper<ChatHistory> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("appId", appId);
         return this.remove(queryWrapper);
@@ -100,6 +111,9 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         boolean isCreator = app.getUserId().equals(loginUser.getId());
         ThrowUtils.throwIf(!isAdmin && !isCreator, ErrorCode.NO_AUTH_ERROR, "无权查看该应用的对话历史");
         
+        // 先写完该应用队列中的消息，保证能查到最新一轮对话
+        chatHistoryWriter.flush(appId);
+        
         // 构建查询条件
         ChatHistoryQueryRequest queryRequest = new ChatHistoryQueryRequest();
         queryRequest.setAppId(appId);
@@ -142,6 +156,7 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Override
     public List<ChatHistory> getChildMessages(Long parentId) {
         ThrowUtils.throwIf(parentId == null || parentId <= 0, ErrorCode.PARAMS_ERROR, "父消息ID不能为空");
+        flushByParentId(parentId);
         
         QueryWrapper<ChatHistory> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("parentId", parentId)
@@ -153,6 +168,8 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Transactional(rollbackFor = Exception.class)
     public boolean deleteAiRepliesByParentId(Long parentId) {
         ThrowUtils.throwIf(parentId == null || parentId <= 0, ErrorCode.PARAMS_ERROR, "父消息ID不能为空");
+        // 先写完队列中的回复，否则删除后又会被写入
+        flushByParentId(parentId);
         
         QueryWrapper<ChatHistory> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("parentId", parentId)
@@ -165,6 +182,7 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
         
         try {
+            chatHistoryWriter.flush(appId);
             QueryWrapper<ChatHistory> queryWrapper = new QueryWrapper<>();
             queryWrapper.eq("appId", appId)
                     .orderBy(true, false, "createTime")
@@ -185,6 +203,21 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         }
     }
 
+    /**
+     * 写完父消息所属应用队列中的回复（用户消息是直接写入的，可以查到所属应用）
+     */
+    private void flushByParentId(Long parentId) {
+        Long appId = chatHistoryWriter.getRecentUserMessageAppId(parentId);
+        if (appId == null) {
+            ChatHistory parentMessage = this.getById(parentId);
+            if (parentMessage == null) {
+                return;
+            }
+            appId = parentMessage.getAppId();
+        }
+        chatHistoryWriter.flush(appId);
+    }
+
     @Override
     public QueryWrapper<ChatHistory> getQueryWrapper(ChatHistoryQueryRequest chatHistoryQueryRequest) {
         QueryWrapper<ChatHistory> queryWrapper = new QueryWrapper<>();
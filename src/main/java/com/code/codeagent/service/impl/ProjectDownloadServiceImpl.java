@@ -1,22 +1,58 @@
 package com.code.codeagent.service.impl;
 
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.core.util.ZipUtil;
+import com.code.codeagent.constant.AppConstant;
+import com.code.codeagent.core.saver.ProjectWriteBuffer;
 import com.code.codeagent.exception.BusinessException;
 import com.code.codeagent.exception.ErrorCode;
 import com.code.codeagent.exception.ThrowUtils;
 import com.code.codeagent.service.ProjectDownloadService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+/**
+ * 项目下载服务
+ * 遍历项目时整体跳过忽略的目录，按文件元数据（路径、大小、修改时间）计算指纹；
+ * 同一指纹的压缩包只生成一次并缓存到磁盘，之后通过 FileChannel.transferTo 直接发送。
+ * 指纹同时作为 ETag，支持 304 协商缓存和 Range 断点续传。
+ */
 @Service
 @Slf4j
 public class ProjectDownloadServiceImpl implements ProjectDownloadService {
@@ -34,7 +70,8 @@ public class ProjectDownloadServiceImpl implements ProjectDownloadService {
             "target",
             ".mvn",
             ".idea",
-            ".vscode"
+            ".vscode",
+            ".build-manifest.json"
     );
 
     /**
@@ -46,9 +83,21 @@ public class ProjectDownloadServiceImpl implements ProjectDownloadService {
             ".cache"
     );
 
+    /**
+     * 指纹版本，调整打包内容或格式时修改，避免命中旧的压缩包
+     */
+    private static final String FINGERPRINT_VERSION = "v1";
+
+    private static final String TEMP_MARKER = ".tmp-";
+
+    /**
+     * 同一压缩包的生成串行执行
+     */
+    private final Map<String, ReentrantLock> archiveLocks = new ConcurrentHashMap<>();
 
     @Override
-    public void downloadProjectAsZip(String projectPath, String downloadFileName, HttpServletResponse response) {
+    public void downloadProjectAsZip(String projectPath, String downloadFileName,
+                                     HttpServletRequest request, HttpServletResponse response) {
         // 基础校验
         ThrowUtils.throwIf(StrUtil.isBlank(projectPath), ErrorCode.PARAMS_ERROR, "项目路径不能为空");
         ThrowUtils.throwIf(StrUtil.isBlank(downloadFileName), ErrorCode.PARAMS_ERROR, "下载文件名不能为空");
@@ -56,46 +105,266 @@ public class ProjectDownloadServiceImpl implements ProjectDownloadService {
         ThrowUtils.throwIf(!projectDir.exists(), ErrorCode.PARAMS_ERROR, "项目路径不存在");
         ThrowUtils.throwIf(!projectDir.isDirectory(), ErrorCode.PARAMS_ERROR, "项目路径不是一个目录");
         log.info("开始打包下载项目: {} -> {}.zip", projectPath, downloadFileName);
-        // 设置 HTTP 响应头
-        response.setStatus(HttpServletResponse.SC_OK);
-        response.setContentType("application/zip");
-        response.addHeader("Content-Disposition",
-                String.format("attachment; filename=\"%s.zip\"", downloadFileName));
-        // 定义文件过滤器
-        FileFilter filter = file -> isPathAllowed(projectDir.toPath(), file.toPath());
-        // 压缩
         try {
-            // 使用 Hutool 的 ZipUtil 直接将过滤后的目录压缩到响应输出流
-            ZipUtil.zip(response.getOutputStream(), StandardCharsets.UTF_8, false, filter, projectDir);
+            Path projectRoot = projectDir.toPath().toAbsolutePath().normalize();
+            // 打包前让写缓冲中的文件落盘，落盘失败时不打包不完整的项目
+            List<String> failed = ProjectWriteBuffer.flush(projectRoot);
+            if (!failed.isEmpty()) {
+                log.error("打包前写缓冲落盘失败: {}，文件：{}", projectPath, failed);
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "项目文件尚未保存完成，请稍后重试");
+            }
+            List<ArchiveEntry> entries = collectEntries(projectRoot);
+            String fingerprint = fingerprint(entries);
+            try (FileChannel archive = openArchive(projectRoot, fingerprint, entries)) {
+                sendArchive(archive, "\"" + fingerprint + "\"", downloadFileName, request, response);
+            }
             log.info("打包下载项目成功: {} -> {}.zip", projectPath, downloadFileName);
-        } catch (IOException e) {
+        } catch (IOException | NoSuchAlgorithmException e) {
             log.error("打包下载项目失败", e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "打包下载项目失败");
         }
     }
 
     /**
-     * 校验路径是否允许包含在压缩包中
+     * 遍历项目，忽略的目录整体跳过，不再逐个检查其中的文件
      *
      * @param projectRoot 项目根目录
-     * @param fullPath    完整路径
-     * @return 是否允许
+     * @return 压缩包条目（按条目名排序）
+     */
+    private List<ArchiveEntry> collectEntries(Path projectRoot) throws IOException {
+        List<ArchiveEntry> entries = new ArrayList<>();
+        Files.walkFileTree(projectRoot, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(projectRoot)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (isIgnored(dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                entries.add(new ArchiveEntry(dir, toEntryName(projectRoot, dir) + "/", 0, attrs.lastModifiedTime(), null));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !isIgnored(file.getFileName().toString())) {
+                    entries.add(new ArchiveEntry(file, toEntryName(projectRoot, file), attrs.size(),
+                            attrs.lastModifiedTime(), attrs.fileKey()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        // 遍历顺序与文件系统有关，排序后指纹和压缩包内容才稳定
+        entries.sort(Comparator.comparing(ArchiveEntry::name));
+        return entries;
+    }
+
+    /**
+     * 校验名称是否需要过滤
+     */
+    private boolean isIgnored(String name) {
+        if (IGNORED_NAMES.contains(name)) {
+            return true;
+        }
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        for (String extension : IGNORED_EXTENSIONS) {
+            if (lowerCaseName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String toEntryName(Path projectRoot, Path path) {
+        return projectRoot.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * 按条目名、大小、修改时间和文件标识（inode）计算指纹，不读取文件内容
+     * 文件是内容寻址存储的硬链接，内容变化时会换成另一个 blob，文件标识随之变化
+     */
+    private String fingerprint(List<ArchiveEntry> entries) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(FINGERPRINT_VERSION.getBytes(StandardCharsets.UTF_8));
+        for (ArchiveEntry entry : entries) {
+            digest.update(String.format("|%s|%d|%d|%s", entry.name(), entry.size(), entry.lastModified().toMillis(), entry.fileKey())
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 打开缓存的压缩包，不存在时先生成到临时文件再整体改名，并删除该项目的旧压缩包
+     * 返回前已打开文件：并发请求生成新压缩包时会删除旧压缩包，已打开的文件删除后仍可读完
+     */
+    private FileChannel openArchive(Path projectRoot, String fingerprint, List<ArchiveEntry> entries) throws IOException {
+        String prefix = projectRoot.getFileName() + "-";
+        Path cacheDir = Paths.get(AppConstant.CODE_DOWNLOAD_CACHE_DIR).toAbsolutePath().normalize();
+        Path archive = cacheDir.resolve(prefix + fingerprint + ".zip");
+        FileChannel cached = openIfExists(archive);
+        if (cached != null) {
+            log.info("命中下载缓存: {}", archive.getFileName());
+            return cached;
+        }
+        ReentrantLock lock = archiveLocks.computeIfAbsent(archive.toString(), key -> new ReentrantLock());
+        lock.lock();
+        try {
+            cached = openIfExists(archive);
+            if (cached != null) {
+                return cached;
+            }
+            Files.createDirectories(cacheDir);
+            Path tempFile = cacheDir.resolve(archive.getFileName() + TEMP_MARKER + IdUtil.fastSimpleUUID());
+            FileChannel channel = null;
+            try {
+                writeArchive(tempFile, entries);
+                // 改名前打开，改名后即使被其他版本的生成请求删除也能发送完
+                channel = FileChannel.open(tempFile, StandardOpenOption.READ);
+                Files.move(tempFile, archive, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                IoUtil.close(channel);
+                throw e;
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            // 项目内容已变化，旧压缩包不会再被命中（正在发送的请求已打开文件，删除后仍可读完）
+            try (Stream<Path> stream = Files.list(cacheDir)) {
+                stream.filter(path -> path.getFileName().toString().startsWith(prefix))
+                        .filter(path -> !path.equals(archive) && !path.getFileName().toString().contains(TEMP_MARKER))
+                        .forEach(FileUtil::del);
+            } catch (Exception e) {
+                log.warn("清理旧下载缓存失败: {}，错误：{}", projectRoot.getFileName(), e.getMessage());
+            }
+            log.info("生成下载缓存: {}，条目数：{}", archive.getFileName(), entries.size());
+            return channel;
+        } finally {
+            lock.unlock();
+            archiveLocks.remove(archive.toString(), lock);
+        }
+    }
+
+    /**
+     * 打开已缓存的压缩包，不存在（或检查后被删除）时返回 null
      */
-    private boolean isPathAllowed(Path projectRoot, Path fullPath) {
-        // 获取相对路径
-        Path relativePath = projectRoot.relativize(fullPath);
-        // 检查路径中的每一部分是否符合要求
-        for (Path part : relativePath) {
-            String partName = part.toString();
-            // 检查是否在忽略名称列表中
-            if (IGNORED_NAMES.contains(partName)) {
-                return false;
+    private FileChannel openIfExists(Path archive) throws IOException {
+        try {
+            return FileChannel.open(archive, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void writeArchive(Path target, List<ArchiveEntry> entries) throws IOException {
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(
+                Files.newOutputStream(target, StandardOpenOption.CREATE_NEW), StandardCharsets.UTF_8)) {
+            for (ArchiveEntry entry : entries) {
+                ZipEntry zipEntry = new ZipEntry(entry.name());
+                zipEntry.setLastModifiedTime(entry.lastModified());
+                zipOutputStream.putNextEntry(zipEntry);
+                if (!entry.isDirectory()) {
+                    Files.copy(entry.path(), zipOutputStream);
+                }
+                zipOutputStream.closeEntry();
             }
-            // 检查是否以忽略扩展名结尾
-            if (IGNORED_EXTENSIONS.stream().anyMatch(ext -> partName.toLowerCase().endsWith(ext))) {
-                return false;
+        }
+    }
+
+    /**
+     * 发送压缩包：If-None-Match 命中返回 304，单个有效 Range 返回 206，无效 Range 返回 416，其余返回完整内容
+     */
+    private void sendArchive(FileChannel channel, String etag, String downloadFileName,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader("ETag", etag);
+        response.setHeader("Accept-Ranges", "bytes");
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        long fileSize = channel.size();
+        long start = 0;
+        long end = fileSize - 1;
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        // If-Range 与当前版本不一致时忽略 Range，返回完整内容
+        if (StrUtil.isNotBlank(range) && (ifRange == null || etag.equals(ifRange))) {
+            long[] byteRange = parseRange(range, fileSize);
+            if (byteRange == null) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader("Content-Range", "bytes */" + fileSize);
+                return;
             }
+            start = byteRange[0];
+            end = byteRange[1];
+        }
+        boolean partial = start > 0 || end < fileSize - 1;
+        if (partial) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", String.format("bytes %d-%d/%d", start, end, fileSize));
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+        response.setContentType("application/zip");
+        response.addHeader("Content-Disposition",
+                String.format("attachment; filename=\"%s.zip\"", downloadFileName));
+        response.setContentLengthLong(end - start + 1);
+        OutputStream outputStream = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        long position = start;
+        while (position <= end) {
+            position += channel.transferTo(position, end + 1 - position, target);
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * 解析单个字节范围（bytes=start-end、bytes=start-、bytes=-suffix）
+     * 非 bytes 单位或多个范围时按完整内容处理
+     *
+     * @return [start, end]，范围无法满足时返回 null
+     */
+    private long[] parseRange(String range, long fileSize) {
+        if (!range.startsWith("bytes=") || range.contains(",")) {
+            return new long[]{0, fileSize - 1};
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dashIndex = spec.indexOf('-');
+        if (dashIndex < 0) {
+            return null;
+        }
+        try {
+            String startPart = spec.substring(0, dashIndex).trim();
+            String endPart = spec.substring(dashIndex + 1).trim();
+            long start;
+            long end;
+            if (startPart.isEmpty()) {
+                // 最后 N 个字节
+                long suffixLength = Long.parseLong(endPart);
+                if (suffixLength <= 0) {
+                    return null;
+                }
+                start = Math.max(0, fileSize - suffixLength);
+                end = fileSize - 1;
+            } else {
+                start = Long.parseLong(startPart);
+                end = endPart.isEmpty() ? fileSize - 1 : Math.min(Long.parseLong(endPart), fileSize - 1);
+            }
+            if (start < 0 || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 压缩包条目（目录条目名以 / 结尾）
+     */
+    private record ArchiveEntry(Path path, String name, long size, FileTime lastModified, Object fileKey) {
+
+        boolean isDirectory() {
+            return name.endsWith("/");
         }
-        return true;
     }
 }
@@ -1,67 +1,252 @@
 package com.code.codeagent.service.impl;
 
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
+import com.code.codeagent.config.ScreenshotConfig;
 import com.code.codeagent.exception.ErrorCode;
 import com.code.codeagent.exception.ThrowUtils;
 import com.code.codeagent.manager.CosManager;
+import com.code.codeagent.manager.WebDriverPool;
 import com.code.codeagent.service.ScreenshotService;
+import com.code.codeagent.utils.ScreenshotImageUtils;
 import com.code.codeagent.utils.WebScreenshotUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.WebDriverException;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
+import java.awt.image.BufferedImage;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 public class ScreenshotServiceImpl implements ScreenshotService {
 
+    /**
+     * 参与耗时统计的最近截图数
+     */
+    private static final int LATENCY_SAMPLE_SIZE = 1024;
+
+    /**
+     * 吞吐量统计窗口（毫秒）
+     */
+    private static final long THROUGHPUT_WINDOW_MS = 60_000;
+
+    private static final String IMAGE_CONTENT_TYPE = "image/jpeg";
+
     @Resource
     private CosManager cosManager;
 
+    @Resource
+    private WebDriverPool webDriverPool;
+
+    @Resource
+    private ScreenshotConfig screenshotConfig;
+
+    /**
+     * 排队中的应用ID
+     */
+    private BlockingQueue<Long> jobQueue;
+
+    /**
+     * 排队中的任务（按应用ID），同一应用重复提交时替换为最新的任务
+     */
+    private final Map<Long, ScreenshotJob> pendingJobs = new ConcurrentHashMap<>();
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final LongAdder completedCount = new LongAdder();
+
+    private final LongAdder failedCount = new LongAdder();
+
+    private final LongAdder dedupedCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * 最近截图的完成时间和耗时（环形缓冲区）
+     */
+    private final long[] finishTimes = new long[LATENCY_SAMPLE_SIZE];
+
+    private final long[] latencies = new long[LATENCY_SAMPLE_SIZE];
+
+    private int sampleIndex;
+
+    private int sampleSize;
+
+    @PostConstruct
+    public void init() {
+        jobQueue = new ArrayBlockingQueue<>(Math.max(1, screenshotConfig.getQueueCapacity()));
+        // 工作线程数与浏览器池大小一致
+        for (int i = 0; i < webDriverPool.getPoolSize(); i++) {
+            workers.add(Thread.ofVirtual().name("screenshot-worker-" + i).start(this::runWorker));
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        workers.forEach(Thread::interrupt);
+    }
+
     @Override
     public String generateAndUploadScreenshot(String webUrl) {
         // 参数校验
         ThrowUtils.throwIf(StrUtil.isBlank(webUrl), ErrorCode.PARAMS_ERROR, "截图的网址不能为空");
         log.info("开始生成网页截图，URL：{}", webUrl);
-        // 本地截图
-        String localScreenshotPath = WebScreenshotUtils.saveWebPageScreenshot(webUrl);
-        ThrowUtils.throwIf(StrUtil.isBlank(localScreenshotPath), ErrorCode.OPERATION_ERROR, "生成网页截图失败");
-        // 上传图片到 COS
+        long start = System.currentTimeMillis();
+        // 截图（内存中的 PNG）
+        byte[] screenshotBytes = takeScreenshot(webUrl);
+        ThrowUtils.throwIf(screenshotBytes == null, ErrorCode.OPERATION_ERROR, "生成网页截图失败");
+        // 一次解码，依次生成封面和缩略图并上传
+        String cosUrl = uploadScreenshotToCos(ScreenshotImageUtils.decode(screenshotBytes));
+        ThrowUtils.throwIf(StrUtil.isBlank(cosUrl), ErrorCode.OPERATION_ERROR, "上传截图到对象存储失败");
+        recordLatency(System.currentTimeMillis() - start);
+        log.info("截图上传成功，URL：{}", cosUrl);
+        return cosUrl;
+    }
+
+    @Override
+    public boolean submitScreenshot(Long appId, String webUrl, Consumer<String> onSuccess) {
+        ThrowUtils.throwIf(StrUtil.isBlank(webUrl), ErrorCode.PARAMS_ERROR, "截图的网址不能为空");
+        ScreenshotJob job = new ScreenshotJob(webUrl, onSuccess);
+        // 登记任务和入队在同一个 compute 中完成，并发提交不会留下没有队列位置的任务
+        ScreenshotJob queuedJob = pendingJobs.compute(appId, (key, pendingJob) -> {
+            if (pendingJob != null) {
+                // 已在排队，由原来的队列位置执行最新的任务
+                dedupedCount.increment();
+                return job;
+            }
+            return jobQueue.offer(appId) ? job : null;
+        });
+        if (queuedJob == null) {
+            rejectedCount.increment();
+            log.warn("截图队列已满，丢弃应用 {} 的截图任务", appId);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long[] sortedLatencies;
+        long recentCompleted = 0;
+        synchronized (latencies) {
+            sortedLatencies = Arrays.copyOf(latencies, sampleSize);
+            long windowStart = System.currentTimeMillis() - THROUGHPUT_WINDOW_MS;
+            for (int i = 0; i < sampleSize; i++) {
+                if (finishTimes[i] >= windowStart) {
+                    recentCompleted++;
+                }
+            }
+        }
+        Arrays.sort(sortedLatencies);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", jobQueue.size());
+        stats.put("poolSize", webDriverPool.getPoolSize());
+        stats.put("activeDrivers", webDriverPool.getActiveCount());
+        stats.put("idleDrivers", webDriverPool.getIdleCount());
+        stats.put("createdDrivers", webDriverPool.getCreatedCount());
+        stats.put("recycledDrivers", webDriverPool.getRecycledCount());
+        stats.put("completedCount", completedCount.sum());
+        stats.put("failedCount", failedCount.sum());
+        stats.put("dedupedCount", dedupedCount.sum());
+        stats.put("rejectedCount", rejectedCount.sum());
+        stats.put("throughputPerMinute", recentCompleted);
+        stats.put("averageLatency", String.format("%.0fms", Arrays.stream(sortedLatencies).average().orElse(0)));
+        stats.put("p95Latency", (sortedLatencies.length == 0 ? 0
+                : sortedLatencies[(int) Math.ceil(sortedLatencies.length * 0.95) - 1]) + "ms");
+        return stats;
+    }
+
+    private void runWorker() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Long appId;
+            try {
+                appId = jobQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            ScreenshotJob job = pendingJobs.remove(appId);
+            if (job == null) {
+                continue;
+            }
+            try {
+                String screenshotUrl = generateAndUploadScreenshot(job.webUrl);
+                completedCount.increment();
+                job.onSuccess.accept(screenshotUrl);
+            } catch (Exception e) {
+                failedCount.increment();
+                log.error("应用截图失败，应用ID：{}，错误：{}", appId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 从浏览器池借出一个实例截图，浏览器出错时销毁该实例
+     */
+    private byte[] takeScreenshot(String webUrl) {
+        WebDriverPool.PooledDriver pooledDriver = webDriverPool.borrow();
+        boolean broken = false;
         try {
-            String cosUrl = uploadScreenshotToCos(localScreenshotPath);
-            ThrowUtils.throwIf(StrUtil.isBlank(cosUrl), ErrorCode.OPERATION_ERROR, "上传截图到对象存储失败");
-            log.info("截图上传成功，URL：{}", cosUrl);
-            return cosUrl;
+            return WebScreenshotUtils.captureScreenshot(pooledDriver.getDriver(), webUrl,
+                    screenshotConfig.getReadyTimeoutMs(), screenshotConfig.getNetworkIdleMs());
+        } catch (WebDriverException e) {
+            broken = true;
+            log.error("浏览器截图异常：{}", webUrl, e);
+            return null;
         } finally {
-            // 清理本地文件
-            cleanupLocalFile(localScreenshotPath);
+            webDriverPool.release(pooledDriver, broken);
+        }
+    }
+
+    private void recordLatency(long latency) {
+        synchronized (latencies) {
+            finishTimes[sampleIndex] = System.currentTimeMillis();
+            latencies[sampleIndex] = latency;
+            sampleIndex = (sampleIndex + 1) % LATENCY_SAMPLE_SIZE;
+            sampleSize = Math.min(sampleSize + 1, LATENCY_SAMPLE_SIZE);
         }
     }
 
     /**
      * 上传截图到对象存储
+     * 封面键为 /screenshots/日期/xxx_compressed.jpg，缩略图（配置开启时）在同一路径下以 _thumb.jpg 结尾，
+     * 缩略图地址不单独保存，使用方按封面地址推出
      *
-     * @param localScreenshotPath 本地截图路径
-     * @return 对象存储访问URL，失败返回null
+     * @param image 解码后的截图
+     * @return 封面的对象存储访问URL，失败返回null
      */
-    private String uploadScreenshotToCos(String localScreenshotPath) {
-        if (StrUtil.isBlank(localScreenshotPath)) {
-            return null;
-        }
-        File screenshotFile = new File(localScreenshotPath);
-        if (!screenshotFile.exists()) {
-            log.error("截图文件不存在: {}", localScreenshotPath);
-            return null;
-        }
+    private String uploadScreenshotToCos(BufferedImage image) {
         // 生成 COS 对象键
-        String fileName = UUID.randomUUID().toString().substring(0, 8) + "_compressed.jpg";
-        String cosKey = generateScreenshotKey(fileName);
-        return cosManager.uploadFile(cosKey, screenshotFile);
+        String baseName = UUID.randomUUID().toString().substring(0, 8);
+        ScreenshotImageUtils.ReusableByteArrayOutputStream buffer = ScreenshotImageUtils.encodeJpeg(
+                image, screenshotConfig.getCoverWidth(), screenshotConfig.getCoverQuality());
+        String coverUrl = cosManager.uploadBytes(generateScreenshotKey(baseName + "_compressed.jpg"),
+                buffer.array(), buffer.size(), IMAGE_CONTENT_TYPE);
+        if (coverUrl != null && screenshotConfig.getThumbnailWidth() > 0) {
+            // 缓冲区在封面上传完成后复用
+            buffer = ScreenshotImageUtils.encodeJpeg(
+                    image, screenshotConfig.getThumbnailWidth(), screenshotConfig.getThumbnailQuality());
+            // 缩略图上传失败只记录日志，不影响封面
+            if (cosManager.uploadBytes(generateScreenshotKey(baseName + "_thumb.jpg"),
+                    buffer.array(), buffer.size(), IMAGE_CONTENT_TYPE) == null) {
+                log.warn("缩略图上传失败，封面：{}", coverUrl);
+            }
+        }
+        return coverUrl;
     }
 
     /**
@@ -74,15 +259,8 @@ public class ScreenshotServiceImpl implements ScreenshotService {
     }
 
     /**
-     * 清理本地文件
-     *
-     * @param localFilePath 本地文件路径
+     * 截图任务
      */
-    private void cleanupLocalFile(String localFilePath) {
-        File localFile = new File(localFilePath);
-        if (localFile.exists()) {
-            FileUtil.del(localFile);
-            log.info("清理本地文件成功: {}", localFilePath);
-        }
+    private record ScreenshotJob(String webUrl, Consumer<String> onSuccess) {
     }
 }
@@ -0,0 +1,120 @@
+package com.code.codeagent.utils;
+
+import com.code.codeagent.exception.BusinessException;
+import com.code.codeagent.exception.ErrorCode;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * 截图图片处理工具类
+ * 截图只解码一次，按不同尺寸缩放后编码为 JPEG，全程在内存中完成
+ */
+public class ScreenshotImageUtils {
+
+    /**
+     * 每个线程复用的编码缓冲区初始大小
+     */
+    private static final int INITIAL_BUFFER_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<ReusableByteArrayOutputStream> ENCODE_BUFFER =
+            ThreadLocal.withInitial(() -> new ReusableByteArrayOutputStream(INITIAL_BUFFER_SIZE));
+
+    /**
+     * 解码截图
+     *
+     * @param imageBytes 图片字节（PNG）
+     * @return 图片
+     */
+    public static BufferedImage decode(byte[] imageBytes) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+            if (image == null) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "无法识别的截图格式");
+            }
+            return image;
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "解码截图失败");
+        }
+    }
+
+    /**
+     * 按最大宽度等比缩放并编码为 JPEG
+     * 结果写入当前线程复用的缓冲区，下次调用前有效，需要保留时自行复制
+     *
+     * @param image    原图
+     * @param maxWidth 最大宽度，小于等于 0 或不小于原图宽度时不缩放
+     * @param quality  JPEG 质量（0-1）
+     * @return 编码结果所在的缓冲区
+     */
+    public static ReusableByteArrayOutputStream encodeJpeg(BufferedImage image, int maxWidth, float quality) {
+        BufferedImage scaled = scaleToRgb(image, maxWidth);
+        ReusableByteArrayOutputStream buffer = ENCODE_BUFFER.get();
+        buffer.reset();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (ImageOutputStream output = new MemoryCacheImageOutputStream(buffer)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(scaled, null, null), param);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "编码截图失败");
+        } finally {
+            writer.dispose();
+        }
+        return buffer;
+    }
+
+    /**
+     * 缩放并转换为 RGB（JPEG 不支持透明通道，透明区域填充白色）
+     */
+    private static BufferedImage scaleToRgb(BufferedImage image, int maxWidth) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (maxWidth > 0 && width > maxWidth) {
+            height = Math.max(1, (int) Math.round((double) height * maxWidth / width));
+            width = maxWidth;
+        } else if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * 可直接访问内部数组的输出流，避免 toByteArray 复制
+     */
+    public static class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+        public ReusableByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        /**
+         * 内部数组，有效长度为 {@link #size()}
+         */
+        public byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.code.codeagent.utils;
+
+/**
+ * UTF-8 编码工具类
+ */
+public class Utf8Utils {
+
+    private Utf8Utils() {
+    }
+
+    /**
+     * 计算 UTF-8 编码后的字节数，逐字符统计，不分配字节数组
+     * 结果与 getBytes(UTF_8) 一致：成对的代理字符按 4 字节计算，孤立的代理字符编码为 '?'，按 1 字节计算
+     *
+     * @param text 文本，为 null 时返回 0
+     * @return 字节数
+     */
+    public static long encodedLength(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        long length = 0;
+        int size = text.length();
+        for (int i = 0; i < size; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else {
+                    length++;
+                }
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
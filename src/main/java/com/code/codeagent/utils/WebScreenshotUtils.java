@@ -1,25 +1,20 @@
 package com.code.codeagent.utils;
 
-import cn.hutool.core.img.ImgUtil;
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import com.code.codeagent.exception.BusinessException;
 import com.code.codeagent.exception.ErrorCode;
 import io.github.bonigarcia.wdm.WebDriverManager;
-import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
-import java.io.File;
 import java.time.Duration;
-import java.util.UUID;
+import java.util.List;
 
 /**
  * 截图工具类
@@ -27,83 +22,69 @@ import java.util.UUID;
 @Slf4j
 public class WebScreenshotUtils {
 
-    private static volatile WebDriver webDriver;
-    private static final Object LOCK = new Object();
     private static final int DEFAULT_WIDTH = 1600;
     private static final int DEFAULT_HEIGHT = 900;
 
     /**
-     * 获取或初始化 WebDriver
+     * 就绪检测轮询间隔（毫秒）
      */
-    private static WebDriver getWebDriver() {
-        if (webDriver == null) {
-            synchronized (LOCK) {
-                if (webDriver == null) {
-                    webDriver = initChromeDriver(DEFAULT_WIDTH, DEFAULT_HEIGHT);
-                }
-            }
-        }
-        return webDriver;
-    }
+    private static final long READY_POLL_INTERVAL_MS = 100;
 
     /**
-     * 退出时销毁
+     * 页面状态：文档加载状态、已发起的资源请求数、字体加载状态
      */
-    @PreDestroy
-    public void destroy() {
-        synchronized (LOCK) {
-            if (webDriver != null) {
-                webDriver.quit();
-                webDriver = null;
-            }
-        }
-    }
+    private static final String PAGE_STATE_SCRIPT = """
+            return [document.readyState,
+                    performance.getEntriesByType('resource').length,
+                    document.fonts ? document.fonts.status : 'loaded'];
+            """;
+
+    /**
+     * 等待两帧渲染，确保最后的 DOM 变更已经绘制
+     */
+    private static final String WAIT_PAINT_SCRIPT = """
+            var done = arguments[arguments.length - 1];
+            requestAnimationFrame(function () { requestAnimationFrame(function () { done(true); }); });
+            """;
 
     /**
      * 生成网页截图
      *
-     * @param webUrl 要截图的网址
-     * @return 压缩后的截图文件路径，失败返回 null
+     * @param driver         浏览器实例（调用方独占使用）
+     * @param webUrl         要截图的网址
+     * @param readyTimeoutMs 页面就绪的最大等待时间（毫秒）
+     * @param networkIdleMs  资源请求数保持不变多久视为网络空闲（毫秒）
+     * @return 截图（PNG 字节），失败返回 null
      */
-    public static String saveWebPageScreenshot(String webUrl) {
+    public static byte[] captureScreenshot(WebDriver driver, String webUrl, long readyTimeoutMs, long networkIdleMs) {
         // 非空校验
         if (StrUtil.isBlank(webUrl)) {
             log.error("网页截图失败，url为空");
             return null;
         }
-        // 创建临时目录
         try {
-            String rootPath = System.getProperty("user.dir") + "/tmp/screenshots/" + UUID.randomUUID().toString().substring(0, 8);
-            FileUtil.mkdir(rootPath);
-            // 图片后缀
-            final String IMAGE_SUFFIX = ".png";
-            // 原始图片保存路径
-            String imageSavePath = rootPath + File.separator + RandomUtil.randomNumbers(5) + IMAGE_SUFFIX;
-            // 获取WebDriver实例
-            WebDriver driver = getWebDriver();
             // 访问网页
             driver.get(webUrl);
-            // 等待网页加载
-            waitForPageLoad(driver);
+            // 等待网页就绪
+            waitForPageReady(driver, readyTimeoutMs, networkIdleMs);
             // 截图
-            byte[] screenshotBytes = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
-            // 保存原始图片
-            saveImage(screenshotBytes, imageSavePath);
-            log.info("原始截图保存成功：{}", imageSavePath);
-            // 压缩图片
-            final String COMPRESS_SUFFIX = "_compressed.jpg";
-            String compressedImagePath = rootPath + File.separator + RandomUtil.randomNumbers(5) + COMPRESS_SUFFIX;
-            compressImage(imageSavePath, compressedImagePath);
-            log.info("压缩图片保存成功：{}", compressedImagePath);
-            // 删除原始图片
-            FileUtil.del(imageSavePath);
-            return compressedImagePath;
+            return ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+        } catch (WebDriverException e) {
+            // 浏览器异常交给调用方处理（销毁该实例）
+            throw e;
         } catch (Exception e) {
             log.error("网页截图失败：{}", webUrl, e);
             return null;
         }
     }
 
+    /**
+     * 创建 Chrome 浏览器驱动（默认窗口大小）
+     */
+    public static WebDriver createChromeDriver() {
+        return initChromeDriver(DEFAULT_WIDTH, DEFAULT_HEIGHT);
+    }
+
     /**
      * 初始化 Chrome 浏览器驱动
      */
@@ -131,8 +112,8 @@ public class WebScreenshotUtils {
             WebDriver driver = new ChromeDriver(options);
             // 设置页面加载超时
             driver.manage().timeouts().pageLoadTimeout(Duration.ofSeconds(30));
-            // 设置隐式等待
-            driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+            // 设置异步脚本超时（等待渲染）
+            driver.manage().timeouts().scriptTimeout(Duration.ofSeconds(5));
             return driver;
         } catch (Exception e) {
             log.error("初始化 Chrome 浏览器失败", e);
@@ -141,58 +122,38 @@ public class WebScreenshotUtils {
     }
 
     /**
-     * 保存图片到文件
-     *
-     * @param imageBytes
-     * @param imagePath
-     */
-    private static void saveImage(byte[] imageBytes, String imagePath) {
-        try {
-            FileUtil.writeBytes(imageBytes, imagePath);
-        } catch (Exception e) {
-            log.error("保存图片失败：{}", imagePath, e);
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "保存图片失败");
-        }
-    }
-
-    /**
-     * 压缩图片
-     *
-     * @param originImagePath
-     * @param compressedImagePath
-     */
-    private static void compressImage(String originImagePath, String compressedImagePath) {
-        // 压缩图片质量（0.1 = 10% 质量）
-        final float COMPRESSION_QUALITY = 0.3f;
-        try {
-            ImgUtil.compress(
-                    FileUtil.file(originImagePath),
-                    FileUtil.file(compressedImagePath),
-                    COMPRESSION_QUALITY
-            );
-        } catch (Exception e) {
-            log.error("压缩图片失败：{} -> {}", originImagePath, compressedImagePath, e);
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "压缩图片失败");
-        }
-    }
-
-    /**
-     * 等待页面加载完成
+     * 等待页面就绪：文档加载完成、字体加载完成、资源请求数在 networkIdleMs 内不再增长，最后等待两帧渲染
+     * 超时后不再等待，直接截图
      *
      * @param webDriver
      */
-    private static void waitForPageLoad(WebDriver webDriver) {
+    private static void waitForPageReady(WebDriver webDriver, long readyTimeoutMs, long networkIdleMs) {
+        long start = System.currentTimeMillis();
+        long deadline = start + readyTimeoutMs;
+        long lastResourceCount = -1;
+        long idleSince = start;
         try {
-            // 创建等待页面加载对象
-            WebDriverWait wait = new WebDriverWait(webDriver, Duration.ofSeconds(10));
-            // 等待 document.readyState 为 complete
-            wait.until(driver -> ((JavascriptExecutor) driver)
-                    .executeScript("return document.readyState").
-                    equals("complete")
-            );
-            // 额外等待一段时间，确保动态内容加载完成
-            Thread.sleep(2000);
-            log.info("页面加载完成");
+            JavascriptExecutor executor = (JavascriptExecutor) webDriver;
+            while (System.currentTimeMillis() < deadline) {
+                List<?> state = (List<?>) executor.executeScript(PAGE_STATE_SCRIPT);
+                long now = System.currentTimeMillis();
+                long resourceCount = ((Number) state.get(1)).longValue();
+                if (resourceCount != lastResourceCount) {
+                    lastResourceCount = resourceCount;
+                    idleSince = now;
+                }
+                if ("complete".equals(state.get(0)) && "loaded".equals(state.get(2)) && now - idleSince >= networkIdleMs) {
+                    executor.executeAsyncScript(WAIT_PAINT_SCRIPT);
+                    log.info("页面就绪，耗时：{}ms", System.currentTimeMillis() - start);
+                    return;
+                }
+                Thread.sleep(READY_POLL_INTERVAL_MS);
+            }
+            log.warn("等待页面就绪超时（{}ms），继续执行截图", readyTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (WebDriverException e) {
+            throw e;
         } catch (Exception e) {
             log.error("等待页面加载时出现异常，继续执行截图", e);
         }
@@ -0,0 +1,71 @@
+package dev.langchain4j.internal;
+
+import dev.langchain4j.Internal;
+
+import java.util.Arrays;
+
+/**
+ * Single-writer text accumulator for streamed deltas.
+ * <p>
+ * Appending only stores a reference to the delta, so no characters are copied and no monitor is taken per token.
+ * The segments are joined once, into a buffer of the exact final size, when {@link #toString()} is called.
+ * <p>
+ * Not thread safe: all deltas of one stream must be appended by a single thread at a time
+ * (this is the case for SSE callbacks, which are delivered sequentially).
+ */
+@Internal
+public class SegmentedStringBuilder {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] segments = new String[INITIAL_CAPACITY];
+    private int segmentCount;
+    private int length;
+
+    public SegmentedStringBuilder append(String text) {
+        if (text == null || text.isEmpty()) {
+            return this;
+        }
+        if (segmentCount == segments.length) {
+            segments = Arrays.copyOf(segments, segments.length << 1);
+        }
+        segments[segmentCount++] = text;
+        length += text.length();
+        return this;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(segments, 0, segmentCount, null);
+        segmentCount = 0;
+        length = 0;
+    }
+
+    /**
+     * Joins all segments. The result replaces the segments, so repeated calls do not join again.
+     */
+    @Override
+    public String toString() {
+        if (segmentCount == 0) {
+            return "";
+        }
+        if (segmentCount == 1) {
+            return segments[0];
+        }
+        StringBuilder joined = new StringBuilder(length);
+        for (int i = 0; i < segmentCount; i++) {
+            joined.append(segments[i]);
+        }
+        String result = joined.toString();
+        clear();
+        append(result);
+        return result;
+    }
+}
@@ -9,6 +9,7 @@ import dev.langchain4j.data.message.ToolExecutionResultMessage;
 import dev.langchain4j.guardrail.ChatExecutor;
 import dev.langchain4j.guardrail.GuardrailRequestParams;
 import dev.langchain4j.guardrail.OutputGuardrailRequest;
+import dev.langchain4j.internal.Json;
 import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
@@ -19,9 +20,16 @@ import dev.langchain4j.service.tool.ToolExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -31,6 +39,9 @@ import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
 /**
  * Handles response from a language model for AI Service that is streamed token-by-token. Handles both regular (text)
  * responses and responses with the request to execute one or multiple tools.
+ * <p>
+ * Multiple tools requested in one response may be executed concurrently, see {@link ToolExecutionSettings}.
+ * Tool results are always added to the memory and reported to the tool execution handler in request order.
  */
 @Internal
 class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler {
@@ -117,10 +128,11 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
         addToMemory(aiMessage);
 
         if (aiMessage.hasToolExecutionRequests()) {
-            for (ToolExecutionRequest toolExecutionRequest : aiMessage.toolExecutionRequests()) {
-                String toolName = toolExecutionRequest.name();
-                ToolExecutor toolExecutor = toolExecutors.get(toolName);
-                String toolExecutionResult = toolExecutor.execute(toolExecutionRequest, memoryId);
+            List<ToolExecutionRequest> toolExecutionRequests = aiMessage.toolExecutionRequests();
+            String[] toolExecutionResults = executeTools(toolExecutionRequests);
+            for (int i = 0; i < toolExecutionRequests.size(); i++) {
+                ToolExecutionRequest toolExecutionRequest = toolExecutionRequests.get(i);
+                String toolExecutionResult = toolExecutionResults[i];
                 ToolExecutionResultMessage toolExecutionResultMessage =
                         ToolExecutionResultMessage.from(toolExecutionRequest, toolExecutionResult);
                 addToMemory(toolExecutionResultMessage);
@@ -199,6 +211,121 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
         }
     }
 
+    /**
+     * Executes the requested tools according to {@link ToolExecutionSettings}.
+     * Results are returned in request order regardless of the order in which the tools finish.
+     */
+    private String[] executeTools(List<ToolExecutionRequest> toolExecutionRequests) {
+        ToolExecutionSettings.Snapshot settings = ToolExecutionSettings.snapshot();
+        String[] results = new String[toolExecutionRequests.size()];
+        if (settings.mode() == ToolExecutionMode.SEQUENTIAL || toolExecutionRequests.size() == 1) {
+            for (int i = 0; i < toolExecutionRequests.size(); i++) {
+                results[i] = executeTool(toolExecutionRequests.get(i));
+            }
+            return results;
+        }
+
+        // Tools marked as sequential act as barriers: everything requested before them has finished when they start
+        List<Integer> segment = new ArrayList<>();
+        for (int i = 0; i < toolExecutionRequests.size(); i++) {
+            ToolExecutionRequest toolExecutionRequest = toolExecutionRequests.get(i);
+            if (settings.sequentialToolNames().contains(toolExecutionRequest.name())) {
+                executeConcurrently(toolExecutionRequests, segment, results, settings);
+                segment.clear();
+                results[i] = executeTool(toolExecutionRequest);
+            } else {
+                segment.add(i);
+            }
+        }
+        executeConcurrently(toolExecutionRequests, segment, results, settings);
+        return results;
+    }
+
+    /**
+     * Runs one lane per distinct path on virtual threads; calls within a lane keep their request order.
+     */
+    private void executeConcurrently(List<ToolExecutionRequest> toolExecutionRequests,
+                                     List<Integer> indexes,
+                                     String[] results,
+                                     ToolExecutionSettings.Snapshot settings) {
+        Map<String, List<Integer>> lanes = new LinkedHashMap<>();
+        for (int index : indexes) {
+            String laneKey = laneKey(toolExecutionRequests.get(index), index, settings);
+            lanes.computeIfAbsent(laneKey, key -> new ArrayList<>()).add(index);
+        }
+        if (lanes.size() <= 1) {
+            for (int index : indexes) {
+                results[index] = executeTool(toolExecutionRequests.get(index));
+            }
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(lanes.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (List<Integer> lane : lanes.values()) {
+                futures.add(executor.submit(() -> {
+                    for (int index : lane) {
+                        results[index] = executeTool(toolExecutionRequests.get(index));
+                    }
+                }));
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private String laneKey(ToolExecutionRequest toolExecutionRequest, int index, ToolExecutionSettings.Snapshot settings) {
+        Map<?, ?> arguments;
+        try {
+            arguments = Json.fromJson(toolExecutionRequest.arguments(), Map.class);
+        } catch (Exception e) {
+            return "#" + index;
+        }
+        if (arguments != null) {
+            for (String pathArgumentName : settings.pathArgumentNames()) {
+                if (arguments.get(pathArgumentName) instanceof String path && !path.isBlank()) {
+                    try {
+                        return Path.of(path).normalize().toString();
+                    } catch (InvalidPathException e) {
+                        return path;
+                    }
+                }
+            }
+        }
+        return "#" + index;
+    }
+
+    private String executeTool(ToolExecutionRequest toolExecutionRequest) {
+        ToolExecutionListener listener = ToolExecutionSettings.listener();
+        long startTime = System.nanoTime();
+        ToolExecutor toolExecutor = toolExecutors.get(toolExecutionRequest.name());
+        if (toolExecutor == null) {
+            String result = context.toolService.applyToolHallucinationStrategy(toolExecutionRequest).text();
+            listener.onExecuted(toolExecutionRequest, false, result, null, System.nanoTime() - startTime);
+            return result;
+        }
+        String result;
+        try {
+            result = toolExecutor.execute(toolExecutionRequest, memoryId);
+        } catch (RuntimeException | Error e) {
+            listener.onExecuted(toolExecutionRequest, true, null, e, System.nanoTime() - startTime);
+            throw e;
+        }
+        listener.onExecuted(toolExecutionRequest, true, result, null, System.nanoTime() - startTime);
+        return result;
+    }
+
     private ChatMemory getMemory() {
         return getMemory(memoryId);
     }
@@ -0,0 +1,26 @@
+package dev.langchain4j.service;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+
+/**
+ * Observes every tool execution performed by {@link AiServiceStreamingResponseHandler}, see
+ * {@link ToolExecutionSettings#listener(ToolExecutionListener)}.
+ * <p>
+ * Called on the thread that executed the tool, possibly concurrently for tools executed in parallel.
+ */
+@FunctionalInterface
+public interface ToolExecutionListener {
+
+    ToolExecutionListener NOOP = (request, known, result, error, durationNanos) -> {
+    };
+
+    /**
+     * @param request       the executed request
+     * @param known         whether a tool with the requested name exists; unknown names are handled by the
+     *                      hallucinated tool name strategy
+     * @param result        the tool result, {@code null} when the tool threw
+     * @param error         the exception thrown by the tool, {@code null} on success
+     * @param durationNanos wall-clock execution time
+     */
+    void onExecuted(ToolExecutionRequest request, boolean known, String result, Throwable error, long durationNanos);
+}
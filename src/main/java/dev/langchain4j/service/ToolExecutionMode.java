@@ -0,0 +1,18 @@
+package dev.langchain4j.service;
+
+/**
+ * How tool execution requests returned in a single model response are executed.
+ */
+public enum ToolExecutionMode {
+
+    /**
+     * Execute tools one after another on the model callback thread.
+     */
+    SEQUENTIAL,
+
+    /**
+     * Execute independent tools concurrently on virtual threads.
+     * Calls that target the same path, and tools marked as sequential, are still executed in request order.
+     */
+    PARALLEL
+}
@@ -0,0 +1,52 @@
+package dev.langchain4j.service;
+
+import java.util.Set;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * Process-wide settings for executing tools requested by a streaming model response.
+ * <p>
+ * {@link AiServiceStreamingResponseHandler} is created by AI Services internals, so the settings are kept here
+ * instead of being threaded through {@link AiServiceTokenStream}.
+ */
+public final class ToolExecutionSettings {
+
+    private static volatile Snapshot snapshot = new Snapshot(
+            ToolExecutionMode.SEQUENTIAL, Set.of(), Set.of("relativeFilePath", "relativeDirPath"));
+
+    private static volatile ToolExecutionListener listener = ToolExecutionListener.NOOP;
+
+    private ToolExecutionSettings() {
+    }
+
+    /**
+     * @param mode                tool execution mode
+     * @param sequentialToolNames names of tools that must never run concurrently with other tools
+     * @param pathArgumentNames   names of tool arguments holding a path; calls with the same path are serialized
+     */
+    public static void configure(ToolExecutionMode mode, Set<String> sequentialToolNames, Set<String> pathArgumentNames) {
+        snapshot = new Snapshot(
+                ensureNotNull(mode, "mode"),
+                Set.copyOf(ensureNotNull(sequentialToolNames, "sequentialToolNames")),
+                Set.copyOf(ensureNotNull(pathArgumentNames, "pathArgumentNames")));
+    }
+
+    /**
+     * @param toolExecutionListener listener notified after every tool execution
+     */
+    public static void listener(ToolExecutionListener toolExecutionListener) {
+        listener = ensureNotNull(toolExecutionListener, "toolExecutionListener");
+    }
+
+    static Snapshot snapshot() {
+        return snapshot;
+    }
+
+    static ToolExecutionListener listener() {
+        return listener;
+    }
+
+    record Snapshot(ToolExecutionMode mode, Set<String> sequentialToolNames, Set<String> pathArgumentNames) {
+    }
+}
@@ -0,0 +1,273 @@
+package com.code.codeagent.ai.memory;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.code.codeagent.ai.ChatHistorySummaryService;
+import com.code.codeagent.config.ChatMemoryConfig;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 对话记忆的 token 预算：工具参数和结果的压缩标记、整轮淘汰和淘汰后的总结
+ * 按字符数估算 token（每个字符一个 token），便于精确计算预算
+ */
+class TokenBudgetChatMemoryTest {
+
+    private static final long MEMORY_ID = 1L;
+
+    private static final String APP_VUE = "src/App.vue";
+
+    private final InMemoryChatMemoryStore store = new InMemoryChatMemoryStore();
+
+    private ChatMemoryConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new ChatMemoryConfig();
+        config.setMaxTokens(1000);
+        config.setEvictTargetRatio(0.7);
+        config.setCompactThresholdChars(50);
+        config.setSummaryEnabled(false);
+    }
+
+    @Test
+    void largeWriteArgumentsAreCompactedAfterTheTurn() {
+        TokenBudgetChatMemory memory = createMemory(null);
+        String content = "<template>" + "x".repeat(200) + "</template>";
+        memory.add(UserMessage.from("做一个页面"));
+        memory.add(toolCall("call_1", "writeFile", writeArguments(APP_VUE, content)));
+        memory.add(ToolExecutionResultMessage.from("call_1", "writeFile", "文件写入成功: " + APP_VUE));
+
+        // 当前轮次不压缩
+        assertEquals(content, argumentsOf(memory.messages().get(1)).getStr("content"));
+
+        memory.add(UserMessage.from("改一下颜色"));
+
+        JSONObject arguments = argumentsOf(memory.messages().get(1));
+        assertEquals(APP_VUE, arguments.getStr("relativeFilePath"));
+        assertEquals(String.format("[已省略 %d 字符，sha256:%s，需要时调用 readFile 读取 %s 的当前内容]",
+                content.length(), shortHash(content), APP_VUE), arguments.getStr("content"));
+        // 短的工具结果保留
+        assertEquals("文件写入成功: " + APP_VUE, ((ToolExecutionResultMessage) memory.messages().get(2)).text());
+    }
+
+    @Test
+    void largeToolResultIsReplacedWithPathAndHash() {
+        TokenBudgetChatMemory memory = createMemory(null);
+        String content = "y".repeat(300);
+        memory.add(UserMessage.from("看看 App.vue"));
+        memory.add(toolCall("call_1", "readFile", JSONUtil.createObj().set("relativeFilePath", APP_VUE).toString()));
+        memory.add(ToolExecutionResultMessage.from("call_1", "readFile", content));
+        memory.add(UserMessage.from("继续"));
+
+        ToolExecutionResultMessage result = (ToolExecutionResultMessage) memory.messages().get(2);
+        assertEquals("call_1", result.id());
+        assertEquals(String.format("[已省略的工具结果：readFile %s，300 字符，sha256:%s，需要时重新调用工具]",
+                APP_VUE, shortHash(content)), result.text());
+    }
+
+    @Test
+    void argumentsWithoutPathAreNotCompacted() {
+        TokenBudgetChatMemory memory = createMemory(null);
+        String arguments = JSONUtil.createObj().set("query", "z".repeat(200)).toString();
+        memory.add(UserMessage.from("搜索"));
+        memory.add(toolCall("call_1", "search", arguments));
+        memory.add(ToolExecutionResultMessage.from("call_1", "search", "无结果"));
+        memory.add(UserMessage.from("继续"));
+
+        ChatMessage toolCall = memory.messages().get(1);
+        assertEquals(arguments, ((AiMessage) toolCall).toolExecutionRequests().get(0).arguments());
+    }
+
+    @Test
+    void settledToolCallsAreNotParsedAgain() {
+        TokenBudgetChatMemory memory = createMemory(null);
+        ToolExecutionRequest request = mock(ToolExecutionRequest.class);
+        when(request.id()).thenReturn("call_1");
+        when(request.name()).thenReturn("search");
+        when(request.arguments()).thenReturn(JSONUtil.createObj().set("query", "z".repeat(200)).toString());
+        memory.add(UserMessage.from("搜索"));
+        memory.add(AiMessage.from(request));
+        memory.add(ToolExecutionResultMessage.from("call_1", "search", "无结果"));
+        memory.add(UserMessage.from("继续"));
+        clearInvocations(request);
+
+        memory.add(AiMessage.from("好的"));
+        memory.add(UserMessage.from("再继续"));
+
+        verify(request, never()).arguments();
+    }
+
+    @Test
+    void rebuiltMemoryFindsPathOfCompactedResult() {
+        String content = "y".repeat(300);
+        TokenBudgetChatMemory memory = createMemory(null);
+        memory.add(UserMessage.from("看看 App.vue"));
+        memory.add(toolCall("call_1", "readFile", JSONUtil.createObj().set("relativeFilePath", APP_VUE).toString()));
+        memory.add(ToolExecutionResultMessage.from("call_1", "readFile", content));
+
+        // 记忆对象可以随时重建，路径缓存为空时从对应的工具调用中解析
+        TokenBudgetChatMemory rebuilt = createMemory(null);
+        rebuilt.add(UserMessage.from("继续"));
+
+        assertTrue(((ToolExecutionResultMessage) rebuilt.messages().get(2)).text()
+                .startsWith("[已省略的工具结果：readFile " + APP_VUE + "，300 字符"));
+    }
+
+    @Test
+    void underBudgetNothingIsEvicted() {
+        TokenBudgetChatMemory memory = createMemory(null);
+        addTurn(memory, "a", 100, 200);
+        addTurn(memory, "b", 100, 200);
+        addTurn(memory, "c", 100, 200);
+        memory.add(UserMessage.from("d".repeat(100)));
+
+        // 正好 1000
+        assertEquals(7, memory.messages().size());
+    }
+
+    @Test
+    void oldestWholeTurnsAreEvictedToTargetBudget() {
+        TokenBudgetChatMemory memory = createMemory(null);
+        memory.add(SystemMessage.from("系统"));
+        // 第一轮包含工具调用和结果，淘汰时整体移除
+        memory.add(UserMessage.from("a".repeat(100)));
+        memory.add(toolCall("call_1", "readDir", JSONUtil.createObj().set("relativeDirPath", "").toString()));
+        memory.add(ToolExecutionResultMessage.from("call_1", "readDir", "r".repeat(40)));
+        memory.add(AiMessage.from("a".repeat(100)));
+        addTurn(memory, "b", 100, 200);
+        addTurn(memory, "c", 100, 200);
+        memory.add(UserMessage.from("d".repeat(100)));
+        assertEquals(10, memory.messages().size());
+
+        // 超过 1000 后淘汰到 700 以下：移除第一、二轮，保留第三轮和当前轮次
+        memory.add(AiMessage.from("d".repeat(200)));
+
+        List<ChatMessage> messages = memory.messages();
+        assertEquals(5, messages.size());
+        assertInstanceOf(SystemMessage.class, messages.get(0));
+        assertEquals("c".repeat(100), ((UserMessage) messages.get(1)).singleText());
+        assertEquals("d".repeat(200), ((AiMessage) messages.get(4)).text());
+    }
+
+    @Test
+    void earlierToolCallsOfCurrentTurnAreCompactedWhenStillOverBudget() {
+        TokenBudgetChatMemory memory = createMemory(null);
+        String first = "1".repeat(500);
+        String second = "2".repeat(500);
+        memory.add(UserMessage.from("生成项目"));
+        memory.add(toolCall("call_1", "writeFile", writeArguments("src/a.js", first)));
+        memory.add(ToolExecutionResultMessage.from("call_1", "writeFile", "文件写入成功: src/a.js"));
+        AiMessage lastCall = toolCall("call_2", "writeFile", writeArguments("src/b.js", second));
+        memory.add(lastCall);
+
+        List<ChatMessage> messages = memory.messages();
+        assertTrue(argumentsOf(messages.get(1)).getStr("content").startsWith("[已省略 500 字符"));
+        // 最后一次调用保持完整
+        assertSame(lastCall, messages.get(3));
+    }
+
+    @Test
+    void evictedTurnsAreSummarizedAfterSystemMessage() {
+        config.setSummaryEnabled(true);
+        ChatHistorySummaryService summaryService = mock(ChatHistorySummaryService.class);
+        when(summaryService.summarize(anyString())).thenReturn("用户要求做一个待办应用");
+        TokenBudgetChatMemory memory = createMemory(summaryService);
+        memory.add(SystemMessage.from("系统"));
+        addTurn(memory, "a", 100, 200);
+        addTurn(memory, "b", 100, 200);
+        addTurn(memory, "c", 100, 200);
+        addTurn(memory, "d", 100, 200);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> memory.messages().size() == 6);
+
+        verify(summaryService).summarize(contains("用户：" + "a".repeat(100)));
+        List<ChatMessage> messages = memory.messages();
+        assertEquals(TokenBudgetChatMemory.SUMMARY_PREFIX + "用户要求做一个待办应用",
+                ((UserMessage) messages.get(1)).singleText());
+        assertEquals("c".repeat(100), ((UserMessage) messages.get(2)).singleText());
+    }
+
+    private TokenBudgetChatMemory createMemory(ChatHistorySummaryService summaryService) {
+        return new TokenBudgetChatMemory(MEMORY_ID, store, new CharCountEstimator(), config, summaryService);
+    }
+
+    private static void addTurn(TokenBudgetChatMemory memory, String letter, int userChars, int aiChars) {
+        memory.add(UserMessage.from(letter.repeat(userChars)));
+        memory.add(AiMessage.from(letter.repeat(aiChars)));
+    }
+
+    private static AiMessage toolCall(String id, String name, String arguments) {
+        return AiMessage.from(ToolExecutionRequest.builder().id(id).name(name).arguments(arguments).build());
+    }
+
+    private static String writeArguments(String path, String content) {
+        return JSONUtil.createObj().set("relativeFilePath", path).set("content", content).toString();
+    }
+
+    private static JSONObject argumentsOf(ChatMessage message) {
+        return JSONUtil.parseObj(((AiMessage) message).toolExecutionRequests().get(0).arguments());
+    }
+
+    private static String shortHash(String value) {
+        return DigestUtil.sha256Hex(value).substring(0, 12);
+    }
+
+    /**
+     * 每个字符计为一个 token
+     */
+    private static class CharCountEstimator implements TokenCountEstimator {
+
+        @Override
+        public int estimateTokenCountInText(String text) {
+            return text == null ? 0 : text.length();
+        }
+
+        @Override
+        public int estimateTokenCountInMessage(ChatMessage message) {
+            return switch (message) {
+                case SystemMessage systemMessage -> estimateTokenCountInText(systemMessage.text());
+                case UserMessage userMessage -> estimateTokenCountInText(userMessage.singleText());
+                case AiMessage aiMessage -> estimateTokenCountInText(aiMessage.text())
+                        + (aiMessage.hasToolExecutionRequests() ? aiMessage.toolExecutionRequests().stream()
+                        .mapToInt(request -> estimateTokenCountInText(request.arguments())).sum() : 0);
+                case ToolExecutionResultMessage resultMessage -> estimateTokenCountInText(resultMessage.text());
+                default -> 0;
+            };
+        }
+
+        @Override
+        public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+            int count = 0;
+            for (ChatMessage message : messages) {
+                count += estimateTokenCountInMessage(message);
+            }
+            return count;
+        }
+    }
+}
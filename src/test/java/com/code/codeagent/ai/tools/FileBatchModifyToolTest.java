@@ -0,0 +1,161 @@
+package com.code.codeagent.ai.tools;
+
+import com.code.codeagent.ai.model.FileEdit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 批量修改的定位、冲突检测和整体应用
+ * 使用绝对路径修改临时目录中的文件，不经过项目目录和写缓冲
+ */
+class FileBatchModifyToolTest {
+
+    private static final long APP_ID = 1L;
+
+    private static final String CONTENT = """
+            const a = 1;
+            const b = 2;
+            const c = 3;
+            const d = 4;
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private final FileBatchModifyTool tool = new FileBatchModifyTool();
+
+    @Test
+    void nonOverlappingEditsAreAllApplied() throws IOException {
+        Path file = write(CONTENT);
+
+        String result = tool.modifyFileBatch(file.toString(), List.of(
+                contentEdit("const a = 1;", "const a = 10;"),
+                lineEdit(3, 4, "const cd = 34;")), APP_ID);
+
+        assertEquals("文件修改成功: " + file + "（应用 2 处修改）", result);
+        assertEquals("const a = 10;\nconst b = 2;\nconst cd = 34;\n", Files.readString(file));
+    }
+
+    @Test
+    void editsAreLocatedInOriginalContent() throws IOException {
+        Path file = write(CONTENT);
+
+        // 第一个修改插入两行后，第二个修改的行号仍按修改前的文件计算
+        tool.modifyFileBatch(file.toString(), List.of(
+                lineEdit(1, 1, "const a = 1;\nconst x = 0;\nconst y = 0;"),
+                lineEdit(2, 2, "const b = 20;")), APP_ID);
+
+        assertEquals("const a = 1;\nconst x = 0;\nconst y = 0;\nconst b = 20;\nconst c = 3;\nconst d = 4;\n",
+                Files.readString(file));
+    }
+
+    @Test
+    void overlappingEditIsSkippedAndReported() throws IOException {
+        Path file = write(CONTENT);
+
+        String result = tool.modifyFileBatch(file.toString(), List.of(
+                lineEdit(2, 3, "const bc = 23;"),
+                contentEdit("const c = 3;", "const c = 30;"),
+                contentEdit("const d = 4;", "const d = 40;")), APP_ID);
+
+        assertTrue(result.startsWith("文件部分修改成功: " + file + "，应用 2 处修改"), result);
+        assertTrue(result.contains("以下 1 个修改未应用：\n- 第 2 个修改：与第 1 个修改重叠（第 3-3 行）"), result);
+        assertEquals("const a = 1;\nconst bc = 23;\nconst d = 40;\n", Files.readString(file));
+    }
+
+    @Test
+    void insertionsAtSamePositionConflict() throws IOException {
+        Path file = write(CONTENT);
+
+        String result = tool.modifyFileBatch(file.toString(), List.of(
+                contentEdit("const b", "let b"),
+                contentEdit("const b", "var b")), APP_ID);
+
+        assertTrue(result.contains("第 2 个修改：与第 1 个修改重叠"), result);
+        assertTrue(Files.readString(file).contains("let b = 2;"));
+    }
+
+    @Test
+    void missingAnchorIsReportedAndOtherEditsApplied() throws IOException {
+        Path file = write(CONTENT);
+
+        String result = tool.modifyFileBatch(file.toString(), List.of(
+                contentEdit("const z = 26;", "const z = 0;"),
+                contentEdit("const a = 1;", "const a = 10;")), APP_ID);
+
+        assertTrue(result.contains("第 1 个修改：文件中未找到要替换的内容"), result);
+        assertTrue(result.startsWith("文件部分修改成功"), result);
+        assertTrue(Files.readString(file).startsWith("const a = 10;\n"));
+    }
+
+    @Test
+    void invalidLineRangeIsReported() throws IOException {
+        Path file = write(CONTENT);
+
+        String result = tool.modifyFileBatch(file.toString(), List.of(
+                lineEdit(4, 5, "x"),
+                lineEdit(3, 2, "x")), APP_ID);
+
+        assertTrue(result.contains("第 1 个修改：行号范围 4-5 无效（文件共 4 行）"), result);
+        assertTrue(result.contains("第 2 个修改：行号范围 3-2 无效（文件共 4 行）"), result);
+        assertEquals(CONTENT, Files.readString(file));
+    }
+
+    @Test
+    void editWithSeveralOccurrencesIsRejectedWhole() throws IOException {
+        Path file = write("""
+                const a = 1;
+                const b = 2;
+                const a2 = 1;
+                """);
+
+        // 第二个修改匹配两处，其中一处与第一个修改重叠，两处都不应用
+        String result = tool.modifyFileBatch(file.toString(), List.of(
+                lineEdit(3, 3, "const a2 = 3;"),
+                contentEdit("= 1;", "= 100;"),
+                contentEdit("const b = 2;", "const b = 20;")), APP_ID);
+
+        assertTrue(result.contains("第 2 个修改：与第 1 个修改重叠"), result);
+        assertEquals("const a = 1;\nconst b = 20;\nconst a2 = 3;\n", Files.readString(file));
+    }
+
+    @Test
+    void fileIsUnchangedWhenNoEditApplies() throws IOException {
+        Path file = write(CONTENT);
+
+        String result = tool.modifyFileBatch(file.toString(), List.of(
+                contentEdit("const z = 26;", "const z = 0;"),
+                new FileEdit()), APP_ID);
+
+        assertTrue(result.startsWith("警告：所有修改均未应用，文件未修改 - " + file), result);
+        assertTrue(result.contains("第 2 个修改：缺少要替换的内容或行号"), result);
+        assertEquals(CONTENT, Files.readString(file));
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(tempDir.resolve("App.js"), content);
+    }
+
+    private static FileEdit contentEdit(String oldContent, String newContent) {
+        FileEdit edit = new FileEdit();
+        edit.setOldContent(oldContent);
+        edit.setNewContent(newContent);
+        return edit;
+    }
+
+    private static FileEdit lineEdit(int startLine, int endLine, String newContent) {
+        FileEdit edit = new FileEdit();
+        edit.setStartLine(startLine);
+        edit.setEndLine(endLine);
+        edit.setNewContent(newContent);
+        return edit;
+    }
+}
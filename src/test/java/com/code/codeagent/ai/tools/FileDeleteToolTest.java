@@ -0,0 +1,93 @@
+package com.code.codeagent.ai.tools;
+
+import cn.hutool.core.io.FileUtil;
+import com.code.codeagent.constant.AppConstant;
+import com.code.codeagent.core.saver.CodeBlobStore;
+import com.code.codeagent.core.saver.ProjectWriteBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 删除工具与写缓冲：尚未落盘的文件从覆盖层中移除，其余待写入的文件不落盘
+ */
+class FileDeleteToolTest {
+
+    private static final long APP_ID = 900002L;
+
+    @TempDir
+    Path tempDir;
+
+    private Path projectRoot;
+
+    private final FileDeleteTool tool = new FileDeleteTool();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        CodeBlobStore.useRootDir(tempDir.resolve("code_blob"));
+        ProjectWriteBuffer.configure(true, 1024 * 1024);
+        projectRoot = Files.createDirectories(Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, "vue_" + APP_ID));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ProjectWriteBuffer.discard(projectRoot);
+        ProjectWriteBuffer.configure(true, 4 * 1024 * 1024);
+        CodeBlobStore.useRootDir(Paths.get(AppConstant.CODE_BLOB_ROOT_DIR));
+        FileUtil.del(projectRoot);
+    }
+
+    @Test
+    void bufferedFileIsRemovedFromBuffer() throws IOException {
+        ProjectWriteBuffer.write(projectRoot, "src/components/Old.vue", "old");
+        ProjectWriteBuffer.write(projectRoot, "src/main.js", "createApp(App)");
+
+        String result = tool.deleteFile("src/components/Old.vue", APP_ID);
+
+        assertEquals("文件删除成功: src/components/Old.vue", result);
+        assertNull(ProjectWriteBuffer.read(projectRoot, "src/components/Old.vue"));
+        assertEquals(Set.of("src/main.js"), ProjectWriteBuffer.pendingPaths(projectRoot));
+        assertFalse(Files.exists(projectRoot.resolve("src/main.js")));
+    }
+
+    @Test
+    void bufferedAndFlushedFileIsRemovedEverywhere() throws IOException {
+        ProjectWriteBuffer.write(projectRoot, "src/components/Old.vue", "v1");
+        ProjectWriteBuffer.flush(projectRoot);
+        ProjectWriteBuffer.write(projectRoot, "src/components/Old.vue", "v2");
+
+        tool.deleteFile("src/components/Old.vue", APP_ID);
+
+        assertNull(ProjectWriteBuffer.read(projectRoot, "src/components/Old.vue"));
+        assertFalse(Files.exists(projectRoot.resolve("src/components/Old.vue")));
+        // 之后落盘不会恢复已删除的文件
+        ProjectWriteBuffer.flush(projectRoot);
+        assertFalse(Files.exists(projectRoot.resolve("src/components/Old.vue")));
+    }
+
+    @Test
+    void importantBufferedFileIsKept() throws IOException {
+        ProjectWriteBuffer.write(projectRoot, "src/App.vue", "<template/>");
+
+        String result = tool.deleteFile("src/App.vue", APP_ID);
+
+        assertEquals("错误：不允许删除重要文件 - App.vue", result);
+        assertEquals("<template/>", ProjectWriteBuffer.read(projectRoot, "src/App.vue"));
+    }
+
+    @Test
+    void missingFileIsReported() {
+        assertEquals("警告：文件不存在，无需删除 - src/None.vue", tool.deleteFile("src/None.vue", APP_ID));
+    }
+}
@@ -0,0 +1,86 @@
+package com.code.codeagent.ai.tools;
+
+import cn.hutool.core.io.FileUtil;
+import com.code.codeagent.constant.AppConstant;
+import com.code.codeagent.core.saver.CodeBlobStore;
+import com.code.codeagent.core.saver.ProjectWriteBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 修改工具与写缓冲：尚未落盘的文件直接修改覆盖层中的内容，不触发整体落盘
+ */
+class FileModifyToolTest {
+
+    private static final long APP_ID = 900001L;
+
+    @TempDir
+    Path tempDir;
+
+    private Path projectRoot;
+
+    private final FileModifyTool tool = new FileModifyTool();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        CodeBlobStore.useRootDir(tempDir.resolve("code_blob"));
+        ProjectWriteBuffer.configure(true, 1024 * 1024);
+        projectRoot = Files.createDirectories(Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, "vue_" + APP_ID));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ProjectWriteBuffer.discard(projectRoot);
+        ProjectWriteBuffer.configure(true, 4 * 1024 * 1024);
+        CodeBlobStore.useRootDir(Paths.get(AppConstant.CODE_BLOB_ROOT_DIR));
+        FileUtil.del(projectRoot);
+    }
+
+    @Test
+    void bufferedFileIsModifiedInBuffer() throws IOException {
+        ProjectWriteBuffer.write(projectRoot, "src/App.vue", "<h1>Hello</h1>");
+        ProjectWriteBuffer.write(projectRoot, "src/main.js", "createApp(App)");
+
+        String result = tool.modifyFile("src/App.vue", "Hello", "Hi", APP_ID);
+
+        assertEquals("文件修改成功: src/App.vue", result);
+        assertEquals("<h1>Hi</h1>", ProjectWriteBuffer.read(projectRoot, "src/App.vue"));
+        // 其他文件仍在写缓冲中，没有落盘
+        assertEquals(Set.of("src/App.vue", "src/main.js"), ProjectWriteBuffer.pendingPaths(projectRoot));
+        assertFalse(Files.exists(projectRoot.resolve("src/App.vue")));
+    }
+
+    @Test
+    void fileNotInBufferIsModifiedOnDisk() throws IOException {
+        Files.createDirectories(projectRoot.resolve("src"));
+        Files.writeString(projectRoot.resolve("src/App.vue"), "<h1>Hello</h1>");
+        ProjectWriteBuffer.write(projectRoot, "src/main.js", "createApp(App)");
+
+        String result = tool.modifyFile("src/App.vue", "Hello", "Hi", APP_ID);
+
+        assertEquals("文件修改成功: src/App.vue", result);
+        assertEquals("<h1>Hi</h1>", Files.readString(projectRoot.resolve("src/App.vue")));
+        assertEquals(Set.of("src/main.js"), ProjectWriteBuffer.pendingPaths(projectRoot));
+    }
+
+    @Test
+    void missingAnchorLeavesBufferedContentUnchanged() throws IOException {
+        ProjectWriteBuffer.write(projectRoot, "src/App.vue", "<h1>Hello</h1>");
+
+        String result = tool.modifyFile("src/App.vue", "Goodbye", "Hi", APP_ID);
+
+        assertEquals("警告：文件中未找到要替换的内容，文件未修改 - src/App.vue", result);
+        assertEquals("<h1>Hello</h1>", ProjectWriteBuffer.read(projectRoot, "src/App.vue"));
+    }
+}
@@ -0,0 +1,133 @@
+package com.code.codeagent.ai.tools;
+
+import com.code.codeagent.config.FileReadConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 文件读取工具的分段读取和大文件摘要
+ * 使用绝对路径读取临时目录中的文件，不经过项目目录和写缓冲
+ */
+class FileReadToolTest {
+
+    private static final long APP_ID = 1L;
+
+    @TempDir
+    Path tempDir;
+
+    private FileReadConfig config;
+
+    private FileReadTool tool;
+
+    @BeforeEach
+    void setUp() {
+        config = new FileReadConfig();
+        config.setMaxBytes(64);
+        config.setSummaryLines(2);
+        tool = new FileReadTool();
+        ReflectionTestUtils.setField(tool, "fileReadConfig", config);
+        tool.init();
+    }
+
+    @Test
+    void smallFileIsReturnedWhole() throws IOException {
+        Path file = write("small.txt", "a\nb\n");
+
+        assertEquals("a\nb\n", tool.readFile(file.toString(), null, null, APP_ID));
+    }
+
+    @Test
+    void rangeReturnsRequestedLines() throws IOException {
+        Path file = write("lines.txt", lines(5));
+
+        String result = tool.readFile(file.toString(), 2, 3, APP_ID);
+
+        assertEquals("[第 2-3 行，共 5 行] " + file + System.lineSeparator() + "line2\nline3\n", result);
+    }
+
+    @Test
+    void openRangesDefaultToFileBounds() throws IOException {
+        Path file = write("lines.txt", lines(3));
+
+        assertTrue(tool.readFile(file.toString(), 2, null, APP_ID).endsWith("line2\nline3\n"));
+        assertTrue(tool.readFile(file.toString(), null, 1, APP_ID).endsWith("] " + file + System.lineSeparator() + "line1\n"));
+        assertTrue(tool.readFile(file.toString(), 3, 99, APP_ID).startsWith("[第 3-3 行，共 3 行]"));
+    }
+
+    @Test
+    void rangeOutOfBoundsIsAnError() throws IOException {
+        Path file = write("lines.txt", lines(3));
+
+        assertTrue(tool.readFile(file.toString(), 4, null, APP_ID).startsWith("错误：行号超出范围，文件共 3 行"));
+    }
+
+    @Test
+    void rangeOverLimitIsTruncatedAtLastWholeLine() throws IOException {
+        // 每行 8 字节，64 字节内正好 8 行
+        Path file = write("lines.txt", IntStream.rangeClosed(1, 20)
+                .mapToObj(i -> String.format("line%03d", i) + "\n")
+                .collect(Collectors.joining()));
+
+        String result = tool.readFile(file.toString(), 1, 20, APP_ID);
+
+        assertTrue(result.startsWith("[第 1-8 行，共 20 行]"), result);
+        assertTrue(result.endsWith("line008\n[内容超过 64 字节已截断，请从第 9 行继续读取]"), result);
+        assertFalse(result.contains("line009"));
+    }
+
+    @Test
+    void singleLineOverLimitKeepsWholeCharacters() throws IOException {
+        // 3 字节的中文字符，64 字节不是字符边界
+        Path file = write("minified.js", "中".repeat(30));
+
+        String result = tool.readFile(file.toString(), 1, 1, APP_ID);
+
+        assertTrue(result.contains("中".repeat(21) + "\n[第 1 行超过 64 字节，仅显示开头]"), result);
+        assertFalse(result.contains("中".repeat(22)));
+    }
+
+    @Test
+    void largeFileReturnsSummaryWithHeadAndTail() throws IOException {
+        Path file = write("large.txt", lines(30));
+
+        String result = tool.readFile(file.toString(), null, null, APP_ID);
+
+        assertTrue(result.startsWith("[文件过大，仅显示摘要] " + file), result);
+        assertTrue(result.contains("共 30 行，单次最多读取 64 字节"), result);
+        assertTrue(result.contains("--- 开头 ---\nline1\nline2\n\n--- 结尾 ---"), result);
+        assertTrue(result.endsWith("--- 结尾 ---\nline29\nline30\n"), result);
+        assertFalse(result.contains("line15"));
+    }
+
+    @Test
+    void changedFileIsNotServedFromCache() throws IOException {
+        Path file = write("lines.txt", lines(3));
+        tool.readFile(file.toString(), 1, 1, APP_ID);
+
+        Files.writeString(file, "changed\n" + lines(3));
+
+        assertTrue(tool.readFile(file.toString(), 1, 1, APP_ID).endsWith("changed\n"));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(tempDir.resolve(name), content);
+    }
+
+    private static String lines(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> "line" + i + "\n")
+                .collect(Collectors.joining());
+    }
+}
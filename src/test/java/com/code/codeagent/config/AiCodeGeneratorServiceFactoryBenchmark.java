@@ -0,0 +1,121 @@
+package com.code.codeagent.config;
+
+import com.code.codeagent.ai.AiCodeGeneratorService;
+import com.code.codeagent.ai.ChatHistorySummaryService;
+import com.code.codeagent.ai.tools.BaseTool;
+import com.code.codeagent.ai.tools.FileBatchModifyTool;
+import com.code.codeagent.ai.tools.FileDeleteTool;
+import com.code.codeagent.ai.tools.FileDirReadTool;
+import com.code.codeagent.ai.tools.FileModifyTool;
+import com.code.codeagent.ai.tools.FileReadTool;
+import com.code.codeagent.ai.tools.FileWriteTool;
+import com.code.codeagent.ai.tools.ToolManager;
+import com.code.codeagent.manager.CachedChatMemoryStore;
+import com.code.codeagent.manager.ChatMemoryHydrator;
+import com.code.codeagent.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI 服务缓存未命中的开销
+ * 每次操作使用新的 appId（必然未命中）：
+ * - proxyPerApp：原实现，每个应用构造一个 AiServices 代理（接口反射、工具规格扫描、新的 FileWriteTool），工具与共享代理相同
+ * - sharedProxy：{@link AiCodeGeneratorServiceFactory}，每种代码生成类型共享一个代理，未命中只登记记忆句柄
+ * 模型为空实现，对话记忆存储和回填为 Mock，只测量本进程内的开销，不包含 Redis 和 MySQL 访问。
+ * <p>
+ * 运行：mvn test-compile 后在 test classpath 上执行 {@link #main(String[])}（或在 IDE 中直接运行），不属于单元测试。
+ *
+ * @author CodeAgent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AiCodeGeneratorServiceFactoryBenchmark {
+
+    private final ChatModel chatModel = new ChatModel() {
+    };
+
+    private final StreamingChatModel streamingChatModel = new StreamingChatModel() {
+    };
+
+    private final InMemoryChatMemoryStore chatMemoryStore = new InMemoryChatMemoryStore();
+
+    private ToolManager toolManager;
+
+    private AiCodeGeneratorServiceFactory factory;
+
+    private long nextAppId;
+
+    @Setup
+    public void setUp() {
+        toolManager = new ToolManager();
+        ReflectionTestUtils.setField(toolManager, "tools", new BaseTool[]{new FileWriteTool(), new FileDirReadTool(),
+                new FileReadTool(), new FileModifyTool(), new FileBatchModifyTool(), new FileDeleteTool()});
+        toolManager.initTools();
+        factory = new AiCodeGeneratorServiceFactory();
+        ReflectionTestUtils.setField(factory, "chatModel", chatModel);
+        ReflectionTestUtils.setField(factory, "streamingChatModel", streamingChatModel);
+        ReflectionTestUtils.setField(factory, "reasoningStreamingChatModel", streamingChatModel);
+        ReflectionTestUtils.setField(factory, "cachedChatMemoryStore", Mockito.mock(CachedChatMemoryStore.class));
+        ReflectionTestUtils.setField(factory, "chatMemoryHydrator", Mockito.mock(ChatMemoryHydrator.class));
+        ReflectionTestUtils.setField(factory, "chatMemoryConfig", new ChatMemoryConfig());
+        ReflectionTestUtils.setField(factory, "chatHistorySummaryService", Mockito.mock(ChatHistorySummaryService.class));
+        ReflectionTestUtils.setField(factory, "toolManager", toolManager);
+        factory.initTokenCountEstimator();
+    }
+
+    @Benchmark
+    public AiCodeGeneratorService sharedProxy() {
+        return factory.getAiCodeGeneratorService(++nextAppId, CodeGenTypeEnum.VUE_PROJECT);
+    }
+
+    @Benchmark
+    public AiCodeGeneratorService proxyPerApp() {
+        long appId = ++nextAppId;
+        return AiServices.builder(AiCodeGeneratorService.class)
+                .chatModel(chatModel)
+                .streamingChatModel(streamingChatModel)
+                .chatMemoryProvider(memoryId -> MessageWindowChatMemory.builder()
+                        .id(appId)
+                        .chatMemoryStore(chatMemoryStore)
+                        .maxMessages(20)
+                        .build())
+                .tools(new FileWriteTool(CodeGenTypeEnum.VUE_PROJECT), toolManager.getTool("readDir"),
+                        toolManager.getTool("readFile"), toolManager.getTool("modifyFile"),
+                        toolManager.getTool("modifyFileBatch"), toolManager.getTool("deleteFile"))
+                .hallucinatedToolNameStrategy(toolExecutionRequest ->
+                        ToolExecutionResultMessage.from(toolExecutionRequest,
+                                "Error: there is no tool called " + toolExecutionRequest.name()))
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AiCodeGeneratorServiceFactoryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,160 @@
+package com.code.codeagent.core.parser;
+
+import cn.hutool.core.io.FileUtil;
+import com.code.codeagent.constant.AppConstant;
+import com.code.codeagent.core.saver.CodeBlobStore;
+import com.code.codeagent.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 增量代码解析器的代码块识别、流结束和中止处理
+ */
+class StreamingCodeParserTest {
+
+    private static final long APP_ID = 900003L;
+
+    @TempDir
+    Path tempDir;
+
+    private StreamingCodeParser parser;
+
+    @BeforeEach
+    void setUp() {
+        CodeBlobStore.useRootDir(tempDir.resolve("code_blob"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (parser != null) {
+            FileUtil.del(parser.getSaveDir());
+        }
+        CodeBlobStore.useRootDir(Paths.get(AppConstant.CODE_BLOB_ROOT_DIR));
+    }
+
+    @Test
+    void fenceSplitAcrossChunksIsRecognized() throws IOException {
+        parser = new StreamingCodeParser(CodeGenTypeEnum.HTML, APP_ID);
+
+        List<CodeFileCompletedEvent> events = new ArrayList<>();
+        events.addAll(parser.feed("页面如下：\n``"));
+        events.addAll(parser.feed("`ht"));
+        events.addAll(parser.feed("ml\n<div>hello</div>\n`"));
+        assertTrue(events.isEmpty());
+        List<CodeFileCompletedEvent> closed = parser.feed("``\n完成");
+
+        assertEquals(1, closed.size());
+        assertEquals("index.html", closed.get(0).getFileName());
+        // 结束标记在最后一个片段的第 2 个字符处结束
+        assertEquals(2, closed.get(0).getChunkOffset());
+        assertEquals("<div>hello</div>", read("index.html"));
+        assertTrue(parser.finish().isEmpty());
+    }
+
+    @Test
+    void chunkOffsetPointsRightAfterClosingFence() {
+        parser = new StreamingCodeParser(CodeGenTypeEnum.MULTI_FILE, APP_ID);
+        String chunk = "```css\nbody { margin: 0; }\n```\n接下来是脚本\n```js\nconsole.log(1);\n```后续说明";
+
+        List<CodeFileCompletedEvent> events = parser.feed(chunk);
+
+        assertEquals(2, events.size());
+        assertEquals("style.css", events.get(0).getFileName());
+        assertEquals(chunk.indexOf("\n接下来"), events.get(0).getChunkOffset());
+        assertEquals("script.js", events.get(1).getFileName());
+        assertEquals(2, events.get(1).getIndex());
+        assertEquals(chunk.indexOf("后续说明"), events.get(1).getChunkOffset());
+    }
+
+    @Test
+    void inlineBackticksInTextAreNotAFence() throws IOException {
+        parser = new StreamingCodeParser(CodeGenTypeEnum.MULTI_FILE, APP_ID);
+
+        parser.feed("运行 ```npm`` 不会开始代码块\n```html\n<p>x</p>\n```");
+
+        assertEquals("<p>x</p>", read("index.html"));
+    }
+
+    @Test
+    void overLongInfoStringIsNotAFence() throws IOException {
+        parser = new StreamingCodeParser(CodeGenTypeEnum.MULTI_FILE, APP_ID);
+
+        List<CodeFileCompletedEvent> events = parser.feed(
+                "```" + "a".repeat(40) + "\n<p>不是代码</p>\n```html\n<p>x</p>\n```");
+
+        assertEquals(1, events.size());
+        assertEquals("<p>x</p>", read("index.html"));
+    }
+
+    @Test
+    void unclosedBlockIsSavedAtFinish() throws IOException {
+        parser = new StreamingCodeParser(CodeGenTypeEnum.MULTI_FILE, APP_ID);
+
+        assertTrue(parser.feed("```html\n<p>被截断的输出</p>\n").isEmpty());
+        List<CodeFileCompletedEvent> events = parser.finish();
+
+        assertEquals(1, events.size());
+        assertEquals("index.html", events.get(0).getFileName());
+        assertEquals("<p>被截断的输出</p>", read("index.html"));
+        assertFalse(Files.exists(saveDir().resolve("index.html.part")));
+    }
+
+    @Test
+    void outputWithoutFencesIsSavedToFallbackFile() throws IOException {
+        parser = new StreamingCodeParser(CodeGenTypeEnum.HTML, APP_ID);
+
+        parser.feed("  <html><body>");
+        parser.feed("hi</body></html>\n");
+        List<CodeFileCompletedEvent> events = parser.finish();
+
+        assertEquals(1, events.size());
+        assertEquals("index.html", events.get(0).getFileName());
+        assertEquals(0, events.get(0).getChunkOffset());
+        assertEquals("<html><body>hi</body></html>", read("index.html"));
+    }
+
+    @Test
+    void firstBlockWinsForDuplicateFileName() throws IOException {
+        parser = new StreamingCodeParser(CodeGenTypeEnum.MULTI_FILE, APP_ID);
+
+        List<CodeFileCompletedEvent> events = parser.feed("```css\na { color: red; }\n```\n```css\nb { color: blue; }\n```");
+
+        assertEquals(1, events.size());
+        assertEquals("a { color: red; }", read("style.css"));
+        assertFalse(Files.exists(saveDir().resolve("style.css.part")));
+    }
+
+    @Test
+    void abortDiscardsPartFile() {
+        parser = new StreamingCodeParser(CodeGenTypeEnum.MULTI_FILE, APP_ID);
+        parser.feed("```html\n<p>写了一半");
+        Path partFile = saveDir().resolve("index.html.part");
+        assertTrue(Files.exists(partFile));
+
+        parser.abort();
+
+        assertFalse(Files.exists(partFile));
+        assertFalse(Files.exists(saveDir().resolve("index.html")));
+    }
+
+    private Path saveDir() {
+        return parser.getSaveDir().toPath();
+    }
+
+    private String read(String fileName) throws IOException {
+        return Files.readString(saveDir().resolve(fileName));
+    }
+}
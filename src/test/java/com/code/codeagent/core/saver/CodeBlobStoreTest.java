@@ -0,0 +1,107 @@
+package com.code.codeagent.core.saver;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.code.codeagent.constant.AppConstant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 删除应用后的 blob 清理：只回收已删除应用独有的 blob，仍被其他应用引用的保留
+ */
+class CodeBlobStoreTest {
+
+    private static final String SHARED_CONTENT = "<template><div>共享的脚手架</div></template>";
+
+    private static final String DELETED_ONLY_CONTENT = "export default { name: 'deleted' }";
+
+    private static final String LIVE_ONLY_CONTENT = "export default { name: 'live' }";
+
+    @TempDir
+    Path tempDir;
+
+    private Path blobRoot;
+
+    private Path deletedApp;
+
+    private Path liveApp;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        blobRoot = tempDir.resolve("code_blob");
+        CodeBlobStore.useRootDir(blobRoot);
+        deletedApp = tempDir.resolve("code_output/vue_project_1");
+        liveApp = tempDir.resolve("code_output/vue_project_2");
+        CodeBlobStore.write(deletedApp, "src/App.vue", SHARED_CONTENT);
+        CodeBlobStore.write(deletedApp, "src/main.js", DELETED_ONLY_CONTENT);
+        CodeBlobStore.write(liveApp, "src/App.vue", SHARED_CONTENT);
+        CodeBlobStore.write(liveApp, "src/main.js", LIVE_ONLY_CONTENT);
+    }
+
+    @AfterEach
+    void tearDown() {
+        CodeBlobStore.useRootDir(Paths.get(AppConstant.CODE_BLOB_ROOT_DIR));
+    }
+
+    @Test
+    void deleteAppRemovesDirectoryAndManifest() throws IOException {
+        CodeBlobStore.deleteApp(deletedApp);
+
+        assertFalse(Files.exists(deletedApp));
+        assertFalse(Files.exists(blobRoot.resolve("manifests/vue_project_1.json")));
+        assertTrue(Files.exists(blobRoot.resolve("manifests/vue_project_2.json")));
+    }
+
+    @Test
+    void garbageCollectionKeepsBlobsOfLiveApp() throws IOException {
+        CodeBlobStore.deleteApp(deletedApp);
+
+        CodeBlobStore.collectGarbage();
+
+        assertFalse(Files.exists(blob(DELETED_ONLY_CONTENT)));
+        assertTrue(Files.exists(blob(SHARED_CONTENT)));
+        assertTrue(Files.exists(blob(LIVE_ONLY_CONTENT)));
+        assertEquals(SHARED_CONTENT, Files.readString(liveApp.resolve("src/App.vue")));
+    }
+
+    @Test
+    void liveAppCanBeRestoredFromManifestAfterCollection() throws IOException {
+        CodeBlobStore.deleteApp(deletedApp);
+        CodeBlobStore.collectGarbage();
+        Files.delete(liveApp.resolve("src/App.vue"));
+        Files.delete(liveApp.resolve("src/main.js"));
+
+        int restored = CodeBlobStore.materialize(liveApp);
+
+        assertEquals(2, restored);
+        assertEquals(SHARED_CONTENT, Files.readString(liveApp.resolve("src/App.vue")));
+        assertEquals(LIVE_ONLY_CONTENT, Files.readString(liveApp.resolve("src/main.js")));
+    }
+
+    @Test
+    void manifestKeepsBlobWithoutAppDirectory() throws IOException {
+        // 只删除目录（如清理磁盘）而保留清单时，blob 不会被回收
+        FileUtil.del(deletedApp);
+
+        CodeBlobStore.collectGarbage();
+
+        assertTrue(Files.exists(blob(DELETED_ONLY_CONTENT)));
+    }
+
+    private Path blob(String content) {
+        String hash = DigestUtil.sha256Hex(content.getBytes(StandardCharsets.UTF_8));
+        return blobRoot.resolve("objects").resolve(hash.substring(0, 2)).resolve(hash);
+    }
+}
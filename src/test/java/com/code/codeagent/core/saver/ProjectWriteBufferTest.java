@@ -0,0 +1,148 @@
+package com.code.codeagent.core.saver;
+
+import com.code.codeagent.constant.AppConstant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 写缓冲的覆盖层读取、落盘和落盘失败后的重试
+ */
+class ProjectWriteBufferTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path projectRoot;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        CodeBlobStore.useRootDir(tempDir.resolve("code_blob"));
+        ProjectWriteBuffer.configure(true, 1024);
+        projectRoot = Files.createDirectories(tempDir.resolve("code_output/vue_project_1"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ProjectWriteBuffer.discard(projectRoot);
+        ProjectWriteBuffer.configure(true, 4 * 1024 * 1024);
+        CodeBlobStore.useRootDir(Paths.get(AppConstant.CODE_BLOB_ROOT_DIR));
+    }
+
+    @Test
+    void bufferedWriteIsReadableBeforeFlush() throws IOException {
+        ProjectWriteBuffer.write(projectRoot, "src/App.vue", "v1");
+        ProjectWriteBuffer.write(projectRoot, "./src/App.vue", "v2");
+
+        assertEquals("v2", ProjectWriteBuffer.read(projectRoot, "src/App.vue"));
+        assertEquals(Set.of("src/App.vue"), ProjectWriteBuffer.pendingPaths(projectRoot));
+        assertFalse(Files.exists(projectRoot.resolve("src/App.vue")));
+    }
+
+    @Test
+    void flushWritesLatestContentAndClearsOverlay() throws IOException {
+        ProjectWriteBuffer.write(projectRoot, "src/App.vue", "v1");
+        ProjectWriteBuffer.write(projectRoot, "src/App.vue", "v2");
+        ProjectWriteBuffer.write(projectRoot, "index.html", "<div id=\"app\"></div>");
+
+        List<String> failed = ProjectWriteBuffer.flush(projectRoot);
+
+        assertTrue(failed.isEmpty());
+        assertEquals("v2", Files.readString(projectRoot.resolve("src/App.vue")));
+        assertEquals("<div id=\"app\"></div>", Files.readString(projectRoot.resolve("index.html")));
+        assertNull(ProjectWriteBuffer.read(projectRoot, "src/App.vue"));
+        assertTrue(ProjectWriteBuffer.pendingPaths(projectRoot).isEmpty());
+    }
+
+    @Test
+    void writeOverLimitFlushesImmediately() throws IOException {
+        ProjectWriteBuffer.write(projectRoot, "src/large.js", "x".repeat(2048));
+
+        assertEquals("x".repeat(2048), Files.readString(projectRoot.resolve("src/large.js")));
+        assertTrue(ProjectWriteBuffer.pendingPaths(projectRoot).isEmpty());
+    }
+
+    @Test
+    void failedFilesStayBufferedUntilNextFlush() throws IOException {
+        // src 是普通文件，无法在其下创建文件
+        Files.writeString(projectRoot.resolve("src"), "not a directory");
+        ProjectWriteBuffer.write(projectRoot, "src/App.vue", "app");
+        ProjectWriteBuffer.write(projectRoot, "index.html", "index");
+
+        List<String> failed = ProjectWriteBuffer.flush(projectRoot);
+
+        assertEquals(List.of("src/App.vue"), failed);
+        assertEquals("index", Files.readString(projectRoot.resolve("index.html")));
+        assertEquals("app", ProjectWriteBuffer.read(projectRoot, "src/App.vue"));
+        assertEquals(Set.of("src/App.vue"), ProjectWriteBuffer.pendingPaths(projectRoot));
+
+        Files.delete(projectRoot.resolve("src"));
+
+        assertTrue(ProjectWriteBuffer.flush(projectRoot).isEmpty());
+        assertEquals("app", Files.readString(projectRoot.resolve("src/App.vue")));
+        assertTrue(ProjectWriteBuffer.pendingPaths(projectRoot).isEmpty());
+    }
+
+    @Test
+    void newerWriteIsKeptOverFailedContent() throws IOException {
+        Files.writeString(projectRoot.resolve("src"), "not a directory");
+        ProjectWriteBuffer.write(projectRoot, "src/App.vue", "old");
+        ProjectWriteBuffer.flush(projectRoot);
+
+        ProjectWriteBuffer.write(projectRoot, "src/App.vue", "new");
+        Files.delete(projectRoot.resolve("src"));
+        ProjectWriteBuffer.flush(projectRoot);
+
+        assertEquals("new", Files.readString(projectRoot.resolve("src/App.vue")));
+    }
+
+    @Test
+    void failedFlushOverLimitIsReportedToWriter() throws IOException {
+        Files.writeString(projectRoot.resolve("src"), "not a directory");
+
+        IOException error = assertThrows(IOException.class,
+                () -> ProjectWriteBuffer.write(projectRoot, "src/large.js", "x".repeat(2048)));
+
+        assertTrue(error.getMessage().contains("src/large.js"));
+        assertEquals("x".repeat(2048), ProjectWriteBuffer.read(projectRoot, "src/large.js"));
+    }
+
+    @Test
+    void removeDropsPendingContentOnly() throws IOException {
+        ProjectWriteBuffer.write(projectRoot, "src/Old.vue", "old");
+        ProjectWriteBuffer.write(projectRoot, "src/App.vue", "app");
+
+        assertTrue(ProjectWriteBuffer.remove(projectRoot, "./src/Old.vue"));
+        assertFalse(ProjectWriteBuffer.remove(projectRoot, "src/Old.vue"));
+
+        assertEquals(Set.of("src/App.vue"), ProjectWriteBuffer.pendingPaths(projectRoot));
+        assertTrue(ProjectWriteBuffer.flush(projectRoot).isEmpty());
+        assertFalse(Files.exists(projectRoot.resolve("src/Old.vue")));
+    }
+
+    @Test
+    void flushAllWritesEveryProject() throws IOException {
+        Path otherRoot = Files.createDirectories(tempDir.resolve("code_output/react_project_2"));
+        ProjectWriteBuffer.write(projectRoot, "src/App.vue", "vue");
+        ProjectWriteBuffer.write(otherRoot, "src/App.jsx", "react");
+
+        assertEquals(0, ProjectWriteBuffer.flushAll());
+
+        assertEquals("vue", Files.readString(projectRoot.resolve("src/App.vue")));
+        assertEquals("react", Files.readString(otherRoot.resolve("src/App.jsx")));
+    }
+}
@@ -0,0 +1,114 @@
+package com.code.codeagent.manager;
+
+import com.code.codeagent.config.ChatMemoryConfig;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 对话记忆写后缓冲的上限：待写入的应用数达到上限后，新应用的更新直接写入 Redis
+ * 后台写入线程不启动，模拟 Redis 不可用、待写入内容一直没有写出的情况
+ */
+class CachedChatMemoryStoreTest {
+
+    private static final String CHANNEL = "code-agent:chat-memory:invalidate";
+
+    private StringRedisTemplate redisTemplate;
+
+    private ValueOperations<String, String> valueOperations;
+
+    private CachedChatMemoryStore store;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        ChatMemoryConfig config = new ChatMemoryConfig();
+        config.setMaxPendingWrites(2);
+        store = new CachedChatMemoryStore();
+        ReflectionTestUtils.setField(store, "chatMemoryConfig", config);
+        ReflectionTestUtils.setField(store, "stringRedisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(store, "ttl", 3600L);
+        ReflectionTestUtils.setField(store, "cache", Caffeine.newBuilder().build());
+    }
+
+    @Test
+    void updatesBelowLimitStayLocal() {
+        store.updateMessages(1L, messages("a"));
+        store.updateMessages(2L, messages("b"));
+
+        assertEquals(messages("b"), store.getMessages(2L));
+        assertTrue(store.containsLocally(1L));
+        assertEquals(2, store.getStats().get("pendingWriteCount"));
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void newAppIsWrittenThroughWhenPendingIsFull() {
+        store.updateMessages(1L, messages("a"));
+        store.updateMessages(2L, messages("b"));
+
+        store.updateMessages(3L, messages("c"));
+
+        verify(valueOperations).set("3", ChatMessageSerializer.messagesToJson(messages("c")), Duration.ofSeconds(3600));
+        verify(redisTemplate).convertAndSend(eq(CHANNEL), anyString());
+        assertEquals(2, store.getStats().get("pendingWriteCount"));
+        assertEquals(1L, store.getStats().get("writeThroughCount"));
+        // 写入后仍从本地缓存读取
+        assertEquals(messages("c"), store.getMessages(3L));
+    }
+
+    @Test
+    void pendingAppKeepsCoalescingWhenFull() {
+        store.updateMessages(1L, messages("a"));
+        store.updateMessages(2L, messages("b"));
+
+        store.updateMessages(1L, messages("a", "a2"));
+
+        assertEquals(messages("a", "a2"), store.getMessages(1L));
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void failedWriteThroughIsNotKeptInMemory() {
+        doThrow(new RedisConnectionFailureException("down"))
+                .when(valueOperations).set(anyString(), anyString(), any(Duration.class));
+        store.updateMessages(1L, messages("a"));
+        store.updateMessages(2L, messages("b"));
+
+        assertThrows(RedisConnectionFailureException.class, () -> store.updateMessages(3L, messages("c")));
+
+        assertFalse(store.containsLocally(3L));
+        assertEquals(2, store.getStats().get("pendingWriteCount"));
+    }
+
+    private static List<ChatMessage> messages(String... texts) {
+        return Arrays.stream(texts).<ChatMessage>map(UserMessage::from).toList();
+    }
+}
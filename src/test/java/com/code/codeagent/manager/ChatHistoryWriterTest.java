@@ -0,0 +1,162 @@
+package com.code.codeagent.manager;
+
+import com.code.codeagent.config.ChatHistoryPersistConfig;
+import com.code.codeagent.exception.BusinessException;
+import com.code.codeagent.mapper.ChatHistoryMapper;
+import com.code.codeagent.model.entity.ChatHistory;
+import com.code.codeagent.model.enums.ChatHistoryMessageTypeEnum;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 对话历史写后队列在数据库不可用和数据错误时的处理
+ * 后台写入线程不启动，由 flush 触发写入
+ */
+class ChatHistoryWriterTest {
+
+    private static final long APP_ID = 1L;
+
+    private final Map<Long, ChatHistory> table = new ConcurrentHashMap<>();
+
+    private final List<Long> insertOrder = new ArrayList<>();
+
+    private ChatHistoryMapper mapper;
+
+    private ChatHistoryWriter writer;
+
+    private boolean databaseDown;
+
+    private Long badMessageId;
+
+    @BeforeEach
+    void setUp() {
+        mapper = mock(ChatHistoryMapper.class);
+        when(mapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<ChatHistory> batch = invocation.getArgument(0);
+            if (databaseDown) {
+                throw new CannotGetJdbcConnectionException("database down");
+            }
+            if (badMessageId != null && batch.stream().anyMatch(chatHistory -> badMessageId.equals(chatHistory.getId()))) {
+                throw new DataIntegrityViolationException("Data too long for column 'message'");
+            }
+            batch.forEach(chatHistory -> {
+                table.put(chatHistory.getId(), chatHistory);
+                insertOrder.add(chatHistory.getId());
+            });
+            return batch.size();
+        });
+        writer = createWriter(10);
+    }
+
+    @Test
+    void failedRowsAreKeptUntilDatabaseRecovers() {
+        databaseDown = true;
+        writer.submit(aiMessage(1L));
+        writer.submit(aiMessage(2L));
+
+        writer.flush(APP_ID);
+
+        assertTrue(table.isEmpty());
+        assertEquals(2, writer.getPendingCount());
+        assertTrue(pendingCounts().containsKey(APP_ID));
+
+        databaseDown = false;
+        writer.flush(APP_ID);
+
+        assertEquals(List.of(1L, 2L), insertOrder);
+        assertEquals(0, writer.getPendingCount());
+        assertFalse(pendingCounts().containsKey(APP_ID));
+    }
+
+    @Test
+    void retriedRowsAreWrittenBeforeLaterRows() {
+        databaseDown = true;
+        writer.submit(aiMessage(1L));
+        writer.flush(APP_ID);
+
+        databaseDown = false;
+        writer.submit(aiMessage(2L));
+        writer.flush(APP_ID);
+
+        assertEquals(List.of(1L, 2L), insertOrder);
+    }
+
+    @Test
+    void onlyRowWithDataErrorIsDropped() {
+        badMessageId = 2L;
+        writer.submit(aiMessage(1L));
+        writer.submit(aiMessage(2L));
+        writer.submit(aiMessage(3L));
+
+        writer.flush(APP_ID);
+
+        assertEquals(List.of(1L, 3L), insertOrder);
+        assertEquals(0, writer.getPendingCount());
+        assertFalse(pendingCounts().containsKey(APP_ID));
+    }
+
+    @Test
+    void fullQueueIsRejectedWhileDatabaseIsDown() {
+        writer = createWriter(1);
+        databaseDown = true;
+        writer.submit(aiMessage(1L));
+
+        assertThrows(BusinessException.class, () -> writer.submit(aiMessage(2L)));
+
+        // 已提交的消息保留，被拒绝的消息不计入积压
+        assertEquals(1, writer.getPendingCount());
+        assertEquals(1, pendingCounts().get(APP_ID));
+
+        databaseDown = false;
+        writer.flush(APP_ID);
+
+        assertEquals(List.of(1L), insertOrder);
+        assertFalse(pendingCounts().containsKey(APP_ID));
+    }
+
+    private ChatHistoryWriter createWriter(int queueCapacity) {
+        ChatHistoryPersistConfig config = new ChatHistoryPersistConfig();
+        config.setQueueCapacity(queueCapacity);
+        config.setOfferTimeoutMs(0);
+        ChatHistoryWriter chatHistoryWriter = new ChatHistoryWriter();
+        ReflectionTestUtils.setField(chatHistoryWriter, "chatHistoryPersistConfig", config);
+        ReflectionTestUtils.setField(chatHistoryWriter, "chatHistoryMapper", mapper);
+        ReflectionTestUtils.setField(chatHistoryWriter, "queue", new ArrayBlockingQueue<ChatHistory>(queueCapacity));
+        ReflectionTestUtils.setField(chatHistoryWriter, "recentUserMessages", Caffeine.newBuilder().build());
+        ReflectionTestUtils.setField(chatHistoryWriter, "flusher", Thread.ofVirtual().unstarted(() -> { }));
+        ReflectionTestUtils.setField(chatHistoryWriter, "running", true);
+        return chatHistoryWriter;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Integer> pendingCounts() {
+        return (Map<Long, Integer>) ReflectionTestUtils.getField(writer, "pendingCounts");
+    }
+
+    private static ChatHistory aiMessage(Long id) {
+        ChatHistory chatHistory = new ChatHistory();
+        chatHistory.setId(id);
+        chatHistory.setAppId(APP_ID);
+        chatHistory.setMessage("回复" + id);
+        chatHistory.setMessageType(ChatHistoryMessageTypeEnum.AI.getValue());
+        return chatHistory;
+    }
+}
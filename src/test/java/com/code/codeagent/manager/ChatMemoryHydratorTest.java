@@ -0,0 +1,166 @@
+package com.code.codeagent.manager;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.code.codeagent.ai.tools.BaseTool;
+import com.code.codeagent.ai.tools.FileDirReadTool;
+import com.code.codeagent.ai.tools.FileModifyTool;
+import com.code.codeagent.ai.tools.FileReadTool;
+import com.code.codeagent.ai.tools.FileWriteTool;
+import com.code.codeagent.ai.tools.ToolManager;
+import com.code.codeagent.mapper.ChatHistoryMapper;
+import com.code.codeagent.model.entity.ChatHistory;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 对话历史中的工具调用记录还原为工具调用消息，以及本节点持有记忆时跳过回填
+ */
+class ChatMemoryHydratorTest {
+
+    private final CachedChatMemoryStore cachedChatMemoryStore = mock(CachedChatMemoryStore.class);
+
+    private final StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+
+    private final ChatHistoryWriter chatHistoryWriter = mock(ChatHistoryWriter.class);
+
+    private final ChatHistoryMapper chatHistoryMapper = mock(ChatHistoryMapper.class);
+
+    private ChatMemoryHydrator hydrator;
+
+    @BeforeEach
+    void setUp() {
+        ToolManager toolManager = new ToolManager();
+        ReflectionTestUtils.setField(toolManager, "tools", new BaseTool[]{
+                new FileWriteTool(), new FileReadTool(), new FileModifyTool(), new FileDirReadTool()});
+        toolManager.initTools();
+        hydrator = new ChatMemoryHydrator();
+        ReflectionTestUtils.setField(hydrator, "toolManager", toolManager);
+        ReflectionTestUtils.setField(hydrator, "cachedChatMemoryStore", cachedChatMemoryStore);
+        ReflectionTestUtils.setField(hydrator, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(hydrator, "chatHistoryWriter", chatHistoryWriter);
+        ReflectionTestUtils.setField(hydrator, "chatHistoryMapper", chatHistoryMapper);
+    }
+
+    @Test
+    void plainReplyStaysOneAiMessage() {
+        List<ChatMessage> messages = hydrator.toAiMessages(history("好的，已经完成了。"));
+
+        assertEquals(1, messages.size());
+        assertEquals("好的，已经完成了。", ((AiMessage) messages.get(0)).text());
+    }
+
+    @Test
+    void toolRecordsBecomeToolCalls() {
+        String message = "先看看目录\n\n[工具调用] 读取目录 根目录\n\n接着写入页面\n\n"
+                + "[工具调用] 写入文件 src/App.vue\n> 文件内容已写入（12 字符，SHA-256: abc）\n\n完成";
+
+        List<ChatMessage> messages = hydrator.toAiMessages(history(message));
+
+        assertEquals(5, messages.size());
+        AiMessage readDir = assertInstanceOf(AiMessage.class, messages.get(0));
+        assertEquals("先看看目录", readDir.text());
+        ToolExecutionRequest readDirRequest = readDir.toolExecutionRequests().get(0);
+        assertEquals("readDir", readDirRequest.name());
+        assertEquals("hydrated_9_0", readDirRequest.id());
+        assertEquals("", JSONUtil.parseObj(readDirRequest.arguments()).getStr("relativeDirPath"));
+        ToolExecutionResultMessage readDirResult = assertInstanceOf(ToolExecutionResultMessage.class, messages.get(1));
+        assertEquals(readDirRequest.id(), readDirResult.id());
+
+        AiMessage writeFile = assertInstanceOf(AiMessage.class, messages.get(2));
+        assertEquals("接着写入页面", writeFile.text());
+        ToolExecutionRequest writeRequest = writeFile.toolExecutionRequests().get(0);
+        assertEquals("writeFile", writeRequest.name());
+        assertEquals("src/App.vue", JSONUtil.parseObj(writeRequest.arguments()).getStr("relativeFilePath"));
+        ToolExecutionResultMessage writeResult = assertInstanceOf(ToolExecutionResultMessage.class, messages.get(3));
+        assertEquals("文件内容已写入（12 字符，SHA-256: abc）", writeResult.text());
+
+        AiMessage last = assertInstanceOf(AiMessage.class, messages.get(4));
+        assertEquals("完成", last.text());
+        assertFalse(last.hasToolExecutionRequests());
+    }
+
+    @Test
+    void quotedDiffIsToolResultNotModelText() {
+        FileModifyTool modifyTool = new FileModifyTool();
+        String record = modifyTool.generateToolExecutedResult(new JSONObject()
+                .set("relativeFilePath", "src/main.js")
+                .set("oldContent", "a\n\nb")
+                .set("newContent", "c"));
+
+        List<ChatMessage> messages = hydrator.toAiMessages(history("\n\n" + record + "\n\n修改好了"));
+
+        assertEquals(3, messages.size());
+        ToolExecutionResultMessage result = assertInstanceOf(ToolExecutionResultMessage.class, messages.get(1));
+        assertTrue(result.text().startsWith("替换前："));
+        assertTrue(result.text().endsWith("```"));
+        assertEquals("修改好了", ((AiMessage) messages.get(2)).text());
+    }
+
+    @Test
+    void rangedReadRestoresLineNumbers() {
+        List<ChatMessage> messages = hydrator.toAiMessages(history("[工具调用] 读取文件 src/App.vue（第 10-末尾 行）"));
+
+        assertEquals(2, messages.size());
+        JSONObject arguments = JSONUtil.parseObj(((AiMessage) messages.get(0)).toolExecutionRequests().get(0).arguments());
+        assertEquals("src/App.vue", arguments.getStr("relativeFilePath"));
+        assertEquals(10, arguments.getInt("startLine"));
+        assertNull(arguments.getInt("endLine"));
+    }
+
+    @Test
+    void unknownDisplayNameStaysText() {
+        List<ChatMessage> messages = hydrator.toAiMessages(history("[工具调用] 发送邮件 someone"));
+
+        assertEquals(1, messages.size());
+        assertFalse(((AiMessage) messages.get(0)).hasToolExecutionRequests());
+    }
+
+    @Test
+    void memoryHeldLocallyIsNotHydrated() {
+        when(cachedChatMemoryStore.containsLocally(1L)).thenReturn(true);
+
+        assertFalse(hydrator.hydrate(1L));
+
+        verifyNoInteractions(stringRedisTemplate, chatHistoryWriter, chatHistoryMapper);
+    }
+
+    @Test
+    void onlyAppsNotHeldLocallyAreCheckedInRedis() {
+        when(cachedChatMemoryStore.containsLocally(1L)).thenReturn(true);
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(true));
+
+        assertEquals(0, hydrator.hydrate(List.of(1L, 2L)));
+
+        verify(stringRedisTemplate).executePipelined(any(RedisCallback.class));
+        verifyNoInteractions(chatHistoryWriter, chatHistoryMapper);
+    }
+
+    private ChatHistory history(String message) {
+        ChatHistory chatHistory = new ChatHistory();
+        chatHistory.setId(9L);
+        chatHistory.setAppId(1L);
+        chatHistory.setMessage(message);
+        return chatHistory;
+    }
+}
@@ -0,0 +1,122 @@
+package com.code.codeagent.manager;
+
+import com.code.codeagent.config.DeployConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 部署版本的发布、沿上线历史回滚和旧版本清理
+ */
+class DeployReleaseManagerTest {
+
+    private static final String DEPLOY_KEY = "abc123";
+
+    @TempDir
+    Path tempDir;
+
+    private DeployConfig config;
+
+    private DeployReleaseManager manager;
+
+    private Path sourceDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        config = new DeployConfig();
+        config.setReleaseRootDir(tempDir.resolve("code_release").toString());
+        config.setKeepReleases(10);
+        manager = new DeployReleaseManager();
+        ReflectionTestUtils.setField(manager, "deployConfig", config);
+        ReflectionTestUtils.setField(manager, "deployRootDir", tempDir.resolve("code_deploy").toString());
+        sourceDir = Files.createDirectories(tempDir.resolve("dist"));
+        Files.createDirectories(sourceDir.resolve("assets"));
+        Files.writeString(sourceDir.resolve("index.html"), "<div id=\"app\"></div>");
+    }
+
+    @Test
+    void unchangedFilesAreLinkedToPreviousRelease() throws IOException {
+        publish("v1");
+        publish("version 2");
+
+        List<Path> releases = releases();
+        assertEquals(2, releases.size());
+        Path first = releases.get(0);
+        Path second = releases.get(1);
+        assertTrue(Files.isSameFile(first.resolve("index.html"), second.resolve("index.html")));
+        assertFalse(Files.isSameFile(first.resolve("assets/app.js"), second.resolve("assets/app.js")));
+        assertEquals("version 2", served());
+    }
+
+    @Test
+    void rollbackStepsBackAlongServedHistory() throws IOException {
+        publish("A");
+        publish("B");
+        publish("C");
+
+        assertTrue(manager.rollback(DEPLOY_KEY));
+        assertEquals("B", served());
+        assertTrue(manager.rollback(DEPLOY_KEY));
+        assertEquals("A", served());
+        assertFalse(manager.rollback(DEPLOY_KEY));
+        assertEquals("A", served());
+    }
+
+    @Test
+    void rollbackReturnsToPreviouslyServedReleaseNotOlderTimestamp() throws IOException {
+        publish("A");
+        publish("B");
+        manager.rollback(DEPLOY_KEY);
+        publish("C");
+
+        // 版本号上 B 早于 C，但 C 上线前服务的是 A
+        assertTrue(manager.rollback(DEPLOY_KEY));
+        assertEquals("A", served());
+    }
+
+    @Test
+    void garbageCollectionKeepsCurrentRelease() throws IOException {
+        publish("A");
+        publish("B");
+        publish("C");
+        manager.rollback(DEPLOY_KEY);
+
+        config.setKeepReleases(1);
+        manager.collectGarbage(DEPLOY_KEY);
+
+        List<Path> releases = releases();
+        assertEquals(1, releases.size());
+        assertEquals("B", Files.readString(releases.get(0).resolve("assets/app.js")));
+        assertEquals("B", served());
+        assertFalse(manager.rollback(DEPLOY_KEY));
+    }
+
+    private void publish(String script) throws IOException {
+        Files.writeString(sourceDir.resolve("assets/app.js"), script);
+        manager.publish(DEPLOY_KEY, sourceDir.toFile());
+    }
+
+    private String served() throws IOException {
+        return Files.readString(tempDir.resolve("code_deploy").resolve(DEPLOY_KEY).resolve("assets/app.js"));
+    }
+
+    private List<Path> releases() throws IOException {
+        try (Stream<Path> stream = Files.list(tempDir.resolve("code_release").resolve(DEPLOY_KEY))) {
+            return stream.filter(Files::isDirectory)
+                    .filter(path -> !path.getFileName().toString().startsWith("."))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.code.codeagent.service.impl;
+
+import com.code.codeagent.config.ChatHistoryPersistConfig;
+import com.code.codeagent.manager.ChatHistoryWriter;
+import com.code.codeagent.mapper.ChatHistoryMapper;
+import com.code.codeagent.model.entity.ChatHistory;
+import com.code.codeagent.model.enums.ChatHistoryMessageTypeEnum;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 对话历史写后队列的读写一致性
+ * 写后队列的后台线程默认不启动，模拟 AI 回复已提交、尚未被后台写入时读取或删除的情况
+ */
+class ChatHistoryServiceImplTest {
+
+    private static final long APP_ID = 1L;
+
+    private static final long USER_ID = 2L;
+
+    private final Map<Long, ChatHistory> table = new ConcurrentHashMap<>();
+
+    private final List<List<Long>> insertedBatches = new ArrayList<>();
+
+    private ChatHistoryMapper mapper;
+
+    private ChatHistoryWriter writer;
+
+    private ChatHistoryServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        mapper = mock(ChatHistoryMapper.class);
+        when(mapper.insert(any(ChatHistory.class))).thenAnswer(invocation -> {
+            ChatHistory chatHistory = invocation.getArgument(0);
+            table.put(chatHistory.getId(), chatHistory);
+            return 1;
+        });
+        when(mapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<ChatHistory> batch = invocation.getArgument(0);
+            batch.forEach(chatHistory -> table.put(chatHistory.getId(), chatHistory));
+            insertedBatches.add(batch.stream().map(ChatHistory::getId).toList());
+            return batch.size();
+        });
+        when(mapper.selectById(any())).thenAnswer(invocation -> table.get((Long) invocation.getArgument(0)));
+        service = createService(10);
+    }
+
+    @Test
+    void userMessageIsReadableRightAfterSubmit() {
+        Long userMessageId = addUserMessage();
+
+        ChatHistory userMessage = service.getById(userMessageId);
+
+        assertNotNull(userMessage);
+        assertEquals(ChatHistoryMessageTypeEnum.USER.getValue(), userMessage.getMessageType());
+        verify(mapper).insert(any(ChatHistory.class));
+    }
+
+    @Test
+    void queuedAiReplyIsWrittenBeforeDeleteByAppId() {
+        Long userMessageId = addUserMessage();
+        Long aiMessageId = addAiMessage(userMessageId);
+        verify(mapper, never()).insertBatch(anyList());
+
+        service.deleteByAppId(APP_ID);
+
+        InOrder inOrder = inOrder(mapper);
+        inOrder.verify(mapper).insertBatch(anyList());
+        inOrder.verify(mapper).delete(any());
+        assertEquals(List.of(List.of(aiMessageId)), insertedBatches);
+        assertEquals(0, writer.getPendingCount());
+    }
+
+    @Test
+    void queuedAiReplyIsWrittenBeforeDeleteAiReplies() {
+        Long userMessageId = addUserMessage();
+        Long aiMessageId = addAiMessage(userMessageId);
+
+        service.deleteAiRepliesByParentId(userMessageId);
+
+        InOrder inOrder = inOrder(mapper);
+        inOrder.verify(mapper).insertBatch(anyList());
+        inOrder.verify(mapper).delete(any());
+        assertEquals(List.of(List.of(aiMessageId)), insertedBatches);
+    }
+
+    @Test
+    void nextUserMessageIsWrittenAfterQueuedReplies() {
+        Long firstUserMessageId = addUserMessage();
+        addAiMessage(firstUserMessageId);
+
+        addUserMessage();
+
+        InOrder inOrder = inOrder(mapper);
+        inOrder.verify(mapper).insert(any(ChatHistory.class));
+        inOrder.verify(mapper).insertBatch(anyList());
+        inOrder.verify(mapper).insert(any(ChatHistory.class));
+    }
+
+    @Test
+    void fullQueueWritesQueuedRepliesFirst() {
+        service = createService(1);
+        Long userMessageId = addUserMessage();
+        Long firstAiMessageId = addAiMessage(userMessageId);
+
+        Long secondAiMessageId = addAiMessage(userMessageId);
+
+        assertEquals(List.of(List.of(firstAiMessageId), List.of(secondAiMessageId)), insertedBatches);
+        assertEquals(0, writer.getPendingCount());
+    }
+
+    @Test
+    void backgroundWriterWritesQueuedReplies() {
+        ReflectionTestUtils.invokeMethod(writer, "start");
+        try {
+            Long userMessageId = addUserMessage();
+            Long aiMessageId = addAiMessage(userMessageId);
+
+            verify(mapper, timeout(5000)).insertBatch(anyList());
+            assertEquals(aiMessageId, table.get(aiMessageId).getId());
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    private Long addUserMessage() {
+        return service.addChatMessage(APP_ID, "做一个待办应用", ChatHistoryMessageTypeEnum.USER.getValue(), USER_ID, null);
+    }
+
+    private Long addAiMessage(Long parentId) {
+        return service.addChatMessage(APP_ID, "好的", ChatHistoryMessageTypeEnum.AI.getValue(), USER_ID, parentId);
+    }
+
+    /**
+     * 构造写后队列（不启动后台线程）和服务
+     */
+    private ChatHistoryServiceImpl createService(int queueCapacity) {
+        ChatHistoryPersistConfig config = new ChatHistoryPersistConfig();
+        config.setQueueCapacity(queueCapacity);
+        config.setOfferTimeoutMs(0);
+        writer = new ChatHistoryWriter();
+        ReflectionTestUtils.setField(writer, "chatHistoryPersistConfig", config);
+        ReflectionTestUtils.setField(writer, "chatHistoryMapper", mapper);
+        ReflectionTestUtils.setField(writer, "queue", new ArrayBlockingQueue<ChatHistory>(queueCapacity));
+        ReflectionTestUtils.setField(writer, "recentUserMessages", Caffeine.newBuilder().build());
+        ReflectionTestUtils.setField(writer, "flusher", Thread.ofVirtual().unstarted(() -> { }));
+        ReflectionTestUtils.setField(writer, "running", true);
+        ChatHistoryServiceImpl chatHistoryService = new ChatHistoryServiceImpl();
+        ReflectionTestUtils.setField(chatHistoryService, "baseMapper", mapper);
+        ReflectionTestUtils.setField(chatHistoryService, "chatHistoryWriter", writer);
+        return chatHistoryService;
+    }
+}
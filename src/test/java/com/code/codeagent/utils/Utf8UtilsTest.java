@@ -0,0 +1,26 @@
+package com.code.codeagent.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * UTF-8 字节数与 getBytes 的结果一致
+ */
+class Utf8UtilsTest {
+
+    @Test
+    void encodedLengthMatchesGetBytes() {
+        String[] texts = {"", "abc", "é©", "中文内容", "emoji 😀 结束", "孤立的\uD83D代理", "结尾\uD83D", "\uDE00开头"};
+        for (String text : texts) {
+            assertEquals(text.getBytes(StandardCharsets.UTF_8).length, Utf8Utils.encodedLength(text), text);
+        }
+    }
+
+    @Test
+    void nullHasZeroLength() {
+        assertEquals(0, Utf8Utils.encodedLength(null));
+    }
+}
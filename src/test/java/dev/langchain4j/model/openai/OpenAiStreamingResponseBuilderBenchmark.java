@@ -0,0 +1,169 @@
+package dev.langchain4j.model.openai;
+
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.openai.internal.chat.ChatCompletionChoice;
+import dev.langchain4j.model.openai.internal.chat.ChatCompletionResponse;
+import dev.langchain4j.model.openai.internal.chat.Delta;
+import dev.langchain4j.model.openai.internal.chat.FunctionCall;
+import dev.langchain4j.model.openai.internal.chat.ToolCall;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compares the single-writer {@link OpenAiStreamingResponseBuilder} with the previous accumulator
+ * (synchronized {@link StringBuffer}s, {@link AtomicReference} metadata and a {@link ConcurrentHashMap}
+ * of tool-call builders) on one replayed stream: text deltas followed by the argument deltas of one tool call.
+ * <p>
+ * Run with {@code mvn test-compile} and then {@link #main(String[])} on the test classpath (or from the IDE).
+ * This is not a unit test and is not picked up by surefire.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenAiStreamingResponseBuilderBenchmark {
+
+    /**
+     * Number of deltas in the replayed stream (half text, half tool-call arguments)
+     */
+    @Param({"256", "4096"})
+    private int deltaCount;
+
+    private List<ChatCompletionResponse> deltas;
+
+    @Setup
+    public void setUp() {
+        deltas = new ArrayList<>(deltaCount + 1);
+        int textDeltas = deltaCount / 2;
+        for (int i = 0; i < textDeltas; i++) {
+            deltas.add(response(Delta.builder().content("tok" + (i % 10) + " ").build(), null));
+        }
+        for (int i = textDeltas; i < deltaCount; i++) {
+            ToolCall.Builder toolCall = ToolCall.builder().index(0);
+            FunctionCall.Builder function = FunctionCall.builder().arguments("<div>" + i + "</div>");
+            if (i == textDeltas) {
+                toolCall.id("call_0");
+                function.name("writeFile");
+            }
+            deltas.add(response(Delta.builder().toolCalls(List.of(toolCall.function(function.build()).build())).build(), null));
+        }
+        deltas.add(response(Delta.builder().build(), "tool_calls"));
+    }
+
+    @Benchmark
+    public ChatResponse singleWriter() {
+        OpenAiStreamingResponseBuilder builder = new OpenAiStreamingResponseBuilder();
+        for (ChatCompletionResponse delta : deltas) {
+            builder.append(delta);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public void synchronizedBuffers(Blackhole blackhole) {
+        LegacyAccumulator accumulator = new LegacyAccumulator();
+        for (ChatCompletionResponse delta : deltas) {
+            accumulator.append(delta);
+        }
+        accumulator.build(blackhole);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OpenAiStreamingResponseBuilderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    private static ChatCompletionResponse response(Delta delta, String finishReason) {
+        return ChatCompletionResponse.builder()
+                .id("chatcmpl-benchmark")
+                .created(1L)
+                .model("benchmark")
+                .choices(List.of(ChatCompletionChoice.builder().index(0).delta(delta).finishReason(finishReason).build()))
+                .build();
+    }
+
+    /**
+     * The accumulation part of the previous builder, kept here as the baseline
+     */
+    private static class LegacyAccumulator {
+
+        private final StringBuffer contentBuilder = new StringBuffer();
+        private final Map<Integer, LegacyToolCallBuilder> indexToToolCallBuilder = new ConcurrentHashMap<>();
+        private final AtomicReference<String> id = new AtomicReference<>();
+        private final AtomicReference<Long> created = new AtomicReference<>();
+        private final AtomicReference<String> model = new AtomicReference<>();
+        private final AtomicReference<String> finishReason = new AtomicReference<>();
+
+        void append(ChatCompletionResponse partialResponse) {
+            id.set(partialResponse.id());
+            created.set(partialResponse.created());
+            model.set(partialResponse.model());
+            ChatCompletionChoice choice = partialResponse.choices().get(0);
+            if (choice.finishReason() != null) {
+                finishReason.set(choice.finishReason());
+            }
+            Delta delta = choice.delta();
+            if (delta.content() != null && !delta.content().isEmpty()) {
+                contentBuilder.append(delta.content());
+            }
+            if (delta.toolCalls() != null) {
+                for (ToolCall toolCall : delta.toolCalls()) {
+                    LegacyToolCallBuilder builder = indexToToolCallBuilder.computeIfAbsent(toolCall.index(),
+                            idx -> new LegacyToolCallBuilder());
+                    if (toolCall.id() != null) {
+                        builder.idBuilder.append(toolCall.id());
+                    }
+                    if (toolCall.function().name() != null) {
+                        builder.nameBuilder.append(toolCall.function().name());
+                    }
+                    if (toolCall.function().arguments() != null) {
+                        builder.argumentsBuilder.append(toolCall.function().arguments());
+                    }
+                }
+            }
+        }
+
+        void build(Blackhole blackhole) {
+            blackhole.consume(contentBuilder.toString());
+            indexToToolCallBuilder.values().forEach(builder -> {
+                blackhole.consume(builder.idBuilder.toString());
+                blackhole.consume(builder.nameBuilder.toString());
+                blackhole.consume(builder.argumentsBuilder.toString());
+            });
+            blackhole.consume(id.get());
+            blackhole.consume(created.get());
+            blackhole.consume(model.get());
+            blackhole.consume(finishReason.get());
+        }
+    }
+
+    private static class LegacyToolCallBuilder {
+
+        private final StringBuffer idBuilder = new StringBuffer();
+        private final StringBuffer nameBuilder = new StringBuffer();
+        private final StringBuffer argumentsBuilder = new StringBuffer();
+    }
+}